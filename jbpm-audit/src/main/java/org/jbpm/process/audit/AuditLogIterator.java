@@ -0,0 +1,159 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.jbpm.process.audit.strategy.PersistenceStrategy;
+
+/**
+ * Iterator over audit logs (process, node or variable instance logs) that loads them lazily in pages of
+ * fixed size so that memory stays flat regardless of the size of the result.
+ * <br/>
+ * Every page is loaded in its own transaction (unless there is one active already) by the id of the last
+ * log of the previous page, loaded logs are detached so that they are not kept by the persistence context.
+ * Logs are therefore always ordered by their id - the order in which they were written - and logs written
+ * while iterating might be returned as well.
+ * <br/>
+ * No database resources are held between pages, iterator should still be closed when it is not read
+ * till the end so that the current page is released.
+ */
+public class AuditLogIterator<T> implements Iterator<T>, Closeable {
+
+    static final String LAST_ID_PARAMETER = "lastLogId";
+
+    private final PersistenceStrategy persistenceStrategy;
+    private final String queryString;
+    private final Map<String, Object> queryParams;
+    private final Class<T> resultType;
+    private final int fetchSize;
+
+    private Iterator<T> page = Collections.<T>emptyList().iterator();
+    private long lastId;
+    private boolean lastPage = false;
+    private boolean closed = false;
+
+    /**
+     * @param queryString query with keyset criteria and ordering appended by
+     * {@link #appendKeysetCriteria(StringBuilder, String, boolean, boolean)}
+     */
+    AuditLogIterator(PersistenceStrategy persistenceStrategy, String queryString, Map<String, Object> queryParams,
+            boolean ascending, Class<T> resultType, int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.persistenceStrategy = persistenceStrategy;
+        this.queryString = queryString;
+        this.queryParams = queryParams;
+        this.resultType = resultType;
+        this.fetchSize = fetchSize;
+        this.lastId = ascending ? -1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Appends criteria selecting logs after the last one of the previous page and ordering by log id.
+     * @param where true if the query has no where clause yet
+     */
+    static void appendKeysetCriteria(StringBuilder queryBuilder, String alias, boolean where, boolean ascending) {
+        queryBuilder.append("\n").append(where ? "WHERE " : "AND ")
+            .append(alias).append(".id ").append(ascending ? ">" : "<").append(" :").append(LAST_ID_PARAMETER)
+            .append(" \n ORDER BY ").append(alias).append(".id ").append(ascending ? "ASC" : "DESC");
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!page.hasNext() && !lastPage) {
+            fetch();
+        }
+        if (!page.hasNext()) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Audit logs cannot be removed while iterating");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        page = Collections.<T>emptyList().iterator();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fetch() {
+        List<T> result;
+        EntityManager em = persistenceStrategy.getEntityManager();
+        Object tx = persistenceStrategy.joinTransaction(em);
+        try {
+            Query query = em.createQuery(queryString);
+            for (Entry<String, Object> param : queryParams.entrySet()) {
+                query.setParameter(param.getKey(), param.getValue());
+            }
+            result = query
+                .setParameter(LAST_ID_PARAMETER, lastId)
+                .setMaxResults(fetchSize)
+                .getResultList();
+            for (T log : result) {
+                em.detach(log);
+            }
+        } finally {
+            persistenceStrategy.leaveTransaction(em, tx);
+        }
+        if (result.size() < fetchSize) {
+            lastPage = true;
+        }
+        if (!result.isEmpty()) {
+            lastId = getId(result.get(result.size() - 1));
+        }
+        page = result.iterator();
+    }
+
+    private long getId(T log) {
+        if (log instanceof ProcessInstanceLog) {
+            return ((ProcessInstanceLog) log).getId();
+        } else if (log instanceof NodeInstanceLog) {
+            return ((NodeInstanceLog) log).getId();
+        } else if (log instanceof VariableInstanceLog) {
+            return ((VariableInstanceLog) log).getId();
+        }
+        throw new IllegalStateException("Unsupported result type: " + resultType.getName());
+    }
+}
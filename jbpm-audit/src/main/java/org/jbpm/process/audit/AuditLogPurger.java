@@ -0,0 +1,275 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.EntityManager;
+
+import org.jbpm.process.audit.strategy.PersistenceStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.CompactWriter;
+
+/**
+ * Deletes audit logs (process, node and variable instance logs) of process instances that ended before given
+ * date. Logs of active process instances are never deleted.
+ * <br/>
+ * Process instances are processed in chunks ordered by the id of their process instance log, every chunk
+ * in its own transaction (unless there is one active already) so that locks are held only for a short time:
+ * node and variable instance logs are deleted by process instance ids of the chunk and process instance logs
+ * by the id range of the chunk. Process instance logs are deleted last so that logs of a chunk that failed
+ * are purged again on the next run.
+ * <br/>
+ * Purged logs can be archived to a gzip compressed file in given directory, one XStream serialized log
+ * per line. Logs of a chunk are archived (and synced to disk) before they are deleted so that nothing is
+ * lost - logs of a chunk that failed might be archived again on the next run.
+ * <br/>
+ * Default chunk size is given by <code>org.jbpm.audit.purge.chunk.size</code> system property (500 by
+ * default), it cannot be bigger than 1000 as process instance ids of a chunk are used as query parameter list.
+ */
+public class AuditLogPurger {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogPurger.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = Integer.parseInt(System.getProperty("org.jbpm.audit.purge.chunk.size", "500"));
+    private static final int MAX_CHUNK_SIZE = 1000;
+
+    private final PersistenceStrategy persistenceStrategy;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private File archiveDirectory;
+
+    public AuditLogPurger(PersistenceStrategy persistenceStrategy) {
+        this.persistenceStrategy = persistenceStrategy;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public File getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    /**
+     * @param archiveDirectory directory where purged logs are archived, logs are not archived when null
+     */
+    public void setArchiveDirectory(File archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+    }
+
+    /**
+     * Deletes (and archives if configured) audit logs of all process instances that ended before given date.
+     * @return summary of the purge
+     */
+    public Summary purge(Date endedBefore) {
+        if (endedBefore == null) {
+            throw new IllegalArgumentException("Date must be given");
+        }
+        Summary summary = new Summary();
+        long start = System.currentTimeMillis();
+        Archive archive = null;
+        try {
+            if (archiveDirectory != null) {
+                archive = new Archive(archiveDirectory);
+                summary.archiveFile = archive.file;
+            }
+            long lastId = -1;
+            while (lastId != -2) {
+                lastId = purgeChunk(endedBefore, lastId, archive, summary);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to archive audit logs", e);
+        } finally {
+            summary.duration = System.currentTimeMillis() - start;
+        }
+        logger.info("Audit logs of process instances ended before {} purged: {}", endedBefore, summary);
+        return summary;
+    }
+
+    /**
+     * @return id of the last purged process instance log or -2 if there was nothing to purge
+     */
+    @SuppressWarnings("unchecked")
+    private long purgeChunk(Date endedBefore, long lastId, Archive archive, Summary summary) throws IOException {
+        EntityManager em = persistenceStrategy.getEntityManager();
+        Object tx = persistenceStrategy.joinTransaction(em);
+        try {
+            List<Object[]> rows = em.createQuery(
+                    "select log.id, log.processInstanceId from ProcessInstanceLog log where log.end < :endedBefore and log.id > :lastId order by log.id")
+                    .setParameter("endedBefore", endedBefore)
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(chunkSize)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                return -2;
+            }
+            long minId = ((Number) rows.get(0)[0]).longValue();
+            long maxId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+            Set<Long> ids = new LinkedHashSet<Long>();
+            for (Object[] row : rows) {
+                ids.add(((Number) row[1]).longValue());
+            }
+            List<Long> processInstanceIds = new ArrayList<Long>(ids);
+
+            if (archive != null) {
+                archive.write(
+                        em.createQuery("from ProcessInstanceLog log where log.id between :minId and :maxId and log.end < :endedBefore")
+                            .setParameter("minId", minId).setParameter("maxId", maxId).setParameter("endedBefore", endedBefore)
+                            .getResultList(),
+                        em.createQuery("from NodeInstanceLog log where log.processInstanceId in (:ids)")
+                            .setParameter("ids", processInstanceIds).getResultList(),
+                        em.createQuery("from VariableInstanceLog log where log.processInstanceId in (:ids)")
+                            .setParameter("ids", processInstanceIds).getResultList());
+                em.clear();
+            }
+
+            summary.nodeInstanceLogs += em.createQuery("delete from NodeInstanceLog log where log.processInstanceId in (:ids)")
+                    .setParameter("ids", processInstanceIds).executeUpdate();
+            summary.variableInstanceLogs += em.createQuery("delete from VariableInstanceLog log where log.processInstanceId in (:ids)")
+                    .setParameter("ids", processInstanceIds).executeUpdate();
+            summary.processInstanceLogs += em.createQuery(
+                    "delete from ProcessInstanceLog log where log.id between :minId and :maxId and log.end < :endedBefore")
+                    .setParameter("minId", minId).setParameter("maxId", maxId).setParameter("endedBefore", endedBefore)
+                    .executeUpdate();
+            summary.chunks++;
+            logger.debug("Purged audit logs of {} process instances, process instance log ids {} - {}", processInstanceIds.size(), minId, maxId);
+            return maxId;
+        } finally {
+            persistenceStrategy.leaveTransaction(em, tx);
+        }
+    }
+
+    /**
+     * Summary of a purge.
+     */
+    public static class Summary {
+
+        private long processInstanceLogs;
+        private long nodeInstanceLogs;
+        private long variableInstanceLogs;
+        private int chunks;
+        private long duration;
+        private File archiveFile;
+
+        public long getProcessInstanceLogs() {
+            return processInstanceLogs;
+        }
+
+        public long getNodeInstanceLogs() {
+            return nodeInstanceLogs;
+        }
+
+        public long getVariableInstanceLogs() {
+            return variableInstanceLogs;
+        }
+
+        public long getTotal() {
+            return processInstanceLogs + nodeInstanceLogs + variableInstanceLogs;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        /**
+         * @return duration of the purge in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return number of purged logs per second
+         */
+        public double getThroughput() {
+            return duration == 0 ? getTotal() : getTotal() * 1000.0 / duration;
+        }
+
+        /**
+         * @return file with archived logs or null if logs were not archived
+         */
+        public File getArchiveFile() {
+            return archiveFile;
+        }
+
+        public String toString() {
+            return "Summary [processInstanceLogs=" + processInstanceLogs + ", nodeInstanceLogs=" + nodeInstanceLogs
+                    + ", variableInstanceLogs=" + variableInstanceLogs + ", chunks=" + chunks + ", duration=" + duration
+                    + " ms, throughput=" + Math.round(getThroughput()) + " logs/s"
+                    + (archiveFile == null ? "" : ", archive=" + archiveFile) + "]";
+        }
+    }
+
+    /**
+     * Every chunk is written as separate gzip member appended to the archive file so that it is complete
+     * before logs of the chunk are deleted, concatenated members are read as single gzip stream.
+     */
+    private static class Archive {
+
+        private final File file;
+        private final XStream xstream = new XStream();
+
+        Archive(File directory) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create archive directory " + directory);
+            }
+            String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+            this.file = new File(directory, "audit-logs-" + timestamp + ".xml.gz");
+        }
+
+        void write(List<?>... chunk) throws IOException {
+            FileOutputStream out = new FileOutputStream(file, true);
+            try {
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, "UTF-8"));
+                for (List<?> logs : chunk) {
+                    for (Object log : logs) {
+                        xstream.marshal(log, new CompactWriter(writer));
+                        writer.write('\n');
+                    }
+                }
+                writer.flush();
+                gzip.finish();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -61,7 +61,28 @@ public interface AuditLogService extends AuditService {
     public List<VariableInstanceLog> findVariableInstancesByName(String variableId, boolean onlyActiveProcesses);
     
     public List<VariableInstanceLog> findVariableInstancesByNameAndValue(String variableId, String value, boolean onlyActiveProcesses);
-    
+
+    /**
+     * Streaming variant of {@link #findProcessInstances(String)} for large results: logs are loaded
+     * in pages of given size as they are read and are ordered by their id.
+     * @return an {@link AuditLogIterator} that should be closed when it is not read till the end
+     */
+    public AuditLogIterator<ProcessInstanceLog> streamProcessInstances(String processId, int fetchSize);
+
+    /**
+     * Streaming variant of {@link #findNodeInstances(long)} for large results: logs are loaded
+     * in pages of given size as they are read and are ordered by their id.
+     * @return an {@link AuditLogIterator} that should be closed when it is not read till the end
+     */
+    public AuditLogIterator<NodeInstanceLog> streamNodeInstances(long processInstanceId, int fetchSize);
+
+    /**
+     * Streaming variant of {@link #findVariableInstancesByName(String, boolean)} for large results: logs are loaded
+     * in pages of given size as they are read and are ordered by their id.
+     * @return an {@link AuditLogIterator} that should be closed when it is not read till the end
+     */
+    public AuditLogIterator<VariableInstanceLog> streamVariableInstancesByName(String variableId, boolean onlyActiveProcesses, int fetchSize);
+
     /**
      * Creates a "query builder" instance that allows the user to specify the 
      * specific query criteria to retrieve {@link NodeInstanceLog} instances.
@@ -20,6 +20,8 @@ import org.kie.api.runtime.KieSession;
  *  <li>JMS - asynchronous logger that can be configured to place messages on the queue
  *  either with respect to active transaction (only after transaction is committed) or 
  *  place them directly as they are generated</li>
+ *  <li>Batch - asynchronous logger that stores audit events in batches on a separate thread
+ *  without the need for external broker, see <code>BatchingAuditLogger</code></li>
  * </ul>
  */
 public class AuditLoggerFactory {
@@ -189,4 +191,16 @@ public class AuditLoggerFactory {
         return logger;
     }
     
+    /**
+     * Creates new instance of batching audit logger that hands events over to given writer.
+     * NOTE: this will build the logger but it is not registered directly on a session: once received, 
+     * it will need to be registered as an event listener
+     * @param writer writer that stores the audit events, usually shared by all loggers
+     * @param durability determines when events are handed over to the writer and if they can be dropped
+     * @return new instance of batching audit logger
+     */
+    public static AbstractAuditLogger newBatchInstance(BatchAuditLogWriter writer, BatchingAuditLogger.Durability durability) {
+        return new BatchingAuditLogger(writer, durability);
+    }
+
 }
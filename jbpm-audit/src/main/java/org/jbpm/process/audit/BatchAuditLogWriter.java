@@ -0,0 +1,422 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.transaction.UserTransaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes audit log events in batches on a dedicated thread, used by {@link BatchingAuditLogger}.
+ * <br/>
+ * Events are placed into a bounded queue and the writer thread stores them, each batch in a single transaction,
+ * when either batch size is reached or flush interval elapsed since the first event of the batch was queued.
+ * When the queue is full producers are blocked until there is space (or events are dropped, depending on the
+ * durability of the logger). Batch that fails is written again event by event so that one invalid event does
+ * not discard the others.
+ * <br/>
+ * Inserts are sent to the data base as JDBC batches only when the persistence unit enables it with
+ * <code>hibernate.jdbc.batch_size</code> and <code>hibernate.order_inserts</code> (as the persistence unit shipped
+ * with the installer does); Hibernate does not batch inserts of entities whose ids come from identity columns.
+ * <br/>
+ * Defaults can be given with following system properties:
+ * <ul>
+ *  <li>org.jbpm.audit.batch.capacity - maximum number of queued events, 10000 by default</li>
+ *  <li>org.jbpm.audit.batch.size - maximum number of events written in one transaction, 100 by default</li>
+ *  <li>org.jbpm.audit.batch.interval - maximum time in milliseconds an event waits for its batch to fill up,
+ *  500 by default</li>
+ * </ul>
+ * Single writer is meant to be shared by all loggers of the same data base and closed when no longer needed.
+ */
+public class BatchAuditLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchAuditLogWriter.class);
+
+    public static final int DEFAULT_CAPACITY = Integer.parseInt(System.getProperty("org.jbpm.audit.batch.capacity", "10000"));
+    public static final int DEFAULT_BATCH_SIZE = Integer.parseInt(System.getProperty("org.jbpm.audit.batch.size", "100"));
+    public static final long DEFAULT_FLUSH_INTERVAL = Long.parseLong(System.getProperty("org.jbpm.audit.batch.interval", "500"));
+
+    private final EntityManagerFactory emf;
+    private final BlockingQueue<AuditEntry> queue;
+    private final int batchSize;
+    private final long flushInterval;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public BatchAuditLogWriter(EntityManagerFactory emf) {
+        this(emf, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    public BatchAuditLogWriter(EntityManagerFactory emf, int capacity, int batchSize, long flushInterval) {
+        if (batchSize < 1 || capacity < batchSize) {
+            throw new IllegalArgumentException("Batch size must be positive and not greater than capacity");
+        }
+        this.emf = emf;
+        this.queue = new ArrayBlockingQueue<AuditEntry>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Starts the writer thread, called on first write if not started explicitly.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(new Runnable() {
+
+            public void run() {
+                writeLoop();
+            }
+        }, "jbpm-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer thread once all queued events are written, waiting at most given time.
+     */
+    public void close(long timeout) {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = writerThread;
+            writerThread = null;
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("Audit writer did not finish within {} ms, {} events were not written", timeout, queue.size());
+        }
+    }
+
+    public void close() {
+        close(flushInterval * 10 + 10000);
+    }
+
+    /**
+     * Queues given events, waiting for space in the queue if it is full.
+     */
+    void put(List<AuditEntry> entries) {
+        ensureStarted();
+        try {
+            for (AuditEntry entry : entries) {
+                queue.put(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing audit events", e);
+        }
+    }
+
+    /**
+     * Queues given events and waits until they are written.
+     * @return false if events were not written within given time
+     */
+    boolean putAndWait(List<AuditEntry> entries, long timeout) {
+        AuditEntry marker = new AuditEntry(null, -1, new CountDownLatch(1));
+        List<AuditEntry> all = new ArrayList<AuditEntry>(entries);
+        all.add(marker);
+        put(all);
+        try {
+            return marker.latch.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Queues given events unless the queue is full, in which case they are dropped.
+     * @return number of dropped events
+     */
+    int offer(List<AuditEntry> entries) {
+        ensureStarted();
+        int droppedEntries = 0;
+        for (AuditEntry entry : entries) {
+            if (!queue.offer(entry)) {
+                droppedEntries++;
+            }
+        }
+        if (droppedEntries > 0) {
+            if (dropped.getAndAdd(droppedEntries) == 0) {
+                logger.warn("Audit queue is full, audit events are being dropped");
+            }
+        }
+        return droppedEntries;
+    }
+
+    /**
+     * Waits until all events queued so far are written.
+     * @return false if events were not written within given time
+     */
+    public boolean flush(long timeout) {
+        return putAndWait(Collections.<AuditEntry>emptyList(), timeout);
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void ensureStarted() {
+        if (!running) {
+            start();
+        }
+    }
+
+    private void writeLoop() {
+        List<AuditEntry> batch = new ArrayList<AuditEntry>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEntry first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (batch.size() < batchSize && !hasWaiter(batch)) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    AuditEntry next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // keep on writing until closed
+            } catch (Throwable e) {
+                logger.error("Unexpected error in audit writer", e);
+            } finally {
+                for (AuditEntry entry : batch) {
+                    if (entry.latch != null) {
+                        entry.latch.countDown();
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean hasWaiter(List<AuditEntry> batch) {
+        // someone waits for the events, write them right away
+        for (AuditEntry entry : batch) {
+            if (entry.latch != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeBatch(List<AuditEntry> batch) {
+        List<AuditEntry> events = new ArrayList<AuditEntry>(batch.size());
+        for (AuditEntry entry : batch) {
+            if (entry.log != null) {
+                events.add(entry);
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            write(events, false);
+            written.addAndGet(events.size());
+        } catch (Exception e) {
+            logger.warn("Unable to write batch of {} audit events, writing them one by one", events.size(), e);
+            for (AuditEntry entry : events) {
+                try {
+                    write(Collections.singletonList(entry), true);
+                    written.incrementAndGet();
+                } catch (Exception ex) {
+                    failed.incrementAndGet();
+                    logger.error("Unable to write audit event {}", entry.log, ex);
+                }
+            }
+        }
+    }
+
+    private void write(List<AuditEntry> entries, boolean retry) throws Exception {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Object tx = begin(em);
+            try {
+                for (AuditEntry entry : entries) {
+                    apply(em, entry, retry);
+                }
+                em.flush();
+            } catch (Exception e) {
+                rollback(tx);
+                throw e;
+            }
+            commit(tx);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Writes the given entries with the given entity manager that is already part of the caller's transaction,
+     * e.g. from <code>beforeCompletion</code> of the engine transaction, and flushes them as one batch. Failures
+     * are propagated to the caller so that the transaction is rolled back.
+     */
+    void writeInTransaction(EntityManager em, List<AuditEntry> entries) {
+        for (AuditEntry entry : entries) {
+            apply(em, entry, false);
+        }
+        em.flush();
+        written.addAndGet(entries.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(EntityManager em, AuditEntry entry, boolean retry) {
+        switch (entry.type) {
+            case AbstractAuditLogger.AFTER_NODE_ENTER_EVENT_TYPE:
+                NodeInstanceLog nodeLog = (NodeInstanceLog) entry.log;
+                List<NodeInstanceLog> nodeLogs = em.createQuery(
+                        "from NodeInstanceLog as log where log.processInstanceId = :piId and log.nodeInstanceId = :nodeId and log.type = 0")
+                        .setParameter("piId", nodeLog.getProcessInstanceId())
+                        .setParameter("nodeId", nodeLog.getNodeInstanceId()).getResultList();
+                if (nodeLogs != null && !nodeLogs.isEmpty()) {
+                    NodeInstanceLog log = nodeLogs.get(nodeLogs.size() - 1);
+                    log.setWorkItemId(nodeLog.getWorkItemId());
+                }
+                break;
+            case AbstractAuditLogger.AFTER_COMPLETE_EVENT_TYPE:
+                ProcessInstanceLog completed = (ProcessInstanceLog) entry.log;
+                List<ProcessInstanceLog> processLogs = em.createQuery(
+                        "from ProcessInstanceLog as log where log.processInstanceId = :piId and log.end is null")
+                        .setParameter("piId", completed.getProcessInstanceId()).getResultList();
+                if (processLogs != null && !processLogs.isEmpty()) {
+                    ProcessInstanceLog log = processLogs.get(processLogs.size() - 1);
+                    log.setOutcome(completed.getOutcome());
+                    log.setStatus(completed.getStatus());
+                    log.setEnd(completed.getEnd());
+                    log.setDuration(completed.getEnd().getTime() - log.getStart().getTime());
+                    log.setProcessInstanceDescription(completed.getProcessInstanceDescription());
+                }
+                break;
+            default:
+                if (retry) {
+                    // id might have been assigned by the failed batch
+                    em.merge(entry.log);
+                } else {
+                    em.persist(entry.log);
+                }
+                break;
+        }
+    }
+
+    private Object begin(EntityManager em) throws Exception {
+        try {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            return tx;
+        } catch (IllegalStateException e) {
+            // JTA entity manager
+            UserTransaction ut = JPAWorkingMemoryDbLogger.findUserTransaction();
+            if (ut == null) {
+                throw new IllegalStateException("Unable to find user transaction to write audit events");
+            }
+            ut.begin();
+            em.joinTransaction();
+            return ut;
+        }
+    }
+
+    private void commit(Object tx) throws Exception {
+        if (tx instanceof EntityTransaction) {
+            ((EntityTransaction) tx).commit();
+        } else {
+            ((UserTransaction) tx).commit();
+        }
+    }
+
+    private void rollback(Object tx) {
+        try {
+            if (tx instanceof EntityTransaction) {
+                if (((EntityTransaction) tx).isActive()) {
+                    ((EntityTransaction) tx).rollback();
+                }
+            } else {
+                ((UserTransaction) tx).rollback();
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to roll back audit transaction", e);
+        }
+    }
+
+    static class AuditEntry {
+
+        final Object log;
+        final int type;
+        final CountDownLatch latch;
+
+        AuditEntry(Object log, int type) {
+            this(log, type, null);
+        }
+
+        AuditEntry(Object log, int type, CountDownLatch latch) {
+            this.log = log;
+            this.type = type;
+            this.latch = latch;
+        }
+    }
+}
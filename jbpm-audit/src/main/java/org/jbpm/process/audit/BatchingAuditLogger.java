@@ -0,0 +1,266 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionSynchronization;
+import org.jbpm.process.audit.BatchAuditLogWriter.AuditEntry;
+import org.kie.api.event.KieRuntimeEvent;
+import org.kie.api.event.process.ProcessCompletedEvent;
+import org.kie.api.event.process.ProcessNodeLeftEvent;
+import org.kie.api.event.process.ProcessNodeTriggeredEvent;
+import org.kie.api.event.process.ProcessStartedEvent;
+import org.kie.api.event.process.ProcessVariableChangedEvent;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Audit logger that stores audit events in batches instead of one by one as they are generated. Events are either
+ * written as one batch within the engine transaction or handed over to {@link BatchAuditLogWriter} which stores
+ * them in batches on its own thread, so that process execution does not wait for the inserts.
+ * <br/>
+ * Supported durability modes:
+ * <ul>
+ *  <li>TRANSACTIONAL - events are collected for the engine transaction and written and flushed as one batch in
+ *  its <code>beforeCompletion</code>, with the engine's (command scoped) entity manager, so they are committed or
+ *  rolled back together with the process state and a failure to write them rolls the transaction back; events
+ *  generated outside of a transaction (or without an engine entity manager) are written as in AFTER_COMMIT_WAIT</li>
+ *  <li>AFTER_COMMIT_WAIT - events are queued when the engine transaction commits (discarded on roll back) and
+ *  the committing thread waits until they are written, events generated outside of a transaction are waited
+ *  for one by one</li>
+ *  <li>AFTER_COMMIT - events are queued when the engine transaction commits (discarded on roll back) without
+ *  waiting for them to be written, committing thread waits only when the queue is full</li>
+ *  <li>BEST_EFFORT - events are queued as they are generated regardless of transactions and are dropped
+ *  when the queue is full</li>
+ * </ul>
+ * Default durability is AFTER_COMMIT and can be changed by <code>org.jbpm.audit.batch.durability</code>
+ * system property.
+ * NOTE: audit data of a process instance becomes visible to audit queries with a delay (up to the flush
+ * interval of the writer) unless TRANSACTIONAL or AFTER_COMMIT_WAIT mode is used.
+ * <br/>
+ * In all modes but TRANSACTIONAL events are written by the writer in its own transactions once the engine
+ * transaction has already committed, so events that fail to be written (or are not written before shutdown) are
+ * lost - they are only logged and counted by {@link BatchAuditLogWriter#getFailed()}.
+ * <br/>
+ * Inserts are sent as JDBC batches only when the persistence unit configures <code>hibernate.jdbc.batch_size</code>
+ * and <code>hibernate.order_inserts</code>, see {@link BatchAuditLogWriter}.
+ */
+public class BatchingAuditLogger extends AbstractAuditLogger {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingAuditLogger.class);
+
+    public enum Durability {
+        TRANSACTIONAL,
+        AFTER_COMMIT_WAIT,
+        AFTER_COMMIT,
+        BEST_EFFORT
+    }
+
+    public static final Durability DEFAULT_DURABILITY = Durability.valueOf(
+            System.getProperty("org.jbpm.audit.batch.durability", Durability.AFTER_COMMIT.name()));
+    private static final long WRITE_TIMEOUT = Long.parseLong(System.getProperty("org.jbpm.audit.batch.timeout", "30000"));
+
+    private final BatchAuditLogWriter writer;
+    private final Durability durability;
+
+    private final ThreadLocal<TransactionEntries> transactionEntries = new ThreadLocal<TransactionEntries>();
+
+    public BatchingAuditLogger(BatchAuditLogWriter writer) {
+        this(writer, DEFAULT_DURABILITY);
+    }
+
+    public BatchingAuditLogger(BatchAuditLogWriter writer, Durability durability) {
+        this.writer = writer;
+        this.durability = durability;
+    }
+
+    @Override
+    public void beforeNodeTriggered(ProcessNodeTriggeredEvent event) {
+        NodeInstanceLog log = (NodeInstanceLog) builder.buildEvent(event);
+        add(event, log, BEFORE_NODE_ENTER_EVENT_TYPE);
+    }
+
+    @Override
+    public void afterNodeTriggered(ProcessNodeTriggeredEvent event) {
+        // work item id is known only after activity was triggered, record it with separate event
+        // instead of modifying the log that might be being written already
+        NodeInstanceLog log = (NodeInstanceLog) builder.buildEvent(event);
+        if (log != null && log.getWorkItemId() != null) {
+            add(event, log, AFTER_NODE_ENTER_EVENT_TYPE);
+        }
+    }
+
+    @Override
+    public void afterNodeLeft(ProcessNodeLeftEvent event) {
+        NodeInstanceLog log = (NodeInstanceLog) builder.buildEvent(event, null);
+        add(event, log, AFTER_NODE_LEFT_EVENT_TYPE);
+    }
+
+    @Override
+    public void afterVariableChanged(ProcessVariableChangedEvent event) {
+        VariableInstanceLog log = (VariableInstanceLog) builder.buildEvent(event);
+        add(event, log, AFTER_VAR_CHANGE_EVENT_TYPE);
+    }
+
+    @Override
+    public void beforeProcessStarted(ProcessStartedEvent event) {
+        ProcessInstanceLog log = (ProcessInstanceLog) builder.buildEvent(event);
+        add(event, log, BEFORE_START_EVENT_TYPE);
+    }
+
+    @Override
+    public void afterProcessCompleted(ProcessCompletedEvent event) {
+        ProcessInstanceLog log = (ProcessInstanceLog) builder.buildEvent(event, null);
+        add(event, log, AFTER_COMPLETE_EVENT_TYPE);
+    }
+
+    @Override
+    public void beforeNodeLeft(ProcessNodeLeftEvent event) {
+    }
+
+    @Override
+    public void beforeVariableChanged(ProcessVariableChangedEvent event) {
+    }
+
+    @Override
+    public void afterProcessStarted(ProcessStartedEvent event) {
+    }
+
+    @Override
+    public void beforeProcessCompleted(ProcessCompletedEvent event) {
+    }
+
+    public BatchAuditLogWriter getWriter() {
+        return writer;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    protected void add(KieRuntimeEvent event, Object log, int eventType) {
+        if (log == null) {
+            return;
+        }
+        AuditEntry entry = new AuditEntry(log, eventType);
+        if (durability != Durability.BEST_EFFORT) {
+            TransactionEntries entries = transactionEntries.get();
+            if (entries != null && !entries.completed) {
+                entries.add(entry);
+                return;
+            }
+            TransactionManager tm = getTransactionManager(event);
+            try {
+                if (tm != null && tm.getStatus() == TransactionManager.STATUS_ACTIVE) {
+                    entries = new TransactionEntries(event.getKieRuntime().getEnvironment());
+                    entries.add(entry);
+                    tm.registerTransactionSynchronization(entries);
+                    transactionEntries.set(entries);
+                    return;
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Unable to register audit events with transaction, writing them right away", e);
+            }
+        }
+        submit(Collections.singletonList(entry));
+    }
+
+    protected void submit(List<AuditEntry> entries) {
+        switch (durability) {
+            case TRANSACTIONAL:
+            case AFTER_COMMIT_WAIT:
+                if (!writer.putAndWait(entries, WRITE_TIMEOUT)) {
+                    logger.warn("Audit events were not written within {} ms", WRITE_TIMEOUT);
+                }
+                break;
+            case AFTER_COMMIT:
+                writer.put(entries);
+                break;
+            default:
+                writer.offer(entries);
+                break;
+        }
+    }
+
+    protected TransactionManager getTransactionManager(KieRuntimeEvent event) {
+        Environment env = event.getKieRuntime().getEnvironment();
+        if (env != null) {
+            return (TransactionManager) env.get(EnvironmentName.TRANSACTION_MANAGER);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entity manager of the engine that takes part in the current transaction, if any.
+     */
+    protected EntityManager getEntityManager(Environment env) {
+        if (env != null) {
+            return (EntityManager) env.get(EnvironmentName.CMD_SCOPED_ENTITY_MANAGER);
+        }
+        return null;
+    }
+
+    private class TransactionEntries implements TransactionSynchronization {
+
+        private final Environment env;
+        private final List<AuditEntry> entries = new ArrayList<AuditEntry>();
+        private volatile boolean completed;
+        private boolean written;
+
+        TransactionEntries(Environment env) {
+            this.env = env;
+        }
+
+        void add(AuditEntry entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        public void beforeCompletion() {
+            if (durability != Durability.TRANSACTIONAL || entries.isEmpty()) {
+                return;
+            }
+            EntityManager em = getEntityManager(env);
+            if (em == null || !em.isOpen()) {
+                logger.debug("No engine entity manager available, audit events are written once transaction commits");
+                return;
+            }
+            // failure to write audit events is propagated to roll back the transaction
+            writer.writeInTransaction(em, entries);
+            written = true;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            completed = true;
+            if (transactionEntries.get() == this) {
+                transactionEntries.remove();
+            }
+            if (status == TransactionManager.STATUS_COMMITTED && !written) {
+                submit(entries);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.jbpm.process.audit;
 
 import java.util.List;
 
+import org.jbpm.process.audit.command.AuditCommand;
 import org.jbpm.process.audit.command.AuditNodeInstanceLogQueryCommand;
 import org.jbpm.process.audit.command.AuditProcessInstanceLogQueryCommand;
 import org.jbpm.process.audit.command.AuditVariableInstanceLogQueryCommand;
@@ -17,6 +18,7 @@ import org.jbpm.process.audit.query.NodeInstLogQueryBuilderImpl;
 import org.jbpm.process.audit.query.ProcInstLogQueryBuilderImpl;
 import org.jbpm.process.audit.query.VarInstLogQueryBuilderImpl;
 import org.kie.api.runtime.CommandExecutor;
+import org.kie.internal.command.Context;
 import org.kie.internal.query.data.QueryData;
 import org.kie.internal.runtime.manager.audit.query.NodeInstanceLogQueryBuilder;
 import org.kie.internal.runtime.manager.audit.query.ProcessInstanceLogQueryBuilder;
@@ -90,6 +92,41 @@ public class CommandBasedAuditLogService implements AuditLogService {
         return executor.execute(new FindVariableInstancesByNameCommand(variableId, value, activeProcesses));
     }
 
+    /**
+     * Logs are loaded as the iterator is read, outside of the command, by the audit log service of the session.
+     */
+    @Override
+    public AuditLogIterator<ProcessInstanceLog> streamProcessInstances(String processId, int fetchSize) {
+        return getJpaAuditLogService().streamProcessInstances(processId, fetchSize);
+    }
+
+    /**
+     * Logs are loaded as the iterator is read, outside of the command, by the audit log service of the session.
+     */
+    @Override
+    public AuditLogIterator<NodeInstanceLog> streamNodeInstances(long processInstanceId, int fetchSize) {
+        return getJpaAuditLogService().streamNodeInstances(processInstanceId, fetchSize);
+    }
+
+    /**
+     * Logs are loaded as the iterator is read, outside of the command, by the audit log service of the session.
+     */
+    @Override
+    public AuditLogIterator<VariableInstanceLog> streamVariableInstancesByName(String variableId, boolean activeProcesses, int fetchSize) {
+        return getJpaAuditLogService().streamVariableInstancesByName(variableId, activeProcesses, fetchSize);
+    }
+
+    private JPAAuditLogService getJpaAuditLogService() {
+        return executor.execute(new AuditCommand<JPAAuditLogService>() {
+            private static final long serialVersionUID = 101L;
+            @Override
+            public JPAAuditLogService execute( Context context ) {
+                setLogEnvironment(context);
+                return (JPAAuditLogService) this.auditLogService;
+            }
+        });
+    }
+
     @Override
     public NodeInstanceLogQueryBuilder nodeInstanceLogQuery() {
         return new NodeInstLogQueryBuilderImpl(executor);
@@ -18,6 +18,7 @@ package org.jbpm.process.audit;
 
 import static org.kie.internal.query.QueryParameterIdentifiers.*;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -290,7 +291,56 @@ public class JPAAuditLogService implements AuditLogService {
         
         return executeQuery(query, em, VariableInstanceLog.class);
     }
-    
+
+    /* (non-Javadoc)
+     * @see org.jbpm.process.audit.AuditLogService#streamProcessInstances(java.lang.String, int)
+     */
+    @Override
+    public AuditLogIterator<ProcessInstanceLog> streamProcessInstances(String processId, int fetchSize) {
+        StringBuilder queryBuilder = new StringBuilder("FROM ProcessInstanceLog p WHERE p.processId = :processId");
+        AuditLogIterator.appendKeysetCriteria(queryBuilder, "p", false, true);
+        Map<String, Object> queryParams = new HashMap<String, Object>();
+        queryParams.put("processId", processId);
+        return new AuditLogIterator<ProcessInstanceLog>(persistenceStrategy, queryBuilder.toString(), queryParams, true,
+                ProcessInstanceLog.class, fetchSize);
+    }
+
+    /* (non-Javadoc)
+     * @see org.jbpm.process.audit.AuditLogService#streamNodeInstances(long, int)
+     */
+    @Override
+    public AuditLogIterator<NodeInstanceLog> streamNodeInstances(long processInstanceId, int fetchSize) {
+        StringBuilder queryBuilder = new StringBuilder("FROM NodeInstanceLog n WHERE n.processInstanceId = :processInstanceId");
+        AuditLogIterator.appendKeysetCriteria(queryBuilder, "n", false, true);
+        Map<String, Object> queryParams = new HashMap<String, Object>();
+        queryParams.put("processInstanceId", processInstanceId);
+        return new AuditLogIterator<NodeInstanceLog>(persistenceStrategy, queryBuilder.toString(), queryParams, true,
+                NodeInstanceLog.class, fetchSize);
+    }
+
+    /* (non-Javadoc)
+     * @see org.jbpm.process.audit.AuditLogService#streamVariableInstancesByName(java.lang.String, boolean, int)
+     */
+    @Override
+    public AuditLogIterator<VariableInstanceLog> streamVariableInstancesByName(String variableId, boolean onlyActiveProcesses, int fetchSize) {
+        StringBuilder queryBuilder;
+        if( ! onlyActiveProcesses ) {
+            queryBuilder = new StringBuilder("SELECT v FROM VariableInstanceLog v WHERE v.variableId = :variableId");
+        } else {
+            queryBuilder = new StringBuilder(
+                    "SELECT v "
+                    + "FROM VariableInstanceLog v, ProcessInstanceLog p "
+                    + "WHERE v.processInstanceId = p.processInstanceId "
+                    + "AND v.variableId = :variableId "
+                    + "AND p.end is null");
+        }
+        AuditLogIterator.appendKeysetCriteria(queryBuilder, "v", false, true);
+        Map<String, Object> queryParams = new HashMap<String, Object>();
+        queryParams.put("variableId", variableId);
+        return new AuditLogIterator<VariableInstanceLog>(persistenceStrategy, queryBuilder.toString(), queryParams, true,
+                VariableInstanceLog.class, fetchSize);
+    }
+
     /* (non-Javadoc)
      * @see org.jbpm.process.audit.AuditLogService#clear()
      */
@@ -314,6 +364,30 @@ public class JPAAuditLogService implements AuditLogService {
         closeEntityManager(em, newTx);
     }
 
+    /**
+     * Deletes audit logs of process instances that ended before given date in chunks of default size, see
+     * {@link AuditLogPurger}.
+     * @return summary of the purge
+     */
+    public AuditLogPurger.Summary purgeEndedBefore(Date endedBefore) {
+        return new AuditLogPurger(persistenceStrategy).purge(endedBefore);
+    }
+
+    /**
+     * Deletes audit logs of process instances that ended before given date in chunks of given size, archiving
+     * them into given directory first, see {@link AuditLogPurger}.
+     * @param endedBefore only logs of process instances that ended before this date are deleted
+     * @param chunkSize number of process instances whose logs are deleted in one transaction
+     * @param archiveDirectory directory to archive deleted logs to, logs are not archived when null
+     * @return summary of the purge
+     */
+    public AuditLogPurger.Summary purgeEndedBefore(Date endedBefore, int chunkSize, File archiveDirectory) {
+        AuditLogPurger purger = new AuditLogPurger(persistenceStrategy);
+        purger.setChunkSize(chunkSize);
+        purger.setArchiveDirectory(archiveDirectory);
+        return purger.purge(endedBefore);
+    }
+
     /* (non-Javadoc)
      * @see org.jbpm.process.audit.AuditLogService#dispose()
      */
@@ -445,20 +519,57 @@ public class JPAAuditLogService implements AuditLogService {
     
     public <T> List<T> doQuery(QueryData queryData, Class<T> resultType) { 
         // create query
-        String queryBase;
-        if( ProcessInstanceLog.class.equals(resultType) ) { 
-            queryBase = PROCESS_INSTANCE_LOG_QUERY;
-        } else if( VariableInstanceLog.class.equals(resultType) ) { 
-            queryBase = VARIABLE_INSTANCE_LOG_QUERY;
-        } else if( NodeInstanceLog.class.equals(resultType) ) { 
-            queryBase = NODE_INSTANCE_LOG_QUERY;
-        } else { 
-            throw new IllegalStateException("Unsupported result type: " + resultType.getName() );
+        String queryBase = getQueryBase(resultType);
+        Map<String, Object> queryParams = new HashMap<String, Object>();
+        String queryString = createQuery(queryBase, queryData, queryParams, false);
+        logQuery(queryString, queryParams);
+
+        // execute query
+        EntityManager em = getEntityManager();
+        Object newTx = joinTransaction(em);
+        Query query = em.createQuery(queryString);
+
+        List<T> result = queryWithParameters(queryParams, LockModeType.NONE, resultType, query);
+
+        closeEntityManager(em, newTx);
+
+        return result;
+    }
+
+    /**
+     * Same as {@link #doQuery(QueryData, Class)} except that logs are not loaded all at once but in pages of
+     * given size as the returned iterator is read, see {@link AuditLogIterator}. Logs are always ordered by
+     * their id, ascending unless descending order is requested by the query context.
+     * @throws IllegalArgumentException if the query context orders by other field than log id
+     */
+    public <T> AuditLogIterator<T> doStreamingQuery(QueryData queryData, Class<T> resultType, int fetchSize) {
+        if( queryData.getQueryContext().getOrderBy() != null ) {
+            throw new IllegalArgumentException("Streaming queries are ordered by log id, unsupported order by parameter: '"
+                    + queryData.getQueryContext().getOrderBy() + "'");
         }
+        Boolean ascending = queryData.getQueryContext().isAscending();
+        String queryBase = getQueryBase(resultType);
         Map<String, Object> queryParams = new HashMap<String, Object>();
-        String queryString = createQuery(queryBase, queryData, queryParams);
-        
-        // logging
+        String queryString = createQuery(queryBase, queryData, queryParams, true);
+        logQuery(queryString, queryParams);
+
+        return new AuditLogIterator<T>(persistenceStrategy, queryString, queryParams, ascending == null || ascending,
+                resultType, fetchSize);
+    }
+
+    private static String getQueryBase(Class<?> resultType) {
+        if( ProcessInstanceLog.class.equals(resultType) ) {
+            return PROCESS_INSTANCE_LOG_QUERY;
+        } else if( VariableInstanceLog.class.equals(resultType) ) {
+            return VARIABLE_INSTANCE_LOG_QUERY;
+        } else if( NodeInstanceLog.class.equals(resultType) ) {
+            return NODE_INSTANCE_LOG_QUERY;
+        } else {
+            throw new IllegalStateException("Unsupported result type: " + resultType.getName() );
+        }
+    }
+
+    private static void logQuery(String queryString, Map<String, Object> queryParams) {
         logger.debug("QUERY:\n {}", queryString);
         if( logger.isDebugEnabled() ) {
             StringBuilder paramsStr = new StringBuilder("PARAMS:");
@@ -468,21 +579,9 @@ public class JPAAuditLogService implements AuditLogService {
             }
             logger.debug(paramsStr.toString());
         }
-        
-    
-        // execute query
-        EntityManager em = getEntityManager();
-        Object newTx = joinTransaction(em);
-        Query query = em.createQuery(queryString);
-    
-        List<T> result = queryWithParameters(queryParams, LockModeType.NONE, resultType, query);
-        
-        closeEntityManager(em, newTx);
-        
-        return result;
     }
 
-    private static String createQuery(String queryBase, QueryData queryData, Map<String, Object> queryParams) { 
+    private static String createQuery(String queryBase, QueryData queryData, Map<String, Object> queryParams, boolean streaming) { 
         // setup
         StringBuilder queryBuilder = new StringBuilder(queryBase);
         QueryAndParameterAppender queryAppender = new QueryAndParameterAppender(queryBuilder, queryParams, true);
@@ -581,10 +680,21 @@ public class JPAAuditLogService implements AuditLogService {
         }
         if( addLastCriteria ) { 
             addLastInstanceCriteria(addWhereClause, queryBuilder);
+            addWhereClause = false;
         }
        
         // 7. apply filter, ordering, etc.. 
-        applyMetaCriteria(queryBuilder, queryData);
+        if( streaming ) { 
+            if( ! addWhereClause ) { 
+                // criteria might be joined by OR, keyset criteria must apply to all of them
+                int whereIndex = queryBuilder.toString().toUpperCase().indexOf("WHERE", queryBase.length()) + "WHERE".length();
+                queryBuilder.insert(whereIndex, " (").append(" )");
+            }
+            Boolean ascending = queryData.getQueryContext().isAscending();
+            AuditLogIterator.appendKeysetCriteria(queryBuilder, "l", addWhereClause, ascending == null || ascending);
+        } else { 
+            applyMetaCriteria(queryBuilder, queryData);
+        }
         
         // 8. return query
         return queryBuilder.toString();
@@ -123,7 +123,9 @@ public class JPAWorkingMemoryDbLogger extends AbstractAuditLogger {
     @Override
     public void afterVariableChanged(ProcessVariableChangedEvent event) {
         VariableInstanceLog log = (VariableInstanceLog) builder.buildEvent(event);
-        persist(log, event);
+        if (log != null) {
+            persist(log, event);
+        }
     }
 
     @Override
@@ -19,6 +19,16 @@ import org.kie.api.runtime.process.ProcessInstance;
 
 public class DefaultAuditEventBuilderImpl implements AuditEventBuilder {
 
+    private VariableAuditPolicy variableAuditPolicy = VariableAuditPolicy.getDefault();
+
+    public VariableAuditPolicy getVariableAuditPolicy() {
+        return variableAuditPolicy;
+    }
+
+    public void setVariableAuditPolicy(VariableAuditPolicy variableAuditPolicy) {
+        this.variableAuditPolicy = variableAuditPolicy;
+    }
+
     @Override
     public AuditEvent buildEvent(ProcessStartedEvent pse) {
         ProcessInstanceImpl pi = (ProcessInstanceImpl) pse.getProcessInstance();
@@ -137,8 +147,15 @@ public class DefaultAuditEventBuilderImpl implements AuditEventBuilder {
         String processId = pvce.getProcessInstance().getProcessId();
         String variableId = pvce.getVariableId();
         String variableInstanceId = pvce.getVariableInstanceId();
-        String oldValue = (pvce.getOldValue() != null)?pvce.getOldValue().toString():"";
-        String newValue = (pvce.getNewValue() != null)?pvce.getNewValue().toString():"";
+        // variable changes not to be audited are not logged at all
+        if (!variableAuditPolicy.isAudited(variableId)) {
+            return null;
+        }
+        String oldValue = variableAuditPolicy.render(variableId, pvce.getOldValue());
+        String newValue = variableAuditPolicy.render(variableId, pvce.getNewValue());
+        if (variableAuditPolicy.isSkipUnchanged() && oldValue.equals(newValue)) {
+            return null;
+        }
         VariableInstanceLog log = new VariableInstanceLog(
                 processInstanceId, processId, variableInstanceId, variableId, newValue, oldValue);
         log.setExternalId(""+((KieSession) pvce.getKieRuntime()).getId());
@@ -0,0 +1,374 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit.event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which variable changes are audited and how variable values are rendered into
+ * <code>VariableInstanceLog</code> so that cost of the audit is bounded regardless of variable size.
+ * <ul>
+ *  <li>variables can be included or excluded by name (regular expressions)</li>
+ *  <li>values are rendered by {@link ValueRenderer} that is given maximum length of the value, default one
+ *  renders strings, collections, maps and object arrays only up to that length (collections and maps as
+ *  beginning of their <code>toString()</code>), other values with <code>toString()</code></li>
+ *  <li>values longer than digest threshold are stored as SHA-256 digest of their full rendering so that
+ *  changes can still be detected, renderers implementing {@link StreamingValueRenderer} write the full rendering
+ *  directly into the digest without building it in memory</li>
+ *  <li>changes that do not change rendered value can be skipped</li>
+ * </ul>
+ * Default policy is configured with following system properties:
+ * <ul>
+ *  <li>org.jbpm.audit.var.include - comma separated regular expressions of audited variable names, all
+ *  variables are audited by default</li>
+ *  <li>org.jbpm.audit.var.exclude - comma separated regular expressions of variable names that are not audited</li>
+ *  <li>org.jbpm.audit.var.max.length - maximum length of rendered value, the length of the log column
+ *  (<code>org.jbpm.var.log.length</code>) by default</li>
+ *  <li>org.jbpm.audit.var.digest.threshold - values longer than this are stored as digest, disabled by default</li>
+ *  <li>org.jbpm.audit.var.skip.unchanged - skips changes with the same old and new rendered value, false by default</li>
+ *  <li>org.jbpm.audit.var.renderer - class name of custom {@link ValueRenderer}</li>
+ * </ul>
+ */
+public class VariableAuditPolicy {
+
+    public static final String DIGEST_PREFIX = "SHA-256:";
+
+    private static final VariableAuditPolicy DEFAULT = fromSystemProperties();
+
+    private List<Pattern> includes = new ArrayList<Pattern>();
+    private List<Pattern> excludes = new ArrayList<Pattern>();
+    private int maxLength = -1;
+    private int digestThreshold = 0;
+    private boolean skipUnchanged = false;
+    private ValueRenderer renderer = new BoundedValueRenderer();
+
+    public static VariableAuditPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    public static VariableAuditPolicy fromSystemProperties() {
+        VariableAuditPolicy policy = new VariableAuditPolicy();
+        policy.setIncludes(System.getProperty("org.jbpm.audit.var.include"));
+        policy.setExcludes(System.getProperty("org.jbpm.audit.var.exclude"));
+        policy.setMaxLength(Integer.parseInt(System.getProperty("org.jbpm.audit.var.max.length", "-1")));
+        policy.setDigestThreshold(Integer.parseInt(System.getProperty("org.jbpm.audit.var.digest.threshold", "0")));
+        policy.setSkipUnchanged(Boolean.parseBoolean(System.getProperty("org.jbpm.audit.var.skip.unchanged", "false")));
+        String rendererClass = System.getProperty("org.jbpm.audit.var.renderer");
+        if (rendererClass != null) {
+            try {
+                ClassLoader cl = Thread.currentThread().getContextClassLoader();
+                if (cl == null) {
+                    cl = VariableAuditPolicy.class.getClassLoader();
+                }
+                policy.setRenderer((ValueRenderer) Class.forName(rendererClass, true, cl).newInstance());
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Unable to create variable value renderer " + rendererClass, e);
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * @return true if changes of given variable should be audited
+     */
+    public boolean isAudited(String variableId) {
+        if (variableId == null) {
+            return true;
+        }
+        for (Pattern exclude : excludes) {
+            if (exclude.matcher(variableId).matches()) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (Pattern include : includes) {
+            if (include.matcher(variableId).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renders value of given variable as it should be stored in the audit log, empty string for null values.
+     */
+    public String render(String variableId, Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (digestThreshold > 0) {
+            String bounded = renderer.render(variableId, value, digestThreshold + 1);
+            if (bounded.length() <= digestThreshold) {
+                return bounded;
+            }
+            return DIGEST_PREFIX + digest(variableId, value);
+        }
+        return renderer.render(variableId, value, getMaxLength());
+    }
+
+    public int getMaxLength() {
+        if (maxLength < 0) {
+            // follow the length of the log column that can be changed at runtime
+            return Integer.parseInt(System.getProperty("org.jbpm.var.log.length", "255"));
+        }
+        return maxLength;
+    }
+
+    /**
+     * @param maxLength maximum length of rendered values, negative to use length of the log column
+     */
+    public void setMaxLength(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public int getDigestThreshold() {
+        return digestThreshold;
+    }
+
+    /**
+     * @param digestThreshold values longer than this are stored as digest, 0 to disable digests
+     */
+    public void setDigestThreshold(int digestThreshold) {
+        this.digestThreshold = digestThreshold;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public ValueRenderer getRenderer() {
+        return renderer;
+    }
+
+    public void setRenderer(ValueRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    public void setIncludes(String patterns) {
+        this.includes = parsePatterns(patterns);
+    }
+
+    public void setExcludes(String patterns) {
+        this.excludes = parsePatterns(patterns);
+    }
+
+    private static List<Pattern> parsePatterns(String patterns) {
+        List<Pattern> result = new ArrayList<Pattern>();
+        if (patterns != null) {
+            for (String pattern : patterns.split(",")) {
+                if (pattern.trim().length() > 0) {
+                    result.add(Pattern.compile(pattern.trim()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private String digest(String variableId, Object value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (renderer instanceof StreamingValueRenderer) {
+                Writer writer = new OutputStreamWriter(new DigestOutputStream(new OutputStream() {
+
+                    @Override
+                    public void write(int b) {
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                    }
+                }, digest), "UTF-8");
+                ((StreamingValueRenderer) renderer).render(variableId, value, writer);
+                writer.flush();
+            } else {
+                digest.update(renderer.render(variableId, value, -1).getBytes("UTF-8"));
+            }
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to render value of variable " + variableId, e);
+        }
+    }
+
+    /**
+     * Renders variable values for the audit log.
+     */
+    public interface ValueRenderer {
+
+        /**
+         * @param maxLength maximum length of the result the caller is interested in, negative if unlimited;
+         * longer results are trimmed by the log
+         */
+        String render(String variableId, Object value, int maxLength);
+    }
+
+    /**
+     * Renderer that is able to write the full rendering of a value to given output, so that long values do not
+     * have to be rendered into a string to compute their digest.
+     */
+    public interface StreamingValueRenderer extends ValueRenderer {
+
+        /**
+         * Writes the same as <code>render(variableId, value, -1)</code> would return to given output.
+         */
+        void render(String variableId, Object value, Appendable output) throws IOException;
+    }
+
+    /**
+     * Renders strings, collections, maps and object arrays only up to the maximum length in the format of
+     * <code>toString()</code> of JDK collections, other values with <code>toString()</code>.
+     */
+    public static class BoundedValueRenderer implements StreamingValueRenderer {
+
+        @Override
+        public String render(String variableId, Object value, int maxLength) {
+            if (maxLength < 0) {
+                return String.valueOf(value);
+            }
+            if (value instanceof CharSequence) {
+                CharSequence chars = (CharSequence) value;
+                return chars.length() > maxLength ? chars.subSequence(0, maxLength).toString() : chars.toString();
+            }
+            if (!(value instanceof Collection || value instanceof Map || value.getClass().isArray())) {
+                return value.toString();
+            }
+            StringBuilder buffer = new StringBuilder();
+            try {
+                append(new Output(buffer, maxLength), value);
+            } catch (IOException e) {
+                // not thrown by StringBuilder
+                throw new IllegalStateException(e);
+            }
+            return buffer.length() > maxLength ? buffer.substring(0, maxLength) : buffer.toString();
+        }
+
+        @Override
+        public void render(String variableId, Object value, Appendable output) throws IOException {
+            if (value instanceof Collection || value instanceof Map || (value != null && value.getClass().isArray())) {
+                append(new Output(output, -1), value);
+            } else {
+                output.append(String.valueOf(value));
+            }
+        }
+
+        private void append(Output output, Object value) throws IOException {
+            if (output.isFull()) {
+                return;
+            }
+            if (value instanceof Collection) {
+                output.append("[");
+                for (Iterator<?> it = ((Collection<?>) value).iterator(); it.hasNext() && !output.isFull();) {
+                    Object element = it.next();
+                    append(output, element == value ? "(this Collection)" : element);
+                    if (it.hasNext()) {
+                        output.append(", ");
+                    }
+                }
+                output.append("]");
+            } else if (value instanceof Map) {
+                output.append("{");
+                for (Iterator<?> it = ((Map<?, ?>) value).entrySet().iterator(); it.hasNext() && !output.isFull();) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) it.next();
+                    append(output, entry.getKey() == value ? "(this Map)" : entry.getKey());
+                    output.append("=");
+                    append(output, entry.getValue() == value ? "(this Map)" : entry.getValue());
+                    if (it.hasNext()) {
+                        output.append(", ");
+                    }
+                }
+                output.append("}");
+            } else if (value instanceof CharSequence) {
+                output.appendBounded((CharSequence) value);
+            } else if (value != null && value.getClass().isArray() && !value.getClass().getComponentType().isPrimitive()) {
+                // arrays are rendered as by Arrays.toString(Object[]), nested collections as collections
+                output.append("[");
+                int length = Array.getLength(value);
+                for (int i = 0; i < length && !output.isFull(); i++) {
+                    append(output, Array.get(value, i));
+                    if (i < length - 1) {
+                        output.append(", ");
+                    }
+                }
+                output.append("]");
+            } else {
+                output.append(String.valueOf(value));
+            }
+        }
+
+        /**
+         * Output that counts written characters, unbounded if maximum length is negative.
+         */
+        private static class Output {
+
+            private final Appendable target;
+            private final int maxLength;
+            private long length;
+
+            Output(Appendable target, int maxLength) {
+                this.target = target;
+                this.maxLength = maxLength;
+            }
+
+            boolean isFull() {
+                return maxLength >= 0 && length > maxLength;
+            }
+
+            void append(CharSequence chars) throws IOException {
+                target.append(chars);
+                length += chars.length();
+            }
+
+            void appendBounded(CharSequence chars) throws IOException {
+                if (maxLength >= 0) {
+                    long remaining = maxLength + 1 - length;
+                    if (chars.length() > remaining) {
+                        chars = chars.subSequence(0, (int) remaining);
+                    }
+                }
+                append(chars);
+            }
+        }
+    }
+}
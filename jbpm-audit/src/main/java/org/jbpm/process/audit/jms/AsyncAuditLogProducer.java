@@ -93,7 +93,9 @@ public class AsyncAuditLogProducer extends AbstractAuditLogger {
     @Override
     public void afterVariableChanged(ProcessVariableChangedEvent event) {
         VariableInstanceLog log = (VariableInstanceLog) builder.buildEvent(event);
-        sendMessage(log, AFTER_VAR_CHANGE_EVENT_TYPE);   
+        if (log != null) {
+            sendMessage(log, AFTER_VAR_CHANGE_EVENT_TYPE);
+        }
     }
 
     @Override
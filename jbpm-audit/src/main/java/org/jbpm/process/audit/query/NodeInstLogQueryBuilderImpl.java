@@ -8,6 +8,7 @@ import static org.kie.internal.query.QueryParameterIdentifiers.WORK_ITEM_ID_LIST
 
 import java.util.List;
 
+import org.jbpm.process.audit.AuditLogIterator;
 import org.jbpm.process.audit.JPAAuditLogService;
 import org.kie.api.runtime.CommandExecutor;
 import org.kie.api.runtime.manager.audit.NodeInstanceLog;
@@ -72,4 +73,14 @@ public class NodeInstLogQueryBuilderImpl extends AbstractAuditQueryBuilderImpl<N
         };
     }
 
+    /**
+     * Executes the query loading matching node instance logs in pages of given size as the returned
+     * iterator is read, logs are ordered by their id (ordering by other fields is not supported).
+     * @return an {@link AuditLogIterator} that should be closed when it is not read till the end
+     */
+    public AuditLogIterator<org.jbpm.process.audit.NodeInstanceLog> stream(int fetchSize) {
+        return getJpaAuditLogService().doStreamingQuery(new QueryData(getQueryData()),
+                org.jbpm.process.audit.NodeInstanceLog.class, fetchSize);
+    }
+
 }
\ No newline at end of file
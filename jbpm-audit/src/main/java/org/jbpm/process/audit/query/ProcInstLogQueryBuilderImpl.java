@@ -12,6 +12,7 @@ import static org.kie.internal.query.QueryParameterIdentifiers.PROCESS_INSTANCE_
 import java.util.Date;
 import java.util.List;
 
+import org.jbpm.process.audit.AuditLogIterator;
 import org.jbpm.process.audit.JPAAuditLogService;
 import org.kie.api.runtime.CommandExecutor;
 import org.kie.api.runtime.manager.audit.ProcessInstanceLog;
@@ -130,4 +131,14 @@ public class ProcInstLogQueryBuilderImpl extends AbstractAuditQueryBuilderImpl<P
         };
     }
 
+    /**
+     * Executes the query loading matching process instance logs in pages of given size as the returned
+     * iterator is read, logs are ordered by their id (ordering by other fields is not supported).
+     * @return an {@link AuditLogIterator} that should be closed when it is not read till the end
+     */
+    public AuditLogIterator<org.jbpm.process.audit.ProcessInstanceLog> stream(int fetchSize) {
+        return getJpaAuditLogService().doStreamingQuery(new QueryData(getQueryData()),
+                org.jbpm.process.audit.ProcessInstanceLog.class, fetchSize);
+    }
+
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.jbpm.process.audit.AuditLogIterator;
 import org.jbpm.process.audit.JPAAuditLogService;
 import org.kie.api.runtime.CommandExecutor;
 import org.kie.api.runtime.manager.audit.VariableInstanceLog;
@@ -97,4 +98,14 @@ public class VarInstLogQueryBuilderImpl extends AbstractAuditQueryBuilderImpl<Va
         };
     }
 
+    /**
+     * Executes the query loading matching variable instance logs in pages of given size as the returned
+     * iterator is read, logs are ordered by their id (ordering by other fields is not supported).
+     * @return an {@link AuditLogIterator} that should be closed when it is not read till the end
+     */
+    public AuditLogIterator<org.jbpm.process.audit.VariableInstanceLog> stream(int fetchSize) {
+        return getJpaAuditLogService().doStreamingQuery(new QueryData(getQueryData()),
+                org.jbpm.process.audit.VariableInstanceLog.class, fetchSize);
+    }
+
 }
@@ -17,12 +17,20 @@
 package org.jbpm.process.audit;
 
 import static org.jbpm.persistence.util.PersistenceUtil.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 
 import org.jbpm.process.audit.AuditLoggerFactory.Type;
+import org.jbpm.process.audit.query.NodeInstLogQueryBuilderImpl;
+import org.jbpm.process.instance.impl.demo.SystemOutWorkItemHandler;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -111,4 +119,74 @@ public class AuditLogServiceTest extends AbstractAuditLogServiceTest {
     	runTestLoggerWithCustomVariableLogLength(session, auditLogService);
     }
 
+    @Test
+    public void testPurgeEndedBefore() throws Exception {
+        session.getWorkItemManager().registerWorkItemHandler("Human Task", new SystemOutWorkItemHandler());
+        long first = session.startProcess("com.sample.ruleflow").getId();
+        long second = session.startProcess("com.sample.ruleflow").getId();
+        assertNotNull(auditLogService.findProcessInstance(first).getEnd());
+
+        File archiveDirectory = new File(System.getProperty("java.io.tmpdir"), "audit-archive-" + System.currentTimeMillis());
+        // purge nothing that ended more than a day ago
+        AuditLogPurger.Summary summary = ((JPAAuditLogService) auditLogService).purgeEndedBefore(
+                new Date(System.currentTimeMillis() - 24 * 60 * 60 * 1000L));
+        assertEquals(0, summary.getTotal());
+        assertNotNull(auditLogService.findProcessInstance(first));
+
+        summary = ((JPAAuditLogService) auditLogService).purgeEndedBefore(
+                new Date(System.currentTimeMillis() + 1000), 1, archiveDirectory);
+        assertEquals(2, summary.getProcessInstanceLogs());
+        assertEquals(12, summary.getNodeInstanceLogs());
+        assertEquals(2, summary.getChunks());
+        assertNull(auditLogService.findProcessInstance(first));
+        assertNull(auditLogService.findProcessInstance(second));
+        assertTrue(auditLogService.findNodeInstances(second).isEmpty());
+        assertTrue(summary.getArchiveFile().length() > 0);
+
+        summary.getArchiveFile().delete();
+        archiveDirectory.delete();
+    }
+
+    @Test
+    public void testStreamNodeInstances() throws Exception {
+        session.getWorkItemManager().registerWorkItemHandler("Human Task", new SystemOutWorkItemHandler());
+        long processInstanceId = session.startProcess("com.sample.ruleflow").getId();
+        List<NodeInstanceLog> nodeInstances = auditLogService.findNodeInstances(processInstanceId);
+        assertEquals(12, nodeInstances.size());
+
+        // fetch size that does not divide the result evenly
+        List<NodeInstanceLog> streamed = new ArrayList<NodeInstanceLog>();
+        AuditLogIterator<NodeInstanceLog> iterator = auditLogService.streamNodeInstances(processInstanceId, 5);
+        try {
+            while (iterator.hasNext()) {
+                streamed.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(nodeInstances.size(), streamed.size());
+        for (int i = 1; i < streamed.size(); i++) {
+            assertTrue(streamed.get(i - 1).getId() < streamed.get(i).getId());
+        }
+
+        // query builder, descending
+        NodeInstLogQueryBuilderImpl builder = (NodeInstLogQueryBuilderImpl) auditLogService.nodeInstanceLogQuery();
+        builder.processInstanceId(processInstanceId);
+        builder.descending();
+        iterator = builder.stream(4);
+        int count = 0;
+        long lastId = Long.MAX_VALUE;
+        while (iterator.hasNext()) {
+            NodeInstanceLog log = iterator.next();
+            assertTrue(log.getId() < lastId);
+            lastId = log.getId();
+            count++;
+        }
+        assertEquals(nodeInstances.size(), count);
+        iterator.close();
+
+        iterator = auditLogService.streamNodeInstances(processInstanceId + 1000, 5);
+        assertTrue(!iterator.hasNext());
+    }
+
 }
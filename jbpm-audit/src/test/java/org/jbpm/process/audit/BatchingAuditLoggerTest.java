@@ -0,0 +1,109 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.audit;
+
+import static org.jbpm.persistence.util.PersistenceUtil.createEnvironment;
+import static org.jbpm.process.audit.AbstractAuditLogServiceTest.createKieSession;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.jbpm.process.audit.BatchingAuditLogger.Durability;
+import org.jbpm.process.instance.impl.demo.SystemOutWorkItemHandler;
+import org.junit.After;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.ProcessInstance;
+
+/**
+ * This class tests the following classes: 
+ * <ul>
+ * <li>BatchingAuditLogger</li>
+ * <li>BatchAuditLogWriter</li>
+ * </ul>
+ */
+public class BatchingAuditLoggerTest extends AbstractWorkingMemoryDbLoggerTest {
+
+    private KieSession ksession = null;
+    private BatchAuditLogWriter writer;
+
+    @After
+    public void afterThis() {
+        if (writer != null) {
+            writer.close();
+        }
+        writer = null;
+        ksession = null;
+    }
+
+    @Override
+    public ProcessInstance startProcess(String processName) {
+        return startProcess(processName, Durability.AFTER_COMMIT_WAIT);
+    }
+
+    private ProcessInstance startProcess(String processName, Durability durability) {
+        if (ksession == null) {
+            KieBase kbase = createKnowledgeBase();
+
+            Environment env = createEnvironment(context);
+            ksession = createKieSession(kbase, env);
+
+            writer = new BatchAuditLogWriter((EntityManagerFactory) context.get(EnvironmentName.ENTITY_MANAGER_FACTORY), 100, 10, 200);
+            ksession.addEventListener(new BatchingAuditLogger(writer, durability));
+            ksession.getWorkItemManager().registerWorkItemHandler("Human Task", new SystemOutWorkItemHandler());
+        }
+        return ksession.startProcess(processName);
+    }
+
+    @Test
+    public void testAfterCommitEventsAreWrittenInBackground() {
+        long processInstanceId = startProcess("com.sample.ruleflow", Durability.AFTER_COMMIT).getId();
+        startProcess("com.sample.ruleflow", Durability.AFTER_COMMIT);
+
+        assertTrue(writer.flush(10000));
+        List<ProcessInstanceLog> processInstances = logService.findProcessInstances("com.sample.ruleflow");
+        assertEquals(2, processInstances.size());
+        ProcessInstanceLog processInstance = logService.findProcessInstance(processInstanceId);
+        assertNotNull(processInstance.getEnd());
+        assertEquals(6, logService.findNodeInstances(processInstanceId).size());
+        assertEquals(0, writer.getFailed());
+        assertEquals(0, writer.getDropped());
+        logService.clear();
+    }
+
+    @Test
+    public void testTransactionalEventsAreWrittenWithinTransaction() {
+        long processInstanceId = startProcess("com.sample.ruleflow", Durability.TRANSACTIONAL).getId();
+
+        // written before the engine transaction committed, not by the writer thread
+        assertEquals(0, writer.getPending());
+        ProcessInstanceLog processInstance = logService.findProcessInstance(processInstanceId);
+        assertNotNull(processInstance);
+        assertNotNull(processInstance.getEnd());
+        assertEquals(6, logService.findNodeInstances(processInstanceId).size());
+        assertTrue(writer.getWritten() > 0);
+        assertEquals(0, writer.getFailed());
+        logService.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package org.jbpm.process.audit.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class VariableAuditPolicyTest {
+
+    @Test
+    public void testIncludesAndExcludes() {
+        VariableAuditPolicy policy = new VariableAuditPolicy();
+        assertTrue(policy.isAudited("anything"));
+
+        policy.setIncludes("customer.*, order");
+        policy.setExcludes("customerDocument");
+        assertTrue(policy.isAudited("customerName"));
+        assertTrue(policy.isAudited("order"));
+        assertFalse(policy.isAudited("orderLines"));
+        assertFalse(policy.isAudited("customerDocument"));
+    }
+
+    @Test
+    public void testBoundedRenderingMatchesToString() {
+        VariableAuditPolicy policy = new VariableAuditPolicy();
+        policy.setMaxLength(20);
+
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < 10000; i++) {
+            list.add("item" + i);
+        }
+        assertEquals(list.toString().substring(0, 20), policy.render("list", list));
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("a", Arrays.asList(1, 2));
+        map.put("b", "value");
+        assertEquals(map.toString(), policy.render("map", map));
+
+        assertEquals("short", policy.render("string", "short"));
+        assertEquals("", policy.render("empty", null));
+        assertEquals("[x, y]", policy.render("array", new String[] { "x", "y" }));
+    }
+
+    @Test
+    public void testLargeValuesAreDigested() {
+        VariableAuditPolicy policy = new VariableAuditPolicy();
+        policy.setDigestThreshold(10);
+
+        assertEquals("small", policy.render("value", "small"));
+        String digest = policy.render("value", "a value longer than threshold");
+        assertTrue(digest.startsWith(VariableAuditPolicy.DIGEST_PREFIX));
+        assertEquals(VariableAuditPolicy.DIGEST_PREFIX.length() + 64, digest.length());
+        assertEquals(digest, policy.render("value", "a value longer than threshold"));
+        assertFalse(digest.equals(policy.render("value", "another value longer than threshold")));
+    }
+
+    @Test
+    public void testLargeValuesAreDigestedWithoutRenderingThem() throws Exception {
+        VariableAuditPolicy policy = new VariableAuditPolicy();
+        policy.setDigestThreshold(10);
+
+        List<Object> list = new ArrayList<Object>() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String toString() {
+                throw new AssertionError("Value must not be rendered as a whole");
+            }
+        };
+        List<Object> copy = new ArrayList<Object>();
+        for (int i = 0; i < 10000; i++) {
+            Object element = i % 2 == 0 ? "item\u00e9" + i : Arrays.asList(i, i + 1);
+            list.add(element);
+            copy.add(element);
+        }
+        assertEquals(VariableAuditPolicy.DIGEST_PREFIX + sha256(copy.toString()), policy.render("list", list));
+    }
+
+    @Test
+    public void testLargeValuesOfCustomRendererAreDigested() throws Exception {
+        VariableAuditPolicy policy = new VariableAuditPolicy();
+        policy.setDigestThreshold(5);
+        policy.setRenderer(new VariableAuditPolicy.ValueRenderer() {
+
+            public String render(String variableId, Object value, int maxLength) {
+                return variableId + ":" + value;
+            }
+        });
+        assertEquals(VariableAuditPolicy.DIGEST_PREFIX + sha256("value:123456"), policy.render("value", 123456));
+    }
+
+    @Test
+    public void testCustomRenderer() {
+        VariableAuditPolicy policy = new VariableAuditPolicy();
+        policy.setRenderer(new VariableAuditPolicy.ValueRenderer() {
+
+            public String render(String variableId, Object value, int maxLength) {
+                return variableId + ":" + value;
+            }
+        });
+        assertEquals("v:1", policy.render("v", 1));
+    }
+
+    private static String sha256(String value) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes("UTF-8"));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
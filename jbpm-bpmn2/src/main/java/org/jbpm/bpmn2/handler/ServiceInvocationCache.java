@@ -0,0 +1,236 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.bpmn2.handler;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps service classes and methods resolved by the service task and java invocation handlers so that
+ * repeated invocations of the same operation do not load classes and look up methods again.
+ * <br/>
+ * Methods are cached per class loader and keyed by class name, method name and parameter types. Class loaders
+ * are held weakly and resolved methods softly - a resolved method references its class and by that the class
+ * loader, so holding it strongly would keep undeployed class loaders from being collected. Methods of class
+ * loaders that are no longer used are released under memory pressure, {@link #evict(ClassLoader)} releases them
+ * right away. Instances of stateless service classes -
+ * classes without instance fields in the whole hierarchy - can be reused as well, this is disabled by
+ * default and can be enabled with <code>org.jbpm.service.reuse.instances</code> system property.
+ */
+public final class ServiceInvocationCache {
+
+    private static final ServiceInvocationCache INSTANCE = new ServiceInvocationCache(
+            Boolean.parseBoolean(System.getProperty("org.jbpm.service.reuse.instances", "false")));
+
+    private final Map<ClassLoader, ConcurrentMap<String, Reference<ServiceMethod>>> methods =
+            new WeakHashMap<ClassLoader, ConcurrentMap<String, Reference<ServiceMethod>>>();
+    private final boolean reuseInstances;
+    private final boolean softValues;
+
+    ServiceInvocationCache(boolean reuseInstances) {
+        this(reuseInstances, true);
+    }
+
+    ServiceInvocationCache(boolean reuseInstances, boolean softValues) {
+        this.reuseInstances = reuseInstances;
+        this.softValues = softValues;
+    }
+
+    public static ServiceInvocationCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Resolves public method of given class with exactly given parameter types.
+     * @param classLoader class loader to load the classes with
+     * @param className name of the service class
+     * @param methodName name of the method
+     * @param parameterTypes names of the parameter types, <code>null</code> or empty for no arguments method
+     */
+    public ServiceMethod getMethod(ClassLoader classLoader, String className, String methodName,
+                                   List<String> parameterTypes) throws ClassNotFoundException, NoSuchMethodException {
+        StringBuilder key = new StringBuilder(className).append('#').append(methodName).append('(');
+        if (parameterTypes != null) {
+            for (String parameterType : parameterTypes) {
+                key.append(parameterType).append(',');
+            }
+        }
+        key.append(')');
+        ConcurrentMap<String, Reference<ServiceMethod>> cache = getMethods(classLoader);
+        ServiceMethod serviceMethod = get(cache, key.toString());
+        if (serviceMethod == null) {
+            Class<?> c = Class.forName(className, true, classLoader);
+            Class<?>[] classes = new Class<?>[parameterTypes == null ? 0 : parameterTypes.size()];
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = Class.forName(parameterTypes.get(i), true, classLoader);
+            }
+            serviceMethod = putIfAbsent(cache, key.toString(), new ServiceMethod(c, c.getMethod(methodName, classes), reuseInstances));
+        }
+        return serviceMethod;
+    }
+
+    /**
+     * Resolves public method of given class by its name and number of parameters, a method without parameters
+     * takes precedence if there is any.
+     * @param classLoader class loader to load the class with
+     * @param className name of the service class
+     * @param methodName name of the method
+     * @param parameterCount number of parameters the method is going to be invoked with
+     */
+    public ServiceMethod getMethod(ClassLoader classLoader, String className, String methodName,
+                                   int parameterCount) throws ClassNotFoundException, NoSuchMethodException {
+        String key = className + "#" + methodName + "/" + parameterCount;
+        ConcurrentMap<String, Reference<ServiceMethod>> cache = getMethods(classLoader);
+        ServiceMethod serviceMethod = get(cache, key);
+        if (serviceMethod == null) {
+            Class<?> c = Class.forName(className, true, classLoader);
+            Method method = null;
+            try {
+                method = c.getMethod(methodName);
+            } catch (NoSuchMethodException e) {
+                for (Method m : c.getMethods()) {
+                    if (m.getName().equals(methodName) && m.getParameterTypes().length == parameterCount) {
+                        method = m;
+                        break;
+                    }
+                }
+                if (method == null) {
+                    throw new NoSuchMethodException(className + "." + methodName + "(..)");
+                }
+            }
+            serviceMethod = putIfAbsent(cache, key, new ServiceMethod(c, method, reuseInstances));
+        }
+        return serviceMethod;
+    }
+
+    public synchronized void clear() {
+        methods.clear();
+    }
+
+    /**
+     * Releases all methods resolved with given class loader, e.g. when its deployment is undeployed.
+     */
+    public synchronized void evict(ClassLoader classLoader) {
+        methods.remove(classLoader);
+    }
+
+    /**
+     * Returns number of class loaders with resolved methods.
+     */
+    synchronized int size() {
+        return methods.size();
+    }
+
+    private synchronized ConcurrentMap<String, Reference<ServiceMethod>> getMethods(ClassLoader classLoader) {
+        ConcurrentMap<String, Reference<ServiceMethod>> cache = methods.get(classLoader);
+        if (cache == null) {
+            cache = new ConcurrentHashMap<String, Reference<ServiceMethod>>();
+            methods.put(classLoader, cache);
+        }
+        return cache;
+    }
+
+    private static ServiceMethod get(ConcurrentMap<String, Reference<ServiceMethod>> cache, String key) {
+        Reference<ServiceMethod> reference = cache.get(key);
+        return reference == null ? null : reference.get();
+    }
+
+    private ServiceMethod putIfAbsent(ConcurrentMap<String, Reference<ServiceMethod>> cache, String key, ServiceMethod serviceMethod) {
+        Reference<ServiceMethod> reference = softValues ? new SoftReference<ServiceMethod>(serviceMethod)
+                : new WeakReference<ServiceMethod>(serviceMethod);
+        Reference<ServiceMethod> existing = cache.putIfAbsent(key, reference);
+        if (existing != null) {
+            ServiceMethod current = existing.get();
+            if (current != null) {
+                return current;
+            }
+            // released in the meantime
+            cache.replace(key, existing, reference);
+        }
+        return serviceMethod;
+    }
+
+    /**
+     * Resolved service method together with its class.
+     */
+    public static final class ServiceMethod {
+
+        private final Class<?> serviceClass;
+        private final Method method;
+        private final boolean shareInstance;
+        private volatile Object instance;
+
+        ServiceMethod(Class<?> serviceClass, Method method, boolean reuseInstances) {
+            this.serviceClass = serviceClass;
+            this.method = method;
+            this.shareInstance = reuseInstances && isStateless(serviceClass);
+        }
+
+        public Class<?> getServiceClass() {
+            return serviceClass;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public boolean isStatic() {
+            return Modifier.isStatic(method.getModifiers());
+        }
+
+        /**
+         * Returns instance of the service class to invoke the method on, shared instance is returned for
+         * stateless classes when reuse of instances is enabled, new instance otherwise.
+         */
+        public Object getServiceInstance() throws InstantiationException, IllegalAccessException {
+            if (!shareInstance) {
+                return serviceClass.newInstance();
+            }
+            Object current = instance;
+            if (current == null) {
+                current = serviceClass.newInstance();
+                instance = current;
+            }
+            return current;
+        }
+
+        public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+            return method.invoke(target, args);
+        }
+
+        static boolean isStateless(Class<?> c) {
+            for (Class<?> current = c; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -17,10 +17,11 @@
 package org.jbpm.bpmn2.handler;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.jbpm.bpmn2.handler.ServiceInvocationCache.ServiceMethod;
 import org.kie.api.runtime.process.WorkItem;
 import org.kie.api.runtime.process.WorkItemHandler;
 import org.kie.api.runtime.process.WorkItemManager;
@@ -37,19 +38,15 @@ public class ServiceTaskHandler implements WorkItemHandler {
         String parameterType = (String) workItem.getParameter("ParameterType");
         Object parameter = workItem.getParameter("Parameter");
         try {
-            Class<?> c = Class.forName(service);
-            Object instance = c.newInstance();
-            Class<?>[] classes = null;
+            ServiceMethod method = ServiceInvocationCache.getInstance().getMethod(ServiceTaskHandler.class.getClassLoader(),
+                    service, operation, parameterType == null ? null : Collections.singletonList(parameterType));
+            Object instance = method.getServiceInstance();
             Object[] params = null;
             if (parameterType != null) {
-                classes = new Class<?>[] {
-                    Class.forName(parameterType)
-                };
                 params = new Object[] {
                     parameter
                 };
             }
-            Method method = c.getMethod(operation, classes);
             Object result = method.invoke(instance, params);
             Map<String, Object> results = new HashMap<String, Object>();
             results.put("Result", result);
@@ -42,7 +42,10 @@ import org.jbpm.bpmn2.objects.TestWorkItemHandler;
 import org.jbpm.bpmn2.test.RequirePersistence;
 import org.jbpm.persistence.ProcessPersistenceContext;
 import org.jbpm.persistence.ProcessPersistenceContextManager;
+import org.jbpm.persistence.processinstance.ChunkedSignalBroadcaster;
 import org.jbpm.persistence.processinstance.JPASignalManager;
+import org.jbpm.persistence.processinstance.SignalBroadcastListener;
+import org.jbpm.persistence.processinstance.SignalChunk;
 import org.jbpm.process.instance.InternalProcessRuntime;
 import org.jbpm.process.instance.ProcessRuntimeImpl;
 import org.jbpm.process.instance.impl.demo.DoNothingWorkItemHandler;
@@ -1630,6 +1633,40 @@ public class IntermediateEventTest extends JbpmBpmn2TestCase {
         ksession2.dispose();
     }
     
+    @Test
+    @RequirePersistence
+    public void testIntermediateCatchEventSignalChunkedBroadcast() throws Exception {
+        KieBase kbase = createKnowledgeBase("BPMN2-IntermediateCatchEventSignal.bpmn2");
+        ksession = createKnowledgeSession(kbase);
+        ksession.getWorkItemManager().registerWorkItemHandler("Human Task", new SystemOutWorkItemHandler());
+        List<ProcessInstance> processInstances = new ArrayList<ProcessInstance>();
+        for (int i = 0; i < 5; i++) {
+            ProcessInstance processInstance = ksession.startProcess("IntermediateCatchEvent");
+            assertProcessInstanceActive(processInstance);
+            processInstances.add(processInstance);
+        }
+        ksession = restoreSession(ksession, true);
+        ksession.getWorkItemManager().registerWorkItemHandler("Human Task", new SystemOutWorkItemHandler());
+
+        final List<SignalChunk> completedChunks = new ArrayList<SignalChunk>();
+        ChunkedSignalBroadcaster broadcaster = new ChunkedSignalBroadcaster(Arrays.<KieSession>asList(ksession), 2, null);
+        broadcaster.setListener(new SignalBroadcastListener() {
+            public void chunkCompleted(SignalChunk chunk) {
+                completedChunks.add(chunk);
+            }
+            public void chunkFailed(SignalChunk chunk, Throwable error) {
+                fail("Chunk " + chunk + " failed: " + error.getMessage());
+            }
+        });
+        List<SignalChunk> chunks = broadcaster.broadcast("MyMessage", "SomeValue");
+
+        assertEquals(3, chunks.size());
+        assertEquals(chunks, completedChunks);
+        for (ProcessInstance processInstance : processInstances) {
+            assertProcessInstanceFinished(processInstance, ksession);
+        }
+    }
+
     @Test
     @RequirePersistence
     public void testEventTypesLifeCycle() throws Exception {
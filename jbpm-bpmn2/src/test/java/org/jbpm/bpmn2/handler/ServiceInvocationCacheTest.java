@@ -0,0 +1,110 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.bpmn2.handler;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+
+import org.jbpm.bpmn2.handler.ServiceInvocationCache.ServiceMethod;
+import org.jbpm.bpmn2.objects.HelloService;
+import org.jbpm.bpmn2.objects.Person;
+import org.junit.Test;
+
+public class ServiceInvocationCacheTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void testMethodIsResolvedOnce() throws Exception {
+        ServiceInvocationCache cache = new ServiceInvocationCache(false);
+        ServiceMethod method = cache.getMethod(classLoader, HelloService.class.getName(), "hello",
+                Collections.singletonList(String.class.getName()));
+        assertSame(method, cache.getMethod(classLoader, HelloService.class.getName(), "hello",
+                Collections.singletonList(String.class.getName())));
+        assertEquals(HelloService.class, method.getServiceClass());
+        assertEquals("Hello john!", method.invoke(method.getServiceInstance(), new Object[] { "john" }));
+
+        ServiceMethod other = cache.getMethod(classLoader, HelloService.class.getName(), "helloEcho",
+                Collections.singletonList(String.class.getName()));
+        assertNotSame(method, other);
+    }
+
+    @Test
+    public void testMethodByParameterCount() throws Exception {
+        ServiceInvocationCache cache = new ServiceInvocationCache(false);
+        ServiceMethod method = cache.getMethod(classLoader, HelloService.class.getName(), "helloEcho", 1);
+        assertEquals("echo", method.invoke(method.getServiceInstance(), new Object[] { "echo" }));
+        assertSame(method, cache.getMethod(classLoader, HelloService.class.getName(), "helloEcho", 1));
+        try {
+            cache.getMethod(classLoader, HelloService.class.getName(), "helloEcho", 2);
+            fail("Method with two parameters does not exist");
+        } catch (NoSuchMethodException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInstancesOfStatelessClassesAreReused() throws Exception {
+        ServiceInvocationCache cache = new ServiceInvocationCache(true);
+        ServiceMethod stateless = cache.getMethod(classLoader, HelloService.class.getName(), "hello",
+                Collections.singletonList(String.class.getName()));
+        assertSame(stateless.getServiceInstance(), stateless.getServiceInstance());
+
+        ServiceMethod stateful = cache.getMethod(classLoader, Person.class.getName(), "getName", null);
+        assertNotSame(stateful.getServiceInstance(), stateful.getServiceInstance());
+
+        cache = new ServiceInvocationCache(false);
+        stateless = cache.getMethod(classLoader, HelloService.class.getName(), "hello",
+                Collections.singletonList(String.class.getName()));
+        assertNotSame(stateless.getServiceInstance(), stateless.getServiceInstance());
+    }
+
+    @Test
+    public void testClassLoaderIsNotHeldByCache() throws Exception {
+        // weak values so the test does not depend on memory pressure, soft ones are released the same way
+        ServiceInvocationCache cache = new ServiceInvocationCache(false, false);
+        URL location = HelloService.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader deploymentClassLoader = new URLClassLoader(new URL[] { location }, null);
+        ServiceMethod method = cache.getMethod(deploymentClassLoader, HelloService.class.getName(), "hello",
+                Collections.singletonList(String.class.getName()));
+        assertSame(deploymentClassLoader, method.getServiceClass().getClassLoader());
+        assertEquals(1, cache.size());
+
+        method = null;
+        deploymentClassLoader = null;
+        for (int i = 0; i < 50 && cache.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictClassLoader() throws Exception {
+        ServiceInvocationCache cache = new ServiceInvocationCache(false);
+        ServiceMethod method = cache.getMethod(classLoader, HelloService.class.getName(), "hello",
+                Collections.singletonList(String.class.getName()));
+        assertEquals(1, cache.size());
+        cache.evict(classLoader);
+        assertEquals(0, cache.size());
+        assertNotSame(method, cache.getMethod(classLoader, HelloService.class.getName(), "hello",
+                Collections.singletonList(String.class.getName())));
+    }
+}
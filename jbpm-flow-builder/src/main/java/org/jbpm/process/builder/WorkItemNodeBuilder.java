@@ -69,6 +69,7 @@ public class WorkItemNodeBuilder extends EventBasedNodeBuilder {
 				}
 			}
 		}
+		((WorkItemNode) node).compileDataAssociations();
 	}
 
 }
@@ -9,12 +9,14 @@ import org.drools.compiler.compiler.BoundIdentifiers;
 import org.drools.compiler.compiler.DescrBuildError;
 import org.drools.compiler.compiler.ReturnValueDescr;
 import org.drools.core.rule.MVELDialectRuntimeData;
+import org.drools.core.spi.Wireable;
 import org.drools.compiler.rule.builder.PackageBuildContext;
 import org.drools.compiler.rule.builder.dialect.mvel.MVELAnalysisResult;
 import org.drools.compiler.rule.builder.dialect.mvel.MVELDialect;
 import org.jbpm.process.builder.ReturnValueEvaluatorBuilder;
 import org.jbpm.process.core.ContextResolver;
 import org.jbpm.process.core.context.variable.VariableScope;
+import org.jbpm.process.instance.impl.ComparisonReturnValueEvaluator;
 import org.jbpm.process.instance.impl.MVELReturnValueEvaluator;
 import org.jbpm.process.instance.impl.ReturnValueConstraintEvaluator;
 
@@ -22,6 +24,8 @@ public class MVELReturnValueEvaluatorBuilder
     implements
     ReturnValueEvaluatorBuilder {
 
+    private static final boolean CONSTRAINT_FAST_PATH = Boolean.parseBoolean(System.getProperty("jbpm.constraint.fastpath", "true"));
+
     public MVELReturnValueEvaluatorBuilder() {
 
     }
@@ -87,10 +91,19 @@ public class MVELReturnValueEvaluatorBuilder
                                                                           dialect.getId() );
 //            expr.setVariableNames(variableNames);
 
-            constraintNode.setEvaluator( expr );
+            // simple comparisons of a process variable are evaluated directly, MVEL is used as fallback
+            Wireable wireable = constraintNode;
+            ComparisonReturnValueEvaluator comparison = CONSTRAINT_FAST_PATH ? ComparisonReturnValueEvaluator.parse( text, variables.keySet() ) : null;
+            if ( comparison != null ) {
+                comparison.setFallback( expr );
+                constraintNode.setEvaluator( comparison );
+                wireable = comparison;
+            } else {
+                constraintNode.setEvaluator( expr );
+            }
             
             MVELDialectRuntimeData data = (MVELDialectRuntimeData) context.getPkg().getDialectRuntimeRegistry().getDialectData( dialect.getId() );
-            data.addCompileable( constraintNode,
+            data.addCompileable( wireable,
                                   expr );
             
             expr.compile( data );
@@ -66,6 +66,16 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
     // Output methods
     public JBPMMessages.ProcessInstance writeProcessInstance(MarshallerWriteContext context,
                                                              ProcessInstance processInstance) throws IOException {
+        return writeProcessInstance( context, processInstance, null );
+    }
+
+    /**
+     * Writes the process instance, storing its process variables in the given variable store 
+     * (when not <code>null</code>) and only references to them in the process instance.
+     */
+    public JBPMMessages.ProcessInstance writeProcessInstance(MarshallerWriteContext context,
+                                                             ProcessInstance processInstance,
+                                                             ExternalVariableStore variableStore) throws IOException {
         WorkflowProcessInstanceImpl workFlow = (WorkflowProcessInstanceImpl) processInstance;
         
         JBPMMessages.ProcessInstance.Builder _instance = JBPMMessages.ProcessInstance.newBuilder()
@@ -133,9 +143,17 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
                               }
                           } );
 
+        if ( variableStore != null ) {
+            variableStore.storeVariables( context, processInstance, variableScopeInstance.getVariables() );
+        }
         for ( Map.Entry<String, Object> variable : variables ) {
             if ( variable.getValue() != null ) {
-                _instance.addVariable( ProtobufProcessMarshaller.marshallVariable( context, variable.getKey(), variable.getValue() ) );
+                if ( variableStore != null ) {
+                    // reference only, the value is kept by the variable store
+                    _instance.addVariable( JBPMMessages.Variable.newBuilder().setName( variable.getKey() ).build() );
+                } else {
+                    _instance.addVariable( ProtobufProcessMarshaller.marshallVariable( context, variable.getKey(), variable.getValue() ) );
+                }
             }
         }
         
@@ -440,6 +458,15 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
 
     // Input methods
     public ProcessInstance readProcessInstance(MarshallerReaderContext context) throws IOException {
+        return readProcessInstance( context, null );
+    }
+
+    /**
+     * Reads the process instance, resolving process variables stored outside of the process 
+     * instance through the given variable store.
+     */
+    public ProcessInstance readProcessInstance(MarshallerReaderContext context,
+                                               ExternalVariableStore variableStore) throws IOException {
         InternalKnowledgeBase ruleBase = context.kBase;
         InternalWorkingMemory wm = context.wm;
         
@@ -517,7 +544,12 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
                     .getDefaultContext( VariableScope.VARIABLE_SCOPE );
             VariableScopeInstance variableScopeInstance = (VariableScopeInstance) processInstance
                     .getContextInstance( variableScope );
+            List<String> variableReferences = new ArrayList<String>();
             for ( JBPMMessages.Variable _variable : _instance.getVariableList() ) {
+                if ( !_variable.hasStrategyIndex() && _variable.getValue().isEmpty() ) {
+                    variableReferences.add( _variable.getName() );
+                    continue;
+                }
                 try {
                     Object _value = ProtobufProcessMarshaller.unmarshallVariableValue( context, _variable );
                     variableScopeInstance.internalSetVariable( _variable.getName(), 
@@ -526,6 +558,20 @@ public abstract class AbstractProtobufProcessInstanceMarshaller
                     throw new IllegalArgumentException( "Could not reload variable " + _variable.getName() );
                 }
             }
+            if ( !variableReferences.isEmpty() ) {
+                if ( variableStore == null ) {
+                    throw new IllegalArgumentException( "Variables " + variableReferences + " of process instance " 
+                            + processInstance.getId() + " are stored outside of the process instance but no variable store is available" );
+                }
+                try {
+                    Map<String, Object> values = variableStore.loadVariables( context, processInstance, variableReferences );
+                    for ( String name : variableReferences ) {
+                        variableScopeInstance.internalSetVariable( name, values.get( name ) );
+                    }
+                } catch ( ClassNotFoundException e ) {
+                    throw new IllegalArgumentException( "Could not reload variables " + variableReferences, e );
+                }
+            }
         }
         
         if ( _instance.getIterationLevelsCount() > 0 ) {
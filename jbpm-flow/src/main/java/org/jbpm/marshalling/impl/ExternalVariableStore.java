@@ -0,0 +1,52 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.marshalling.impl;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.drools.core.marshalling.impl.MarshallerReaderContext;
+import org.drools.core.marshalling.impl.MarshallerWriteContext;
+import org.kie.api.runtime.process.ProcessInstance;
+
+/**
+ * Storage for the top level process variables of a process instance kept outside of 
+ * the marshalled process instance.
+ * </p>
+ * When given to {@link AbstractProtobufProcessInstanceMarshaller}, only references (variable 
+ * entries without a value) are written for the process variables, which are then resolved 
+ * through the store when the process instance is read.
+ */
+public interface ExternalVariableStore {
+
+    /**
+     * Stores the given (top level) process variables of the process instance, removing 
+     * any previously stored variable that is not part of the given map anymore.
+     */
+    void storeVariables(MarshallerWriteContext context,
+                        ProcessInstance processInstance,
+                        Map<String, Object> variables) throws IOException;
+
+    /**
+     * Loads the values of the given variables of the process instance.
+     */
+    Map<String, Object> loadVariables(MarshallerReaderContext context,
+                                      ProcessInstance processInstance,
+                                      Collection<String> names) throws IOException, ClassNotFoundException;
+
+}
@@ -87,6 +87,7 @@ public class MigrateProcessInstanceCommand implements GenericCommand<Void> {
 	        processInstance.setKnowledgeRuntime((InternalKnowledgeRuntime) ksession);
 	        processInstance.setProcess(process);
 	        processInstance.reconnect();
+	        processInstance.markDirty();
 		}
         return null;
     }
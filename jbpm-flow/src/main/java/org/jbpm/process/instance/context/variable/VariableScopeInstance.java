@@ -27,6 +27,7 @@ import org.jbpm.process.instance.ContextInstanceContainer;
 import org.jbpm.process.instance.InternalProcessRuntime;
 import org.jbpm.process.instance.context.AbstractContextInstance;
 import org.jbpm.workflow.core.Node;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
 import org.jbpm.workflow.instance.node.CompositeContextNodeInstance;
 
 /**
@@ -76,6 +77,9 @@ public class VariableScopeInstance extends AbstractContextInstance {
 			oldValue, value, getProcessInstance(),
 			getProcessInstance().getKnowledgeRuntime());
         internalSetVariable(name, value);
+        if (getProcessInstance() instanceof WorkflowProcessInstanceImpl) {
+            ((WorkflowProcessInstanceImpl) getProcessInstance()).variableChanged(name);
+        }
         processEventSupport.fireAfterVariableChanged(
 			(variableIdPrefix == null ? "" : variableIdPrefix + ":") + name,
 			(variableInstanceIdPrefix == null? "" : variableInstanceIdPrefix + ":") + name,
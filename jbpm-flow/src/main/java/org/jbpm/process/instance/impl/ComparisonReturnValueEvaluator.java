@@ -0,0 +1,269 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.instance.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.drools.core.spi.Wireable;
+import org.kie.api.runtime.process.ProcessContext;
+
+/**
+ * Evaluates simple constraints - a process variable compared with a literal (e.g. <code>amount &gt; 1000</code>,
+ * <code>return approved == true;</code>, <code>status != null</code>) or a boolean process variable on its own -
+ * directly in Java instead of going through the MVEL runtime.
+ * <br/>
+ * Only values whose comparison has an obvious outcome are handled directly (numbers of primitive wrapper types,
+ * booleans, strings and nulls), everything else is delegated to the MVEL evaluator the constraint was compiled to,
+ * which is wired into this evaluator the same way it would be wired into the constraint.
+ */
+public class ComparisonReturnValueEvaluator
+    implements
+    ReturnValueEvaluator,
+    Wireable,
+    Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String IDENTIFIER = "([A-Za-z_$][\\w$]*)";
+    private static final String LITERAL = "(-?\\d+[lL]?|-?\\d+\\.\\d+[dDfF]?|true|false|null|\"[^\"\\\\]*\"|'[^'\\\\]*')";
+    private static final String OPERATOR = "(==|!=|>=|<=|>|<)";
+    private static final String RETURN = "^\\s*(?:return\\s+)?";
+    private static final String END = "\\s*;?\\s*$";
+
+    private static final Pattern VARIABLE_FIRST = Pattern.compile(RETURN + IDENTIFIER + "\\s*" + OPERATOR + "\\s*" + LITERAL + END);
+    private static final Pattern LITERAL_FIRST = Pattern.compile(RETURN + LITERAL + "\\s*" + OPERATOR + "\\s*" + IDENTIFIER + END);
+    private static final Pattern VARIABLE_ONLY = Pattern.compile(RETURN + "(!\\s*)?" + IDENTIFIER + END);
+
+    private enum Operator {
+        EQ, NE, GT, GE, LT, LE, IS_TRUE, IS_FALSE
+    }
+
+    private String variable;
+    private Operator operator;
+    private Object literal;
+    private ReturnValueEvaluator fallback;
+
+    public ComparisonReturnValueEvaluator() {
+    }
+
+    private ComparisonReturnValueEvaluator(String variable, Operator operator, Object literal) {
+        this.variable = variable;
+        this.operator = operator;
+        this.literal = literal;
+    }
+
+    /**
+     * Creates evaluator for given constraint expression if it is simple enough to be evaluated directly.
+     * @param expression the constraint expression
+     * @param processVariables names of the process variables the expression may refer to
+     * @return evaluator or <code>null</code> if the expression is not supported
+     */
+    public static ComparisonReturnValueEvaluator parse(String expression, Collection<String> processVariables) {
+        if (expression == null) {
+            return null;
+        }
+        Matcher matcher = VARIABLE_FIRST.matcher(expression);
+        if (matcher.matches()) {
+            return create(matcher.group(1), matcher.group(2), matcher.group(3), false, processVariables);
+        }
+        matcher = LITERAL_FIRST.matcher(expression);
+        if (matcher.matches()) {
+            return create(matcher.group(3), matcher.group(2), matcher.group(1), true, processVariables);
+        }
+        matcher = VARIABLE_ONLY.matcher(expression);
+        if (matcher.matches() && isVariable(matcher.group(2), processVariables)) {
+            return new ComparisonReturnValueEvaluator(matcher.group(2),
+                    matcher.group(1) == null ? Operator.IS_TRUE : Operator.IS_FALSE, null);
+        }
+        return null;
+    }
+
+    private static ComparisonReturnValueEvaluator create(String variable, String operator, String literal,
+                                                         boolean reversed, Collection<String> processVariables) {
+        if (!isVariable(variable, processVariables)) {
+            return null;
+        }
+        Object value = parseLiteral(literal);
+        Operator op = toOperator(operator, reversed);
+        if (value == null && op != Operator.EQ && op != Operator.NE) {
+            return null;
+        }
+        return new ComparisonReturnValueEvaluator(variable, op, value);
+    }
+
+    private static boolean isVariable(String name, Collection<String> processVariables) {
+        return processVariables.contains(name) && !"true".equals(name) && !"false".equals(name) && !"null".equals(name)
+                && !"return".equals(name);
+    }
+
+    private static Object parseLiteral(String literal) {
+        if ("null".equals(literal)) {
+            return null;
+        }
+        if ("true".equals(literal) || "false".equals(literal)) {
+            return Boolean.valueOf(literal);
+        }
+        char first = literal.charAt(0);
+        if (first == '"' || first == '\'') {
+            return literal.substring(1, literal.length() - 1);
+        }
+        char last = literal.charAt(literal.length() - 1);
+        if (literal.indexOf('.') >= 0) {
+            if (last == 'd' || last == 'D' || last == 'f' || last == 'F') {
+                literal = literal.substring(0, literal.length() - 1);
+            }
+            return Double.valueOf(literal);
+        }
+        if (last == 'l' || last == 'L') {
+            literal = literal.substring(0, literal.length() - 1);
+        }
+        return Long.valueOf(literal);
+    }
+
+    private static Operator toOperator(String operator, boolean reversed) {
+        if ("==".equals(operator)) {
+            return Operator.EQ;
+        } else if ("!=".equals(operator)) {
+            return Operator.NE;
+        } else if (">".equals(operator)) {
+            return reversed ? Operator.LT : Operator.GT;
+        } else if (">=".equals(operator)) {
+            return reversed ? Operator.LE : Operator.GE;
+        } else if ("<".equals(operator)) {
+            return reversed ? Operator.GT : Operator.LT;
+        }
+        return reversed ? Operator.GE : Operator.LE;
+    }
+
+    public void wire(Object object) {
+        setFallback((ReturnValueEvaluator) object);
+    }
+
+    public void setFallback(ReturnValueEvaluator fallback) {
+        this.fallback = fallback;
+    }
+
+    public ReturnValueEvaluator getFallback() {
+        return fallback;
+    }
+
+    public String getVariable() {
+        return variable;
+    }
+
+    public Object evaluate(ProcessContext context) throws Exception {
+        Object value = context.getVariable(variable);
+        Boolean result = compare(value);
+        if (result != null) {
+            return result;
+        }
+        return fallback.evaluate(context);
+    }
+
+    /**
+     * @return outcome of the comparison or <code>null</code> if it cannot be decided without MVEL
+     */
+    protected Boolean compare(Object value) {
+        switch (operator) {
+        case IS_TRUE:
+            return value instanceof Boolean ? (Boolean) value : null;
+        case IS_FALSE:
+            return value instanceof Boolean ? Boolean.valueOf(!((Boolean) value)) : null;
+        default:
+        }
+        if (literal == null) {
+            return operator == Operator.EQ ? Boolean.valueOf(value == null) : Boolean.valueOf(value != null);
+        }
+        if (value == null) {
+            return null;
+        }
+        int comparison;
+        if (literal instanceof Long || literal instanceof Double) {
+            if (!isPrimitiveNumber(value)) {
+                return null;
+            }
+            Number number = (Number) value;
+            if (literal instanceof Long && isIntegral(value)) {
+                long other = ((Long) literal).longValue();
+                comparison = number.longValue() < other ? -1 : (number.longValue() == other ? 0 : 1);
+            } else {
+                double current = number.doubleValue();
+                double other = ((Number) literal).doubleValue();
+                if (Double.isNaN(current)) {
+                    return null;
+                }
+                comparison = current < other ? -1 : (current == other ? 0 : 1);
+            }
+        } else if (literal instanceof Boolean) {
+            if (!(value instanceof Boolean) || (operator != Operator.EQ && operator != Operator.NE)) {
+                return null;
+            }
+            comparison = value.equals(literal) ? 0 : 1;
+        } else {
+            if (!(value instanceof String) || (operator != Operator.EQ && operator != Operator.NE)) {
+                return null;
+            }
+            comparison = value.equals(literal) ? 0 : 1;
+        }
+        switch (operator) {
+        case EQ:
+            return comparison == 0;
+        case NE:
+            return comparison != 0;
+        case GT:
+            return comparison > 0;
+        case GE:
+            return comparison >= 0;
+        case LT:
+            return comparison < 0;
+        default:
+            return comparison <= 0;
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    private static boolean isPrimitiveNumber(Object value) {
+        return isIntegral(value) || value instanceof Double || value instanceof Float;
+    }
+
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        variable = in.readUTF();
+        operator = Operator.valueOf(in.readUTF());
+        literal = in.readObject();
+        fallback = (ReturnValueEvaluator) in.readObject();
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeUTF(variable);
+        out.writeUTF(operator.name());
+        out.writeObject(literal);
+        out.writeObject(fallback);
+    }
+
+    public String toString() {
+        return fallback != null ? fallback.toString() : variable + " " + operator;
+    }
+}
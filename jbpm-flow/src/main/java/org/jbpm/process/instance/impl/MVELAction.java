@@ -40,6 +40,8 @@ public class MVELAction
     MVELCompileable,
     Externalizable {
     private static final long       serialVersionUID = 510l;
+
+    private static final Object[] EMPTY_VARS = new Object[0];
     
     private MVELCompilationUnit unit;
     private String id;        
@@ -74,13 +76,7 @@ public class MVELAction
     }
     
     public void execute(ProcessContext context) throws Exception {
-        int length = unit.getOtherIdentifiers().length;
-        Object[] vars = new Object[ length ];
-        if (unit.getOtherIdentifiers() != null) {
-            for (int i = 0; i < length; i++ ) {
-                vars[i] = context.getVariable( unit.getOtherIdentifiers()[i] );
-            }
-        }
+        Object[] vars = resolveIdentifiers( unit, context );
 
         InternalWorkingMemory internalWorkingMemory = null;
         if( context.getKieRuntime() instanceof StatefulKnowledgeSessionImpl ) {
@@ -116,4 +112,16 @@ public class MVELAction
         return expr;
     }
 
+    static Object[] resolveIdentifiers(MVELCompilationUnit unit, ProcessContext context) {
+        String[] identifiers = unit.getOtherIdentifiers();
+        if (identifiers == null || identifiers.length == 0) {
+            return EMPTY_VARS;
+        }
+        Object[] vars = new Object[ identifiers.length ];
+        for (int i = 0; i < identifiers.length; i++ ) {
+            vars[i] = context.getVariable( identifiers[i] );
+        }
+        return vars;
+    }
+
 }
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.instance.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.drools.core.definitions.impl.KnowledgePackageImpl;
+import org.drools.core.rule.MVELDialectRuntimeData;
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.event.kiebase.AfterFunctionRemovedEvent;
+import org.kie.api.event.kiebase.AfterKiePackageAddedEvent;
+import org.kie.api.event.kiebase.AfterKiePackageRemovedEvent;
+import org.kie.api.event.kiebase.DefaultKieBaseEventListener;
+import org.mvel2.integration.VariableResolverFactory;
+
+/**
+ * Resolves the MVEL function factory of the "MAIN" package of a kie base and lets MVEL evaluators keep it
+ * as a {@link Binding} instead of looking it up on every evaluation.
+ * <br/>
+ * Every kie base gets a version that is incremented whenever packages or functions are added or removed,
+ * a binding is valid as long as it was created for the same kie base and its version did not change.
+ */
+public final class MVELFunctionFactoryCache {
+
+    private static final Map<KieBase, KieBaseVersion> versions = new WeakHashMap<KieBase, KieBaseVersion>();
+
+    private MVELFunctionFactoryCache() {
+    }
+
+    public static Binding bind(KieBase kbase, String dialectId) {
+        KieBaseVersion version = getVersion(kbase);
+        // read the version before resolving so that concurrent changes invalidate the binding
+        long current = version.get();
+        VariableResolverFactory functionFactory = null;
+        KiePackage pkg = kbase.getKiePackage("MAIN");
+        if ( pkg != null && pkg instanceof KnowledgePackageImpl) {
+            MVELDialectRuntimeData data = ( MVELDialectRuntimeData ) ((KnowledgePackageImpl) pkg).getDialectRuntimeRegistry().getDialectData( dialectId );
+            if (data != null) {
+                functionFactory = data.getFunctionFactory();
+            }
+        }
+        return new Binding(kbase, version, current, functionFactory);
+    }
+
+    private static synchronized KieBaseVersion getVersion(KieBase kbase) {
+        KieBaseVersion version = versions.get(kbase);
+        if (version == null) {
+            version = new KieBaseVersion();
+            kbase.addEventListener(version);
+            versions.put(kbase, version);
+        }
+        return version;
+    }
+
+    /**
+     * Function factory resolved for given kie base and dialect.
+     */
+    public static final class Binding {
+
+        private final WeakReference<KieBase> kbase;
+        private final KieBaseVersion version;
+        private final long boundVersion;
+        private final VariableResolverFactory functionFactory;
+
+        Binding(KieBase kbase, KieBaseVersion version, long boundVersion, VariableResolverFactory functionFactory) {
+            this.kbase = new WeakReference<KieBase>(kbase);
+            this.version = version;
+            this.boundVersion = boundVersion;
+            this.functionFactory = functionFactory;
+        }
+
+        public boolean isValidFor(KieBase kbase) {
+            return this.kbase.get() == kbase && version.get() == boundVersion;
+        }
+
+        /**
+         * @return function factory or <code>null</code> if there are no functions for the dialect
+         */
+        public VariableResolverFactory getFunctionFactory() {
+            return functionFactory;
+        }
+    }
+
+    // must not reference the kie base as it is the value of a weak map keyed by it
+    private static class KieBaseVersion extends DefaultKieBaseEventListener {
+
+        private final AtomicLong version = new AtomicLong();
+
+        long get() {
+            return version.get();
+        }
+
+        @Override
+        public void afterKiePackageAdded(AfterKiePackageAddedEvent event) {
+            version.incrementAndGet();
+        }
+
+        @Override
+        public void afterKiePackageRemoved(AfterKiePackageRemovedEvent event) {
+            version.incrementAndGet();
+        }
+
+        @Override
+        public void afterFunctionRemoved(AfterFunctionRemovedEvent event) {
+            version.incrementAndGet();
+        }
+    }
+}
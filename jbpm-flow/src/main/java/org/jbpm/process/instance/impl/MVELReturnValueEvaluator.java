@@ -25,13 +25,12 @@ import java.io.Serializable;
 import org.drools.core.base.mvel.MVELCompilationUnit;
 import org.drools.core.base.mvel.MVELCompileable;
 import org.drools.core.common.InternalWorkingMemory;
-import org.drools.core.definitions.impl.KnowledgePackageImpl;
 import org.drools.core.impl.StatefulKnowledgeSessionImpl;
 import org.drools.core.impl.StatelessKnowledgeSessionImpl;
 import org.drools.core.rule.MVELDialectRuntimeData;
 import org.drools.core.spi.GlobalResolver;
 import org.drools.core.util.MVELSafeHelper;
-import org.kie.api.definition.KiePackage;
+import org.kie.api.KieBase;
 import org.kie.api.runtime.process.ProcessContext;
 import org.kie.internal.runtime.StatefulKnowledgeSession;
 import org.kie.internal.runtime.StatelessKnowledgeSession;
@@ -49,6 +48,8 @@ public class MVELReturnValueEvaluator
 
     private Serializable        expr;
 
+    private transient volatile MVELFunctionFactoryCache.Binding functionFactoryBinding;
+
     public MVELReturnValueEvaluator() {
     }
 
@@ -78,13 +79,7 @@ public class MVELReturnValueEvaluator
     }
 
     public Object evaluate(ProcessContext context) throws Exception {
-        int length = unit.getOtherIdentifiers().length;
-        Object[] vars = new Object[ length ];
-        if (unit.getOtherIdentifiers() != null) {
-            for (int i = 0; i < length; i++ ) {
-                vars[i] = context.getVariable( unit.getOtherIdentifiers()[i] );
-            }
-        }
+        Object[] vars = MVELAction.resolveIdentifiers( unit, context );
 
         InternalWorkingMemory internalWorkingMemory = null;
         if( context.getKieRuntime() instanceof StatefulKnowledgeSessionImpl ) {
@@ -105,10 +100,14 @@ public class MVELReturnValueEvaluator
                                (GlobalResolver) context.getKieRuntime().getGlobals() );
 
         // do we have any functions for this namespace?
-        KiePackage pkg = context.getKieRuntime().getKieBase().getKiePackage("MAIN");
-        if ( pkg != null && pkg instanceof KnowledgePackageImpl) {
-            MVELDialectRuntimeData data = ( MVELDialectRuntimeData ) ((KnowledgePackageImpl) pkg).getDialectRuntimeRegistry().getDialectData( id );
-            factory.setNextFactory( data.getFunctionFactory() );
+        KieBase kbase = context.getKieRuntime().getKieBase();
+        MVELFunctionFactoryCache.Binding binding = functionFactoryBinding;
+        if ( binding == null || !binding.isValidFor( kbase ) ) {
+            binding = MVELFunctionFactoryCache.bind( kbase, id );
+            functionFactoryBinding = binding;
+        }
+        if ( binding.getFunctionFactory() != null ) {
+            factory.setNextFactory( binding.getFunctionFactory() );
         }
 
         Object value = MVELSafeHelper.getEvaluator().executeExpression( this.expr,
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.workflow.core.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jbpm.process.core.event.EventFilter;
+import org.jbpm.process.core.event.EventTypeFilter;
+import org.jbpm.workflow.core.node.EventNode;
+import org.jbpm.workflow.core.node.EventNodeInterface;
+import org.jbpm.workflow.core.node.EventSubProcessNode;
+import org.kie.api.definition.process.Node;
+
+/**
+ * Index of the top level {@link EventNodeInterface} nodes of a process, keyed by
+ * the event type they listen to.
+ *
+ * Nodes whose acceptance can be decided from a plain {@link EventTypeFilter} are
+ * registered under that type only, all other event nodes (composite nodes, broadcast
+ * or custom filters, nodes without filters) are candidates for every event type.
+ * Candidates are returned in the order of {@link WorkflowProcessImpl#getNodes()} and
+ * callers are still expected to check {@link EventNodeInterface#acceptsEvent(String, Object)}
+ * as the index only narrows down the nodes that could possibly match.
+ */
+public class EventNodeIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Node[] nodes;
+    private final Map<String, int[]> typedNodes;
+    private final int[] untypedNodes;
+
+    public EventNodeIndex(Node[] nodes) {
+        this.nodes = nodes;
+        Map<String, List<Integer>> typed = new HashMap<String, List<Integer>>();
+        List<Integer> untyped = new ArrayList<Integer>();
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            if (!(node instanceof EventNodeInterface)) {
+                continue;
+            }
+            List<String> types = getExactTypes(node);
+            if (types == null) {
+                untyped.add(i);
+            } else {
+                for (String type : types) {
+                    List<Integer> positions = typed.get(type);
+                    if (positions == null) {
+                        positions = new ArrayList<Integer>();
+                        typed.put(type, positions);
+                    }
+                    if (!positions.contains(i)) {
+                        positions.add(i);
+                    }
+                }
+            }
+        }
+        Map<String, int[]> typedNodes = new HashMap<String, int[]>();
+        for (Map.Entry<String, List<Integer>> entry : typed.entrySet()) {
+            typedNodes.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        this.typedNodes = typedNodes;
+        this.untypedNodes = toArray(untyped);
+    }
+
+    /**
+     * Returns the event nodes that could accept an event of the given type, in process
+     * node order.
+     */
+    public List<Node> getCandidates(String type) {
+        int[] typed = type == null ? null : typedNodes.get(type);
+        if (typed == null) {
+            typed = EMPTY;
+        }
+        if (typed.length == 0 && untypedNodes.length == 0) {
+            return Collections.emptyList();
+        }
+        List<Node> result = new ArrayList<Node>(typed.length + untypedNodes.length);
+        // merge both sorted position arrays to keep the original node order
+        int i = 0;
+        int j = 0;
+        while (i < typed.length || j < untypedNodes.length) {
+            if (j == untypedNodes.length || (i < typed.length && typed[i] < untypedNodes[j])) {
+                result.add(nodes[typed[i++]]);
+            } else {
+                result.add(nodes[untypedNodes[j++]]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the only event types the given node can accept or <code>null</code> when
+     * that cannot be determined statically.
+     */
+    private static List<String> getExactTypes(Node node) {
+        if (node instanceof EventNode) {
+            // event node accepts only when all filters accept so a single exact type filter is enough
+            for (EventFilter filter : ((EventNode) node).getEventFilters()) {
+                if (filter.getClass() == EventTypeFilter.class && ((EventTypeFilter) filter).getType() != null) {
+                    return Collections.singletonList(((EventTypeFilter) filter).getType());
+                }
+            }
+            return null;
+        } else if (node instanceof EventSubProcessNode) {
+            // event sub process accepts when any of its filters accepts so all of them must be exact
+            List<EventTypeFilter> filters = ((EventSubProcessNode) node).getEventTypeFilters();
+            List<String> types = new ArrayList<String>(filters.size());
+            for (EventTypeFilter filter : filters) {
+                if (filter.getClass() != EventTypeFilter.class || filter.getType() == null) {
+                    return null;
+                }
+                types.add(filter.getType());
+            }
+            return types;
+        }
+        return null;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        if (list.isEmpty()) {
+            return EMPTY;
+        }
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
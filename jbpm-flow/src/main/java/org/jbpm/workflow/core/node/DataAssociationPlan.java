@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.workflow.core.node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.drools.core.util.MVELSafeHelper;
+import org.jbpm.process.core.impl.DataTransformerRegistry;
+import org.kie.api.runtime.process.DataTransformer;
+import org.mvel2.MVEL;
+import org.mvel2.integration.VariableResolverFactory;
+
+/**
+ * Immutable, pre-resolved form of the data input or output associations of a node, built once per node
+ * so that node instances do not need to classify every association, look up its data transformer and
+ * parse MVEL expressions each time they are triggered or completed.
+ */
+public class DataAssociationPlan {
+
+    public enum Kind {
+        TRANSFORMATION,
+        MAPPING,
+        ASSIGNMENTS
+    }
+
+    private final List<Step> steps;
+
+    private DataAssociationPlan(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    public static DataAssociationPlan compile(List<DataAssociation> associations) {
+        List<Step> steps = new ArrayList<Step>(associations.size());
+        for (DataAssociation association : associations) {
+            steps.add(new Step(association));
+        }
+        return new DataAssociationPlan(steps);
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public int size() {
+        return steps.size();
+    }
+
+    public static final class Step {
+
+        private final DataAssociation association;
+        private final Kind kind;
+        private final String source;
+        private final String target;
+        private final Transformation transformation;
+        private final DataTransformer transformer;
+        private final List<Assignment> assignments;
+
+        private volatile Object compiledSource;
+
+        Step(DataAssociation association) {
+            this.association = association;
+            this.target = association.getTarget();
+            this.source = association.getSources() == null || association.getSources().isEmpty()
+                    ? null : association.getSources().get(0);
+            this.transformation = association.getTransformation();
+            if (transformation != null) {
+                this.kind = Kind.TRANSFORMATION;
+                this.transformer = DataTransformerRegistry.get().find(transformation.getLanguage());
+                this.assignments = Collections.emptyList();
+            } else if (association.getAssignments() == null || association.getAssignments().isEmpty()) {
+                this.kind = Kind.MAPPING;
+                this.transformer = null;
+                this.assignments = Collections.emptyList();
+            } else {
+                this.kind = Kind.ASSIGNMENTS;
+                this.transformer = null;
+                this.assignments = Collections.unmodifiableList(new ArrayList<Assignment>(association.getAssignments()));
+            }
+        }
+
+        public DataAssociation getAssociation() {
+            return association;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the first (and for mappings the only) source of the association.
+         */
+        public String getSource() {
+            return source;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public Transformation getTransformation() {
+            return transformation;
+        }
+
+        /**
+         * Returns the data transformer of the transformation, it is looked up again when it was not
+         * registered yet when the plan was built.
+         */
+        public DataTransformer getTransformer() {
+            if (transformer != null || transformation == null) {
+                return transformer;
+            }
+            return DataTransformerRegistry.get().find(transformation.getLanguage());
+        }
+
+        public List<Assignment> getAssignments() {
+            return assignments;
+        }
+
+        /**
+         * Evaluates the source as MVEL expression, used when it is not a variable name. The expression is
+         * compiled on first use and reused afterwards.
+         */
+        public Object evaluateSource(VariableResolverFactory factory) {
+            Object expression = compiledSource;
+            if (expression == null) {
+                expression = MVEL.compileExpression(source);
+                compiledSource = expression;
+            }
+            return MVELSafeHelper.getEvaluator().executeExpression(expression, null, factory);
+        }
+    }
+}
@@ -46,6 +46,8 @@ public class WorkItemNode extends StateBasedNode implements Mappable, ContextCon
 	private List<DataAssociation> inMapping = new LinkedList<DataAssociation>();
 	private List<DataAssociation> outMapping = new LinkedList<DataAssociation>();
     private boolean waitForCompletion = true;
+    private transient volatile DataAssociationPlan inPlan;
+    private transient volatile DataAssociationPlan outPlan;
     // TODO boolean independent (cancel work item if node gets cancelled?)
 
 	public Work getWork() {
@@ -58,10 +60,12 @@ public class WorkItemNode extends StateBasedNode implements Mappable, ContextCon
 	
 
     public void addInMapping(String parameterName, String variableName) {
+    	inPlan = null;
     	inMapping.add(new DataAssociation(variableName, parameterName, null, null));
     }
 
     public void setInMappings(Map<String, String> inMapping) {
+    	this.inPlan = null;
     	this.inMapping = new LinkedList<DataAssociation>();
     	for(Map.Entry<String, String> entry : inMapping.entrySet()) {
     		addInMapping(entry.getKey(), entry.getValue());
@@ -83,6 +87,7 @@ public class WorkItemNode extends StateBasedNode implements Mappable, ContextCon
     }
 
     public void addInAssociation(DataAssociation dataAssociation) {
+        inPlan = null;
         inMapping.add(dataAssociation);
     }
 
@@ -91,10 +96,12 @@ public class WorkItemNode extends StateBasedNode implements Mappable, ContextCon
     }
     
     public void addOutMapping(String parameterName, String variableName) {
+    	outPlan = null;
     	outMapping.add(new DataAssociation(parameterName, variableName, null, null));
     }
 
     public void setOutMappings(Map<String, String> outMapping) {
+    	this.outPlan = null;
     	this.outMapping = new LinkedList<DataAssociation>();
     	for(Map.Entry<String, String> entry : outMapping.entrySet()) {
     		addOutMapping(entry.getKey(), entry.getValue());
@@ -116,6 +123,7 @@ public class WorkItemNode extends StateBasedNode implements Mappable, ContextCon
     }
     
     public void addOutAssociation(DataAssociation dataAssociation) {
+        outPlan = null;
         outMapping.add(dataAssociation);
     }
 
@@ -123,6 +131,40 @@ public class WorkItemNode extends StateBasedNode implements Mappable, ContextCon
         return Collections.unmodifiableList(outMapping);
     }
 
+    /**
+     * Returns the compiled form of the data input associations, built once and reused by all
+     * node instances until the associations change.
+     */
+    public DataAssociationPlan getInAssociationPlan() {
+        DataAssociationPlan plan = inPlan;
+        if (plan == null) {
+            plan = DataAssociationPlan.compile(inMapping);
+            inPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Returns the compiled form of the data output associations, see {@link #getInAssociationPlan()}.
+     */
+    public DataAssociationPlan getOutAssociationPlan() {
+        DataAssociationPlan plan = outPlan;
+        if (plan == null) {
+            plan = DataAssociationPlan.compile(outMapping);
+            outPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Builds the data association plans up front, to be called once the associations
+     * (and their transformations) are compiled.
+     */
+    public void compileDataAssociations() {
+        this.inPlan = DataAssociationPlan.compile(inMapping);
+        this.outPlan = DataAssociationPlan.compile(outMapping);
+    }
+
     public boolean isWaitForCompletion() {
         return waitForCompletion;
     }
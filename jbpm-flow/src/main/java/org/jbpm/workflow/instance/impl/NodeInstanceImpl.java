@@ -133,6 +133,7 @@ public abstract class NodeInstanceImpl implements org.jbpm.workflow.instance.Nod
     }
     
     public void cancel() {
+        markProcessInstanceDirty();
         nodeInstanceContainer.removeNodeInstance(this);
         boolean hidden = false;
     	if (getNode().getMetaData().get("hidden") != null) {
@@ -162,6 +163,7 @@ public abstract class NodeInstanceImpl implements org.jbpm.workflow.instance.Nod
 	    	    }
 	    	}
     	}
+    	markProcessInstanceDirty();
     	InternalKnowledgeRuntime kruntime = getProcessInstance().getKnowledgeRuntime();
     	if (!hidden) {
     		((InternalProcessRuntime) kruntime.getProcessRuntime())
@@ -183,6 +185,12 @@ public abstract class NodeInstanceImpl implements org.jbpm.workflow.instance.Nod
     }
     
     public abstract void internalTrigger(NodeInstance from, String type);
+    
+    protected void markProcessInstanceDirty() {
+        if (getProcessInstance() instanceof WorkflowProcessInstanceImpl) {
+            ((WorkflowProcessInstanceImpl) getProcessInstance()).markDirty();
+        }
+    }
    
     /**
      * This method is used in both instances of the {@link extendednodeinstanceimpl} 
@@ -208,6 +216,7 @@ public abstract class NodeInstanceImpl implements org.jbpm.workflow.instance.Nod
     }
     
     protected void triggerCompleted(String type, boolean remove) {
+        markProcessInstanceDirty();
         Node node = getNode();
         if (node != null) {
 	    	String uniqueId = (String) node.getMetaData().get("UniqueId");
@@ -18,12 +18,15 @@ package org.jbpm.workflow.instance.impl;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.drools.core.common.InternalKnowledgeRuntime;
@@ -36,6 +39,7 @@ import org.jbpm.process.instance.context.variable.VariableScopeInstance;
 import org.jbpm.process.instance.impl.ProcessInstanceImpl;
 import org.jbpm.workflow.core.DroolsAction;
 import org.jbpm.workflow.core.impl.NodeImpl;
+import org.jbpm.workflow.core.impl.WorkflowProcessImpl;
 import org.jbpm.workflow.core.node.EventNode;
 import org.jbpm.workflow.core.node.EventNodeInterface;
 import org.jbpm.workflow.core.node.EventSubProcessNode;
@@ -78,6 +82,8 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	private int currentLevel;
 	private boolean persisted = false;
 	private Object faultData;
+	private transient boolean dirty = true;
+	private transient Set<String> changedVariables;
 
 	public NodeContainer getNodeContainer() {
 		return getWorkflowProcess();
@@ -86,6 +92,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	public void addNodeInstance(final NodeInstance nodeInstance) {
 		((NodeInstanceImpl) nodeInstance).setId(nodeInstanceCounter++);
 		this.nodeInstances.add(nodeInstance);
+		markDirty();
 	}
 	
     @Override
@@ -113,6 +120,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 					getKnowledgeRuntime().getFactHandle(nodeInstance));
 		}
 		this.nodeInstances.remove(nodeInstance);
+		markDirty();
 	}
 
 	public Collection<org.kie.api.runtime.process.NodeInstance> getNodeInstances() {
@@ -294,6 +302,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	
 	public void setState(final int state, String outcome) {
 	    super.setState(state, outcome);
+	    markDirty();
         // TODO move most of this to ProcessInstanceImpl
         if (state == ProcessInstance.STATE_COMPLETED
                 || state == ProcessInstance.STATE_ABORTED) {
@@ -366,6 +375,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	
 	public void start(String trigger) {
 		synchronized (this) {
+			markDirty();
 			registerExternalEventNodeListeners();
 			// activate timer event sub processes
 	        Node[] nodes = getNodeContainer().getNodes();
@@ -416,6 +426,7 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 			if (getState() != ProcessInstance.STATE_ACTIVE) {
 				return;
 			}
+			markDirty();
 			List<NodeInstance> currentView = new ArrayList<NodeInstance>(this.nodeInstances);
 			
 			try {
@@ -432,7 +443,8 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 						listener.signalEvent(type, event);
 					}
 				}
-				for (Node node : getWorkflowProcess().getNodes()) {
+				Map<Long, List<NodeInstance>> nodeInstancesByNodeId = null;
+				for (Node node : getEventNodeCandidates(type)) {
 			        if (node instanceof EventNodeInterface) {
 			            if (((EventNodeInterface) node).acceptsEvent(type, event)) {
 			                if (node instanceof EventNode && ((EventNode) node).getFrom() == null) {
@@ -442,7 +454,10 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 			                    EventSubProcessNodeInstance eventNodeInstance = (EventSubProcessNodeInstance) getNodeInstance(node);
 			                    eventNodeInstance.signalEvent(type, event);
 			                }  else {
-								List<NodeInstance> nodeInstances = getNodeInstances(node.getId(), currentView);
+			                    if (nodeInstancesByNodeId == null) {
+			                        nodeInstancesByNodeId = indexNodeInstances(currentView);
+			                    }
+								List<NodeInstance> nodeInstances = nodeInstancesByNodeId.get(node.getId());
 			                    if (nodeInstances != null && !nodeInstances.isEmpty()) {
 			                        for (NodeInstance nodeInstance : nodeInstances) {
 										((EventNodeInstanceInterface) nodeInstance).signalEvent(type, event);
@@ -470,6 +485,27 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 		}
 	}
 
+	private Collection<Node> getEventNodeCandidates(String type) {
+		WorkflowProcess process = getWorkflowProcess();
+		if (process instanceof WorkflowProcessImpl) {
+			return ((WorkflowProcessImpl) process).getEventNodeIndex().getCandidates(type);
+		}
+		return Arrays.asList(process.getNodes());
+	}
+	
+	private Map<Long, List<NodeInstance>> indexNodeInstances(List<NodeInstance> currentView) {
+		Map<Long, List<NodeInstance>> result = new HashMap<Long, List<NodeInstance>>();
+		for (NodeInstance nodeInstance : currentView) {
+			List<NodeInstance> nodeInstances = result.get(nodeInstance.getNodeId());
+			if (nodeInstances == null) {
+				nodeInstances = new ArrayList<NodeInstance>();
+				result.put(nodeInstance.getNodeId(), nodeInstances);
+			}
+			nodeInstances.add(nodeInstance);
+		}
+		return result;
+	}
+
 	public void addEventListener(String type, EventListener listener,
 			boolean external) {
 		Map<String, List<EventListener>> eventListeners = 
@@ -614,5 +650,43 @@ public abstract class WorkflowProcessInstanceImpl extends ProcessInstanceImpl
 	public Object getFaultData() {
 		return faultData;
 	}
+	
+	/**
+	 * Records that the state of this process instance changed since it was last 
+	 * persisted. Any signal, node instance change, state change or variable update 
+	 * marks the process instance dirty, changes made directly to (mutable) variable 
+	 * values are not tracked.
+	 */
+	public void markDirty() {
+		this.dirty = true;
+	}
+	
+	public void variableChanged(String name) {
+		markDirty();
+		if (this.changedVariables == null) {
+			this.changedVariables = new HashSet<String>();
+		}
+		this.changedVariables.add(name);
+	}
+	
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	/**
+	 * Returns the names of the variables updated since this process instance 
+	 * was last persisted.
+	 */
+	public Set<String> getChangedVariables() {
+		if (this.changedVariables == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(this.changedVariables);
+	}
+	
+	public void clearDirty() {
+		this.dirty = false;
+		this.changedVariables = null;
+	}
     
 }
@@ -18,7 +18,6 @@ package org.jbpm.workflow.instance.node;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -36,7 +35,6 @@ import org.jbpm.process.core.ContextContainer;
 import org.jbpm.process.core.context.exception.ExceptionScope;
 import org.jbpm.process.core.context.variable.Variable;
 import org.jbpm.process.core.context.variable.VariableScope;
-import org.jbpm.process.core.impl.DataTransformerRegistry;
 import org.jbpm.process.instance.ContextInstance;
 import org.jbpm.process.instance.ContextInstanceContainer;
 import org.jbpm.process.instance.ProcessInstance;
@@ -47,7 +45,7 @@ import org.jbpm.process.instance.impl.ContextInstanceFactory;
 import org.jbpm.process.instance.impl.ContextInstanceFactoryRegistry;
 import org.jbpm.workflow.core.node.Assignment;
 import org.jbpm.workflow.core.node.DataAssociation;
-import org.jbpm.workflow.core.node.Transformation;
+import org.jbpm.workflow.core.node.DataAssociationPlan;
 import org.jbpm.workflow.core.node.WorkItemNode;
 import org.jbpm.workflow.instance.WorkflowRuntimeException;
 import org.jbpm.workflow.instance.impl.NodeInstanceResolverFactory;
@@ -160,38 +158,39 @@ public class WorkItemNodeInstance extends StateBasedNodeInstance implements Even
         ((WorkItem) workItem).setName(work.getName());
         ((WorkItem) workItem).setProcessInstanceId(getProcessInstance().getId());
         ((WorkItem) workItem).setParameters(new HashMap<String, Object>(work.getParameters()));        
-        for (Iterator<DataAssociation> iterator = workItemNode.getInAssociations().iterator(); iterator.hasNext(); ) {
-            DataAssociation association = iterator.next();
-            if (association.getTransformation() != null) {
-            	Transformation transformation = association.getTransformation();
-            	DataTransformer transformer = DataTransformerRegistry.get().find(transformation.getLanguage());
+        for (DataAssociationPlan.Step step : workItemNode.getInAssociationPlan().getSteps()) {
+            switch (step.getKind()) {
+            case TRANSFORMATION:
+            	DataTransformer transformer = step.getTransformer();
             	if (transformer != null) {
-            		Object parameterValue = transformer.transform(transformation.getCompiledExpression(), getSourceParameters(association));
+            		Object parameterValue = transformer.transform(step.getTransformation().getCompiledExpression(), getSourceParameters(step.getAssociation()));
             		if (parameterValue != null) {
-                        ((WorkItem) workItem).setParameter(association.getTarget(), parameterValue);
+                        ((WorkItem) workItem).setParameter(step.getTarget(), parameterValue);
                     }
             	}
-            } else if (association.getAssignments() == null || association.getAssignments().isEmpty()) {
+            	break;
+            case MAPPING:
                 Object parameterValue = null;
                 VariableScopeInstance variableScopeInstance = (VariableScopeInstance)
-                resolveContextInstance(VariableScope.VARIABLE_SCOPE, association.getSources().get(0));
+                resolveContextInstance(VariableScope.VARIABLE_SCOPE, step.getSource());
                 if (variableScopeInstance != null) {
-                    parameterValue = variableScopeInstance.getVariable(association.getSources().get(0));
+                    parameterValue = variableScopeInstance.getVariable(step.getSource());
                 } else {
                     try {
-                        parameterValue = MVELSafeHelper.getEvaluator().eval(association.getSources().get(0), new NodeInstanceResolverFactory(this));
+                        parameterValue = step.evaluateSource(new NodeInstanceResolverFactory(this));
                     } catch (Throwable t) {
-                        logger.error("Could not find variable scope for variable {}", association.getSources().get(0));
+                        logger.error("Could not find variable scope for variable {}", step.getSource());
                         logger.error("when trying to execute Work Item {}", work.getName());
                         logger.error("Continuing without setting parameter.");
                     }
                 }
                 if (parameterValue != null) {
-                    ((WorkItem) workItem).setParameter(association.getTarget(), parameterValue);
+                    ((WorkItem) workItem).setParameter(step.getTarget(), parameterValue);
                 }
-            } else {
-                for(Iterator<Assignment> it = association.getAssignments().iterator(); it.hasNext(); ) {
-                    handleAssignment(it.next());
+                break;
+            default:
+                for (Assignment assignment : step.getAssignments()) {
+                    handleAssignment(assignment);
                 }
             }
         }
@@ -199,6 +198,9 @@ public class WorkItemNodeInstance extends StateBasedNodeInstance implements Even
         for (Map.Entry<String, Object> entry: workItem.getParameters().entrySet()) {
             if (entry.getValue() instanceof String) {
                 String s = (String) entry.getValue();
+                if (s.indexOf("#{") < 0) {
+                    continue;
+                }
                 Map<String, String> replacements = new HashMap<String, String>();
                 Matcher matcher = PARAMETER_MATCHER.matcher(s);
                 while (matcher.find()) {
@@ -247,62 +249,62 @@ public class WorkItemNodeInstance extends StateBasedNodeInstance implements Even
         this.workItem = workItem;
         WorkItemNode workItemNode = getWorkItemNode();
         if (workItemNode != null && workItem.getState() == WorkItem.COMPLETED) {
-            for (Iterator<DataAssociation> iterator = getWorkItemNode().getOutAssociations().iterator(); iterator.hasNext(); ) {
-                DataAssociation association = iterator.next();
-                if (association.getTransformation() != null) {
-                	Transformation transformation = association.getTransformation();
-                	DataTransformer transformer = DataTransformerRegistry.get().find(transformation.getLanguage());
+            for (DataAssociationPlan.Step step : workItemNode.getOutAssociationPlan().getSteps()) {
+                switch (step.getKind()) {
+                case TRANSFORMATION:
+                	DataTransformer transformer = step.getTransformer();
                 	if (transformer != null) {
-                		Object parameterValue = transformer.transform(transformation.getCompiledExpression(), workItem.getResults());
+                		Object parameterValue = transformer.transform(step.getTransformation().getCompiledExpression(), workItem.getResults());
                 		VariableScopeInstance variableScopeInstance = (VariableScopeInstance)
-                        resolveContextInstance(VariableScope.VARIABLE_SCOPE, association.getTarget());
+                        resolveContextInstance(VariableScope.VARIABLE_SCOPE, step.getTarget());
                         if (variableScopeInstance != null && parameterValue != null) {
                               
-                            variableScopeInstance.setVariable(association.getTarget(), parameterValue);
+                            variableScopeInstance.setVariable(step.getTarget(), parameterValue);
                         } else {
-                            logger.warn("Could not find variable scope for variable {}", association.getTarget());
+                            logger.warn("Could not find variable scope for variable {}", step.getTarget());
                             logger.warn("when trying to complete Work Item {}", workItem.getName());
                             logger.warn("Continuing without setting variable.");
                         }
                 		if (parameterValue != null) {
-                            ((WorkItem) workItem).setParameter(association.getTarget(), parameterValue);
+                            ((WorkItem) workItem).setParameter(step.getTarget(), parameterValue);
                         }
                 	}
-                } else if (association.getAssignments() == null || association.getAssignments().isEmpty()) {
+                	break;
+                case MAPPING:
                     VariableScopeInstance variableScopeInstance = (VariableScopeInstance)
-                    resolveContextInstance(VariableScope.VARIABLE_SCOPE, association.getTarget());
+                    resolveContextInstance(VariableScope.VARIABLE_SCOPE, step.getTarget());
                     if (variableScopeInstance != null) {
-                        Object value = workItem.getResult(association.getSources().get(0));
+                        Object value = workItem.getResult(step.getSource());
                         if (value == null) {
                             try {
-                                value = MVELSafeHelper.getEvaluator().eval(association.getSources().get(0), new WorkItemResolverFactory(workItem));
+                                value = step.evaluateSource(new WorkItemResolverFactory(workItem));
                             } catch (Throwable t) {
                                 // do nothing
                             }
                         }
-                        Variable varDef = variableScopeInstance.getVariableScope().findVariable(association.getTarget());
+                        Variable varDef = variableScopeInstance.getVariableScope().findVariable(step.getTarget());
                         DataType dataType = varDef.getType();
                         // exclude java.lang.Object as it is considered unknown type
                         if (!dataType.getStringType().endsWith("java.lang.Object") && 
                                 !dataType.getStringType().endsWith("Object") && value instanceof String) {
                             value = dataType.readValue((String) value);
                         }
-                        variableScopeInstance.setVariable(association.getTarget(), value);
+                        variableScopeInstance.setVariable(step.getTarget(), value);
                     } else {
-                        logger.warn("Could not find variable scope for variable {}", association.getTarget());
+                        logger.warn("Could not find variable scope for variable {}", step.getTarget());
                         logger.warn("when trying to complete Work Item {}", workItem.getName());
                         logger.warn("Continuing without setting variable.");
                     }
-
-                } else  {
+                    break;
+                default:
                     try {
-                        for (Iterator<Assignment> it = association.getAssignments().iterator(); it.hasNext(); ) {
-                            handleAssignment(it.next());
+                        for (Assignment assignment : step.getAssignments()) {
+                            handleAssignment(assignment);
                         }
                     } catch (Exception e) {
                         throw new RuntimeException(e);
                     }
-                }                
+                }
             }
         }
         if (isInversionOfControl()) {
@@ -18,6 +18,7 @@ import org.drools.core.process.core.impl.WorkImpl;
 import org.jbpm.process.core.context.variable.Variable;
 import org.jbpm.process.instance.impl.demo.DoNothingWorkItemHandler;
 import org.jbpm.process.test.Person;
+import org.jbpm.process.test.TestWorkItemHandler;
 import org.jbpm.ruleflow.core.RuleFlowProcess;
 import org.jbpm.test.util.AbstractBaseTest;
 import org.jbpm.workflow.core.Node;
@@ -25,6 +26,7 @@ import org.jbpm.workflow.core.impl.ConnectionImpl;
 import org.jbpm.workflow.core.node.EndNode;
 import org.jbpm.workflow.core.node.StartNode;
 import org.jbpm.workflow.core.node.WorkItemNode;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
 import org.junit.Assert;
 import org.junit.Test;
 import org.kie.api.runtime.KieSession;
@@ -98,6 +100,45 @@ public class WorkItemTest extends AbstractBaseTest {
                              processInstance.getState() );
     }
 
+	@Test
+    public void testDirtyTracking() {
+        String processId = "org.drools.actions";
+        String workName = "Dirty Task";
+        RuleFlowProcess process = getWorkItemProcess( processId,
+                                                      workName );
+        KieSession ksession = createKieSession(process);
+        TestWorkItemHandler handler = new TestWorkItemHandler();
+        ksession.getWorkItemManager().registerWorkItemHandler( workName,
+                                                               handler );
+
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put( "UserName",
+                        "John Doe" );
+        parameters.put( "Person",
+                        new Person( "John Doe" ) );
+        WorkflowProcessInstanceImpl processInstance = (WorkflowProcessInstanceImpl)
+            ksession.startProcess( processId, parameters );
+        Assert.assertTrue( processInstance.isDirty() );
+
+        processInstance.clearDirty();
+        Assert.assertFalse( processInstance.isDirty() );
+        Assert.assertTrue( processInstance.getChangedVariables().isEmpty() );
+
+        processInstance.setVariable( "UserName", "John Doe" );
+        Assert.assertFalse( processInstance.isDirty() );
+        processInstance.setVariable( "UserName", "Jane Doe" );
+        Assert.assertTrue( processInstance.isDirty() );
+        Assert.assertEquals( 1, processInstance.getChangedVariables().size() );
+        Assert.assertTrue( processInstance.getChangedVariables().contains( "UserName" ) );
+
+        processInstance.clearDirty();
+        ksession.getWorkItemManager().completeWorkItem( handler.getWorkItems().getFirst().getId(),
+                                                        null );
+        Assert.assertTrue( processInstance.isDirty() );
+        Assert.assertEquals( ProcessInstance.STATE_COMPLETED,
+                             processInstance.getState() );
+    }
+
     private RuleFlowProcess getWorkItemProcess(String processId,
                                                String workName) {
         RuleFlowProcess process = new RuleFlowProcess();
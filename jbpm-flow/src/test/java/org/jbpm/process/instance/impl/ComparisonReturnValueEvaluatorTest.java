@@ -0,0 +1,93 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.instance.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jbpm.test.util.AbstractBaseTest;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+public class ComparisonReturnValueEvaluatorTest extends AbstractBaseTest {
+
+    private static final List<String> VARIABLES = Arrays.asList("amount", "approved", "status");
+
+    public void addLogger() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void testSupportedExpressions() {
+        assertNotNull(ComparisonReturnValueEvaluator.parse("amount > 1000", VARIABLES));
+        assertNotNull(ComparisonReturnValueEvaluator.parse("return amount >= 10.5;", VARIABLES));
+        assertNotNull(ComparisonReturnValueEvaluator.parse("1000 < amount", VARIABLES));
+        assertNotNull(ComparisonReturnValueEvaluator.parse("status == \"open\"", VARIABLES));
+        assertNotNull(ComparisonReturnValueEvaluator.parse("status != null", VARIABLES));
+        assertNotNull(ComparisonReturnValueEvaluator.parse("return approved;", VARIABLES));
+        assertNotNull(ComparisonReturnValueEvaluator.parse("!approved", VARIABLES));
+
+        assertNull(ComparisonReturnValueEvaluator.parse("unknown > 1000", VARIABLES));
+        assertNull(ComparisonReturnValueEvaluator.parse("amount > 1000 && approved", VARIABLES));
+        assertNull(ComparisonReturnValueEvaluator.parse("amount.intValue() > 1000", VARIABLES));
+        assertNull(ComparisonReturnValueEvaluator.parse("amount > null", VARIABLES));
+    }
+
+    @Test
+    public void testNumericComparison() {
+        ComparisonReturnValueEvaluator evaluator = ComparisonReturnValueEvaluator.parse("amount > 1000", VARIABLES);
+        assertEquals(Boolean.TRUE, evaluator.compare(1001));
+        assertEquals(Boolean.FALSE, evaluator.compare(1000L));
+        assertEquals(Boolean.TRUE, evaluator.compare(1000.5d));
+        // left to MVEL
+        assertNull(evaluator.compare(new BigDecimal("1001")));
+        assertNull(evaluator.compare("1001"));
+        assertNull(evaluator.compare(null));
+
+        evaluator = ComparisonReturnValueEvaluator.parse("1000 <= amount", VARIABLES);
+        assertEquals(Boolean.TRUE, evaluator.compare(1000));
+        assertEquals(Boolean.FALSE, evaluator.compare(999));
+
+        evaluator = ComparisonReturnValueEvaluator.parse("amount == 10.0", VARIABLES);
+        assertEquals(Boolean.TRUE, evaluator.compare(10));
+    }
+
+    @Test
+    public void testEqualityComparison() {
+        ComparisonReturnValueEvaluator evaluator = ComparisonReturnValueEvaluator.parse("status == 'open'", VARIABLES);
+        assertEquals(Boolean.TRUE, evaluator.compare("open"));
+        assertEquals(Boolean.FALSE, evaluator.compare("closed"));
+        assertNull(evaluator.compare(1));
+
+        evaluator = ComparisonReturnValueEvaluator.parse("status != null", VARIABLES);
+        assertEquals(Boolean.TRUE, evaluator.compare("open"));
+        assertEquals(Boolean.FALSE, evaluator.compare(null));
+
+        evaluator = ComparisonReturnValueEvaluator.parse("approved == true", VARIABLES);
+        assertEquals(Boolean.TRUE, evaluator.compare(Boolean.TRUE));
+        assertEquals(Boolean.FALSE, evaluator.compare(Boolean.FALSE));
+
+        evaluator = ComparisonReturnValueEvaluator.parse("!approved", VARIABLES);
+        assertEquals(Boolean.FALSE, evaluator.compare(Boolean.TRUE));
+        assertNull(evaluator.compare("true"));
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.instance.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.core.definitions.impl.KnowledgePackageImpl;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.junit.Test;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.definition.KnowledgePackage;
+import org.slf4j.LoggerFactory;
+
+public class MVELFunctionFactoryCacheTest extends AbstractBaseTest {
+
+    public void addLogger() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void testBindingIsInvalidatedWhenKieBaseChanges() {
+        KnowledgeBase kbase = KnowledgeBaseFactory.newKnowledgeBase();
+        KnowledgeBase otherKbase = KnowledgeBaseFactory.newKnowledgeBase();
+
+        MVELFunctionFactoryCache.Binding binding = MVELFunctionFactoryCache.bind(kbase, "mvel");
+        assertTrue(binding.isValidFor(kbase));
+        assertFalse(binding.isValidFor(otherKbase));
+
+        List<KnowledgePackage> pkgs = new ArrayList<KnowledgePackage>();
+        pkgs.add(new KnowledgePackageImpl("org.jbpm.test"));
+        kbase.addKnowledgePackages(pkgs);
+        assertFalse(binding.isValidFor(kbase));
+
+        binding = MVELFunctionFactoryCache.bind(kbase, "mvel");
+        assertTrue(binding.isValidFor(kbase));
+    }
+}
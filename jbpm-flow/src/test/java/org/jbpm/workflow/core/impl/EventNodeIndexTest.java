@@ -0,0 +1,78 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.workflow.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jbpm.process.core.event.BroadcastEventTypeFilter;
+import org.jbpm.process.core.event.EventTypeFilter;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.jbpm.workflow.core.node.ActionNode;
+import org.jbpm.workflow.core.node.EventNode;
+import org.jbpm.workflow.core.node.EventSubProcessNode;
+import org.junit.Test;
+import org.kie.api.definition.process.Node;
+import org.slf4j.LoggerFactory;
+
+public class EventNodeIndexTest extends AbstractBaseTest {
+
+    public void addLogger() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void testCandidatesByType() {
+        EventNode signalA = createEventNode(1, new EventTypeFilter(), "A");
+        EventNode signalB = createEventNode(2, new EventTypeFilter(), "B");
+        EventNode broadcast = createEventNode(3, new BroadcastEventTypeFilter(), "Escalation");
+        ActionNode action = new ActionNode();
+        action.setId(4);
+        EventSubProcessNode subProcess = new EventSubProcessNode();
+        subProcess.setId(5);
+        EventTypeFilter subProcessFilter = new EventTypeFilter();
+        subProcessFilter.setType("A");
+        subProcess.addEvent(subProcessFilter);
+
+        EventNodeIndex index = new EventNodeIndex(new Node[] { signalA, signalB, broadcast, action, subProcess });
+
+        assertEquals(Arrays.asList(signalA, broadcast, subProcess), index.getCandidates("A"));
+        assertEquals(Arrays.asList(signalB, broadcast), index.getCandidates("B"));
+        assertEquals(Arrays.<Node>asList(broadcast), index.getCandidates("Escalation-code"));
+        assertEquals(Arrays.<Node>asList(broadcast), index.getCandidates(null));
+    }
+
+    @Test
+    public void testNoEventNodes() {
+        ActionNode action = new ActionNode();
+        action.setId(1);
+
+        List<Node> candidates = new EventNodeIndex(new Node[] { action }).getCandidates("A");
+        assertTrue(candidates.isEmpty());
+    }
+
+    private EventNode createEventNode(long id, EventTypeFilter filter, String type) {
+        EventNode node = new EventNode();
+        node.setId(id);
+        filter.setType(type);
+        node.addEventFilter(filter);
+        return node;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.workflow.core.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jbpm.test.util.AbstractBaseTest;
+import org.junit.Test;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.slf4j.LoggerFactory;
+
+public class DataAssociationPlanTest extends AbstractBaseTest {
+
+    public void addLogger() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void testPlanIsBuiltOnceAndResetOnChange() {
+        WorkItemNode node = new WorkItemNode();
+        node.addInMapping("Comment", "comment");
+        node.addOutMapping("Result", "result");
+
+        DataAssociationPlan inPlan = node.getInAssociationPlan();
+        assertSame(inPlan, node.getInAssociationPlan());
+        assertEquals(1, inPlan.size());
+        DataAssociationPlan.Step step = inPlan.getSteps().get(0);
+        assertEquals(DataAssociationPlan.Kind.MAPPING, step.getKind());
+        assertEquals("comment", step.getSource());
+        assertEquals("Comment", step.getTarget());
+
+        node.addInMapping("Attachment", "attachment");
+        assertNotSame(inPlan, node.getInAssociationPlan());
+        assertEquals(2, node.getInAssociationPlan().size());
+
+        DataAssociationPlan outPlan = node.getOutAssociationPlan();
+        assertEquals("Result", outPlan.getSteps().get(0).getSource());
+        assertEquals("result", outPlan.getSteps().get(0).getTarget());
+    }
+
+    @Test
+    public void testAssignmentsStep() {
+        List<Assignment> assignments = new ArrayList<Assignment>();
+        assignments.add(new Assignment("XPath", "from", "to"));
+        WorkItemNode node = new WorkItemNode();
+        node.addInAssociation(new DataAssociation("source", "target", assignments, null));
+
+        DataAssociationPlan.Step step = node.getInAssociationPlan().getSteps().get(0);
+        assertEquals(DataAssociationPlan.Kind.ASSIGNMENTS, step.getKind());
+        assertEquals(1, step.getAssignments().size());
+    }
+
+    @Test
+    public void testEvaluateSourceExpression() {
+        WorkItemNode node = new WorkItemNode();
+        node.addOutMapping("Result.length()", "length");
+        DataAssociationPlan.Step step = node.getOutAssociationPlan().getSteps().get(0);
+
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("Result", "abc");
+        assertEquals(3, step.evaluateSource(new MapVariableResolverFactory(variables)));
+        variables.put("Result", "abcde");
+        assertEquals(5, step.evaluateSource(new MapVariableResolverFactory(variables)));
+    }
+}
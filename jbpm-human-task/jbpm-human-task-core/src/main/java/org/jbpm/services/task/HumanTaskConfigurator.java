@@ -27,6 +27,7 @@ import org.drools.core.command.Interceptor;
 import org.drools.core.impl.EnvironmentFactory;
 import org.jbpm.services.task.commands.TaskCommandExecutorImpl;
 import org.jbpm.services.task.events.TaskEventSupport;
+import org.jbpm.services.task.identity.CachingUserGroupCallback;
 import org.jbpm.services.task.identity.DefaultUserInfo;
 import org.jbpm.services.task.identity.MvelUserGroupCallbackImpl;
 import org.jbpm.services.task.impl.TaskDeadlinesServiceImpl;
@@ -133,6 +134,7 @@ public class HumanTaskConfigurator {
         	if (userGroupCallback == null) {
         		userGroupCallback = new MvelUserGroupCallbackImpl(true);
         	}
+        	userGroupCallback = CachingUserGroupCallback.wrapIfEnabled(userGroupCallback);
         	environment.set(EnvironmentName.TASK_USER_GROUP_CALLBACK, userGroupCallback);
         	if (userInfo == null) {
         		userInfo = new DefaultUserInfo(true);
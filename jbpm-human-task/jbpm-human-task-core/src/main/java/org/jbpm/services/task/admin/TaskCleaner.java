@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.services.task.admin;
+
+import org.jbpm.services.task.commands.ArchiveTasksChunkCommand;
+import org.jbpm.services.task.commands.RemoveTasksChunkCommand;
+import org.kie.api.task.TaskService;
+import org.kie.internal.task.api.InternalTaskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Archives and removes tasks selected by {@link TaskCleanupCriteria} in bulk, as opposed to
+ * <code>TaskAdminService.archiveTasks/removeTasks</code> that load and modify every given task on its own.
+ * <br/>
+ * Tasks are processed in chunks ordered by task id, every chunk is executed as separate command of the task
+ * service (and so in its own transaction unless there is one active already) with set based updates and
+ * deletes, see <code>TaskAdminServiceImpl</code>. Tasks must be archived before they can be removed.
+ * Progress is reported to optional {@link TaskCleanupListener} after every chunk.
+ */
+public class TaskCleaner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskCleaner.class);
+
+    private final InternalTaskService taskService;
+    private TaskCleanupListener listener;
+
+    public TaskCleaner(TaskService taskService) {
+        this.taskService = (InternalTaskService) taskService;
+    }
+
+    public void setListener(TaskCleanupListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Archives all not yet archived tasks that match given criteria.
+     * @return number of archived tasks and chunks
+     */
+    public TaskCleanupResult archiveTasks(TaskCleanupCriteria criteria) {
+        return process(criteria, false);
+    }
+
+    /**
+     * Removes all archived tasks that match given criteria together with their data.
+     * @return number of removed tasks, contents, attachments, comments and audit records
+     */
+    public TaskCleanupResult removeTasks(TaskCleanupCriteria criteria) {
+        return process(criteria, true);
+    }
+
+    /**
+     * Archives and removes all tasks that match given criteria.
+     * @return number of removed tasks, contents, attachments, comments and audit records
+     */
+    public TaskCleanupResult purgeTasks(TaskCleanupCriteria criteria) {
+        archiveTasks(criteria);
+        return removeTasks(criteria);
+    }
+
+    private TaskCleanupResult process(TaskCleanupCriteria criteria, boolean remove) {
+        long start = System.currentTimeMillis();
+        TaskCleanupResult result = new TaskCleanupResult();
+        TaskCleanupResult chunk;
+        do {
+            if (remove) {
+                chunk = taskService.execute(new RemoveTasksChunkCommand(criteria, result.getLastTaskId()));
+            } else {
+                chunk = taskService.execute(new ArchiveTasksChunkCommand(criteria, result.getLastTaskId()));
+            }
+            if (chunk.getChunks() > 0) {
+                result.add(chunk);
+                result.setDuration(System.currentTimeMillis() - start);
+                if (listener != null) {
+                    listener.chunkCompleted(result);
+                }
+            }
+        } while (chunk.getChunks() > 0);
+        result.setDuration(System.currentTimeMillis() - start);
+        logger.info("Tasks matching {} " + (remove ? "removed" : "archived") + ": {}", criteria, result);
+        return result;
+    }
+}
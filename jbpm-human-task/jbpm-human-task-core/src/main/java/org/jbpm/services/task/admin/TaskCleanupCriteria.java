@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.services.task.admin;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.kie.api.task.model.Status;
+
+/**
+ * Selects tasks that are archived or removed in bulk by {@link TaskCleaner}. All given criteria must match,
+ * tasks are processed in chunks of given size ordered by their id.
+ * <br/>
+ * Unless statuses are given only tasks that reached a final state (Completed, Exited, Failed, Error and Obsolete)
+ * are selected, so that active tasks are never archived or removed by accident.
+ * <br/>
+ * Default chunk size is given by <code>org.jbpm.task.cleanup.chunk.size</code> system property (500 by
+ * default), it cannot be bigger than 1000 as task ids of a chunk are used in the statements of the chunk.
+ */
+@XmlRootElement(name="task-cleanup-criteria")
+@XmlAccessorType(XmlAccessType.NONE)
+public class TaskCleanupCriteria implements Serializable {
+
+    private static final long serialVersionUID = 6338571293488411762L;
+
+    public static final int DEFAULT_CHUNK_SIZE = Integer.parseInt(System.getProperty("org.jbpm.task.cleanup.chunk.size", "500"));
+    private static final int MAX_CHUNK_SIZE = 1000;
+
+    public static final List<Status> DEFAULT_STATUSES = Collections.unmodifiableList(Arrays.asList(
+            Status.Completed, Status.Exited, Status.Failed, Status.Error, Status.Obsolete));
+
+    @XmlElement
+    private List<Status> statuses = new ArrayList<Status>();
+
+    @XmlElement
+    private String deploymentId;
+
+    @XmlElement
+    private Long processInstanceId;
+
+    @XmlElement
+    private Date createdBefore;
+
+    @XmlElement
+    private boolean removeAuditData = false;
+
+    @XmlElement
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public TaskCleanupCriteria() {
+    }
+
+    /**
+     * Selects tasks with any of given statuses instead of the final ones.
+     */
+    public TaskCleanupCriteria status(Status... status) {
+        this.statuses.addAll(Arrays.asList(status));
+        return this;
+    }
+
+    public TaskCleanupCriteria deploymentId(String deploymentId) {
+        this.deploymentId = deploymentId;
+        return this;
+    }
+
+    public TaskCleanupCriteria processInstanceId(long processInstanceId) {
+        this.processInstanceId = processInstanceId;
+        return this;
+    }
+
+    /**
+     * Selects tasks created before given date - tasks do not keep the date they were completed at.
+     */
+    public TaskCleanupCriteria createdBefore(Date createdBefore) {
+        this.createdBefore = createdBefore;
+        return this;
+    }
+
+    /**
+     * Removes also audit data of removed tasks (task events, audit tasks and BAM task summaries), should be
+     * used only when task audit is used as its tables must exist.
+     */
+    public TaskCleanupCriteria removeAuditData(boolean removeAuditData) {
+        this.removeAuditData = removeAuditData;
+        return this;
+    }
+
+    public TaskCleanupCriteria chunkSize(int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * @return given statuses, or {@link #DEFAULT_STATUSES} if none were given
+     */
+    public List<Status> getStatuses() {
+        if (statuses == null || statuses.isEmpty()) {
+            return DEFAULT_STATUSES;
+        }
+        return statuses;
+    }
+
+    public String getDeploymentId() {
+        return deploymentId;
+    }
+
+    public Long getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public Date getCreatedBefore() {
+        return createdBefore;
+    }
+
+    public boolean isRemoveAuditData() {
+        return removeAuditData;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Appends the criteria to the where clause of a query selecting tasks as <code>t</code>.
+     */
+    public void appendTo(StringBuilder query, Map<String, Object> params) {
+        query.append(" and t.taskData.status in (:statuses)");
+        params.put("statuses", getStatuses());
+        if (deploymentId != null) {
+            query.append(" and t.taskData.deploymentId = :deploymentId");
+            params.put("deploymentId", deploymentId);
+        }
+        if (processInstanceId != null) {
+            query.append(" and t.taskData.processInstanceId = :processInstanceId");
+            params.put("processInstanceId", processInstanceId);
+        }
+        if (createdBefore != null) {
+            query.append(" and t.taskData.createdOn < :createdBefore");
+            params.put("createdBefore", createdBefore);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TaskCleanupCriteria [statuses=" + getStatuses() + ", deploymentId=" + deploymentId + ", processInstanceId="
+                + processInstanceId + ", createdBefore=" + createdBefore + ", chunkSize=" + chunkSize + "]";
+    }
+}
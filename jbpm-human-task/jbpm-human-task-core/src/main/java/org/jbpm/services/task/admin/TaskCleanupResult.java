@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.services.task.admin;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Result (or progress while it is running) of bulk archiving or removal of tasks, also used as result of
+ * a single chunk.
+ */
+@XmlRootElement(name="task-cleanup-result")
+@XmlAccessorType(XmlAccessType.NONE)
+public class TaskCleanupResult implements Serializable {
+
+    private static final long serialVersionUID = -2270347615349981409L;
+
+    @XmlElement
+    private int tasks;
+
+    @XmlElement
+    private int contents;
+
+    @XmlElement
+    private int attachments;
+
+    @XmlElement
+    private int comments;
+
+    @XmlElement
+    private int auditRecords;
+
+    @XmlElement
+    private int chunks;
+
+    @XmlElement
+    private long lastTaskId = -1;
+
+    @XmlElement
+    private long duration;
+
+    public TaskCleanupResult() {
+    }
+
+    /**
+     * Adds result of a chunk to this result.
+     */
+    public void add(TaskCleanupResult chunk) {
+        this.tasks += chunk.tasks;
+        this.contents += chunk.contents;
+        this.attachments += chunk.attachments;
+        this.comments += chunk.comments;
+        this.auditRecords += chunk.auditRecords;
+        this.chunks += chunk.chunks;
+        if (chunk.lastTaskId > 0) {
+            this.lastTaskId = chunk.lastTaskId;
+        }
+    }
+
+    /**
+     * @return number of archived or removed tasks
+     */
+    public int getTasks() {
+        return tasks;
+    }
+
+    public void addTasks(int tasks) {
+        this.tasks += tasks;
+    }
+
+    public int getContents() {
+        return contents;
+    }
+
+    public void addContents(int contents) {
+        this.contents += contents;
+    }
+
+    public int getAttachments() {
+        return attachments;
+    }
+
+    public void addAttachments(int attachments) {
+        this.attachments += attachments;
+    }
+
+    public int getComments() {
+        return comments;
+    }
+
+    public void addComments(int comments) {
+        this.comments += comments;
+    }
+
+    /**
+     * @return number of removed task events, audit tasks and BAM task summaries
+     */
+    public int getAuditRecords() {
+        return auditRecords;
+    }
+
+    public void addAuditRecords(int auditRecords) {
+        this.auditRecords += auditRecords;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return id of the last processed task, -1 if there was nothing to process
+     */
+    public long getLastTaskId() {
+        return lastTaskId;
+    }
+
+    public void chunkProcessed(long lastTaskId) {
+        this.chunks++;
+        this.lastTaskId = lastTaskId;
+    }
+
+    /**
+     * @return duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskCleanupResult [tasks=" + tasks + ", contents=" + contents + ", attachments=" + attachments
+                + ", comments=" + comments + ", auditRecords=" + auditRecords + ", chunks=" + chunks
+                + ", duration=" + duration + " ms]";
+    }
+}
@@ -27,6 +27,7 @@ public class CompositeCommand<T> extends TaskCommand<T> {
 	            @XmlElement(name="add-user", type=AddUserCommand.class),
 	            @XmlElement(name="add-users-groups", type=AddUsersGroupsCommand.class),
 	            @XmlElement(name="archive-tasks", type=ArchiveTasksCommand.class),
+	            @XmlElement(name="archive-tasks-chunk", type=ArchiveTasksChunkCommand.class),
 	            @XmlElement(name="cancel-deadline", type=CancelDeadlineCommand.class),
 	            @XmlElement(name="claim-next-available-task", type=ClaimNextAvailableTaskCommand.class),
 	            @XmlElement(name="claim-task", type=ClaimTaskCommand.class),
@@ -93,6 +94,7 @@ public class CompositeCommand<T> extends TaskCommand<T> {
 	            @XmlElement(name="remove-group", type=RemoveGroupCommand.class),
 	            @XmlElement(name="remove-task", type=RemoveTaskCommand.class),
 	            @XmlElement(name="remove-tasks", type=RemoveTasksCommand.class),
+	            @XmlElement(name="remove-tasks-chunk", type=RemoveTasksChunkCommand.class),
 	            @XmlElement(name="remove-user", type=RemoveUserCommand.class),
 	            @XmlElement(name="resume-task", type=ResumeTaskCommand.class),
 	            @XmlElement(name="set-task-property", type=SetTaskPropertyCommand.class),
@@ -0,0 +1,58 @@
+package org.jbpm.services.task.commands;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.jbpm.services.task.admin.TaskCleanupCriteria;
+import org.jbpm.services.task.admin.TaskCleanupResult;
+import org.jbpm.services.task.impl.TaskAdminServiceImpl;
+import org.kie.internal.command.Context;
+
+/**
+ * Removes the next chunk of archived tasks matching given criteria that follow given task id.
+ * Executed for every chunk by <code>TaskCleaner</code> so that every chunk has its own transaction.
+ */
+@XmlRootElement(name="remove-tasks-chunk-command")
+@XmlAccessorType(XmlAccessType.NONE)
+public class RemoveTasksChunkCommand extends TaskCommand<TaskCleanupResult> {
+
+	private static final long serialVersionUID = 7319047829101472465L;
+
+	@XmlElement
+	private TaskCleanupCriteria criteria;
+
+	@XmlElement
+	private long afterTaskId = -1;
+
+	public RemoveTasksChunkCommand() {
+	}
+
+	public RemoveTasksChunkCommand(TaskCleanupCriteria criteria, long afterTaskId) {
+		this.criteria = criteria;
+		this.afterTaskId = afterTaskId;
+	}
+
+	public TaskCleanupCriteria getCriteria() {
+		return criteria;
+	}
+
+	public void setCriteria(TaskCleanupCriteria criteria) {
+		this.criteria = criteria;
+	}
+
+	public long getAfterTaskId() {
+		return afterTaskId;
+	}
+
+	public void setAfterTaskId(long afterTaskId) {
+		this.afterTaskId = afterTaskId;
+	}
+
+	public TaskCleanupResult execute(Context cntxt) {
+        TaskContext context = (TaskContext) cntxt;
+        return ((TaskAdminServiceImpl) context.getTaskAdminService()).removeTasks(criteria, afterTaskId);
+    }
+
+}
@@ -101,7 +101,7 @@ public class TaskContext implements org.kie.internal.task.api.TaskContext {
     }
     
     public TaskAdminService getTaskAdminService() {
-    	return new TaskAdminServiceImpl(persistenceContext);
+    	return new TaskAdminServiceImpl(persistenceContext, environment);
     }
     
     public TaskDeadlinesService getTaskDeadlinesService() {
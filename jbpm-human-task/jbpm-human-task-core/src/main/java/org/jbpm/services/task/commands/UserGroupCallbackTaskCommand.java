@@ -16,6 +16,8 @@ import javax.xml.bind.annotation.XmlTransient;
 
 import org.drools.core.util.StringUtils;
 import org.jbpm.services.task.exception.CannotAddTaskException;
+import org.jbpm.services.task.identity.CachingUserGroupCallback;
+import org.kie.api.task.UserGroupCallback;
 import org.kie.api.task.model.Attachment;
 import org.kie.api.task.model.Comment;
 import org.kie.api.task.model.Group;
@@ -97,6 +99,10 @@ public class UserGroupCallbackTaskCommand<T> extends TaskCommand<T> {
     }
 
     protected void addUserFromCallbackOperation(String userId, TaskContext context) {
+        CachingUserGroupCallback cachingCallback = getCachingCallback(context);
+        if (cachingCallback != null && cachingCallback.isStored(userId, false)) {
+            return;
+        }
     	User user = context.getPersistenceContext().findUser(userId);
         boolean userExists = user != null;
         if (!StringUtils.isEmpty(userId) && !userExists) {
@@ -104,7 +110,9 @@ public class UserGroupCallbackTaskCommand<T> extends TaskCommand<T> {
             ((InternalOrganizationalEntity) user).setId(userId);
             
             persistIfNotExists(user, context);
-        } 
+        } else if (userExists && cachingCallback != null) {
+            cachingCallback.stored(userId, false);
+        }
     }
     
     protected void persistIfNotExists(final OrganizationalEntity entity, TaskContext context) {
@@ -152,13 +160,27 @@ public class UserGroupCallbackTaskCommand<T> extends TaskCommand<T> {
     }
 
     protected void addGroupFromCallbackOperation(String groupId, TaskContext context) {
+        CachingUserGroupCallback cachingCallback = getCachingCallback(context);
+        if (cachingCallback != null && cachingCallback.isStored(groupId, true)) {
+            return;
+        }
     	Group group = context.getPersistenceContext().findGroup(groupId);
     	boolean groupExists = group != null;
         if (!StringUtils.isEmpty(groupId) && !groupExists) {
         	group = TaskModelProvider.getFactory().newGroup();
             ((InternalOrganizationalEntity) group).setId(groupId);
             persistIfNotExists(group, context);
-        }    
+        } else if (groupExists && cachingCallback != null) {
+            cachingCallback.stored(groupId, true);
+        }
+    }
+
+    protected CachingUserGroupCallback getCachingCallback(TaskContext context) {
+        UserGroupCallback callback = context.getUserGroupCallback();
+        if (callback instanceof CachingUserGroupCallback) {
+            return (CachingUserGroupCallback) callback;
+        }
+        return null;
     }
 
     protected void doCallbackOperationForTaskData(InternalTaskData data, TaskContext context) {
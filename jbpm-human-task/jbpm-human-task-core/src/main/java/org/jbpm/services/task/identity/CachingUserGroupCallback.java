@@ -0,0 +1,250 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.jbpm.services.task.identity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kie.api.task.UserGroupCallback;
+
+/**
+ * <code>UserGroupCallback</code> decorator that caches answers of the underlying callback (e.g. LDAP or data base
+ * based one) so that task operations and queries do not hit the identity store every time.
+ * <br/>
+ * Cached are existence of users and groups and groups of users, both positive and negative answers, each for
+ * its own time to live. Cache is bounded, least recently used entries are dropped when it is full. Additionally
+ * it keeps track of users and groups known to be stored as organizational entities in the task data base so
+ * that they do not need to be looked up again - entities are recorded when they are found, not when they are
+ * persisted.
+ * <br/>
+ * Can be enabled for task services built by <code>HumanTaskConfigurator</code> with following system properties:
+ * <ul>
+ *  <li>org.jbpm.ht.callback.cache.size - maximum number of cached entries, cache is disabled when 0 (default)</li>
+ *  <li>org.jbpm.ht.callback.cache.ttl - time to live of cached answers in milliseconds, 60000 by default</li>
+ *  <li>org.jbpm.ht.callback.cache.negative.ttl - time to live of negative answers (unknown user or group)
+ *  in milliseconds, same as ttl by default</li>
+ * </ul>
+ */
+public class CachingUserGroupCallback implements UserGroupCallback {
+
+    public static final int CACHE_SIZE = Integer.parseInt(System.getProperty("org.jbpm.ht.callback.cache.size", "0"));
+    public static final long CACHE_TTL = Long.parseLong(System.getProperty("org.jbpm.ht.callback.cache.ttl", "60000"));
+    public static final long CACHE_NEGATIVE_TTL = Long.parseLong(System.getProperty("org.jbpm.ht.callback.cache.negative.ttl",
+            String.valueOf(CACHE_TTL)));
+
+    private static final String USER = "u:";
+    private static final String GROUP = "g:";
+    private static final String GROUPS_OF_USER = "m:";
+    private static final String STORED_USER = "su:";
+    private static final String STORED_GROUP = "sg:";
+
+    private final UserGroupCallback delegate;
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, Entry> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public CachingUserGroupCallback(UserGroupCallback delegate) {
+        this(delegate, Math.max(CACHE_SIZE, 1), CACHE_TTL, CACHE_NEGATIVE_TTL);
+    }
+
+    public CachingUserGroupCallback(UserGroupCallback delegate, final int maxSize, long ttl, long negativeTtl) {
+        this.delegate = delegate;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Wraps given callback with the cache if it is enabled by system properties.
+     */
+    public static UserGroupCallback wrapIfEnabled(UserGroupCallback callback) {
+        if (callback == null || CACHE_SIZE <= 0 || callback instanceof CachingUserGroupCallback) {
+            return callback;
+        }
+        return new CachingUserGroupCallback(callback);
+    }
+
+    @Override
+    public boolean existsUser(String userId) {
+        Entry entry = lookup(USER + userId);
+        if (entry != null) {
+            return (Boolean) entry.value;
+        }
+        boolean exists = delegate.existsUser(userId);
+        store(USER + userId, exists, exists);
+        return exists;
+    }
+
+    @Override
+    public boolean existsGroup(String groupId) {
+        Entry entry = lookup(GROUP + groupId);
+        if (entry != null) {
+            return (Boolean) entry.value;
+        }
+        boolean exists = delegate.existsGroup(groupId);
+        store(GROUP + groupId, exists, exists);
+        return exists;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<String> getGroupsForUser(String userId, List<String> groupIds, List<String> allExistingGroupIds) {
+        if (allExistingGroupIds != null) {
+            return delegate.getGroupsForUser(userId, groupIds, allExistingGroupIds);
+        }
+        String key = GROUPS_OF_USER + userId + (groupIds == null ? "" : groupIds.toString());
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return entry.value == null ? null : new ArrayList<String>((List<String>) entry.value);
+        }
+        // callers (and callbacks) may modify given lists
+        List<String> groups = delegate.getGroupsForUser(userId, groupIds == null ? null : new ArrayList<String>(groupIds), null);
+        if (groups == null) {
+            store(key, null, false);
+            return null;
+        }
+        store(key, Collections.unmodifiableList(new ArrayList<String>(groups)), !groups.isEmpty());
+        return groups;
+    }
+
+    /**
+     * @return true if given user or group was found in the task data base recently
+     */
+    public boolean isStored(String entityId, boolean group) {
+        Entry entry = lookup((group ? STORED_GROUP : STORED_USER) + entityId);
+        return entry != null;
+    }
+
+    /**
+     * Records that given user or group was found in the task data base, must be called only for entities
+     * that are committed.
+     */
+    public void stored(String entityId, boolean group) {
+        store((group ? STORED_GROUP : STORED_USER) + entityId, Boolean.TRUE, true);
+    }
+
+    /**
+     * Removes all cached answers about given user or group.
+     */
+    public void invalidate(String entityId) {
+        synchronized (cache) {
+            cache.remove(USER + entityId);
+            cache.remove(GROUP + entityId);
+            cache.remove(STORED_USER + entityId);
+            cache.remove(STORED_GROUP + entityId);
+            cache.keySet().remove(GROUPS_OF_USER + entityId);
+            String prefix = GROUPS_OF_USER + entityId + "[";
+            for (Iterator<String> it = cache.keySet().iterator(); it.hasNext();) {
+                if (it.next().startsWith(prefix)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public UserGroupCallback getDelegate() {
+        return delegate;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Returns ratio of lookups answered from the cache, 0 when there were no lookups yet.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Entry lookup(String key) {
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            synchronized (cache) {
+                if (cache.get(key) == entry) {
+                    cache.remove(key);
+                }
+            }
+            expirations.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private void store(String key, Object value, boolean positive) {
+        long timeToLive = positive ? ttl : negativeTtl;
+        if (timeToLive <= 0) {
+            return;
+        }
+        cache.put(key, new Entry(value, System.currentTimeMillis() + timeToLive));
+    }
+
+    public String toString() {
+        return "CachingUserGroupCallback [delegate=" + delegate + ", size=" + cache.size() + ", hits=" + hits.get()
+                + ", misses=" + misses.get() + ", expirations=" + expirations.get() + "]";
+    }
+
+    private static class Entry {
+
+        private final Object value;
+        private final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -4,12 +4,23 @@
  */
 package org.jbpm.services.task.impl;
 
+import static org.kie.internal.query.QueryParameterIdentifiers.MAX_RESULTS;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
 
+import org.jbpm.services.task.admin.TaskCleanupCriteria;
+import org.jbpm.services.task.admin.TaskCleanupResult;
 import org.jbpm.services.task.utils.ClassUtil;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
 import org.kie.api.task.model.Content;
 import org.kie.api.task.model.Status;
 import org.kie.api.task.model.Task;
@@ -27,7 +38,13 @@ public class TaskAdminServiceImpl implements TaskAdminService {
 
     private static final Logger logger = LoggerFactory.getLogger(TaskAdminServiceImpl.class);
     
+    // collection tables of tasks that cannot be reached by JPQL bulk deletes
+    private static final String[] TASK_COLLECTION_TABLES = {"PeopleAssignments_PotOwners", "PeopleAssignments_ExclOwners",
+        "PeopleAssignments_Stakeholders", "PeopleAssignments_BAs", "PeopleAssignments_Recipients", "Delegation_delegates"};
+    private static final String[] TASK_AUDIT_TABLES = {"TaskEvent", "AuditTaskImpl", "BAMTaskSummary"};
+
     private TaskPersistenceContext persistenceContext;
+    private Environment environment;
 
     public TaskAdminServiceImpl() {
     }
@@ -35,6 +52,11 @@ public class TaskAdminServiceImpl implements TaskAdminService {
     public TaskAdminServiceImpl(TaskPersistenceContext persistenceContext) {
     	this.persistenceContext = persistenceContext;
     }
+
+    public TaskAdminServiceImpl(TaskPersistenceContext persistenceContext, Environment environment) {
+        this.persistenceContext = persistenceContext;
+        this.environment = environment;
+    }
     
     public void setPersistenceContext(TaskPersistenceContext persistenceContext) {
         this.persistenceContext = persistenceContext;
@@ -147,4 +169,146 @@ public class TaskAdminServiceImpl implements TaskAdminService {
         }
         return count;
     }
+
+    /**
+     * Archives the next chunk of not yet archived tasks that match given criteria with single update.
+     * @param afterTaskId only tasks with bigger id are archived
+     * @return result of the chunk, no chunk is processed when there is nothing left to archive
+     */
+    public TaskCleanupResult archiveTasks(TaskCleanupCriteria criteria, long afterTaskId) {
+        TaskCleanupResult result = new TaskCleanupResult();
+        List<Long> taskIds = selectTaskIds(criteria, afterTaskId, false);
+        if (taskIds.isEmpty()) {
+            return result;
+        }
+        result.addTasks(persistenceContext.executeUpdateString(
+                "update TaskImpl t set t.archived = 1 where t.id in (" + toIdList(taskIds) + ")"));
+        result.chunkProcessed(taskIds.get(taskIds.size() - 1));
+        return result;
+    }
+
+    /**
+     * Removes the next chunk of archived tasks that match given criteria together with their contents,
+     * attachments, comments, texts and people assignments using set based deletes. Tasks with deadlines are
+     * removed one by one as their deadlines, escalations and notifications form a deep structure of entities.
+     * People assignments are deleted with native statements on the entity manager of the command, if it is
+     * not available all tasks are removed one by one.
+     * @param afterTaskId only tasks with bigger id are removed
+     * @return result of the chunk, no chunk is processed when there is nothing left to remove
+     */
+    public TaskCleanupResult removeTasks(TaskCleanupCriteria criteria, long afterTaskId) {
+        TaskCleanupResult result = new TaskCleanupResult();
+        List<Long> taskIds = selectTaskIds(criteria, afterTaskId, true);
+        if (taskIds.isEmpty()) {
+            return result;
+        }
+        String ids = toIdList(taskIds);
+
+        Set<Long> contentIds = new LinkedHashSet<Long>();
+        List<Object[]> taskContentIds = query("select t.taskData.documentContentId, t.taskData.outputContentId, t.taskData.faultContentId "
+                + "from TaskImpl t where t.id in (" + ids + ")");
+        for (Object[] row : taskContentIds) {
+            for (Object contentId : row) {
+                if (contentId != null && ((Number) contentId).longValue() > 0) {
+                    contentIds.add(((Number) contentId).longValue());
+                }
+            }
+        }
+        contentIds.addAll(this.<Long>query("select a.attachmentContentId from TaskImpl t join t.taskData.attachments a where t.id in (" + ids + ")"));
+
+        EntityManager em = getEntityManager();
+        List<Long> entityTaskIds;
+        if (em != null) {
+            Set<Long> deadlineTaskIds = new LinkedHashSet<Long>();
+            deadlineTaskIds.addAll(this.<Long>query("select t.id from TaskImpl t join t.deadlines.startDeadlines d where t.id in (" + ids + ")"));
+            deadlineTaskIds.addAll(this.<Long>query("select t.id from TaskImpl t join t.deadlines.endDeadlines d where t.id in (" + ids + ")"));
+            entityTaskIds = new ArrayList<Long>(deadlineTaskIds);
+        } else {
+            entityTaskIds = taskIds;
+        }
+        for (Long taskId : entityTaskIds) {
+            Task task = persistenceContext.findTask(taskId);
+            result.addAttachments(task.getTaskData().getAttachments().size());
+            result.addComments(task.getTaskData().getComments().size());
+            persistenceContext.removeTask(task);
+        }
+
+        List<Long> bulkTaskIds = new ArrayList<Long>(taskIds);
+        bulkTaskIds.removeAll(entityTaskIds);
+        if (!bulkTaskIds.isEmpty()) {
+            // entities removed one by one must be deleted before the native statements
+            em.flush();
+            String bulkIds = toIdList(bulkTaskIds);
+            result.addAttachments(deleteByIds("AttachmentImpl",
+                    this.<Long>query("select a.id from TaskImpl t join t.taskData.attachments a where t.id in (" + bulkIds + ")")));
+            result.addComments(deleteByIds("CommentImpl",
+                    this.<Long>query("select c.id from TaskImpl t join t.taskData.comments c where t.id in (" + bulkIds + ")")));
+            List<Long> textIds = new ArrayList<Long>();
+            textIds.addAll(this.<Long>query("select n.id from TaskImpl t join t.names n where t.id in (" + bulkIds + ")"));
+            textIds.addAll(this.<Long>query("select s.id from TaskImpl t join t.subjects s where t.id in (" + bulkIds + ")"));
+            textIds.addAll(this.<Long>query("select d.id from TaskImpl t join t.descriptions d where t.id in (" + bulkIds + ")"));
+            deleteByIds("I18NTextImpl", textIds);
+            for (String table : TASK_COLLECTION_TABLES) {
+                em.createNativeQuery("delete from " + table + " where task_id in (" + bulkIds + ")").executeUpdate();
+            }
+            persistenceContext.executeUpdateString("delete from TaskImpl t where t.id in (" + bulkIds + ")");
+        }
+        result.addTasks(taskIds.size());
+        result.addContents(deleteByIds("ContentImpl", new ArrayList<Long>(contentIds)));
+
+        if (criteria.isRemoveAuditData()) {
+            if (em == null) {
+                logger.warn("Audit data of removed tasks cannot be removed without entity manager");
+            } else {
+                for (String table : TASK_AUDIT_TABLES) {
+                    result.addAuditRecords(em.createNativeQuery("delete from " + table + " where taskId in (" + ids + ")").executeUpdate());
+                }
+            }
+        }
+        result.chunkProcessed(taskIds.get(taskIds.size() - 1));
+        return result;
+    }
+
+    private List<Long> selectTaskIds(TaskCleanupCriteria criteria, long afterTaskId, boolean archived) {
+        StringBuilder query = new StringBuilder("select t.id from TaskImpl t where t.archived = ")
+            .append(archived ? 1 : 0).append(" and t.id > :afterTaskId");
+        HashMap<String, Object> params = persistenceContext.addParametersToMap(
+                "afterTaskId", afterTaskId,
+                MAX_RESULTS, criteria.getChunkSize());
+        criteria.appendTo(query, params);
+        query.append(" order by t.id");
+        return persistenceContext.queryStringWithParametersInTransaction(query.toString(), false, params,
+                ClassUtil.<List<Long>>castClass(List.class));
+    }
+
+    private <T> List<T> query(String query) {
+        return persistenceContext.queryStringInTransaction(query, ClassUtil.<List<T>>castClass(List.class));
+    }
+
+    private int deleteByIds(String entity, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return persistenceContext.executeUpdateString("delete from " + entity + " e where e.id in (" + toIdList(ids) + ")");
+    }
+
+    private EntityManager getEntityManager() {
+        if (environment == null) {
+            return null;
+        }
+        Object em = environment.get(EnvironmentName.CMD_SCOPED_ENTITY_MANAGER);
+        return em instanceof EntityManager ? (EntityManager) em : null;
+    }
+
+    // ids are numbers so they can be safely inlined into statements
+    private static String toIdList(List<Long> ids) {
+        StringBuilder idList = new StringBuilder();
+        for (Long id : ids) {
+            if (idList.length() > 0) {
+                idList.append(',');
+            }
+            idList.append(id.longValue());
+        }
+        return idList.toString();
+    }
 }
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.jbpm.services.task.query;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.kie.api.task.model.TaskSummary;
+import org.kie.internal.query.QueryFilter;
+
+/**
+ * Builds <code>QueryFilter</code>s for keyset (seek) pagination of task queries that accept a filter, such as
+ * <code>getTasksAssignedAsPotentialOwner(userId, groupIds, status, filter)</code> and
+ * <code>getTasksOwned(userId, status, filter)</code>.
+ * <br/>
+ * Instead of skipping given number of rows, next page is selected by the sort key and id of the last task of the
+ * previous page so that the data base can seek directly to the page using an index - page N costs the same as
+ * the first page. Task id is used as tie breaker so the order is always total. Only sort keys that cannot be null
+ * are supported: <code>Id</code>, <code>Priority</code>, <code>CreatedOn</code> and <code>ProcessInstanceId</code>.
+ * <pre>
+ * List&lt;TaskSummary&gt; page = taskService.getTasksOwned(userId, status, KeysetQueryFilters.firstPage("Priority", false, 50));
+ * while (!page.isEmpty()) {
+ *     ...
+ *     TaskSummary last = page.get(page.size() - 1);
+ *     page = taskService.getTasksOwned(userId, status, KeysetQueryFilters.nextPage(last, "Priority", false, 50));
+ * }
+ * </pre>
+ */
+public final class KeysetQueryFilters {
+
+    public static final String LAST_TASK_ID = "keysetLastTaskId";
+    public static final String LAST_SORT_VALUE = "keysetLastSortValue";
+
+    private static final String TASK_ID = "t.id";
+
+    private KeysetQueryFilters() {
+    }
+
+    /**
+     * First page of tasks ordered by id descending, the default order of task inbox queries.
+     */
+    public static QueryFilter firstPage(int pageSize) {
+        return firstPage("Id", false, pageSize);
+    }
+
+    /**
+     * Page of tasks following the task with given id, ordered by id descending.
+     */
+    public static QueryFilter nextPage(long lastTaskId, int pageSize) {
+        return nextPage("Id", false, lastTaskId, lastTaskId, pageSize);
+    }
+
+    public static QueryFilter firstPage(String sortBy, boolean ascending, int pageSize) {
+        return create(null, new HashMap<String, Object>(), getSortColumn(sortBy), ascending, pageSize);
+    }
+
+    /**
+     * Page of tasks following given task - the last task of the previous page - in given order.
+     */
+    public static QueryFilter nextPage(TaskSummary lastTask, String sortBy, boolean ascending, int pageSize) {
+        return nextPage(sortBy, ascending, getSortValue(lastTask, sortBy), lastTask.getId(), pageSize);
+    }
+
+    /**
+     * Page of tasks following the task with given sort value and id in given order.
+     */
+    public static QueryFilter nextPage(String sortBy, boolean ascending, Object lastSortValue, long lastTaskId, int pageSize) {
+        String column = getSortColumn(sortBy);
+        String comparison = ascending ? " > " : " < ";
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(LAST_TASK_ID, lastTaskId);
+        String filter;
+        if (TASK_ID.equals(column)) {
+            filter = "(" + TASK_ID + comparison + ":" + LAST_TASK_ID + ")";
+        } else {
+            if (lastSortValue == null) {
+                throw new IllegalArgumentException("Last sort value must be given when sorting by " + sortBy);
+            }
+            params.put(LAST_SORT_VALUE, lastSortValue);
+            filter = "(" + column + comparison + ":" + LAST_SORT_VALUE
+                    + " or (" + column + " = :" + LAST_SORT_VALUE + " and " + TASK_ID + comparison + ":" + LAST_TASK_ID + "))";
+        }
+        return create(filter, params, column, ascending, pageSize);
+    }
+
+    private static QueryFilter create(String filter, Map<String, Object> params, String column, boolean ascending, int pageSize) {
+        // order type is appended by the query manager after the last column only
+        String orderBy = TASK_ID.equals(column) ? TASK_ID : column + (ascending ? " ASC, " : " DESC, ") + TASK_ID;
+        QueryFilter queryFilter = new QueryFilter(filter, params, orderBy, ascending);
+        queryFilter.setOffset(0);
+        queryFilter.setCount(pageSize);
+        return queryFilter;
+    }
+
+    static String getSortColumn(String sortBy) {
+        if (sortBy == null || "Id".equals(sortBy)) {
+            return TASK_ID;
+        } else if ("Priority".equals(sortBy)) {
+            return "t.priority";
+        } else if ("CreatedOn".equals(sortBy)) {
+            return "t.taskData.createdOn";
+        } else if ("ProcessInstanceId".equals(sortBy)) {
+            return "t.taskData.processInstanceId";
+        }
+        throw new IllegalArgumentException("Keyset pagination is not supported for sort key " + sortBy);
+    }
+
+    static Object getSortValue(TaskSummary task, String sortBy) {
+        if (sortBy == null || "Id".equals(sortBy)) {
+            return task.getId();
+        } else if ("Priority".equals(sortBy)) {
+            return task.getPriority();
+        } else if ("CreatedOn".equals(sortBy)) {
+            return task.getCreatedOn();
+        } else if ("ProcessInstanceId".equals(sortBy)) {
+            return task.getProcessInstanceId();
+        }
+        throw new IllegalArgumentException("Keyset pagination is not supported for sort key " + sortBy);
+    }
+}
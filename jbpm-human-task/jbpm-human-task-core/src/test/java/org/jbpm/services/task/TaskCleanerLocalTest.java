@@ -0,0 +1,221 @@
+package org.jbpm.services.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.services.task.admin.TaskCleaner;
+import org.jbpm.services.task.admin.TaskCleanupCriteria;
+import org.jbpm.services.task.admin.TaskCleanupListener;
+import org.jbpm.services.task.admin.TaskCleanupResult;
+import org.jbpm.services.task.impl.factories.TaskFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.task.model.Status;
+import org.kie.api.task.model.Task;
+import org.kie.internal.task.api.InternalTaskService;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+public class TaskCleanerLocalTest extends HumanTaskServicesBaseTest {
+
+    private PoolingDataSource pds;
+    private EntityManagerFactory emf;
+
+    @Before
+    public void setup() {
+        pds = setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory( "org.jbpm.services.task" );
+
+        this.taskService = (InternalTaskService) HumanTaskServiceFactory.newTaskServiceConfigurator()
+                                                .entityManagerFactory(emf)
+                                                .getTaskService();
+    }
+
+    @After
+    public void clean() {
+        super.tearDown();
+        if (emf != null) {
+            emf.close();
+        }
+        if (pds != null) {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testArchiveAndRemoveCompletedTasks() {
+        List<Long> completed = new ArrayList<Long>();
+        for (int i = 0; i < 5; i++) {
+            long taskId = addTask();
+            taskService.start(taskId, "Darth Vader");
+            Map<String, Object> output = new HashMap<String, Object>();
+            output.put("content", "content");
+            taskService.complete(taskId, "Darth Vader", output);
+            completed.add(taskId);
+        }
+        long active = addTask();
+
+        final List<Integer> progress = new ArrayList<Integer>();
+        TaskCleaner cleaner = new TaskCleaner(taskService);
+        cleaner.setListener(new TaskCleanupListener() {
+            @Override
+            public void chunkCompleted(TaskCleanupResult result) {
+                progress.add(result.getTasks());
+            }
+        });
+        TaskCleanupCriteria criteria = new TaskCleanupCriteria().status(Status.Completed).chunkSize(2);
+
+        // only archived tasks are removed
+        TaskCleanupResult result = cleaner.removeTasks(criteria);
+        assertEquals(0, result.getTasks());
+        assertEquals(0, result.getChunks());
+
+        result = cleaner.archiveTasks(criteria);
+        assertEquals(5, result.getTasks());
+        assertEquals(3, result.getChunks());
+        assertEquals(3, progress.size());
+        assertEquals(5, taskService.getArchivedTasks().size());
+
+        progress.clear();
+        result = cleaner.removeTasks(criteria);
+        assertEquals(5, result.getTasks());
+        assertEquals(3, result.getChunks());
+        // input and output content of every task
+        assertEquals(10, result.getContents());
+        assertEquals(3, progress.size());
+
+        for (Long taskId : completed) {
+            assertNull(taskService.getTaskById(taskId));
+        }
+        Task task = taskService.getTaskById(active);
+        assertNotNull(task);
+        assertEquals(1, task.getPeopleAssignments().getPotentialOwners().size());
+        assertEquals(0, taskService.getArchivedTasks().size());
+    }
+
+    @Test
+    public void testDefaultCriteriaKeepActiveTasks() {
+        long completed = addTask();
+        taskService.start(completed, "Darth Vader");
+        taskService.complete(completed, "Darth Vader", new HashMap<String, Object>());
+        long reserved = addTask();
+        long inProgress = addTask();
+        taskService.start(inProgress, "Darth Vader");
+
+        TaskCleanupCriteria criteria = new TaskCleanupCriteria();
+        assertEquals(TaskCleanupCriteria.DEFAULT_STATUSES, criteria.getStatuses());
+        TaskCleanupResult result = new TaskCleaner(taskService).purgeTasks(criteria);
+        assertEquals(1, result.getTasks());
+
+        assertNull(taskService.getTaskById(completed));
+        assertEquals(Status.Reserved, taskService.getTaskById(reserved).getTaskData().getStatus());
+        assertEquals(Status.InProgress, taskService.getTaskById(inProgress).getTaskData().getStatus());
+        assertEquals(0, taskService.getArchivedTasks().size());
+    }
+
+    @Test
+    public void testRemoveTasksWithDeadlinesAndAuditData() throws Exception {
+        String[] auditTables = {"TaskEvent", "AuditTaskImpl", "BAMTaskSummary"};
+        // audit entities are not part of the task persistence unit
+        for (String table : auditTables) {
+            execute("create table " + table + " (id bigint, taskId bigint)");
+        }
+        try {
+            long withDeadline = addTaskWithDeadline();
+            long plain = addTask();
+            long active = addTask();
+            for (long taskId : new long[] {withDeadline, plain}) {
+                taskService.start(taskId, "Darth Vader");
+                taskService.complete(taskId, "Darth Vader", new HashMap<String, Object>());
+            }
+            for (long taskId : new long[] {withDeadline, plain, active}) {
+                for (String table : auditTables) {
+                    execute("insert into " + table + " (id, taskId) values (" + taskId + ", " + taskId + ")");
+                }
+            }
+            assertEquals(1, count("select count(*) from Deadline"));
+
+            TaskCleanupResult result = new TaskCleaner(taskService).purgeTasks(
+                    new TaskCleanupCriteria().status(Status.Completed).removeAuditData(true));
+            assertEquals(2, result.getTasks());
+            assertEquals(6, result.getAuditRecords());
+
+            assertNull(taskService.getTaskById(withDeadline));
+            assertNull(taskService.getTaskById(plain));
+            assertNotNull(taskService.getTaskById(active));
+            assertEquals(0, count("select count(*) from Deadline"));
+            for (String table : auditTables) {
+                assertEquals(1, count("select count(*) from " + table + " where taskId = " + active));
+                assertEquals(1, count("select count(*) from " + table));
+            }
+        } finally {
+            for (String table : auditTables) {
+                execute("drop table " + table);
+            }
+        }
+    }
+
+    private long addTaskWithDeadline() {
+        String str = "(with (new Task()) { priority = 55, taskData = (with( new TaskData()) { } ), ";
+        str += "peopleAssignments = (with ( new PeopleAssignments() ) { potentialOwners = [new User('Darth Vader') ],businessAdministrators = [ new User('Administrator') ], }),";
+        str += "deadlines = (with (new Deadlines()) { startDeadlines = [ (with (new Deadline()) { date = new Date(now.time + 86400000) }) ] }),";
+        str += "name =  'This is my task name' })";
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("now", new Date());
+        Task task = TaskFactory.evalTask(new StringReader(str), vars);
+        taskService.addTask(task, new HashMap<String, Object>());
+        return task.getId();
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection connection = pds.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute(sql);
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection connection = pds.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery(sql);
+            resultSet.next();
+            int count = resultSet.getInt(1);
+            statement.close();
+            return count;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private long addTask() {
+        String str = "(with (new Task()) { priority = 55, taskData = (with( new TaskData()) { } ), ";
+        str += "peopleAssignments = (with ( new PeopleAssignments() ) { potentialOwners = [new User('Darth Vader') ],businessAdministrators = [ new User('Administrator') ], }),";
+        str += "name =  'This is my task name' })";
+        Task task = TaskFactory.evalTask(new StringReader(str));
+        Map<String, Object> input = new HashMap<String, Object>();
+        input.put("input", "value");
+        taskService.addTask(task, input);
+        return task.getId();
+    }
+}
@@ -0,0 +1,116 @@
+package org.jbpm.services.task.identity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.kie.api.task.UserGroupCallback;
+
+public class CachingUserGroupCallbackTest {
+
+    @Test
+    public void testAnswersAreCached() {
+        CountingCallback delegate = new CountingCallback();
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate, 100, 60000, 60000);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(callback.existsUser("john"));
+            assertTrue(callback.existsGroup("HR"));
+            assertEquals(Arrays.asList("HR", "PM"), callback.getGroupsForUser("john", null, null));
+        }
+        assertEquals(3, delegate.calls);
+        assertEquals(6, callback.getHits());
+        assertEquals(3, callback.getMisses());
+    }
+
+    @Test
+    public void testNegativeAnswersAreCached() {
+        CountingCallback delegate = new CountingCallback();
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate, 100, 60000, 60000);
+
+        assertFalse(callback.existsUser("unknown"));
+        assertFalse(callback.existsUser("unknown"));
+        assertNull(callback.getGroupsForUser("unknown", null, null));
+        assertNull(callback.getGroupsForUser("unknown", null, null));
+        assertEquals(2, delegate.calls);
+
+        callback = new CachingUserGroupCallback(delegate, 100, 60000, 0);
+        delegate.calls = 0;
+        assertFalse(callback.existsUser("unknown"));
+        assertFalse(callback.existsUser("unknown"));
+        assertEquals(2, delegate.calls);
+    }
+
+    @Test
+    public void testReturnedGroupsCanBeModified() {
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(new CountingCallback(), 100, 60000, 60000);
+        callback.getGroupsForUser("john", null, null).remove("HR");
+        callback.getGroupsForUser("john", null, null).clear();
+        assertEquals(Arrays.asList("HR", "PM"), callback.getGroupsForUser("john", null, null));
+    }
+
+    @Test
+    public void testExpiredAndInvalidatedAnswersAreReloaded() throws Exception {
+        CountingCallback delegate = new CountingCallback();
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(delegate, 100, 50, 50);
+
+        callback.existsUser("john");
+        Thread.sleep(100);
+        callback.existsUser("john");
+        assertEquals(2, delegate.calls);
+        assertEquals(1, callback.getExpirations());
+
+        callback.getGroupsForUser("john", null, null);
+        callback.invalidate("john");
+        callback.existsUser("john");
+        callback.getGroupsForUser("john", null, null);
+        assertEquals(5, delegate.calls);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(new CountingCallback(), 2, 60000, 60000);
+        callback.existsUser("john");
+        callback.existsUser("mary");
+        callback.existsUser("peter");
+        assertEquals(2, callback.size());
+    }
+
+    @Test
+    public void testStoredEntities() {
+        CachingUserGroupCallback callback = new CachingUserGroupCallback(new CountingCallback(), 100, 60000, 60000);
+        assertFalse(callback.isStored("john", false));
+        callback.stored("john", false);
+        assertTrue(callback.isStored("john", false));
+        assertFalse(callback.isStored("john", true));
+    }
+
+    private static class CountingCallback implements UserGroupCallback {
+
+        private int calls;
+
+        public boolean existsUser(String userId) {
+            calls++;
+            return "john".equals(userId);
+        }
+
+        public boolean existsGroup(String groupId) {
+            calls++;
+            return "HR".equals(groupId) || "PM".equals(groupId);
+        }
+
+        public List<String> getGroupsForUser(String userId, List<String> groupIds, List<String> allExistingGroupIds) {
+            calls++;
+            if (!"john".equals(userId)) {
+                return null;
+            }
+            return new ArrayList<String>(Arrays.asList("HR", "PM"));
+        }
+    }
+}
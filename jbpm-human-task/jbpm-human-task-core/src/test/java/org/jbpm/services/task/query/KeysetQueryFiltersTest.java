@@ -0,0 +1,56 @@
+package org.jbpm.services.task.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.kie.internal.query.QueryFilter;
+
+public class KeysetQueryFiltersTest {
+
+    @Test
+    public void testFirstPage() {
+        QueryFilter filter = KeysetQueryFilters.firstPage(20);
+        assertNull(filter.getFilterParams());
+        assertTrue(filter.getParams().isEmpty());
+        assertEquals("t.id", filter.getOrderBy());
+        assertFalse(filter.isAscending());
+        assertEquals(0, (int) filter.getOffset());
+        assertEquals(20, (int) filter.getCount());
+    }
+
+    @Test
+    public void testNextPageById() {
+        QueryFilter filter = KeysetQueryFilters.nextPage(100L, 20);
+        assertEquals("(t.id < :keysetLastTaskId)", filter.getFilterParams());
+        assertEquals(100L, filter.getParams().get(KeysetQueryFilters.LAST_TASK_ID));
+        assertEquals(1, filter.getParams().size());
+        assertEquals("t.id", filter.getOrderBy());
+        assertEquals(0, (int) filter.getOffset());
+    }
+
+    @Test
+    public void testNextPageBySortKey() {
+        Date createdOn = new Date();
+        QueryFilter filter = KeysetQueryFilters.nextPage("CreatedOn", true, createdOn, 100L, 20);
+        assertEquals("(t.taskData.createdOn > :keysetLastSortValue or (t.taskData.createdOn = :keysetLastSortValue"
+                + " and t.id > :keysetLastTaskId))", filter.getFilterParams());
+        assertEquals(createdOn, filter.getParams().get(KeysetQueryFilters.LAST_SORT_VALUE));
+        assertEquals(100L, filter.getParams().get(KeysetQueryFilters.LAST_TASK_ID));
+        assertEquals("t.taskData.createdOn ASC, t.id", filter.getOrderBy());
+        assertTrue(filter.isAscending());
+
+        filter = KeysetQueryFilters.firstPage("Priority", false, 20);
+        assertEquals("t.priority DESC, t.id", filter.getOrderBy());
+        assertFalse(filter.isAscending());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullableSortKeyIsRejected() {
+        KeysetQueryFilters.firstPage("DueOn", true, 20);
+    }
+}
@@ -71,6 +71,7 @@
 
     create table CorrelationKeyInfo (
         keyId bigint not null auto_increment,
+        keyDigest varchar(64),
         name varchar(255),
         processInstanceId bigint not null,
         OPTLOCK integer,
@@ -250,6 +251,18 @@
         primary key (id)
     );
 
+    create table ProcessInstanceVariableInfo (
+        id bigint not null auto_increment,
+        OPTLOCK integer,
+        lastModificationDate datetime,
+        name varchar(255) not null,
+        processInstanceId bigint not null,
+        strategy varchar(255),
+        strategyContext longblob,
+        variableValue longblob,
+        primary key (id)
+    );
+
     create table Reassignment (
         id bigint not null auto_increment,
         Escalation_Reassignments_Id bigint,
@@ -269,6 +282,8 @@
         businessKey varchar(255),
         message varchar(255),
         owner varchar(255),
+        priority integer not null,
+        queueName varchar(255),
         requestData longblob,
         responseData longblob,
         retries integer not null,
@@ -663,3 +678,47 @@
         add constraint FK61F475A5F510CB46 
         foreign key (TaskData_Comments_Id) 
         references Task (id);
+
+    create index IDX_PIVarInfo_PIId on ProcessInstanceVariableInfo(processInstanceId);
+
+    create index IDX_CorrKeyInfo_Digest on CorrelationKeyInfo(keyDigest);
+
+    create index IDX_PAPotOwners_Entity on PeopleAssignments_PotOwners(entity_id, task_id);
+
+    create index IDX_Task_Owner_Status on Task(actualOwner_id, status, id);
+
+    create index IDX_PInstLog_EndDate on ProcessInstanceLog(end_date, id);
+
+    create index IDX_NInstLog_pInstId on NodeInstanceLog(processInstanceId);
+
+    create index IDX_VInstLog_pInstId on VariableInstanceLog(processInstanceId);
+
+    create index IDX_Task_Archived_Status on Task(archived, status, id);
+
+    create index IDX_PAPotOwners_Task on PeopleAssignments_PotOwners(task_id);
+
+    create index IDX_PAExclOwners_Task on PeopleAssignments_ExclOwners(task_id);
+
+    create index IDX_PAStakeholders_Task on PeopleAssignments_Stakeholders(task_id);
+
+    create index IDX_PABAs_Task on PeopleAssignments_BAs(task_id);
+
+    create index IDX_PARecipients_Task on PeopleAssignments_Recipients(task_id);
+
+    create index IDX_Delegation_Task on Delegation_delegates(task_id);
+
+    create index IDX_I18NText_TaskNames on I18NText(Task_Names_Id);
+
+    create index IDX_I18NText_TaskSubjects on I18NText(Task_Subjects_Id);
+
+    create index IDX_I18NText_TaskDescs on I18NText(Task_Descriptions_Id);
+
+    create index IDX_Attachment_Task on Attachment(TaskData_Attachments_Id);
+
+    create index IDX_TaskComment_Task on task_comment(TaskData_Comments_Id);
+
+    create index IDX_TaskEvent_TaskId on TaskEvent(taskId);
+
+    create index IDX_AuditTask_TaskId on AuditTaskImpl(taskId);
+
+    create index IDX_BAMTaskSumm_TaskId on BAMTaskSummary(taskId);
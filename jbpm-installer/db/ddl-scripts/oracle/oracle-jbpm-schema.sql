@@ -71,6 +71,7 @@
 
     create table CorrelationKeyInfo (
         keyId number(19,0) not null,
+        keyDigest varchar2(64 char),
         name varchar2(255 char),
         processInstanceId number(19,0) not null,
         OPTLOCK number(10,0),
@@ -250,6 +251,18 @@
         primary key (id)
     );
 
+    create table ProcessInstanceVariableInfo (
+        id number(19,0) not null,
+        OPTLOCK number(10,0),
+        lastModificationDate timestamp,
+        name varchar2(255 char) not null,
+        processInstanceId number(19,0) not null,
+        strategy varchar2(255 char),
+        strategyContext blob,
+        variableValue blob,
+        primary key (id)
+    );
+
     create table Reassignment (
         id number(19,0) not null,
         Escalation_Reassignments_Id number(19,0),
@@ -269,6 +282,8 @@
         businessKey varchar2(255 char),
         message varchar2(255 char),
         owner varchar2(255 char),
+        priority number(10,0) not null,
+        queueName varchar2(255 char),
         requestData blob,
         responseData blob,
         retries number(10,0) not null,
@@ -657,6 +672,8 @@
 
     create sequence PROC_INST_LOG_ID_SEQ;
 
+    create sequence PROC_INST_VAR_INFO_ID_SEQ;
+
     create sequence REASSIGNMENT_ID_SEQ;
 
     create sequence REQUEST_INFO_ID_SEQ;
@@ -672,3 +689,47 @@
     create sequence VAR_INST_LOG_ID_SEQ;
 
     create sequence WORKITEMINFO_ID_SEQ;
+
+    create index IDX_PIVarInfo_PIId on ProcessInstanceVariableInfo(processInstanceId);
+
+    create index IDX_CorrKeyInfo_Digest on CorrelationKeyInfo(keyDigest);
+
+    create index IDX_PAPotOwners_Entity on PeopleAssignments_PotOwners(entity_id, task_id);
+
+    create index IDX_Task_Owner_Status on Task(actualOwner_id, status, id);
+
+    create index IDX_PInstLog_EndDate on ProcessInstanceLog(end_date, id);
+
+    create index IDX_NInstLog_pInstId on NodeInstanceLog(processInstanceId);
+
+    create index IDX_VInstLog_pInstId on VariableInstanceLog(processInstanceId);
+
+    create index IDX_Task_Archived_Status on Task(archived, status, id);
+
+    create index IDX_PAPotOwners_Task on PeopleAssignments_PotOwners(task_id);
+
+    create index IDX_PAExclOwners_Task on PeopleAssignments_ExclOwners(task_id);
+
+    create index IDX_PAStakeholders_Task on PeopleAssignments_Stakeholders(task_id);
+
+    create index IDX_PABAs_Task on PeopleAssignments_BAs(task_id);
+
+    create index IDX_PARecipients_Task on PeopleAssignments_Recipients(task_id);
+
+    create index IDX_Delegation_Task on Delegation_delegates(task_id);
+
+    create index IDX_I18NText_TaskNames on I18NText(Task_Names_Id);
+
+    create index IDX_I18NText_TaskSubjects on I18NText(Task_Subjects_Id);
+
+    create index IDX_I18NText_TaskDescs on I18NText(Task_Descriptions_Id);
+
+    create index IDX_Attachment_Task on Attachment(TaskData_Attachments_Id);
+
+    create index IDX_TaskComment_Task on task_comment(TaskData_Comments_Id);
+
+    create index IDX_TaskEvent_TaskId on TaskEvent(taskId);
+
+    create index IDX_AuditTask_TaskId on AuditTaskImpl(taskId);
+
+    create index IDX_BAMTaskSumm_TaskId on BAMTaskSummary(taskId);
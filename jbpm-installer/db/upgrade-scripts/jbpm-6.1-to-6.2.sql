@@ -0,0 +1,3 @@
+-- add priority and queue name to executor requests, existing requests get the default priority (5) and no queue
+alter table RequestInfo add priority integer default 5 not null;
+alter table RequestInfo add queueName varchar(255);
@@ -13,10 +13,14 @@ import javax.persistence.Query;
 import org.drools.persistence.SingleSessionCommandService;
 import org.drools.persistence.TransactionManager;
 import org.drools.persistence.TransactionManagerHelper;
+import org.drools.persistence.TransactionSynchronization;
 import org.drools.persistence.jpa.JpaPersistenceContext;
+import org.jbpm.persistence.correlation.CorrelationKeyCache;
+import org.jbpm.persistence.correlation.CorrelationKeyDigest;
 import org.jbpm.persistence.correlation.CorrelationKeyInfo;
 import org.jbpm.persistence.processinstance.JPASignalManager;
 import org.jbpm.persistence.processinstance.ProcessInstanceInfo;
+import org.jbpm.persistence.processinstance.ProcessInstanceVariableInfo;
 import org.jbpm.process.instance.ProcessInstance;
 import org.jbpm.process.instance.ProcessInstanceManager;
 import org.kie.internal.process.CorrelationKey;
@@ -25,6 +29,13 @@ import org.kie.internal.process.CorrelationProperty;
 public class JpaProcessPersistenceContext extends JpaPersistenceContext
     implements
     ProcessPersistenceContext {
+
+    /**
+     * Correlation keys persisted before the key digest was introduced can only be found by their properties,
+     * so correlation keys that were not found by digest are looked up that way as well. Once all correlation keys
+     * have a digest (e.g. on a data base created with it) this can be set to false to skip that second query.
+     */
+    private static final boolean LEGACY_CORRELATION_LOOKUP = Boolean.parseBoolean(System.getProperty("org.jbpm.correlation.legacy.lookup", "true"));
     
     public JpaProcessPersistenceContext(EntityManager em, TransactionManager txm) {
         super( em, txm );
@@ -59,6 +70,13 @@ public class JpaProcessPersistenceContext extends JpaPersistenceContext
         if (correlations != null) {
             for (CorrelationKeyInfo key : correlations) {
                 getEntityManager().remove(key);
+                evict(CorrelationKeyCache.getInstance(),
+                        key.getKeyDigest() != null ? key.getKeyDigest() : CorrelationKeyDigest.digest(key));
+            }
+        }
+        if (processInstanceInfo.hasExternalVariables()) {
+            for (ProcessInstanceVariableInfo variableInfo : findProcessInstanceVariables(processInstanceInfo.getId())) {
+                getEntityManager().remove(variableInfo);
             }
         }
     }
@@ -95,8 +113,36 @@ public class JpaProcessPersistenceContext extends JpaPersistenceContext
     	}
     }
 
+    /**
+     * Paged variant of {@link #getProcessInstancesWaitingForEvent(String)} that uses the process instance
+     * id as key so that pages stay stable while the returned process instances are signaled.
+     */
+    public List<Long> getProcessInstancesWaitingForEvent(String type, long afterProcessInstanceId, long lastProcessInstanceId, int maxResults) {
+        EntityManager entityManager = getEntityManager();
+        if (entityManager == null) {
+            return new ArrayList<Long>();
+        }
+        Query processInstancesForEvent = entityManager.createNamedQuery( "ProcessInstancesWaitingForEventInRange" );
+        processInstancesForEvent.setParameter( "type", type );
+        processInstancesForEvent.setParameter( "afterId", afterProcessInstanceId );
+        processInstancesForEvent.setParameter( "lastId", lastProcessInstanceId );
+        processInstancesForEvent.setMaxResults( maxResults );
+        return (List<Long>) processInstancesForEvent.getResultList();
+    }
+
+    public Long getLastProcessInstanceWaitingForEvent(String type) {
+        EntityManager entityManager = getEntityManager();
+        if (entityManager == null) {
+            return null;
+        }
+        Query lastProcessInstanceForEvent = entityManager.createNamedQuery( "LastProcessInstanceWaitingForEvent" );
+        lastProcessInstanceForEvent.setParameter( "type", type );
+        return (Long) lastProcessInstanceForEvent.getSingleResult();
+    }
+
     public CorrelationKeyInfo persist(CorrelationKeyInfo correlationKeyInfo) {
-        Long processInstanceId = getProcessInstanceByCorrelationKey(correlationKeyInfo);
+        // bypass the cache, it must not hide correlation keys persisted by others
+        Long processInstanceId = findProcessInstanceByCorrelationKey(correlationKeyInfo, CorrelationKeyDigest.digest(correlationKeyInfo));
         if (processInstanceId != null) {
             throw new RuntimeException(correlationKeyInfo + " already exists");
         }
@@ -118,6 +164,36 @@ public class JpaProcessPersistenceContext extends JpaPersistenceContext
      * </p>
      */
     public Long getProcessInstanceByCorrelationKey(CorrelationKey correlationKey) {
+        String digest = CorrelationKeyDigest.digest(correlationKey);
+        CorrelationKeyCache cache = CorrelationKeyCache.getInstance();
+        Long processInstanceId = cache.get(digest);
+        if (processInstanceId != null) {
+            return processInstanceId;
+        }
+        processInstanceId = findProcessInstanceByCorrelationKey(correlationKey, digest);
+        if (processInstanceId != null && cache.isEnabled()) {
+            cacheAfterCommit(cache, digest, processInstanceId);
+        }
+        return processInstanceId;
+    }
+
+    /**
+     * Looks up the correlation key by its digest (single index probe), see {@link CorrelationKeyDigest}.
+     */
+    protected Long findProcessInstanceByCorrelationKey(CorrelationKey correlationKey, String digest) {
+        Query processInstancesForKey = getEntityManager().createNamedQuery( "GetProcessInstanceIdByCorrelationDigest" );
+        processInstancesForKey.setParameter( "digest", digest );
+        List<Long> processInstanceIds = processInstancesForKey.getResultList();
+        if (processInstanceIds.size() == 1) {
+            return processInstanceIds.get(0);
+        }
+        if (processInstanceIds.isEmpty() && LEGACY_CORRELATION_LOOKUP) {
+            return findProcessInstanceByCorrelationProperties(correlationKey);
+        }
+        return null;
+    }
+
+    protected Long findProcessInstanceByCorrelationProperties(CorrelationKey correlationKey) {
         Query processInstancesForEvent = getEntityManager().createNamedQuery( "GetProcessInstanceIdByCorrelation" );
         processInstancesForEvent.setParameter( "elem_count", correlationKey.getProperties().size() );
         List<Object> properties = new ArrayList<Object>();
@@ -133,5 +209,75 @@ public class JpaProcessPersistenceContext extends JpaPersistenceContext
             return null;
         }
     }
-    
+
+    /**
+     * Correlation key might have been persisted by the current transaction so it is cached only once
+     * the transaction commits.
+     */
+    private void cacheAfterCommit(final CorrelationKeyCache cache, final String digest, final Long processInstanceId) {
+        if (txm == null || txm.getStatus() != TransactionManager.STATUS_ACTIVE) {
+            cache.put(digest, processInstanceId);
+            return;
+        }
+        txm.registerTransactionSynchronization(new TransactionSynchronization() {
+
+            public void beforeCompletion() {
+            }
+
+            public void afterCompletion(int status) {
+                if (status == TransactionManager.STATUS_COMMITTED) {
+                    cache.put(digest, processInstanceId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Evicts the correlation key right away and once more when the transaction completes, in case it was
+     * looked up (and scheduled to be cached) by the same transaction.
+     */
+    private void evict(final CorrelationKeyCache cache, final String digest) {
+        if (!cache.isEnabled()) {
+            return;
+        }
+        cache.remove(digest);
+        if (txm != null && txm.getStatus() == TransactionManager.STATUS_ACTIVE) {
+            txm.registerTransactionSynchronization(new TransactionSynchronization() {
+
+                public void beforeCompletion() {
+                }
+
+                public void afterCompletion(int status) {
+                    cache.remove(digest);
+                }
+            });
+        }
+    }
+
+    public ProcessInstanceVariableInfo persist(ProcessInstanceVariableInfo variableInfo) {
+        getEntityManager().persist( variableInfo );
+        return variableInfo;
+    }
+
+    public void remove(ProcessInstanceVariableInfo variableInfo) {
+        getEntityManager().remove( variableInfo );
+    }
+
+    public List<ProcessInstanceVariableInfo> findProcessInstanceVariables(Long processInstanceId) {
+        Query variables = getEntityManager().createNamedQuery( "GetProcessInstanceVariables" );
+        variables.setParameter( "processInstanceId", processInstanceId );
+        return (List<ProcessInstanceVariableInfo>) variables.getResultList();
+    }
+
+    public ProcessInstanceVariableInfo findProcessInstanceVariable(Long processInstanceId, String name) {
+        Query variable = getEntityManager().createNamedQuery( "GetProcessInstanceVariable" );
+        variable.setParameter( "processInstanceId", processInstanceId );
+        variable.setParameter( "name", name );
+        try {
+            return (ProcessInstanceVariableInfo) variable.getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
 }
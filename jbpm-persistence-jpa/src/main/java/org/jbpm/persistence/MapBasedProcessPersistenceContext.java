@@ -9,6 +9,7 @@ import java.util.Map;
 import org.drools.persistence.map.MapBasedPersistenceContext;
 import org.jbpm.persistence.correlation.CorrelationKeyInfo;
 import org.jbpm.persistence.processinstance.ProcessInstanceInfo;
+import org.jbpm.persistence.processinstance.ProcessInstanceVariableInfo;
 import org.kie.internal.process.CorrelationKey;
 
 public class MapBasedProcessPersistenceContext extends MapBasedPersistenceContext
@@ -19,12 +20,14 @@ public class MapBasedProcessPersistenceContext extends MapBasedPersistenceContex
     private ProcessStorage storage;
     private Map<Long, ProcessInstanceInfo> processes;
     private Map<CorrelationKeyInfo, ProcessInstanceInfo> processInstancesByBusinessKey;
+    private Map<Long, Map<String, ProcessInstanceVariableInfo>> variables;
 
     public MapBasedProcessPersistenceContext(ProcessStorage storage) {
         super( storage );
         this.storage = storage;
         this.processes = new HashMap<Long, ProcessInstanceInfo>();
         this.processInstancesByBusinessKey = new HashMap<CorrelationKeyInfo, ProcessInstanceInfo>();
+        this.variables = new HashMap<Long, Map<String, ProcessInstanceVariableInfo>>();
     }
 
     public ProcessInstanceInfo persist(ProcessInstanceInfo processInstanceInfo) {
@@ -55,13 +58,37 @@ public class MapBasedProcessPersistenceContext extends MapBasedPersistenceContex
 
     public void remove(ProcessInstanceInfo processInstanceInfo) {
         storage.removeProcessInstanceInfo( processInstanceInfo.getId() );
-        
+        variables.remove( processInstanceInfo.getId() );
     }
 
     public List<Long> getProcessInstancesWaitingForEvent(String type) {
         return storage.getProcessInstancesWaitingForEvent( type );
     }
 
+    public List<Long> getProcessInstancesWaitingForEvent(String type, long afterProcessInstanceId, long lastProcessInstanceId, int maxResults) {
+        List<Long> result = new ArrayList<Long>();
+        for (Long id : storage.getProcessInstancesWaitingForEvent( type )) {
+            if (id > afterProcessInstanceId && id <= lastProcessInstanceId) {
+                result.add(id);
+            }
+        }
+        Collections.sort(result);
+        if (result.size() > maxResults) {
+            return new ArrayList<Long>(result.subList(0, maxResults));
+        }
+        return result;
+    }
+
+    public Long getLastProcessInstanceWaitingForEvent(String type) {
+        Long last = null;
+        for (Long id : storage.getProcessInstancesWaitingForEvent( type )) {
+            if (last == null || id > last) {
+                last = id;
+            }
+        }
+        return last;
+    }
+
     public void clearStoredProcessInstances() {
         processes.clear();
     }
@@ -80,4 +107,34 @@ public class MapBasedProcessPersistenceContext extends MapBasedPersistenceContex
         ProcessInstanceInfo piInfo = this.processInstancesByBusinessKey.get(correlationKey);
         return piInfo.getId();
     }
+
+    public ProcessInstanceVariableInfo persist(ProcessInstanceVariableInfo variableInfo) {
+        Map<String, ProcessInstanceVariableInfo> processInstanceVariables = variables.get(variableInfo.getProcessInstanceId());
+        if (processInstanceVariables == null) {
+            processInstanceVariables = new HashMap<String, ProcessInstanceVariableInfo>();
+            variables.put(variableInfo.getProcessInstanceId(), processInstanceVariables);
+        }
+        processInstanceVariables.put(variableInfo.getName(), variableInfo);
+        return variableInfo;
+    }
+
+    public void remove(ProcessInstanceVariableInfo variableInfo) {
+        Map<String, ProcessInstanceVariableInfo> processInstanceVariables = variables.get(variableInfo.getProcessInstanceId());
+        if (processInstanceVariables != null) {
+            processInstanceVariables.remove(variableInfo.getName());
+        }
+    }
+
+    public List<ProcessInstanceVariableInfo> findProcessInstanceVariables(Long processInstanceId) {
+        Map<String, ProcessInstanceVariableInfo> processInstanceVariables = variables.get(processInstanceId);
+        if (processInstanceVariables == null) {
+            return new ArrayList<ProcessInstanceVariableInfo>();
+        }
+        return new ArrayList<ProcessInstanceVariableInfo>(processInstanceVariables.values());
+    }
+
+    public ProcessInstanceVariableInfo findProcessInstanceVariable(Long processInstanceId, String name) {
+        Map<String, ProcessInstanceVariableInfo> processInstanceVariables = variables.get(processInstanceId);
+        return processInstanceVariables == null ? null : processInstanceVariables.get(name);
+    }
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import org.drools.persistence.PersistenceContext;
 import org.jbpm.persistence.correlation.CorrelationKeyInfo;
 import org.jbpm.persistence.processinstance.ProcessInstanceInfo;
+import org.jbpm.persistence.processinstance.ProcessInstanceVariableInfo;
 import org.kie.internal.process.CorrelationKey;
 
 public interface ProcessPersistenceContext
@@ -21,5 +22,33 @@ public interface ProcessPersistenceContext
 
     List<Long> getProcessInstancesWaitingForEvent(String type);
     
+    /**
+     * Returns, in ascending order, at most <code>maxResults</code> ids of process instances waiting 
+     * for the given event type whose id is greater than <code>afterProcessInstanceId</code> and 
+     * not greater than <code>lastProcessInstanceId</code>.
+     */
+    List<Long> getProcessInstancesWaitingForEvent(String type, long afterProcessInstanceId, long lastProcessInstanceId, int maxResults);
+    
+    /**
+     * Returns the highest id of the process instances waiting for the given event type or 
+     * <code>null</code> if there are none.
+     */
+    Long getLastProcessInstanceWaitingForEvent(String type);
+    
     Long getProcessInstanceByCorrelationKey(CorrelationKey correlationKey);
+    
+    ProcessInstanceVariableInfo persist(ProcessInstanceVariableInfo variableInfo);
+    
+    void remove(ProcessInstanceVariableInfo variableInfo);
+    
+    /**
+     * Returns the externalized variables of the given process instance.
+     */
+    List<ProcessInstanceVariableInfo> findProcessInstanceVariables(Long processInstanceId);
+    
+    /**
+     * Returns the externalized variable of the given process instance with the given name or 
+     * <code>null</code> if there is none, without loading the process instance.
+     */
+    ProcessInstanceVariableInfo findProcessInstanceVariable(Long processInstanceId, String name);
 }
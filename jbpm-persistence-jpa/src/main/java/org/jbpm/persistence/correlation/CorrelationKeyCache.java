@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.persistence.correlation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded cache of recently resolved correlation keys (by their digest, see {@link CorrelationKeyDigest})
+ * and the process instance they belong to.
+ * <br/>
+ * The cache is shared by all persistence contexts of the JVM and is disabled by default, it can be enabled by
+ * setting the <code>org.jbpm.correlation.cache.size</code> system property to the maximum number of entries.
+ * Entries must only be added once the mapping is committed and are removed together with the correlation keys
+ * of the process instance. Since there is no notification of correlation keys removed by other nodes it should
+ * be used only when a process instance is always handled by the same node.
+ */
+public class CorrelationKeyCache {
+
+    private static final CorrelationKeyCache INSTANCE = new CorrelationKeyCache(
+            Integer.parseInt(System.getProperty("org.jbpm.correlation.cache.size", "0")));
+
+    private final int maxSize;
+    private final Map<String, Long> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CorrelationKeyCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    public static CorrelationKeyCache getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return id of the process instance of given correlation key or <code>null</code> if it is not cached
+     */
+    public Long get(String digest) {
+        if (!isEnabled() || digest == null) {
+            return null;
+        }
+        Long processInstanceId = cache.get(digest);
+        if (processInstanceId != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return processInstanceId;
+    }
+
+    public void put(String digest, Long processInstanceId) {
+        if (isEnabled() && digest != null && processInstanceId != null) {
+            cache.put(digest, processInstanceId);
+        }
+    }
+
+    public void remove(String digest) {
+        if (isEnabled() && digest != null) {
+            cache.remove(digest);
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
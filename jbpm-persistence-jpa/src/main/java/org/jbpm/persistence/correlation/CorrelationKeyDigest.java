@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.persistence.correlation;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.kie.internal.process.CorrelationKey;
+import org.kie.internal.process.CorrelationProperty;
+
+/**
+ * Computes canonical digest of a correlation key that is stored together with the <code>CorrelationKeyInfo</code>
+ * so correlation keys can be found with single equality lookup.
+ * <br/>
+ * Digest is built from property values only, sorted so that it does not depend on the order the properties
+ * were given in, which is the same way correlation keys were matched by the <code>GetProcessInstanceIdByCorrelation</code>
+ * query. Every value is length prefixed to make sure different sets of values never produce the same input.
+ */
+public final class CorrelationKeyDigest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private CorrelationKeyDigest() {
+    }
+
+    public static String digest(CorrelationKey correlationKey) {
+        List<CorrelationProperty<?>> properties = correlationKey.getProperties();
+        List<Object> values = new ArrayList<Object>(properties.size());
+        for (CorrelationProperty<?> property : properties) {
+            values.add(property.getValue());
+        }
+        return digest(values);
+    }
+
+    public static String digest(List<?> values) {
+        List<String> canonical = new ArrayList<String>(values.size());
+        for (Object value : values) {
+            canonical.add(value == null ? "-1:" : String.valueOf(value).length() + ":" + value);
+        }
+        Collections.sort(canonical);
+
+        MessageDigest md = newMessageDigest();
+        for (String value : canonical) {
+            md.update(value.getBytes(UTF8));
+            md.update((byte) '|');
+        }
+        byte[] bytes = md.digest();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.PrePersist;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Version;
 
@@ -48,6 +49,9 @@ public class CorrelationKeyInfo implements CorrelationKey {
     
     private String name;
     
+    @Column(name = "keyDigest", length = 64)
+    private String keyDigest;
+    
     @OneToMany(mappedBy="correlationKey", cascade=CascadeType.ALL)
     private List<CorrelationPropertyInfo> properties;
     
@@ -133,4 +137,22 @@ public class CorrelationKeyInfo implements CorrelationKey {
         return id;
     }
 
+    /**
+     * Returns digest of the properties of this correlation key that is used to look it up,
+     * it is computed when the correlation key is persisted.
+     * @see CorrelationKeyDigest
+     */
+    public String getKeyDigest() {
+        return keyDigest;
+    }
+
+    @PrePersist
+    public void computeKeyDigest() {
+        if (this.properties == null) {
+            this.keyDigest = CorrelationKeyDigest.digest(new ArrayList<Object>());
+        } else {
+            this.keyDigest = CorrelationKeyDigest.digest(this);
+        }
+    }
+
 }
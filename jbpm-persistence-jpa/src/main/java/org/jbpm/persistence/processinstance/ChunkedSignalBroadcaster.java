@@ -0,0 +1,221 @@
+package org.jbpm.persistence.processinstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.drools.core.command.impl.GenericCommand;
+import org.drools.core.command.impl.KnowledgeCommandContext;
+import org.drools.core.common.InternalKnowledgeRuntime;
+import org.jbpm.persistence.ProcessPersistenceContext;
+import org.jbpm.persistence.ProcessPersistenceContextManager;
+import org.jbpm.process.instance.event.DefaultSignalManager.SignalAction;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.internal.command.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Broadcasts a signal to all persisted process instances waiting for it without loading them
+ * all at once, as {@link JPASignalManager#signalEvent(String, Object)} does.
+ * </p>
+ * Ids of the waiting process instances are paged by id, and every page (chunk) is signaled and
+ * persisted in its own transaction by executing a command on one of the worker sessions. Chunks
+ * are spread round robin over the worker sessions and, when an executor is given, signaled in
+ * parallel. The outcome of every chunk is reported to the {@link SignalBroadcastListener} and a
+ * failed chunk does not stop the broadcast.
+ * </p>
+ * Only process instances that are waiting for the signal when the broadcast starts are signaled,
+ * in-memory listeners of the first worker session (such as signal start events) are notified at
+ * that point as well. Worker sessions must be persistent sessions sharing the same kie base and
+ * data source, and must be able to load any of the signaled process instances (which is not the
+ * case for sessions managed by a per process instance runtime manager).
+ */
+public class ChunkedSignalBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedSignalBroadcaster.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = Integer.parseInt(System.getProperty("org.jbpm.signal.broadcast.chunksize", "500"));
+
+    private final List<KieSession> workers;
+    private final int chunkSize;
+    private final ExecutorService executor;
+    private SignalBroadcastListener listener;
+
+    public ChunkedSignalBroadcaster(KieSession ksession) {
+        this(Collections.singletonList(ksession), DEFAULT_CHUNK_SIZE, null);
+    }
+
+    public ChunkedSignalBroadcaster(List<KieSession> workers, int chunkSize, ExecutorService executor) {
+        if (workers == null || workers.isEmpty()) {
+            throw new IllegalArgumentException("At least one worker session is required");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be greater than 0 but was " + chunkSize);
+        }
+        this.workers = new ArrayList<KieSession>(workers);
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+    }
+
+    public void setListener(SignalBroadcastListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Signals all process instances waiting for the given event type, chunk by chunk.
+     *
+     * @return all chunks of the broadcast, in order, once they were processed
+     */
+    public List<SignalChunk> broadcast(String type, Object event) {
+        KieSession coordinator = workers.get(0);
+        Long lastProcessInstanceId = coordinator.execute(new StartBroadcastCommand(type, event));
+        List<SignalChunk> chunks = new ArrayList<SignalChunk>();
+        if (lastProcessInstanceId == null) {
+            return chunks;
+        }
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        long afterProcessInstanceId = Long.MIN_VALUE;
+        while (true) {
+            List<Long> ids = coordinator.execute(
+                    new GetWaitingProcessInstancesCommand(type, afterProcessInstanceId, lastProcessInstanceId, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterProcessInstanceId = ids.get(ids.size() - 1);
+
+            final SignalChunk chunk = new SignalChunk(type, chunks.size(), ids);
+            final KieSession worker = workers.get(chunks.size() % workers.size());
+            final Object signalEvent = event;
+            chunks.add(chunk);
+            if (executor == null) {
+                signalChunk(worker, chunk, signalEvent);
+            } else {
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        signalChunk(worker, chunk, signalEvent);
+                    }
+                }));
+            }
+            if (ids.size() < chunkSize) {
+                break;
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for signal '" + type + "' to be broadcast", e);
+            } catch (ExecutionException e) {
+                // failures are already reported on the chunk itself
+                logger.debug("Unexpected error while broadcasting signal '{}'", type, e.getCause());
+            }
+        }
+        return chunks;
+    }
+
+    protected void signalChunk(KieSession worker, SignalChunk chunk, Object event) {
+        long start = System.currentTimeMillis();
+        try {
+            worker.execute(new SignalProcessInstancesCommand(chunk.getType(), event, chunk.getProcessInstanceIds()));
+            chunk.completed(System.currentTimeMillis() - start);
+            logger.debug("Signal '{}' delivered to {} process instances of chunk {} in {} ms",
+                    chunk.getType(), chunk.getProcessInstanceIds().size(), chunk.getIndex(), chunk.getDuration());
+            if (listener != null) {
+                listener.chunkCompleted(chunk);
+            }
+        } catch (RuntimeException e) {
+            chunk.failed(System.currentTimeMillis() - start, e);
+            logger.warn("Signal '{}' could not be delivered to chunk {} with process instances {}: {}",
+                    chunk.getType(), chunk.getIndex(), chunk.getProcessInstanceIds(), e.getMessage());
+            if (listener != null) {
+                listener.chunkFailed(chunk, e);
+            }
+        }
+    }
+
+    private static ProcessPersistenceContext getPersistenceContext(InternalKnowledgeRuntime kruntime) {
+        ProcessPersistenceContextManager contextManager
+            = (ProcessPersistenceContextManager) kruntime.getEnvironment().get( EnvironmentName.PERSISTENCE_CONTEXT_MANAGER );
+        return contextManager.getProcessPersistenceContext();
+    }
+
+    private static InternalKnowledgeRuntime getKnowledgeRuntime(Context context) {
+        return (InternalKnowledgeRuntime) ((KnowledgeCommandContext) context).getKieSession();
+    }
+
+    /**
+     * Finds the last process instance waiting for the signal and notifies the in-memory listeners,
+     * without loading any persisted process instance.
+     */
+    private static class StartBroadcastCommand implements GenericCommand<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String type;
+        private final Object event;
+
+        StartBroadcastCommand(String type, Object event) {
+            this.type = type;
+            this.event = event;
+        }
+
+        public Long execute(Context context) {
+            InternalKnowledgeRuntime kruntime = getKnowledgeRuntime(context);
+            Long lastProcessInstanceId = getPersistenceContext(kruntime).getLastProcessInstanceWaitingForEvent(type);
+            kruntime.queueWorkingMemoryAction(new SignalAction(type, event));
+            kruntime.executeQueuedActions();
+            return lastProcessInstanceId;
+        }
+    }
+
+    private static class GetWaitingProcessInstancesCommand implements GenericCommand<List<Long>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String type;
+        private final long afterProcessInstanceId;
+        private final long lastProcessInstanceId;
+        private final int maxResults;
+
+        GetWaitingProcessInstancesCommand(String type, long afterProcessInstanceId, long lastProcessInstanceId, int maxResults) {
+            this.type = type;
+            this.afterProcessInstanceId = afterProcessInstanceId;
+            this.lastProcessInstanceId = lastProcessInstanceId;
+            this.maxResults = maxResults;
+        }
+
+        public List<Long> execute(Context context) {
+            return new ArrayList<Long>(getPersistenceContext(getKnowledgeRuntime(context))
+                    .getProcessInstancesWaitingForEvent(type, afterProcessInstanceId, lastProcessInstanceId, maxResults));
+        }
+    }
+
+    private static class SignalProcessInstancesCommand implements GenericCommand<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String type;
+        private final Object event;
+        private final List<Long> processInstanceIds;
+
+        SignalProcessInstancesCommand(String type, Object event, List<Long> processInstanceIds) {
+            this.type = type;
+            this.event = event;
+            this.processInstanceIds = processInstanceIds;
+        }
+
+        public Void execute(Context context) {
+            KieSession ksession = ((KnowledgeCommandContext) context).getKieSession();
+            for (Long processInstanceId : processInstanceIds) {
+                ksession.signalEvent(type, event, processInstanceId);
+            }
+            return null;
+        }
+    }
+}
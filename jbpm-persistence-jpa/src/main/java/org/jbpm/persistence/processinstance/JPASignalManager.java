@@ -10,6 +10,11 @@ import org.kie.api.runtime.EnvironmentName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Signal manager that loads all persisted process instances waiting for a signal before 
+ * broadcasting it, in the same transaction. For signals that wake up a large number of 
+ * process instances use {@link ChunkedSignalBroadcaster} instead.
+ */
 public class JPASignalManager extends DefaultSignalManager {
     
     private static final Logger logger = LoggerFactory.getLogger(JPASignalManager.class);
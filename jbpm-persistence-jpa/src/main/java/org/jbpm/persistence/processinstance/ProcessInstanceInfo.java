@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -21,6 +22,7 @@ import org.drools.core.marshalling.impl.MarshallerWriteContext;
 import org.drools.core.marshalling.impl.PersisterHelper;
 import org.drools.core.marshalling.impl.ProtobufMarshaller;
 import org.drools.persistence.Transformable;
+import org.jbpm.marshalling.impl.AbstractProtobufProcessInstanceMarshaller;
 import org.jbpm.marshalling.impl.JBPMMessages;
 import org.jbpm.marshalling.impl.ProcessInstanceMarshaller;
 import org.jbpm.marshalling.impl.ProcessMarshallerRegistry;
@@ -35,6 +37,26 @@ import org.kie.api.runtime.process.ProcessInstance;
 @SequenceGenerator(name="processInstanceInfoIdSeq", sequenceName="PROCESS_INSTANCE_INFO_ID_SEQ")
 public class ProcessInstanceInfo implements Transformable {
 
+    /**
+     * Name of the system property (or environment entry, which takes precedence) that enables dirty 
+     * tracking: process instances that were not modified since they were loaded are not marshalled 
+     * again when the transaction completes. Changes made directly to mutable variable values, 
+     * without setting the variable again, are not detected in this mode.
+     */
+    public static final String DIRTY_TRACKING = "org.jbpm.persistence.dirtytracking";
+
+    private static final boolean DIRTY_TRACKING_DEFAULT = Boolean.parseBoolean(System.getProperty(DIRTY_TRACKING, "false"));
+
+    /**
+     * Name of the system property (or environment entry, which takes precedence) that enables externalized 
+     * variable storage: every process variable is stored in its own {@link ProcessInstanceVariableInfo} and 
+     * only changed variables are written when the process instance is persisted. Process instances stored 
+     * either way can always be read, they are converted the next time they are persisted.
+     */
+    public static final String EXTERNAL_VARIABLES = "org.jbpm.persistence.variables.external";
+
+    private static final boolean EXTERNAL_VARIABLES_DEFAULT = Boolean.parseBoolean(System.getProperty(EXTERNAL_VARIABLES, "false"));
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO, generator="processInstanceInfoIdSeq")
     @Column(name = "InstanceId")
@@ -64,6 +86,9 @@ public class ProcessInstanceInfo implements Transformable {
     
     @Transient
     Environment                               env;
+    
+    @Transient
+    private ProcessInstanceVariableStore      variableStore;
 
     protected ProcessInstanceInfo() {
     }
@@ -157,8 +182,14 @@ public class ProcessInstanceInfo implements Transformable {
                                                                               );
                 ProcessInstanceMarshaller marshaller = getMarshallerFromContext( context );
             	context.wm = ((StatefulKnowledgeSessionImpl) kruntime).getInternalWorkingMemory();
-                processInstance = marshaller.readProcessInstance(context);
+                if ( marshaller instanceof AbstractProtobufProcessInstanceMarshaller ) {
+                    processInstance = ((AbstractProtobufProcessInstanceMarshaller) marshaller).readProcessInstance( context,
+                                                                                                                    getVariableStore() );
+                } else {
+                    processInstance = marshaller.readProcessInstance(context);
+                }
                 ((WorkflowProcessInstanceImpl) processInstance).setPersisted(false);
+                ((WorkflowProcessInstanceImpl) processInstance).clearDirty();
                 if (readOnly) {
                     ((WorkflowProcessInstanceImpl) processInstance).disconnect();
                 }
@@ -190,6 +221,11 @@ public class ProcessInstanceInfo implements Transformable {
 //    	if (processInstance == null) {
 //    		return;
 //    	}
+        if ( processInstanceByteArray != null && isDirtyTrackingEnabled()
+                && !((WorkflowProcessInstanceImpl) processInstance).isDirty() ) {
+            ((WorkflowProcessInstanceImpl) processInstance).setPersisted(true);
+            return;
+        }
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         boolean variablesChanged = false;
         try {
@@ -205,8 +241,22 @@ public class ProcessInstanceInfo implements Transformable {
                                      processType );
             ProcessInstanceMarshaller marshaller = ProcessMarshallerRegistry.INSTANCE.getMarshaller( processType );
             
-            Object result = marshaller.writeProcessInstance( context,
-                                                             processInstance);
+            Object result;
+            if ( marshaller instanceof AbstractProtobufProcessInstanceMarshaller && isExternalVariablesEnabled() ) {
+                result = ((AbstractProtobufProcessInstanceMarshaller) marshaller).writeProcessInstance( context,
+                                                                                                        processInstance,
+                                                                                                        getVariableStore() );
+            } else {
+                if ( variableStore != null && variableStore.hasStoredVariables() ) {
+                    // variables are written inline again, drop the previously externalized ones
+                    variableStore.storeVariables( context, processInstance, Collections.<String, Object>emptyMap() );
+                }
+                result = marshaller.writeProcessInstance( context,
+                                                          processInstance);
+            }
+            if ( variableStore != null ) {
+                variablesChanged = variableStore.clearModified();
+            }
             if( marshaller instanceof ProtobufRuleFlowProcessInstanceMarshaller && result != null ) {
                 JBPMMessages.ProcessInstance _instance = (JBPMMessages.ProcessInstance)result;
                 PersisterHelper.writeToStreamWithHeader( context, 
@@ -229,6 +279,42 @@ public class ProcessInstanceInfo implements Transformable {
             }
         }
         ((WorkflowProcessInstanceImpl) processInstance).setPersisted(true);
+        ((WorkflowProcessInstanceImpl) processInstance).clearDirty();
+    }
+
+    private boolean isDirtyTrackingEnabled() {
+        if ( env != null ) {
+            Object enabled = env.get( DIRTY_TRACKING );
+            if ( enabled != null ) {
+                return Boolean.parseBoolean( enabled.toString() );
+            }
+        }
+        return DIRTY_TRACKING_DEFAULT;
+    }
+
+    private boolean isExternalVariablesEnabled() {
+        if ( env != null ) {
+            Object enabled = env.get( EXTERNAL_VARIABLES );
+            if ( enabled != null ) {
+                return Boolean.parseBoolean( enabled.toString() );
+            }
+        }
+        return EXTERNAL_VARIABLES_DEFAULT;
+    }
+
+    private ProcessInstanceVariableStore getVariableStore() {
+        if ( variableStore == null ) {
+            variableStore = new ProcessInstanceVariableStore( env, isDirtyTrackingEnabled() );
+        }
+        return variableStore;
+    }
+
+    /**
+     * Returns whether variables of this process instance are, or might be, stored in 
+     * {@link ProcessInstanceVariableInfo} entities.
+     */
+    public boolean hasExternalVariables() {
+        return isExternalVariablesEnabled() || (variableStore != null && variableStore.hasStoredVariables());
     }
 
 
@@ -309,6 +395,7 @@ public class ProcessInstanceInfo implements Transformable {
     }
     
     public void clearProcessInstance(){
+        variableStore = null;
         processInstance = null;
     }
     
@@ -0,0 +1,135 @@
+package org.jbpm.persistence.processinstance;
+
+import java.io.IOException;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Version;
+
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.marshalling.ObjectMarshallingStrategy.Context;
+
+/**
+ * Marshalled value of a single (top level) process variable, stored next to the 
+ * {@link ProcessInstanceInfo} when externalized variable storage is enabled.
+ * </p>
+ * The value is marshalled with the {@link ObjectMarshallingStrategy} whose index and class name are 
+ * kept in <code>strategy</code>, and the strategy context the value refers to is kept in 
+ * <code>strategyContext</code>, so that it can be read without loading the process instance, 
+ * see {@link #getValue(ObjectMarshallingStrategy[], ClassLoader)}.
+ */
+@Entity
+@SequenceGenerator(name="processInstanceVariableInfoIdSeq", sequenceName="PROC_INST_VAR_INFO_ID_SEQ")
+@NamedQueries({
+    @NamedQuery(name="GetProcessInstanceVariables", 
+                query="select v from ProcessInstanceVariableInfo v where v.processInstanceId = :processInstanceId"),
+    @NamedQuery(name="GetProcessInstanceVariable", 
+                query="select v from ProcessInstanceVariableInfo v where v.processInstanceId = :processInstanceId and v.name = :name")
+})
+public class ProcessInstanceVariableInfo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO, generator="processInstanceVariableInfoIdSeq")
+    private Long id;
+
+    @Version
+    @Column(name = "OPTLOCK")
+    private int version;
+
+    @Column(nullable = false)
+    private Long processInstanceId;
+
+    @Column(nullable = false)
+    private String name;
+
+    private String strategy;
+
+    @Lob
+    @Column(name = "variableValue", length=2147483647)
+    private byte[] value;
+
+    @Lob
+    @Column(length=2147483647)
+    private byte[] strategyContext;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastModificationDate;
+
+    protected ProcessInstanceVariableInfo() {
+    }
+
+    public ProcessInstanceVariableInfo(Long processInstanceId, String name) {
+        this.processInstanceId = processInstanceId;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Long getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Index in the environment's strategies and class name of the {@link ObjectMarshallingStrategy} 
+     * that marshalled the value, separated by a colon.
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    /**
+     * Serialized context of the strategy, <code>null</code> when the strategy has none.
+     */
+    public byte[] getStrategyContext() {
+        return strategyContext;
+    }
+
+    public Date getLastModificationDate() {
+        return lastModificationDate;
+    }
+
+    public void update(String strategy, byte[] value, byte[] strategyContext) {
+        this.strategy = strategy;
+        this.value = value;
+        this.strategyContext = strategyContext;
+        this.lastModificationDate = new Date();
+    }
+
+    /**
+     * Unmarshals the value with the matching strategy out of the given ones (the environment's 
+     * object marshalling strategies) and its stored strategy context.
+     */
+    public Object getValue(ObjectMarshallingStrategy[] strategies, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        ObjectMarshallingStrategy marshallingStrategy = ProcessInstanceVariableStore.findStrategy(strategies, strategy);
+        Context context = ProcessInstanceVariableStore.readStrategyContext(marshallingStrategy, strategyContext, classLoader);
+        return marshallingStrategy.unmarshal(context, null, value, classLoader);
+    }
+
+    public String toString() {
+        return "ProcessInstanceVariableInfo [processInstanceId=" + processInstanceId + ", name=" + name + "]";
+    }
+}
@@ -0,0 +1,239 @@
+package org.jbpm.persistence.processinstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.core.common.DroolsObjectInputStream;
+import org.drools.core.marshalling.impl.ClassObjectMarshallingStrategyAcceptor;
+import org.drools.core.marshalling.impl.MarshallerReaderContext;
+import org.drools.core.marshalling.impl.MarshallerWriteContext;
+import org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy;
+import org.jbpm.marshalling.impl.ExternalVariableStore;
+import org.jbpm.persistence.ProcessPersistenceContext;
+import org.jbpm.persistence.ProcessPersistenceContextManager;
+import org.jbpm.workflow.instance.impl.WorkflowProcessInstanceImpl;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.marshalling.ObjectMarshallingStrategy.Context;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.process.ProcessInstance;
+
+/**
+ * {@link ExternalVariableStore} that keeps every process variable of a {@link ProcessInstanceInfo}
+ * in its own {@link ProcessInstanceVariableInfo}, so that only the variables that actually changed 
+ * are written when the process instance is persisted.
+ * </p>
+ * Values are marshalled with the strategy selected by the environment's object marshalling strategies, 
+ * each one with its own strategy context. That context is stored next to the value (as 
+ * {@link org.jbpm.marshalling.impl.ProtobufProcessMarshaller} does for the whole process instance), 
+ * and the strategy is identified by its index in the environment's strategies together with its 
+ * class name, see {@link #findStrategy(ObjectMarshallingStrategy[], String)}.
+ */
+public class ProcessInstanceVariableStore implements ExternalVariableStore {
+
+    private final Environment env;
+    private final boolean dirtyTracking;
+    private Map<String, ProcessInstanceVariableInfo> variables;
+    private boolean modified;
+
+    public ProcessInstanceVariableStore(Environment env, boolean dirtyTracking) {
+        this.env = env;
+        this.dirtyTracking = dirtyTracking;
+    }
+
+    public void storeVariables(MarshallerWriteContext context,
+                               ProcessInstance processInstance,
+                               Map<String, Object> values) throws IOException {
+        ProcessPersistenceContext persistenceContext = getPersistenceContext();
+        Map<String, ProcessInstanceVariableInfo> stored = getStoredVariables(persistenceContext, processInstance.getId());
+        Set<String> changedVariables = ((WorkflowProcessInstanceImpl) processInstance).getChangedVariables();
+        ObjectMarshallingStrategy[] strategies = getStrategies();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            ProcessInstanceVariableInfo variableInfo = stored.get(entry.getKey());
+            if (variableInfo != null && dirtyTracking && !changedVariables.contains(entry.getKey())) {
+                continue;
+            }
+            ObjectMarshallingStrategy strategy = context.objectMarshallingStrategyStore.getStrategyObject(entry.getValue());
+            Context strategyContext = strategy.createContext();
+            byte[] value = strategy.marshal(strategyContext, context, entry.getValue());
+            byte[] strategyContextData = writeStrategyContext(strategyContext);
+            String strategyName = getStrategyName(strategies, strategy);
+            if (variableInfo == null) {
+                variableInfo = new ProcessInstanceVariableInfo(processInstance.getId(), entry.getKey());
+                variableInfo.update(strategyName, value, strategyContextData);
+                persistenceContext.persist(variableInfo);
+                stored.put(entry.getKey(), variableInfo);
+                modified = true;
+            } else if (!strategyName.equals(variableInfo.getStrategy()) 
+                    || !Arrays.equals(value, variableInfo.getValue())
+                    || !Arrays.equals(strategyContextData, variableInfo.getStrategyContext())) {
+                variableInfo.update(strategyName, value, strategyContextData);
+                modified = true;
+            }
+        }
+        Iterator<Map.Entry<String, ProcessInstanceVariableInfo>> iterator = stored.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ProcessInstanceVariableInfo> entry = iterator.next();
+            if (values.get(entry.getKey()) == null) {
+                persistenceContext.remove(entry.getValue());
+                iterator.remove();
+                modified = true;
+            }
+        }
+    }
+
+    public Map<String, Object> loadVariables(MarshallerReaderContext context,
+                                             ProcessInstance processInstance,
+                                             Collection<String> names) throws IOException, ClassNotFoundException {
+        Map<String, ProcessInstanceVariableInfo> stored = getStoredVariables(getPersistenceContext(), processInstance.getId());
+        ObjectMarshallingStrategy[] strategies = getStrategies();
+        ClassLoader classLoader = context.kBase == null ? null : context.kBase.getRootClassLoader();
+        Map<String, Object> result = new HashMap<String, Object>();
+        for (String name : names) {
+            ProcessInstanceVariableInfo variableInfo = stored.get(name);
+            if (variableInfo == null) {
+                throw new IllegalStateException("Variable " + name + " of process instance " + processInstance.getId() + " is not stored");
+            }
+            result.put(name, variableInfo.getValue(strategies, classLoader));
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether any variable was (or is about to be) inserted, updated or deleted since the 
+     * last call, and resets that state.
+     */
+    public boolean clearModified() {
+        boolean result = modified;
+        modified = false;
+        return result;
+    }
+
+    /**
+     * Returns whether variables of the process instance are known to be stored by this store.
+     */
+    public boolean hasStoredVariables() {
+        return variables != null && !variables.isEmpty();
+    }
+
+    private Map<String, ProcessInstanceVariableInfo> getStoredVariables(ProcessPersistenceContext persistenceContext, long processInstanceId) {
+        if (variables == null) {
+            variables = new HashMap<String, ProcessInstanceVariableInfo>();
+            for (ProcessInstanceVariableInfo variableInfo : persistenceContext.findProcessInstanceVariables(processInstanceId)) {
+                variables.put(variableInfo.getName(), variableInfo);
+            }
+        }
+        return variables;
+    }
+
+    private ProcessPersistenceContext getPersistenceContext() {
+        ProcessPersistenceContextManager contextManager
+            = (ProcessPersistenceContextManager) env.get(EnvironmentName.PERSISTENCE_CONTEXT_MANAGER);
+        if (contextManager == null) {
+            throw new IllegalStateException("Externalized process variables require a persistence context manager in the environment");
+        }
+        return contextManager.getProcessPersistenceContext();
+    }
+
+    private ObjectMarshallingStrategy[] getStrategies() {
+        return env == null ? null : (ObjectMarshallingStrategy[]) env.get(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES);
+    }
+
+    /**
+     * Returns the name the given strategy is stored with: its index in the given strategies 
+     * (or <code>-1</code> when it is not one of them, e.g. the default strategy) and its class name.
+     */
+    static String getStrategyName(ObjectMarshallingStrategy[] strategies, ObjectMarshallingStrategy strategy) {
+        int index = -1;
+        if (strategies != null) {
+            for (int i = 0; i < strategies.length; i++) {
+                if (strategies[i] == strategy) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+        return index + ":" + strategy.getClass().getName();
+    }
+
+    /**
+     * Finds the strategy stored with the given name, see {@link #getStrategyName(ObjectMarshallingStrategy[], ObjectMarshallingStrategy)}.
+     * The strategy at the stored index is used when it still has the stored class, otherwise the 
+     * only strategy with that class; names without index are matched by class name only.
+     */
+    static ObjectMarshallingStrategy findStrategy(ObjectMarshallingStrategy[] strategies, String name) {
+        String className = name;
+        int index = -1;
+        int separator = name == null ? -1 : name.indexOf(':');
+        if (separator > 0) {
+            try {
+                index = Integer.parseInt(name.substring(0, separator));
+                className = name.substring(separator + 1);
+            } catch (NumberFormatException e) {
+                index = -1;
+            }
+        }
+        if (strategies != null) {
+            if (index >= 0 && index < strategies.length && strategies[index].getClass().getName().equals(className)) {
+                return strategies[index];
+            }
+            ObjectMarshallingStrategy found = null;
+            for (ObjectMarshallingStrategy strategy : strategies) {
+                if (strategy.getClass().getName().equals(className)) {
+                    if (found != null) {
+                        throw new IllegalStateException("Marshalling strategy " + name + " to read process variable is ambiguous, " 
+                                + "more than one strategy of class " + className + " is configured");
+                    }
+                    found = strategy;
+                }
+            }
+            if (found != null) {
+                return found;
+            }
+        }
+        if (SerializablePlaceholderResolverStrategy.class.getName().equals(className)) {
+            // default strategy used when none is configured
+            return new SerializablePlaceholderResolverStrategy(ClassObjectMarshallingStrategyAcceptor.DEFAULT);
+        }
+        throw new IllegalStateException("No marshalling strategy " + name + " available to read process variable");
+    }
+
+    static byte[] writeStrategyContext(Context strategyContext) throws IOException {
+        if (strategyContext == null) {
+            return null;
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream stream = new ObjectOutputStream(baos);
+        strategyContext.write(stream);
+        stream.close();
+        return baos.toByteArray();
+    }
+
+    static Context readStrategyContext(ObjectMarshallingStrategy strategy, byte[] data, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        Context strategyContext = strategy.createContext();
+        if (strategyContext != null && data != null) {
+            if (classLoader == null) {
+                classLoader = ProcessInstanceVariableStore.class.getClassLoader();
+            }
+            ObjectInputStream stream = new DroolsObjectInputStream(new ByteArrayInputStream(data), classLoader);
+            try {
+                strategyContext.read(stream);
+            } finally {
+                stream.close();
+            }
+        }
+        return strategyContext;
+    }
+}
@@ -0,0 +1,14 @@
+package org.jbpm.persistence.processinstance;
+
+/**
+ * Receives progress notifications of a {@link ChunkedSignalBroadcaster} broadcast.
+ * Methods might be invoked from worker threads when the broadcaster is configured
+ * with an executor.
+ */
+public interface SignalBroadcastListener {
+
+    void chunkCompleted(SignalChunk chunk);
+
+    void chunkFailed(SignalChunk chunk, Throwable error);
+
+}
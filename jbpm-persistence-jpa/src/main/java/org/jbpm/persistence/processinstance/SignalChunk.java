@@ -0,0 +1,72 @@
+package org.jbpm.persistence.processinstance;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Group of process instances signaled together, in one transaction, by the
+ * {@link ChunkedSignalBroadcaster}.
+ */
+public class SignalChunk {
+
+    private final String type;
+    private final int index;
+    private final List<Long> processInstanceIds;
+    private volatile boolean completed;
+    private volatile Throwable error;
+    private volatile long duration;
+
+    public SignalChunk(String type, int index, List<Long> processInstanceIds) {
+        this.type = type;
+        this.index = index;
+        this.processInstanceIds = Collections.unmodifiableList(processInstanceIds);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Position of this chunk within the broadcast, starting with 0.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public List<Long> getProcessInstanceIds() {
+        return processInstanceIds;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the reason the chunk transaction was rolled back or <code>null</code> if it did not fail.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Time spent signaling and persisting this chunk, in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    void completed(long duration) {
+        this.duration = duration;
+        this.completed = true;
+    }
+
+    void failed(long duration, Throwable error) {
+        this.duration = duration;
+        this.error = error;
+    }
+
+    public String toString() {
+        return "SignalChunk [type=" + type + ", index=" + index + ", size=" + processInstanceIds.size()
+                + ", completed=" + completed + ", duration=" + duration + "ms]";
+    }
+}
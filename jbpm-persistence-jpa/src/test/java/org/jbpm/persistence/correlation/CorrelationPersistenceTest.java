@@ -4,7 +4,9 @@ import static org.jbpm.persistence.util.PersistenceUtil.JBPM_PERSISTENCE_UNIT_NA
 import static org.jbpm.persistence.util.PersistenceUtil.cleanUp;
 import static org.jbpm.persistence.util.PersistenceUtil.setupWithPoolingDataSource;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,6 +20,7 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.Query;
 import javax.transaction.UserTransaction;
 
+import org.jbpm.persistence.JpaProcessPersistenceContext;
 import org.jbpm.test.util.AbstractBaseTest;
 import org.junit.After;
 import org.junit.Before;
@@ -124,4 +127,57 @@ public class CorrelationPersistenceTest extends AbstractBaseTest {
         assertNotNull(processInstances);
         assertEquals(1, processInstances.size());
     }
+
+    @Test
+    public void testFindCorrelationByDigest() throws Exception {
+        EntityManagerFactory emf = (EntityManagerFactory) context.get(EnvironmentName.ENTITY_MANAGER_FACTORY);
+        EntityManager em = emf.createEntityManager();
+
+        Query query = em.createNamedQuery("GetProcessInstanceIdByCorrelationDigest");
+        query.setParameter("digest", CorrelationKeyDigest.digest(Arrays.asList(new String[] {"123test", "test123"})));
+        
+        List<Long> processInstances = query.getResultList();
+        assertEquals(1, processInstances.size());
+
+        query.setParameter("digest", CorrelationKeyDigest.digest(Arrays.asList(new String[] {"test123"})));
+        processInstances = query.getResultList();
+        assertEquals(1, processInstances.size());
+
+        query.setParameter("digest", CorrelationKeyDigest.digest(Arrays.asList(new String[] {"123test"})));
+        processInstances = query.getResultList();
+        em.close();
+        assertEquals(0, processInstances.size());
+    }
+
+    @Test
+    public void testCorrelationDigestIsCanonical() {
+        String digest = CorrelationKeyDigest.digest(Arrays.asList(new String[] {"test123", "123test"}));
+        assertEquals(64, digest.length());
+        assertEquals(digest, CorrelationKeyDigest.digest(Arrays.asList(new String[] {"123test", "test123"})));
+        assertFalse(digest.equals(CorrelationKeyDigest.digest(Arrays.asList(new String[] {"test123123test"}))));
+        assertFalse(CorrelationKeyDigest.digest(Arrays.asList(new String[] {"a|", "b"}))
+                .equals(CorrelationKeyDigest.digest(Arrays.asList(new String[] {"a", "|b"}))));
+    }
+
+    @Test
+    public void testFindCorrelationWithoutDigest() throws Exception {
+        EntityManagerFactory emf = (EntityManagerFactory) context.get(EnvironmentName.ENTITY_MANAGER_FACTORY);
+        // correlation keys persisted before the digest was introduced have none
+        UserTransaction ut = InitialContext.doLookup("java:comp/UserTransaction");
+        ut.begin();
+        EntityManager em = emf.createEntityManager();
+        em.createQuery("update CorrelationKeyInfo set keyDigest = null").executeUpdate();
+        ut.commit();
+
+        em = emf.createEntityManager();
+        CorrelationKeyFactory factory = KieInternalServices.Factory.get().newCorrelationKeyFactory();
+        JpaProcessPersistenceContext persistenceContext = new JpaProcessPersistenceContext(em, null);
+        assertNotNull(persistenceContext.getProcessInstanceByCorrelationKey(factory.newCorrelationKey("test123")));
+        List<String> props = new ArrayList<String>();
+        props.add("test123");
+        props.add("123test");
+        assertNotNull(persistenceContext.getProcessInstanceByCorrelationKey(factory.newCorrelationKey(props)));
+        assertNull(persistenceContext.getProcessInstanceByCorrelationKey(factory.newCorrelationKey("123test")));
+        em.close();
+    }
 }
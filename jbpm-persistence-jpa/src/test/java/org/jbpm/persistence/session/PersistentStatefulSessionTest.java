@@ -11,9 +11,15 @@ import java.util.List;
 import java.util.Map;
 
 import javax.naming.InitialContext;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.transaction.UserTransaction;
 
 import org.drools.core.io.impl.ClassPathResource;
+import org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy;
+import org.jbpm.persistence.processinstance.ProcessInstanceInfo;
+import org.jbpm.persistence.processinstance.ProcessInstanceVariableInfo;
+import org.jbpm.persistence.session.objects.MyVariableSerializable;
 import org.jbpm.persistence.session.objects.TestWorkItemHandler;
 import org.jbpm.process.instance.impl.demo.SystemOutWorkItemHandler;
 import org.jbpm.test.util.AbstractBaseTest;
@@ -34,10 +40,12 @@ import org.kie.api.event.process.ProcessNodeTriggeredEvent;
 import org.kie.api.event.process.ProcessStartedEvent;
 import org.kie.api.event.process.ProcessVariableChangedEvent;
 import org.kie.api.io.ResourceType;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
 import org.kie.api.runtime.Environment;
 import org.kie.api.runtime.EnvironmentName;
 import org.kie.api.runtime.process.ProcessInstance;
 import org.kie.api.runtime.process.WorkItem;
+import org.kie.api.runtime.process.WorkflowProcessInstance;
 import org.kie.internal.KnowledgeBase;
 import org.kie.internal.KnowledgeBaseFactory;
 import org.kie.internal.builder.KnowledgeBuilder;
@@ -620,6 +628,93 @@ public class PersistentStatefulSessionTest extends AbstractBaseTest {
         assertNull( processInstance );
     }
 
+    @Test
+    public void testPersistenceExternalVariables() {
+        env.set( ProcessInstanceInfo.EXTERNAL_VARIABLES, "true" );
+        KnowledgeBuilder kbuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+        kbuilder.add( new ClassPathResource( "VariablesProcess.rf" ), ResourceType.DRF );
+        KnowledgeBase kbase = KnowledgeBaseFactory.newKnowledgeBase();
+        kbase.addKnowledgePackages( kbuilder.getKnowledgePackages() );
+
+        StatefulKnowledgeSession ksession = JPAKnowledgeService.newStatefulKnowledgeSession( kbase, null, env );
+        int id = ksession.getId();
+
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("name", "John Doe");
+        ProcessInstance processInstance = ksession.startProcess( "org.drools.test.TestProcess", parameters );
+        long processInstanceId = processInstance.getId();
+
+        EntityManagerFactory emf = (EntityManagerFactory) env.get( EnvironmentName.ENTITY_MANAGER_FACTORY );
+        assertEquals( 1, getProcessInstanceVariables( emf, processInstanceId ).size() );
+        assertEquals( "name", getProcessInstanceVariables( emf, processInstanceId ).get( 0 ).getName() );
+
+        TestWorkItemHandler handler = TestWorkItemHandler.getInstance();
+        WorkItem workItem = handler.getWorkItem();
+        assertNotNull( workItem );
+
+        ksession = JPAKnowledgeService.loadStatefulKnowledgeSession( id, kbase, null, env );
+        ksession.getWorkItemManager().completeWorkItem( workItem.getId(), null );
+
+        workItem = handler.getWorkItem();
+        assertNotNull( workItem );
+        assertEquals( "John Doe", workItem.getParameter("text"));
+
+        ksession = JPAKnowledgeService.loadStatefulKnowledgeSession( id, kbase, null, env );
+        ksession.getWorkItemManager().completeWorkItem( workItem.getId(), null );
+
+        ksession = JPAKnowledgeService.loadStatefulKnowledgeSession( id, kbase, null, env );
+        assertNull( ksession.getProcessInstance( processInstanceId ) );
+        assertTrue( getProcessInstanceVariables( emf, processInstanceId ).isEmpty() );
+    }
+
+    @Test
+    public void testPersistenceExternalSerializableVariable() throws Exception {
+        env.set( ProcessInstanceInfo.EXTERNAL_VARIABLES, "true" );
+        KnowledgeBuilder kbuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+        kbuilder.add( new ClassPathResource( "VariablesProcess.rf" ), ResourceType.DRF );
+        KnowledgeBase kbase = KnowledgeBaseFactory.newKnowledgeBase();
+        kbase.addKnowledgePackages( kbuilder.getKnowledgePackages() );
+
+        StatefulKnowledgeSession ksession = JPAKnowledgeService.newStatefulKnowledgeSession( kbase, null, env );
+        int id = ksession.getId();
+
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("name", "John Doe");
+        parameters.put("person", new MyVariableSerializable("John"));
+        ProcessInstance processInstance = ksession.startProcess( "org.drools.test.TestProcess", parameters );
+        long processInstanceId = processInstance.getId();
+
+        // the value refers to the context of the default strategy, so that context must be stored as well
+        EntityManagerFactory emf = (EntityManagerFactory) env.get( EnvironmentName.ENTITY_MANAGER_FACTORY );
+        ProcessInstanceVariableInfo variableInfo = null;
+        for (ProcessInstanceVariableInfo info : getProcessInstanceVariables( emf, processInstanceId )) {
+            if ("person".equals(info.getName())) {
+                variableInfo = info;
+            }
+        }
+        assertNotNull( variableInfo );
+        assertTrue( variableInfo.getStrategy().endsWith( ":" + SerializablePlaceholderResolverStrategy.class.getName() ) );
+        assertNotNull( variableInfo.getStrategyContext() );
+        ObjectMarshallingStrategy[] strategies = (ObjectMarshallingStrategy[]) env.get( EnvironmentName.OBJECT_MARSHALLING_STRATEGIES );
+        assertEquals( new MyVariableSerializable("John"), variableInfo.getValue( strategies, getClass().getClassLoader() ) );
+
+        ksession = JPAKnowledgeService.loadStatefulKnowledgeSession( id, kbase, null, env );
+        processInstance = ksession.getProcessInstance( processInstanceId );
+        assertNotNull( processInstance );
+        assertEquals( new MyVariableSerializable("John"), ((WorkflowProcessInstance) processInstance).getVariable( "person" ) );
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProcessInstanceVariableInfo> getProcessInstanceVariables(EntityManagerFactory emf, long processInstanceId) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createNamedQuery( "GetProcessInstanceVariables" )
+                    .setParameter( "processInstanceId", processInstanceId ).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
     @Test
     public void testSetFocus() {
         String str = "";
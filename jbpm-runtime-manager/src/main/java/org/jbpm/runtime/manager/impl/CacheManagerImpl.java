@@ -16,7 +16,6 @@
 
 package org.jbpm.runtime.manager.impl;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.kie.internal.runtime.Cacheable;
@@ -47,9 +46,9 @@ public class CacheManagerImpl implements CacheManager {
 
 	@Override
 	public void dispose() {
-		for (Map.Entry<String, Object> entry : cache.entrySet()) {
-			if (entry instanceof Cacheable) {
-				((Cacheable) entry).close();
+		for (Object value : cache.values()) {
+			if (value instanceof Cacheable) {
+				((Cacheable) value).close();
 			}
 		}
 		cache.clear();
@@ -65,7 +65,9 @@ public class ManagedAuditEventBuilderImpl extends DefaultAuditEventBuilderImpl {
 	@Override
 	public AuditEvent buildEvent(ProcessVariableChangedEvent pvce) {
 		VariableInstanceLog variableLog = (VariableInstanceLog) super.buildEvent(pvce);
-		variableLog.setExternalId(ownerId);
+		if (variableLog != null) {
+			variableLog.setExternalId(ownerId);
+		}
 		return variableLog;
 	}
 
@@ -15,7 +15,9 @@
  */
 package org.jbpm.runtime.manager.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -27,13 +29,16 @@ import org.drools.core.command.impl.KnowledgeCommandContext;
 import org.drools.persistence.OrderedTransactionSynchronization;
 import org.drools.persistence.TransactionManager;
 import org.drools.persistence.TransactionManagerHelper;
+import org.drools.persistence.TransactionSynchronization;
 import org.drools.persistence.jta.JtaTransactionManager;
 import org.jbpm.runtime.manager.impl.factory.LocalTaskServiceFactory;
+import org.jbpm.runtime.manager.impl.mapper.CachingMapper;
 import org.jbpm.runtime.manager.impl.mapper.EnvironmentAwareProcessInstanceContext;
 import org.jbpm.runtime.manager.impl.mapper.InMemoryMapper;
 import org.jbpm.runtime.manager.impl.mapper.JPAMapper;
 import org.jbpm.runtime.manager.impl.tx.DestroySessionTransactionSynchronization;
 import org.jbpm.runtime.manager.impl.tx.DisposeSessionTransactionSynchronization;
+import org.jbpm.runtime.manager.impl.tx.ReleaseEngineTransactionSynchronization;
 import org.kie.api.event.process.DefaultProcessEventListener;
 import org.kie.api.event.process.ProcessCompletedEvent;
 import org.kie.api.event.process.ProcessStartedEvent;
@@ -71,6 +76,12 @@ import org.slf4j.LoggerFactory;
  *  <li>CorrelationKeyContext</li>
  *  <li>EmptyContext - for initial RuntimeEngine to start process only</li>
  * </ul>
+ * When used with persistence, loaded ksessions can be kept warm between requests by setting the 
+ * <code>org.jbpm.rm.ppi.cache.size</code> system property to the maximum number of ksessions to be cached.
+ * Cached ksessions are reused (one request at a time) instead of being reloaded from the data base,
+ * see {@link RuntimeEngineCache}. Within a transaction the ksession is given back to the cache only once the
+ * transaction completes. Similarly, context to ksession mappings can be cached by setting the
+ * <code>org.jbpm.rm.mapping.cache.size</code> system property, see {@link CachingMapper}.
  */
 public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
 	
@@ -80,14 +91,25 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
     private TaskServiceFactory taskServiceFactory;
     
     private static ThreadLocal<Map<Object, RuntimeEngine>> local = new ThreadLocal<Map<Object, RuntimeEngine>>();
+    private static ThreadLocal<Map<RuntimeEngine, RuntimeEngineCache.Lease>> leases = new ThreadLocal<Map<RuntimeEngine, RuntimeEngineCache.Lease>>();
     
     private Mapper mapper;
     
+    private RuntimeEngineCache engineCache;
+    
     public PerProcessInstanceRuntimeManager(RuntimeEnvironment environment, SessionFactory factory, TaskServiceFactory taskServiceFactory, String identifier) {
         super(environment, identifier);
         this.factory = factory;
         this.taskServiceFactory = taskServiceFactory;
         this.mapper = ((org.kie.internal.runtime.manager.RuntimeEnvironment)environment).getMapper();
+        int mappingCacheSize = Integer.parseInt(System.getProperty("org.jbpm.rm.mapping.cache.size", "0"));
+        if (mappingCacheSize > 0 && this.mapper instanceof JPAMapper) {
+            this.mapper = new CachingMapper(this.mapper, mappingCacheSize);
+        }
+        int cacheSize = Integer.parseInt(System.getProperty("org.jbpm.rm.ppi.cache.size", "0"));
+        if (cacheSize > 0 && ((org.kie.internal.runtime.manager.RuntimeEnvironment)environment).usePersistence()) {
+            this.engineCache = new RuntimeEngineCache(cacheSize);
+        }
         this.registry.register(this);
     }
     
@@ -115,17 +137,25 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
 				if (localRuntime != null) {
 					return localRuntime;
 				}
+				RuntimeEngine cachedRuntime = leaseCachedRuntime(contextId, null);
+				if (cachedRuntime != null) {
+					return cachedRuntime;
+				}
 				ksessionId = mapper.findMapping(context, this.identifier);
 				if (ksessionId == null) {
 					throw new SessionNotFoundException("No session found for context " + context.getContextId());
 				}
+				cachedRuntime = leaseCachedRuntime(contextId, ksessionId);
+				if (cachedRuntime != null) {
+					return cachedRuntime;
+				}
 				ksession = factory.findKieSessionById(ksessionId);
 			}
 			InternalTaskService internalTaskService = (InternalTaskService) taskServiceFactory.newTaskService();			
 			runtime = new RuntimeEngineImpl(ksession, internalTaskService);
 			((RuntimeEngineImpl) runtime).setManager(this);
 			configureRuntimeOnTaskService(internalTaskService, runtime);
-			registerDisposeCallback(runtime, new DisposeSessionTransactionSynchronization(this, runtime));
+			registerDisposeCallback(runtime, newDisposeCallback(runtime, ksessionId));
 			registerItems(runtime);
 			attachManager(runtime);
 			ksession.addEventListener(new MaintainMappingListener(ksessionId, runtime, this.identifier));
@@ -136,10 +166,18 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
 			}
     		// lazy initialization of ksession and task service
 	    	if (contextId != null && !(context instanceof EmptyContext)) {
+	    		RuntimeEngine cachedRuntime = leaseCachedRuntime(contextId, null);
+				if (cachedRuntime != null) {
+					return cachedRuntime;
+				}
 	    		Integer found = mapper.findMapping(context, this.identifier);
 			    if (found == null) {
 			        throw new SessionNotFoundException("No session found for context " + context.getContextId());
 			    }
+			    cachedRuntime = leaseCachedRuntime(contextId, found);
+				if (cachedRuntime != null) {
+					return cachedRuntime;
+				}
 	    	}
 	    	runtime = new RuntimeEngineImpl(context, new PerProcessInstanceInitializer());
 	        ((RuntimeEngineImpl) runtime).setManager(this);
@@ -150,6 +188,66 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
         return runtime;
     }
     
+    /**
+     * Leases warm runtime engine from the cache, either by context id or (when given) by ksession id.
+     */
+    protected RuntimeEngine leaseCachedRuntime(Object contextId, Integer ksessionId) {
+    	if (engineCache == null) {
+    		return null;
+    	}
+    	RuntimeEngineCache.Lease lease = null;
+    	if (ksessionId != null) {
+    		lease = engineCache.lease(ksessionId);
+    	} else if (contextId instanceof Long) {
+    		// only process instance ids are known to the cache, same as for the thread local runtimes
+    		lease = engineCache.leaseByContext(contextId);
+    	}
+    	if (lease == null) {
+    		return null;
+    	}
+    	RuntimeEngine runtime = lease.getEngine();
+    	((RuntimeEngineImpl) runtime).setAfterCompletion(false);
+    	saveLease(lease);
+    	registerDisposeCallback(runtime, new ReleaseEngineTransactionSynchronization(this, lease));
+    	saveLocalRuntime(contextId, runtime);
+    	return runtime;
+    }
+    
+    /**
+     * Creates transaction synchronization that disposes given runtime engine, or gives it back to the cache
+     * when caching is enabled.
+     */
+    protected TransactionSynchronization newDisposeCallback(RuntimeEngine runtime, Integer ksessionId) {
+    	if (engineCache == null) {
+    		return new DisposeSessionTransactionSynchronization(this, runtime);
+    	}
+    	RuntimeEngineCache.Lease lease = findLease(runtime);
+    	if (lease == null) {
+    		lease = engineCache.newLease(ksessionId, runtime);
+    		saveLease(lease);
+    	}
+    	return new ReleaseEngineTransactionSynchronization(this, lease);
+    }
+    
+    /**
+     * Gives runtime engine of given lease back to the cache once the transaction that used it completed,
+     * engines used by rolled back transactions are disposed instead.
+     */
+    public void releaseCachedRuntime(RuntimeEngineCache.Lease lease, boolean committed) {
+    	RuntimeEngineImpl runtime = (RuntimeEngineImpl) lease.getEngine();
+    	removeLease(lease);
+    	lease.addContextIds(removeLocalRuntimes(runtime));
+    	runtime.setAfterCompletion(true);
+    	if (committed && !isClosed() && !runtime.isDisposed()) {
+    		if (engineCache.release(lease)) {
+    			return;
+    		}
+    	} else if (!engineCache.discard(lease)) {
+    		return;
+    	}
+    	runtime.dispose();
+    }
+    
 
     @Override
     public void validate(KieSession ksession, Context<?> context) throws IllegalStateException {
@@ -180,7 +278,28 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
     	if (isClosed()) {
     		throw new IllegalStateException("Runtime manager " + identifier + " is already closed");
     	}
-    	removeLocalRuntime(runtime);
+    	List<Object> contextIds = removeLocalRuntimes(runtime);
+    	if (engineCache != null && runtime instanceof RuntimeEngineImpl 
+    			&& ((RuntimeEngineImpl) runtime).internalGetKieSession() != null
+    			&& !((RuntimeEngineImpl) runtime).isDisposed()) {
+    		RuntimeEngineCache.Lease lease = removeLease(runtime);
+    		if (lease == null) {
+    			if (engineCache.isCached(runtime.getKieSession().getId(), runtime)) {
+    				// given back already, e.g. once the transaction completed, might be leased by someone else by now
+    				return;
+    			}
+    		} else {
+    			lease.addContextIds(contextIds);
+    			if (isTransactionActive(runtime)) {
+    				// given back once the transaction completes so no one else can use the ksession before it commits
+    				registerDisposeCallback(runtime, new ReleaseEngineTransactionSynchronization(this, lease));
+    				return;
+    			}
+    			if (engineCache.release(lease)) {
+    				return;
+    			}
+    		}
+    	}
     	if (runtime instanceof Disposable) {
         	// special handling for in memory to not allow to dispose if there is any context in the mapper
         	if (mapper instanceof InMemoryMapper && ((InMemoryMapper)mapper).hasContext(runtime.getKieSession().getId())){
@@ -201,6 +320,9 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
         } catch(Exception e) {
            // do nothing 
         }
+        if (engineCache != null) {
+        	engineCache.clear();
+        }
         super.close();
         factory.close();
     }
@@ -229,6 +351,9 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
         }
         @Override
         public void afterProcessCompleted(ProcessCompletedEvent event) {
+            if (engineCache != null) {
+            	engineCache.invalidate(ksessionId);
+            }
             mapper.removeMapping(new EnvironmentAwareProcessInstanceContext(
             		event.getKieRuntime().getEnvironment(),
             		event.getProcessInstance().getId()), managerId);
@@ -273,6 +398,49 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
         this.mapper = mapper;
     }
     
+    protected boolean isTransactionActive(RuntimeEngine runtime) {
+    	if (hasEnvironmentEntry("IS_JTA_TRANSACTION", false)) {
+    		return false;
+    	}
+    	TransactionManager tm = getTransactionManager(runtime.getKieSession().getEnvironment());
+    	return tm.getStatus() != JtaTransactionManager.STATUS_NO_TRANSACTION
+                && tm.getStatus() != JtaTransactionManager.STATUS_ROLLEDBACK
+                && tm.getStatus() != JtaTransactionManager.STATUS_COMMITTED;
+    }
+    
+    protected RuntimeEngineCache.Lease findLease(RuntimeEngine runtime) {
+    	Map<RuntimeEngine, RuntimeEngineCache.Lease> map = leases.get();
+    	return map == null ? null : map.get(runtime);
+    }
+    
+    protected void saveLease(RuntimeEngineCache.Lease lease) {
+    	Map<RuntimeEngine, RuntimeEngineCache.Lease> map = leases.get();
+    	if (map == null) {
+    		map = new HashMap<RuntimeEngine, RuntimeEngineCache.Lease>();
+    		leases.set(map);
+    	}
+    	map.put(lease.getEngine(), lease);
+    }
+    
+    protected RuntimeEngineCache.Lease removeLease(RuntimeEngine runtime) {
+    	Map<RuntimeEngine, RuntimeEngineCache.Lease> map = leases.get();
+    	return map == null ? null : map.remove(runtime);
+    }
+    
+    private void removeLease(RuntimeEngineCache.Lease lease) {
+    	Map<RuntimeEngine, RuntimeEngineCache.Lease> map = leases.get();
+    	if (map != null && map.get(lease.getEngine()) == lease) {
+    		map.remove(lease.getEngine());
+    	}
+    }
+    
+    /**
+     * Returns cache of warm runtime engines, <code>null</code> if caching is not enabled.
+     */
+    public RuntimeEngineCache getEngineCache() {
+    	return engineCache;
+    }
+    
     protected RuntimeEngine findLocalRuntime(Object processInstanceId) {
         if (processInstanceId == null) {
             return null;
@@ -316,6 +484,27 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
         }
     }
     
+    /**
+     * Removes all local entries of given runtime engine, e.g. process instance and its sub process instances 
+     * that were started within the same ksession
+     * @return process instance ids the runtime engine was stored under
+     */
+    protected List<Object> removeLocalRuntimes(RuntimeEngine runtime) {
+        List<Object> removed = new ArrayList<Object>();
+        Map<Object, RuntimeEngine> map = local.get();
+        if (map != null) {
+            Iterator<Map.Entry<Object, RuntimeEngine>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Object, RuntimeEngine> entry = it.next();
+                if (runtime.equals(entry.getValue())) {
+                    removed.add(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+        return removed;
+    }
+    
     @Override
     public void init() {
         // need to init one session to bootstrap all case - such as start timers
@@ -323,8 +512,9 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
         initialKsession.execute(new DestroyKSessionCommand(initialKsession, this));
         
         if (!"false".equalsIgnoreCase(System.getProperty("org.jbpm.rm.init.timer"))) {
-        	if (mapper instanceof JPAMapper) {
-        		List<Integer> ksessionsToInit = ((JPAMapper) mapper).findKSessionToInit(this.identifier);
+        	Mapper jpaMapper = mapper instanceof CachingMapper ? ((CachingMapper) mapper).getDelegate() : mapper;
+        	if (jpaMapper instanceof JPAMapper) {
+        		List<Integer> ksessionsToInit = ((JPAMapper) jpaMapper).findKSessionToInit(this.identifier);
         		for (Integer id : ksessionsToInit) {
         			initialKsession = factory.findKieSessionById(id);
         			initialKsession.execute(new DisposeKSessionCommand(initialKsession, this));
@@ -453,7 +643,7 @@ public class PerProcessInstanceRuntimeManager extends AbstractRuntimeManager {
             ((RuntimeEngineImpl)engine).internalSetKieSession(ksession);
             registerItems(engine);
             attachManager(engine);
-            registerDisposeCallback(engine, new DisposeSessionTransactionSynchronization(manager, engine));
+            registerDisposeCallback(engine, newDisposeCallback(engine, ksessionId));
             ksession.addEventListener(new MaintainMappingListener(ksessionId, engine, manager.getIdentifier()));
     		return ksession;
     	}
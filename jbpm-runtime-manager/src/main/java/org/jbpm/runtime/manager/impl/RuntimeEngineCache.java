@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.runtime.manager.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.kie.api.runtime.manager.RuntimeEngine;
+import org.kie.internal.runtime.manager.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of warm <code>RuntimeEngine</code>s (and by that loaded <code>KieSession</code>s) keyed by
+ * ksession id, used by the <code>PerProcessInstanceRuntimeManager</code> to avoid reloading the same
+ * ksession from the data base on every request.
+ * <br/>
+ * Runtime engines are leased exclusively - a cached engine is handed out only when no one else uses it
+ * and is given back to the cache instead of being disposed once the caller is done with it. Every lease
+ * is a separate {@link Lease} token and only the first release of it has an effect. When the cache
+ * is full the least recently used idle engines are evicted and disposed. Additionally it keeps track of
+ * the contexts (process instance ids) that were served by the cached engines so these can be found
+ * without looking up the mapping in the data base.
+ */
+public class RuntimeEngineCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RuntimeEngineCache.class);
+
+    // marks engines that are being evicted so they cannot be leased anymore
+    private static final Lease EVICTED = new Lease(null, null);
+
+    private final int maxSize;
+
+    private final ConcurrentMap<Integer, CachedEngine> engines = new ConcurrentHashMap<Integer, CachedEngine>();
+    private final ConcurrentMap<Object, Integer> contexts = new ConcurrentHashMap<Object, Integer>();
+    private final Set<Integer> invalidated = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RuntimeEngineCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be greater than 0 but was " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates lease of runtime engine that is not cached yet, e.g. of a ksession that was just created or
+     * loaded, so it can be given back to the cache once it is no longer used.
+     */
+    public Lease newLease(Integer ksessionId, RuntimeEngine engine) {
+        return new Lease(ksessionId, engine);
+    }
+
+    /**
+     * Leases cached runtime engine that served given context before.
+     * @return lease of the runtime engine or <code>null</code> if there is no idle engine known for the context
+     */
+    public Lease leaseByContext(Object contextId) {
+        Integer ksessionId = contextId == null ? null : contexts.get(contextId);
+        if (ksessionId == null) {
+            return null;
+        }
+        return lease(ksessionId);
+    }
+
+    /**
+     * Leases cached runtime engine of given ksession.
+     * @return lease of the runtime engine or <code>null</code> if it is not cached or it is currently leased
+     */
+    public Lease lease(Integer ksessionId) {
+        CachedEngine cached = ksessionId == null ? null : engines.get(ksessionId);
+        if (cached != null) {
+            Lease lease = new Lease(ksessionId, cached.engine);
+            if (cached.lease.compareAndSet(null, lease)) {
+                // might have been evicted in the meantime
+                if (engines.get(ksessionId) == cached) {
+                    hits.incrementAndGet();
+                    logger.debug("Reusing cached runtime engine of ksession {}", ksessionId);
+                    return lease;
+                }
+                cached.lease.compareAndSet(lease, null);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Gives runtime engine of given lease back to the cache once it is no longer used. Only the first release
+     * of a lease has any effect, so a lease that was released already can never give back an engine that
+     * was leased again by someone else in the meantime.
+     * @param lease lease of the runtime engine to be cached
+     * @return true if the engine is cached (or the lease was released already), false if it should be
+     * disposed by the caller - when it was invalidated or another instance of the same ksession is cached
+     */
+    public boolean release(Lease lease) {
+        if (!lease.released.compareAndSet(false, true)) {
+            return true;
+        }
+        Integer ksessionId = lease.ksessionId;
+        if (invalidated.remove(ksessionId)) {
+            return false;
+        }
+        CachedEngine cached = engines.get(ksessionId);
+        if (cached == null) {
+            cached = new CachedEngine(lease);
+            CachedEngine existing = engines.putIfAbsent(ksessionId, cached);
+            if (existing != null) {
+                return false;
+            }
+        } else if (cached.engine != lease.engine) {
+            return false;
+        } else if (cached.lease.get() != lease) {
+            logger.debug("Runtime engine of ksession {} is not held by released lease, ignoring release", ksessionId);
+            return true;
+        }
+        for (Object contextId : lease.contextIds) {
+            contexts.put(contextId, ksessionId);
+            cached.contextIds.add(contextId);
+        }
+        cached.lastUsed = System.nanoTime();
+        cached.lease.compareAndSet(lease, null);
+
+        evictIfNeeded();
+        return true;
+    }
+
+    /**
+     * Releases given lease without caching its runtime engine, e.g. when the transaction that used it was
+     * rolled back and the ksession state cannot be trusted anymore.
+     * @return true if the engine should be disposed by the caller, false if the lease was released already
+     */
+    public boolean discard(Lease lease) {
+        if (!lease.released.compareAndSet(false, true)) {
+            return false;
+        }
+        CachedEngine cached = engines.get(lease.ksessionId);
+        if (cached != null && cached.lease.get() == lease && engines.remove(lease.ksessionId, cached)) {
+            removeContexts(cached);
+        }
+        invalidated.remove(lease.ksessionId);
+        return true;
+    }
+
+    /**
+     * Returns true if given runtime engine is held by the cache, no matter if it is leased or not.
+     */
+    public boolean isCached(Integer ksessionId, RuntimeEngine engine) {
+        CachedEngine cached = ksessionId == null ? null : engines.get(ksessionId);
+        return cached != null && cached.engine == engine;
+    }
+
+    /**
+     * Removes runtime engine of given ksession from the cache (if cached) and makes sure it won't be cached
+     * when released, e.g. when the ksession is about to be destroyed.
+     */
+    public void invalidate(Integer ksessionId) {
+        invalidated.add(ksessionId);
+        CachedEngine cached = engines.remove(ksessionId);
+        if (cached != null) {
+            removeContexts(cached);
+        }
+    }
+
+    /**
+     * Disposes all idle runtime engines and empties the cache.
+     */
+    public void clear() {
+        for (Integer ksessionId : engines.keySet()) {
+            evict(ksessionId);
+        }
+        contexts.clear();
+        invalidated.clear();
+    }
+
+    public int size() {
+        return engines.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns ratio of leases that were served from the cache, 0 when there were no leases yet.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    protected void evictIfNeeded() {
+        while (engines.size() > maxSize) {
+            Integer eldest = null;
+            long eldestUsed = Long.MAX_VALUE;
+            for (java.util.Map.Entry<Integer, CachedEngine> entry : engines.entrySet()) {
+                CachedEngine cached = entry.getValue();
+                if (cached.lease.get() == null && cached.lastUsed < eldestUsed) {
+                    eldest = entry.getKey();
+                    eldestUsed = cached.lastUsed;
+                }
+            }
+            if (eldest == null || !evict(eldest)) {
+                // all engines are in use, cache will shrink once they are released
+                return;
+            }
+        }
+    }
+
+    private boolean evict(Integer ksessionId) {
+        CachedEngine cached = engines.get(ksessionId);
+        if (cached == null || !cached.lease.compareAndSet(null, EVICTED)) {
+            return false;
+        }
+        if (!engines.remove(ksessionId, cached)) {
+            return false;
+        }
+        removeContexts(cached);
+        evictions.incrementAndGet();
+        logger.debug("Evicting runtime engine of ksession {} from cache", ksessionId);
+        if (cached.engine instanceof Disposable) {
+            try {
+                ((Disposable) cached.engine).dispose();
+            } catch (Exception e) {
+                logger.debug("Error while disposing evicted runtime engine of ksession {}", ksessionId, e);
+            }
+        }
+        return true;
+    }
+
+    private void removeContexts(CachedEngine cached) {
+        for (Object contextId : cached.contextIds) {
+            contexts.remove(contextId);
+        }
+    }
+
+    public String toString() {
+        return "RuntimeEngineCache [size=" + engines.size() + ", maxSize=" + maxSize + ", hits=" + hits.get()
+                + ", misses=" + misses.get() + ", evictions=" + evictions.get() + "]";
+    }
+
+    /**
+     * Exclusive use of a runtime engine, every lease is a distinct token so that only its holder can give
+     * the engine back to the cache and only once.
+     */
+    public static class Lease {
+
+        private final Integer ksessionId;
+        private final RuntimeEngine engine;
+        private final Set<Object> contextIds = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Lease(Integer ksessionId, RuntimeEngine engine) {
+            this.ksessionId = ksessionId;
+            this.engine = engine;
+        }
+
+        public Integer getKsessionId() {
+            return ksessionId;
+        }
+
+        public RuntimeEngine getEngine() {
+            return engine;
+        }
+
+        /**
+         * Records contexts served by the runtime engine while leased, they will be known to the cache once
+         * the lease is released.
+         */
+        public void addContextIds(Collection<Object> contextIds) {
+            this.contextIds.addAll(contextIds);
+        }
+
+        public boolean isReleased() {
+            return released.get();
+        }
+    }
+
+    private static class CachedEngine {
+
+        private final RuntimeEngine engine;
+        private final AtomicReference<Lease> lease;
+        private final Set<Object> contextIds = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        private volatile long lastUsed;
+
+        CachedEngine(Lease lease) {
+            this.engine = lease.engine;
+            this.lease = new AtomicReference<Lease>(lease);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.runtime.manager.impl.mapper;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionSynchronization;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.manager.Context;
+import org.kie.internal.runtime.manager.Mapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size bounded, write-through cache in front of another <code>Mapper</code> (usually <code>JPAMapper</code>).
+ * <br/>
+ * Mapping of process instance to <code>KieSession</code> does not change for the life time of the process instance
+ * so once known it is served from the cache instead of the data base. All writes go to the underlying mapper
+ * first, saved mappings are cached once the transaction that stored them commits and removed mappings are
+ * evicted right away and again once the transaction that removed them completes (as concurrent lookups might
+ * cache them in the meantime). Only process instance id based contexts are cached, others (e.g. correlation keys) are
+ * always resolved by the underlying mapper.
+ * <br/>
+ * When used on multiple nodes sharing the same data base a <code>MappingInvalidationPublisher</code> can be set
+ * to propagate removed mappings to other nodes which shall then call {@link #invalidate(Object, String)}.
+ */
+@SuppressWarnings("rawtypes")
+public class CachingMapper implements Mapper {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingMapper.class);
+
+    private final Mapper delegate;
+    private final Map<String, Integer> cache;
+    private MappingInvalidationPublisher invalidationPublisher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingMapper(Mapper delegate, final int maxSize) {
+        this.delegate = delegate;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @Override
+    public void saveMapping(Context context, Integer ksessionId, String ownerId) {
+        delegate.saveMapping(context, ksessionId, ownerId);
+
+        final String key = getKey(context.getContextId(), ownerId);
+        if (key == null) {
+            return;
+        }
+        final Integer mapped = ksessionId;
+        TransactionManager tm = getTransactionManager(context);
+        try {
+            if (tm != null && tm.getStatus() == TransactionManager.STATUS_ACTIVE) {
+                tm.registerTransactionSynchronization(new TransactionSynchronization() {
+
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == TransactionManager.STATUS_COMMITTED) {
+                            cache.put(key, mapped);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Unable to register cache update for mapping {}, it will be cached on first lookup", key, e);
+            return;
+        }
+        cache.put(key, mapped);
+    }
+
+    @Override
+    public Integer findMapping(Context context, String ownerId) {
+        String key = getKey(context.getContextId(), ownerId);
+        if (key == null) {
+            return delegate.findMapping(context, ownerId);
+        }
+        Integer ksessionId = cache.get(key);
+        if (ksessionId != null) {
+            hits.incrementAndGet();
+            return ksessionId;
+        }
+        misses.incrementAndGet();
+        ksessionId = delegate.findMapping(context, ownerId);
+        if (ksessionId != null) {
+            cache.put(key, ksessionId);
+        }
+        return ksessionId;
+    }
+
+    @Override
+    public void removeMapping(Context context, final String ownerId) {
+        final Object contextId = context.getContextId();
+        invalidate(contextId, ownerId);
+        delegate.removeMapping(context, ownerId);
+        if (getKey(contextId, ownerId) == null) {
+            return;
+        }
+        TransactionManager tm = getTransactionManager(context);
+        try {
+            if (tm != null && tm.getStatus() == TransactionManager.STATUS_ACTIVE) {
+                // lookups before the delete commits still find the mapping in the data base and cache it again
+                tm.registerTransactionSynchronization(new TransactionSynchronization() {
+
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        invalidate(contextId, ownerId);
+                        if (status == TransactionManager.STATUS_COMMITTED) {
+                            publishRemoved(contextId, ownerId);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Unable to register cache eviction for mapping of {}, evicted right away", contextId, e);
+        }
+        publishRemoved(contextId, ownerId);
+    }
+
+    @Override
+    public Object findContextId(Integer ksessionId, String ownerId) {
+        return delegate.findContextId(ksessionId, ownerId);
+    }
+
+    protected void publishRemoved(Object contextId, String ownerId) {
+        if (invalidationPublisher != null) {
+            invalidationPublisher.mappingRemoved(contextId, ownerId);
+        }
+    }
+
+    /**
+     * Evicts mapping of given context from the cache without touching the underlying mapper, to be used
+     * when mapping was removed by another node.
+     */
+    public void invalidate(Object contextId, String ownerId) {
+        String key = getKey(contextId, ownerId);
+        if (key != null) {
+            cache.remove(key);
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public Mapper getDelegate() {
+        return delegate;
+    }
+
+    public void setInvalidationPublisher(MappingInvalidationPublisher invalidationPublisher) {
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    protected String getKey(Object contextId, String ownerId) {
+        if (!(contextId instanceof Number)) {
+            return null;
+        }
+        return ownerId + "#" + contextId;
+    }
+
+    protected TransactionManager getTransactionManager(Context context) {
+        if (context instanceof EnvironmentAwareProcessInstanceContext) {
+            Environment env = ((EnvironmentAwareProcessInstanceContext) context).getEnvironment();
+            if (env != null) {
+                return (TransactionManager) env.get(EnvironmentName.TRANSACTION_MANAGER);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Propagates removed mappings to other nodes that cache mappings of the same data base.
+     */
+    public interface MappingInvalidationPublisher {
+
+        void mappingRemoved(Object contextId, String ownerId);
+    }
+}
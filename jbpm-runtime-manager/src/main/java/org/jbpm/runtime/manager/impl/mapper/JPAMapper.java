@@ -24,6 +24,8 @@ import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
 import javax.persistence.Query;
 
+import org.jbpm.persistence.correlation.CorrelationKeyCache;
+import org.jbpm.persistence.correlation.CorrelationKeyDigest;
 import org.jbpm.runtime.manager.impl.jpa.ContextMappingInfo;
 import org.kie.api.runtime.Environment;
 import org.kie.api.runtime.EnvironmentName;
@@ -44,6 +46,9 @@ import org.kie.internal.runtime.manager.context.ProcessInstanceIdContext;
  */
 @SuppressWarnings("rawtypes")
 public class JPAMapper implements Mapper {
+
+    // correlation keys persisted before the key digest was introduced are found only by their properties
+    private static final boolean LEGACY_CORRELATION_LOOKUP = Boolean.parseBoolean(System.getProperty("org.jbpm.correlation.legacy.lookup", "true"));
     
 	private EntityManagerFactory emf;
     
@@ -119,6 +124,24 @@ public class JPAMapper implements Mapper {
     }
     
     public Context getProcessInstanceByCorrelationKey(CorrelationKey correlationKey, EntityManager em) {
+        String digest = CorrelationKeyDigest.digest(correlationKey);
+        Long processInstanceId = CorrelationKeyCache.getInstance().get(digest);
+        if (processInstanceId != null) {
+            return ProcessInstanceIdContext.get(processInstanceId);
+        }
+        Query processInstancesForKey = em.createNamedQuery( "GetProcessInstanceIdByCorrelationDigest" );
+        processInstancesForKey.setParameter( "digest", digest );
+        List<Long> processInstanceIds = processInstancesForKey.getResultList();
+        if (processInstanceIds.size() == 1) {
+            return ProcessInstanceIdContext.get(processInstanceIds.get(0));
+        }
+        if (processInstanceIds.isEmpty() && LEGACY_CORRELATION_LOOKUP) {
+            return getProcessInstanceByCorrelationProperties(correlationKey, em);
+        }
+        return null;
+    }
+
+    protected Context getProcessInstanceByCorrelationProperties(CorrelationKey correlationKey, EntityManager em) {
         Query processInstancesForEvent = em.createNamedQuery( "GetProcessInstanceIdByCorrelation" );
         
         processInstancesForEvent.setParameter( "elem_count", correlationKey.getProperties().size() );
@@ -46,17 +46,31 @@ import org.kie.internal.task.api.model.TaskDef;
 import org.kie.internal.task.api.model.TaskEvent;
 import org.kie.internal.task.query.TaskQueryBuilder;
 /**
- * Fully synchronized <code>TaskService</code> implementation used by the <code>SingletonRuntimeManager</code>.
- * Synchronization is done on <code>CommandService</code> of the <code>KieSession</code> to ensure correctness 
+ * Synchronized <code>TaskService</code> implementation used by the <code>SingletonRuntimeManager</code>.
+ * Operations that might interact with the <code>KieSession</code> (task life cycle operations, adding and removing tasks
+ * and custom commands) are synchronized on <code>CommandService</code> of the <code>KieSession</code> to ensure correctness 
  * until transaction completion.
- *
+ * <br/>
+ * Operations that only modify task data (content, comments, attachments, priority etc.) are synchronized per task
+ * - concurrent modifications of the same task are serialized but do not wait for the <code>KieSession</code>. Life cycle
+ * operations of a task take the per task lock too, always after the <code>KieSession</code> one.
+ * <br/>
+ * Every operation that runs the <code>UserGroupCallback</code> (queries for a given user, life cycle operations, adding 
+ * tasks and most task data changes) might persist the user and its groups on first use, so it is synchronized on a 
+ * dedicated identity lock as well, always taken last. Queries for a given user take only that lock, so they wait for 
+ * operations that might persist users and groups but not for the <code>KieSession</code>. All other read only 
+ * operations are not synchronized at all.
  */
 public class SynchronizedTaskService 
             implements InternalTaskService, EventService<TaskLifeCycleEventListener> {
 	
 	
+	private static final int TASK_LOCKS = 64;
+	
 	private Object ksession;
 	private InternalTaskService taskService;
+	private final Object[] taskLocks = new Object[TASK_LOCKS];
+	private final Object identityLock = new Object();
 	
 	public SynchronizedTaskService(KieSession ksession, InternalTaskService taskService) {
 	    if (ksession instanceof CommandBasedStatefulKnowledgeSession) {
@@ -65,27 +79,42 @@ public class SynchronizedTaskService
 	        this.ksession = ksession;
 	    }
 		this.taskService = taskService;
+		for (int i = 0; i < taskLocks.length; i++) {
+		    taskLocks[i] = new Object();
+		}
+	}
+
+	protected Object getTaskLock(long taskId) {
+	    return taskLocks[(int) ((taskId ^ (taskId >>> 32)) & (TASK_LOCKS - 1))];
 	}
 
 
     @Override
     public void activate(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.activate(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.activate(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void addGroup(Group group) {
         synchronized (ksession) {
-            taskService.addGroup(group);
+            synchronized (identityLock) {
+                taskService.addGroup(group);
+            }
         }
     }
 
     @Override
     public void addUser(User user) {
         synchronized (ksession) {
-            taskService.addUser(user);
+            synchronized (identityLock) {
+                taskService.addUser(user);
+            }
         }
     }
 
@@ -99,56 +128,80 @@ public class SynchronizedTaskService
     @Override
     public void claim(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.claim(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.claim(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void claim(long taskId, String userId, List<String> groupIds) {
         synchronized (ksession) {
-            taskService.claim(taskId, userId, groupIds);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.claim(taskId, userId, groupIds);
+                }
+            }
         }
     }
 
     @Override
     public void claimNextAvailable(String userId, List<String> groupIds) {
         synchronized (ksession) {
-            taskService.claimNextAvailable(userId, groupIds);
+            synchronized (identityLock) {
+                taskService.claimNextAvailable(userId, groupIds);
+            }
         }
     }
 
     @Override
     public void claimNextAvailable(String userId, String language) {
         synchronized (ksession) {
-            taskService.claimNextAvailable(userId, language);
+            synchronized (identityLock) {
+                taskService.claimNextAvailable(userId, language);
+            }
         }
     }
 
     @Override
     public void complete(long taskId, String userId, Map<String, Object> data) {
         synchronized (ksession) {
-            taskService.complete(taskId, userId, data);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.complete(taskId, userId, data);
+                }
+            }
         }
     }
 
     @Override
     public void delegate(long taskId, String userId, String targetUserId) {
         synchronized (ksession) {
-            taskService.delegate(taskId, userId, targetUserId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.delegate(taskId, userId, targetUserId);
+                }
+            }
         }
     }
 
     @Override
     public void deleteFault(long taskId, String userId) {
-        synchronized (ksession) {
-            taskService.deleteFault(taskId, userId);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.deleteFault(taskId, userId);
+            }
         }
     }
 
     @Override
     public void deleteOutput(long taskId, String userId) {
-        synchronized (ksession) {
-            taskService.deleteOutput(taskId, userId);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.deleteOutput(taskId, userId);
+            }
         }
     }
 
@@ -162,150 +215,134 @@ public class SynchronizedTaskService
     @Override
     public void exit(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.exit(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.exit(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void fail(long taskId, String userId, Map<String, Object> faultData) {
         synchronized (ksession) {
-            taskService.fail(taskId, userId, faultData);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.fail(taskId, userId, faultData);
+                }
+            }
         }
     }
 
     @Override
     public void forward(long taskId, String userId, String targetEntityId) {
         synchronized (ksession) {
-            taskService.forward(taskId, userId, targetEntityId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.forward(taskId, userId, targetEntityId);
+                }
+            }
         }
     }
 
     @Override
     public List<TaskSummary> getActiveTasks() {
-        synchronized (ksession) {
-            return taskService.getActiveTasks();
-        }
+        return taskService.getActiveTasks();
     }
 
     @Override
     public List<TaskSummary> getActiveTasks(Date since) {
-        synchronized (ksession) {
-            return taskService.getActiveTasks(since);
-        }
+        return taskService.getActiveTasks(since);
     }
 
     @Override
     public List<TaskDef> getAllTaskDef(String filter) {
-        synchronized (ksession) {
-            return taskService.getAllTaskDef(filter);
-        }
+        return taskService.getAllTaskDef(filter);
     }
 
     @Override
     public List<TaskSummary> getArchivedTasks() {
-        synchronized (ksession) {
-            return taskService.getArchivedTasks();
-        }
+        return taskService.getArchivedTasks();
     }
 
     @Override
     public List<TaskSummary> getCompletedTasks() {
-        synchronized (ksession) {
-            return taskService.getCompletedTasks();
-        }
+        return taskService.getCompletedTasks();
     }
 
     @Override
     public List<TaskSummary> getCompletedTasks(Date since) {
-        synchronized (ksession) {
-            return taskService.getCompletedTasks(since);
-        }
+        return taskService.getCompletedTasks(since);
     }
 
     @Override
     public List<TaskSummary> getCompletedTasksByProcessId(Long processId) {
-        synchronized (ksession) {
-            return taskService.getCompletedTasksByProcessId(processId);
-        }
+        return taskService.getCompletedTasksByProcessId(processId);
     }
 
     @Override
     public Group getGroupById(String groupId) {
-        synchronized (ksession) {
-            return taskService.getGroupById(groupId);
-        }
+        return taskService.getGroupById(groupId);
     }
 
     @Override
     public List<Group> getGroups() {
-        synchronized (ksession) {
-            return taskService.getGroups();
-        }
+        return taskService.getGroups();
     }
 
     @Override
     public List<TaskSummary> getSubTasksAssignedAsPotentialOwner(long parentId,
             String userId) {
-        synchronized (ksession) {
+        synchronized (identityLock) {
             return taskService.getSubTasksAssignedAsPotentialOwner(parentId, userId);
         }
     }
 
     @Override
     public List<TaskSummary> getSubTasksByParent(long parentId) {
-        synchronized (ksession) {
-            return taskService.getSubTasksByParent(parentId);
-        }
+        return taskService.getSubTasksByParent(parentId);
     }
 
     @Override
     public int getPendingSubTasksByParent(long parentId) {
-        synchronized (ksession) {
-            return taskService.getPendingSubTasksByParent(parentId);
-        }
+        return taskService.getPendingSubTasksByParent(parentId);
     }
 
     @Override
     public Task getTaskByWorkItemId(long workItemId) {
-        synchronized (ksession) {
-            return taskService.getTaskByWorkItemId(workItemId);
-        }
+        return taskService.getTaskByWorkItemId(workItemId);
     }
 
     @Override
     public TaskDef getTaskDefById(String id) {
-        synchronized (ksession) {
-            return taskService.getTaskDefById(id);
-        }
+        return taskService.getTaskDefById(id);
     }
 
     @Override
     public Task getTaskById(long taskId) {
-        synchronized (ksession) {
-            return taskService.getTaskById(taskId);
-        }
+        return taskService.getTaskById(taskId);
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsBusinessAdministrator(
             String userId, String language) {
-        synchronized (ksession) {
+        synchronized (identityLock) {
             return taskService.getTasksAssignedAsBusinessAdministrator(userId, language);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsExcludedOwner(String userId) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsExcludedOwner(userId);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsExcludedOwner(userId);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsPotentialOwner(String userId,
             List<String> groupIds) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsPotentialOwner(userId, groupIds);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsPotentialOwner(userId, groupIds);
         }
     }
 
@@ -313,90 +350,90 @@ public class SynchronizedTaskService
     public List<TaskSummary> getTasksAssignedAsPotentialOwner(String userId,
             List<String> groupIds,  int firstResult,
             int maxResults) {
-        synchronized (ksession) {
-           return  taskService.getTasksAssignedAsPotentialOwner(userId, groupIds, firstResult, maxResults);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsPotentialOwner(userId, groupIds, firstResult, maxResults);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsPotentialOwner(String userId,
             String language) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsPotentialOwner(userId, language);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsPotentialOwner(userId, language);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsPotentialOwnerByStatus(
             String salaboy, List<Status> status, String language) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsPotentialOwnerByStatus(salaboy, status, language);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsPotentialOwnerByStatus(salaboy, status, language);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsPotentialOwnerByStatusByGroup(
             String userId, List<String> groupIds, List<Status> status) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsPotentialOwnerByStatusByGroup(userId, groupIds, status);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsPotentialOwnerByStatusByGroup(userId, groupIds, status);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsRecipient(String userId) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsRecipient(userId);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsRecipient(userId);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsTaskInitiator(String userId) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsTaskInitiator(userId);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsTaskInitiator(userId);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsTaskStakeholder(String userId) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedAsTaskStakeholder(userId);
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsTaskStakeholder(userId);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksOwned(String userId, String language) {
-        synchronized (ksession) {
-            return  taskService.getTasksOwned(userId, language);
+        synchronized (identityLock) {
+            return taskService.getTasksOwned(userId, language);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksOwnedByStatus(String userId, List<Status> status,
             String language) {
-        synchronized (ksession) {
-            return  taskService.getTasksOwnedByStatus(userId, status, language);
+        synchronized (identityLock) {
+            return taskService.getTasksOwnedByStatus(userId, status, language);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksOwnedByExpirationDate(String userId,
             List<Status> statuses, Date expirationDate) {
-        synchronized (ksession) {
-            return  taskService.getTasksOwnedByExpirationDate(userId, statuses, expirationDate);
+        synchronized (identityLock) {
+            return taskService.getTasksOwnedByExpirationDate(userId, statuses, expirationDate);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksOwnedByExpirationDateOptional(
             String userId, List<Status> statuses, Date expirationDate) {
-        synchronized (ksession) {
-            return  taskService.getTasksOwnedByExpirationDateOptional(userId, statuses, expirationDate);
+        synchronized (identityLock) {
+            return taskService.getTasksOwnedByExpirationDateOptional(userId, statuses, expirationDate);
         }
     }
 
     @Override
     public List<TaskSummary> getTasksOwnedByExpirationDateBeforeSpecifiedDate(String userId, List<Status> status, Date date) {
-        synchronized (ksession) {
+        synchronized (identityLock) {
             return taskService.getTasksOwnedByExpirationDateBeforeSpecifiedDate(userId, status, date);
         }
     }
@@ -404,72 +441,76 @@ public class SynchronizedTaskService
     @Override
     public List<TaskSummary> getTasksByStatusByProcessInstanceId(
             long processInstanceId, List<Status> status, String language) {
-        synchronized (ksession) {
-            return  taskService.getTasksByStatusByProcessInstanceId(processInstanceId, status, language);
-        }
+        return  taskService.getTasksByStatusByProcessInstanceId(processInstanceId, status, language);
     }
 
     @Override
     public List<TaskSummary> getTasksByStatusByProcessInstanceIdByTaskName(
             long processInstanceId, List<Status> status, String taskName) {
-        synchronized (ksession) {
-            return  taskService.getTasksByStatusByProcessInstanceIdByTaskName(processInstanceId, status, taskName);
-        }
+        return  taskService.getTasksByStatusByProcessInstanceIdByTaskName(processInstanceId, status, taskName);
     }
 
     @Override
     public List<Long> getTasksByProcessInstanceId(long processInstanceId) {
-        synchronized (ksession) {
-            return  taskService.getTasksByProcessInstanceId(processInstanceId);
-        }
+        return  taskService.getTasksByProcessInstanceId(processInstanceId);
     }
 
     @Override
     public User getUserById(String userId) {
-        synchronized (ksession) {
-            return  taskService.getUserById(userId);
-        }
+        return  taskService.getUserById(userId);
     }
 
     @Override
     public List<User> getUsers() {
-        synchronized (ksession) {
-            return  taskService.getUsers();
-        }
+        return  taskService.getUsers();
     }
 
     @Override
     public long addTask(Task task, Map<String, Object> params) {
         synchronized (ksession) {
-            return  taskService.addTask(task, params);
+            synchronized (identityLock) {
+                return taskService.addTask(task, params);
+            }
         }
     }
 
     @Override
     public long addTask(Task task, ContentData data) {
         synchronized (ksession) {
-            return  taskService.addTask(task, data);
+            synchronized (identityLock) {
+                return taskService.addTask(task, data);
+            }
         }
     }
 
     @Override
     public void release(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.release(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.release(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void remove(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.remove(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.remove(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void removeGroup(String groupId) {
         synchronized (ksession) {
-            taskService.removeGroup(groupId);            
+            synchronized (identityLock) {
+                taskService.removeGroup(groupId);            
+            }
         }
     }
 
@@ -483,70 +524,100 @@ public class SynchronizedTaskService
     @Override
     public void removeUser(String userId) {
         synchronized (ksession) {
-            taskService.removeUser(userId);
+            synchronized (identityLock) {
+                taskService.removeUser(userId);
+            }
         }
     }
 
     @Override
     public void resume(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.resume(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.resume(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void setFault(long taskId, String userId, FaultData fault) {
-        synchronized (ksession) {
-            taskService.setFault(taskId, userId, fault);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setFault(taskId, userId, fault);
+            }
         }
     }
 
     @Override
     public void setOutput(long taskId, String userId, Object outputContentData) {
-        synchronized (ksession) {
-            taskService.setOutput(taskId, userId, outputContentData);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setOutput(taskId, userId, outputContentData);
+            }
         }
     }
 
     @Override
     public void setPriority(long taskId, int priority) {
-        synchronized (ksession) {
-            taskService.setPriority(taskId, priority);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setPriority(taskId, priority);
+            }
         }
     }
 
     @Override
     public void setTaskNames(long taskId, List<I18NText> taskNames) {
-        synchronized (ksession) {
-            taskService.setTaskNames(taskId, taskNames);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setTaskNames(taskId, taskNames);
+            }
         }
     }
 
     @Override
     public void skip(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.skip(taskId, userId);
-        } 
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.skip(taskId, userId);
+                }
+            }
+        }
     }
 
     @Override
     public void start(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.start(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.start(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void stop(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.stop(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.stop(taskId, userId);
+                }
+            }
         }
     }
 
     @Override
     public void suspend(long taskId, String userId) {
         synchronized (ksession) {
-            taskService.suspend(taskId, userId);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.suspend(taskId, userId);
+                }
+            }
         }
     }
 
@@ -559,9 +630,7 @@ public class SynchronizedTaskService
 
     @Override
     public List<TaskEvent> getTaskEventsById(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getTaskEventsById(taskId);
-        }
+        return  taskService.getTaskEventsById(taskId);
     }
 
     @Override
@@ -582,7 +651,9 @@ public class SynchronizedTaskService
     public void addUsersAndGroups(Map<String, User> users,
             Map<String, Group> groups) {
         synchronized (ksession) {
-            taskService.addUsersAndGroups(users, groups);
+            synchronized (identityLock) {
+                taskService.addUsersAndGroups(users, groups);
+            }
         }
     }
 
@@ -590,7 +661,11 @@ public class SynchronizedTaskService
     public void nominate(long taskId, String userId,
             List<OrganizationalEntity> potentialOwners) {
         synchronized (ksession) {
-            taskService.nominate(taskId, userId, potentialOwners);
+            synchronized (getTaskLock(taskId)) {
+                synchronized (identityLock) {
+                    taskService.nominate(taskId, userId, potentialOwners);
+                }
+            }
         }
     }
 
@@ -603,66 +678,60 @@ public class SynchronizedTaskService
 
     @Override
     public long addContent(long taskId, Content content) {
-        synchronized (ksession) {
+        synchronized (getTaskLock(taskId)) {
             return  taskService.addContent(taskId, content);
         }
     }
 
     @Override
     public long addContent(long taskId, Map<String, Object> params) {
-        synchronized (ksession) {
+        synchronized (getTaskLock(taskId)) {
             return  taskService.addContent(taskId, params);
         }
     }
 
     @Override
     public void deleteContent(long taskId, long contentId) {
-        synchronized (ksession) {
+        synchronized (getTaskLock(taskId)) {
             taskService.deleteContent(taskId, contentId);
         }
     }
 
     @Override
     public List<Content> getAllContentByTaskId(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getAllContentByTaskId(taskId);
-        }
+        return  taskService.getAllContentByTaskId(taskId);
     }
 
     @Override
     public Content getContentById(long contentId) {
-        synchronized (ksession) {
-            return  taskService.getContentById(contentId);
-        }
+        return  taskService.getContentById(contentId);
     }
 
     @Override
     public long addAttachment(long taskId, Attachment attachment,
             Content content) {
-        synchronized (ksession) {
-            return  taskService.addAttachment(taskId, attachment, content);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                return taskService.addAttachment(taskId, attachment, content);
+            }
         }
     }
 
     @Override
     public void deleteAttachment(long taskId, long attachmentId) {
-        synchronized (ksession) {
+        synchronized (getTaskLock(taskId)) {
             taskService.deleteAttachment(taskId, attachmentId);
         }
     }
 
     @Override
     public List<Attachment> getAllAttachmentsByTaskId(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getAllAttachmentsByTaskId(taskId);
-        }
+        return  taskService.getAllAttachmentsByTaskId(taskId);
     }
 
     @Override
     public Attachment getAttachmentById(long attachId) {
-        synchronized (ksession) {
-            return  taskService.getAttachmentById(attachId);
-        }
+        return  taskService.getAttachmentById(attachId);
     }
 
     @Override
@@ -674,142 +743,124 @@ public class SynchronizedTaskService
 
     @Override
     public OrganizationalEntity getOrganizationalEntityById(String entityId) {
-        synchronized (ksession) {
-            return  taskService.getOrganizationalEntityById(entityId);
-        }
+        return  taskService.getOrganizationalEntityById(entityId);
     }
 
     @Override
     public void setExpirationDate(long taskId, Date date) {
-        synchronized (ksession) {
-            taskService.setExpirationDate(taskId, date);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setExpirationDate(taskId, date);
+            }
         }
     }
 
     @Override
     public void setDescriptions(long taskId, List<I18NText> descriptions) {
-        synchronized (ksession) {
-            taskService.setDescriptions(taskId, descriptions);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setDescriptions(taskId, descriptions);
+            }
         }
     }
 
     @Override
     public void setSkipable(long taskId, boolean skipable) {
-        synchronized (ksession) {
-            taskService.setSkipable(taskId, skipable);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setSkipable(taskId, skipable);
+            }
         }
     }
 
     @Override
     public void setSubTaskStrategy(long taskId, SubTasksStrategy strategy) {
-        synchronized (ksession) {
-            taskService.setSubTaskStrategy(taskId, strategy);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                taskService.setSubTaskStrategy(taskId, strategy);
+            }
         }
     }
 
     @Override
     public int getPriority(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getPriority(taskId);
-        }
+        return  taskService.getPriority(taskId);
     }
 
     @Override
     public Date getExpirationDate(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getExpirationDate(taskId);
-        }
+        return  taskService.getExpirationDate(taskId);
     }
 
     @Override
     public List<I18NText> getDescriptions(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getDescriptions(taskId);
-        }
+        return  taskService.getDescriptions(taskId);
     }
 
     @Override
     public boolean isSkipable(long taskId) {
-        synchronized (ksession) {
-            return  taskService.isSkipable(taskId);
-        }
+        return  taskService.isSkipable(taskId);
     }
 
     @Override
     public SubTasksStrategy getSubTaskStrategy(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getSubTaskStrategy(taskId);
-        }
+        return  taskService.getSubTaskStrategy(taskId);
     }
 
     @Override
     public Task getTaskInstanceById(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getTaskInstanceById(taskId);
-        }
+        return  taskService.getTaskInstanceById(taskId);
     }
 
     @Override
     public int getCompletedTaskByUserId(String userId) {
-        synchronized (ksession) {
-            return  taskService.getCompletedTaskByUserId(userId);
-        }
+        return  taskService.getCompletedTaskByUserId(userId);
     }
 
     @Override
     public int getPendingTaskByUserId(String userId) {
-        synchronized (ksession) {
-            return  taskService.getPendingTaskByUserId(userId);
-        }
+        return  taskService.getPendingTaskByUserId(userId);
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedByGroup(String groupId) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedByGroup(groupId);
-        }
+        return  taskService.getTasksAssignedByGroup(groupId);
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedByGroups(List<String> groupIds) {
-        synchronized (ksession) {
-            return  taskService.getTasksAssignedByGroups(groupIds);
-        }
+        return  taskService.getTasksAssignedByGroups(groupIds);
     }
 
     @Override
     public long addComment(long taskId, Comment comment) {
-        synchronized (ksession) {
-            return  taskService.addComment(taskId, comment);
+        synchronized (getTaskLock(taskId)) {
+            synchronized (identityLock) {
+                return taskService.addComment(taskId, comment);
+            }
         }
     }
 
     @Override
     public void deleteComment(long taskId, long commentId) {
-        synchronized (ksession) {
+        synchronized (getTaskLock(taskId)) {
             taskService.deleteComment(taskId, commentId);
         }
     }
 
     @Override
     public List<Comment> getAllCommentsByTaskId(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getAllCommentsByTaskId(taskId);
-        }
+        return  taskService.getAllCommentsByTaskId(taskId);
     }
 
     @Override
     public Comment getCommentById(long commentId) {
-        synchronized (ksession) {
-            return  taskService.getCommentById(commentId);
-        }
+        return  taskService.getCommentById(commentId);
     }
 
     @Override
     public Map<String, Object> getTaskContent(long taskId) {
-        synchronized (ksession) {
-            return  taskService.getTaskContent(taskId);
-        }
+        return  taskService.getTaskContent(taskId);
     }
 
     @SuppressWarnings("unchecked")
@@ -847,29 +898,29 @@ public class SynchronizedTaskService
 	@Override
 	public <T> T execute(Command<T> command) {
 		synchronized (ksession) {
-			return taskService.execute(command);
+			synchronized (identityLock) {
+				return taskService.execute(command);
+			}
 		}
 	}
     
     @Override
     public List<TaskSummary> getTasksAssignedAsPotentialOwnerByExpirationDate(String userId, List<Status> statuses, Date expirationDate) {
-       synchronized (ksession) {
-            return  taskService.getTasksAssignedAsPotentialOwnerByExpirationDate(userId, statuses, expirationDate);
-       } 
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsPotentialOwnerByExpirationDate(userId, statuses, expirationDate);
+        }
     }
 
     @Override
     public List<TaskSummary> getTasksAssignedAsPotentialOwnerByExpirationDateOptional(String userId, List<Status> statuses, Date expirationDate) {
-       synchronized (ksession) {
-            return  taskService.getTasksAssignedAsPotentialOwnerByExpirationDateOptional(userId, statuses, expirationDate);
-       } 
+        synchronized (identityLock) {
+            return taskService.getTasksAssignedAsPotentialOwnerByExpirationDateOptional(userId, statuses, expirationDate);
+        }
     }
 
     @Override
     public Map<Long, List<OrganizationalEntity>> getPotentialOwnersForTaskIds(List<Long> taskIds) {
-       synchronized (ksession) {
-            return  taskService.getPotentialOwnersForTaskIds(taskIds);
-       } 
+        return  taskService.getPotentialOwnersForTaskIds(taskIds);
     }
 
 
@@ -910,7 +961,7 @@ public class SynchronizedTaskService
 			List<Long> taskIds, List<Long> procInstIds, List<String> busAdmins,
 			List<String> potOwners, List<String> taskOwners,
 			List<Status> status,  boolean union) {
-		synchronized (ksession) {
+        synchronized (identityLock) {
             if (taskService != null) {
                 return taskService.getTasksByVariousFields(userId, workItemIds, taskIds, procInstIds,
                 		busAdmins, potOwners, taskOwners, status, union);
@@ -922,7 +973,7 @@ public class SynchronizedTaskService
 
 	@Override
 	public List<TaskSummary> getTasksByVariousFields(String userId, Map<String, List<?>> parameters, boolean union) {
-		synchronized (ksession) {
+        synchronized (identityLock) {
             if (taskService != null) {
                 return taskService.getTasksByVariousFields(userId, parameters, union);
             }
@@ -933,12 +984,16 @@ public class SynchronizedTaskService
 
 	@Override
 	public List<TaskSummary> getTasksOwned(String userId, List<Status> status, QueryFilter filter) {
-	    return taskService.getTasksOwned(userId, status, filter);
+	    synchronized (identityLock) {
+	        return taskService.getTasksOwned(userId, status, filter);
+	    }
 	}
 
 	@Override
 	public List<TaskSummary> getTasksAssignedAsPotentialOwner(String userId, List<String> groupIds, List<Status> status, QueryFilter filter) {
-	    return taskService.getTasksAssignedAsPotentialOwner(userId, groupIds, status, filter);
+	    synchronized (identityLock) {
+	        return taskService.getTasksAssignedAsPotentialOwner(userId, groupIds, status, filter);
+	    }
 	}
 
 	@Override
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.runtime.manager.impl.tx;
+
+import org.drools.persistence.OrderedTransactionSynchronization;
+import org.drools.persistence.TransactionManager;
+import org.jbpm.runtime.manager.impl.PerProcessInstanceRuntimeManager;
+import org.jbpm.runtime.manager.impl.RuntimeEngineCache;
+
+/**
+ * Transaction synchronization that gives leased <code>RuntimeEngine</code> back to the cache of the
+ * <code>PerProcessInstanceRuntimeManager</code> during the <code>afterCompletion</code> phase, so its
+ * <code>KieSession</code> cannot be used by anyone else before the transaction completes.
+ */
+public class ReleaseEngineTransactionSynchronization extends OrderedTransactionSynchronization {
+
+	private PerProcessInstanceRuntimeManager manager;
+	private RuntimeEngineCache.Lease lease;
+	
+	public ReleaseEngineTransactionSynchronization(PerProcessInstanceRuntimeManager manager, RuntimeEngineCache.Lease lease) {
+		super(10, "ReleaseEngineTransactionSynchronization" + lease.getEngine().toString() + lease.toString());
+		this.manager = manager;
+		this.lease = lease;
+	}
+	
+	public void beforeCompletion() {
+	}
+
+	public void afterCompletion(int status) {
+	    try {
+	        manager.releaseCachedRuntime(lease, status == TransactionManager.STATUS_COMMITTED);
+	    } catch (Throwable e) {
+	        // catch exception as it's only clean up and should not affect runtime
+	    }
+	}
+
+}
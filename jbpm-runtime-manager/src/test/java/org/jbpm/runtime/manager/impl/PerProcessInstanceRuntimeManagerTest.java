@@ -2,7 +2,9 @@ package org.jbpm.runtime.manager.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -11,6 +13,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.naming.InitialContext;
@@ -197,6 +201,168 @@ public class PerProcessInstanceRuntimeManagerTest extends AbstractBaseTest {
         manager.close();
     }
     
+    @Test
+    public void testCachedSessionsWithPersistence() {
+        System.setProperty("org.jbpm.rm.ppi.cache.size", "1");
+        try {
+            RuntimeEnvironment environment = RuntimeEnvironmentBuilder.Factory.get()
+                    .newDefaultBuilder()
+                    .userGroupCallback(userGroupCallback)
+                    .addAsset(ResourceFactory.newClassPathResource("BPMN2-UserTask.bpmn2"), ResourceType.BPMN2)
+                    .get();
+            
+            manager = RuntimeManagerFactory.Factory.get().newPerProcessInstanceRuntimeManager(environment);        
+            assertNotNull(manager);
+            RuntimeEngineCache cache = ((PerProcessInstanceRuntimeManager) manager).getEngineCache();
+            assertNotNull(cache);
+            
+            RuntimeEngine runtime = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+            KieSession ksession = runtime.getKieSession();
+            ProcessInstance pi1 = ksession.startProcess("UserTask");
+            manager.disposeRuntimeEngine(runtime);
+            assertEquals(1, cache.size());
+            
+            // warm ksession is reused instead of being loaded again
+            runtime = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+            assertSame(ksession, runtime.getKieSession());
+            assertEquals(1, cache.getHits());
+            manager.disposeRuntimeEngine(runtime);
+            
+            // second process instance evicts the first one as cache can hold only one ksession
+            RuntimeEngine runtime2 = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+            ProcessInstance pi2 = runtime2.getKieSession().startProcess("UserTask");
+            manager.disposeRuntimeEngine(runtime2);
+            assertEquals(1, cache.size());
+            assertEquals(1, cache.getEvictions());
+            
+            runtime = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+            ksession = runtime.getKieSession();
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+            
+            ksession.getWorkItemManager().completeWorkItem(1, null);
+            manager.disposeRuntimeEngine(runtime);
+            // completed process instance's ksession must not be cached
+            try {
+                manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+                fail("Session for this (" + pi1.getId() + ") process instance is no more accessible");
+            } catch (RuntimeException e) {
+                
+            }
+            
+            runtime2 = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi2.getId()));
+            assertEquals(2, cache.getHits());
+            runtime2.getKieSession().getWorkItemManager().completeWorkItem(2, null);
+            manager.disposeRuntimeEngine(runtime2);
+            assertEquals(0, cache.size());
+        } finally {
+            System.clearProperty("org.jbpm.rm.ppi.cache.size");
+        }
+    }
+    
+    @Test
+    public void testCachedSessionsLeasedWithinTransaction() throws Exception {
+        System.setProperty("org.jbpm.rm.ppi.cache.size", "2");
+        System.setProperty("jbpm.tm.jndi.lookup", "java:comp/UserTransaction");
+        try {
+            RuntimeEnvironment environment = RuntimeEnvironmentBuilder.Factory.get()
+                    .newDefaultBuilder()
+                    .userGroupCallback(userGroupCallback)
+                    .addAsset(ResourceFactory.newClassPathResource("BPMN2-UserTask.bpmn2"), ResourceType.BPMN2)
+                    .get();
+            
+            manager = RuntimeManagerFactory.Factory.get().newPerProcessInstanceRuntimeManager(environment);        
+            assertNotNull(manager);
+            RuntimeEngineCache cache = ((PerProcessInstanceRuntimeManager) manager).getEngineCache();
+            assertNotNull(cache);
+            
+            RuntimeEngine runtime = manager.getRuntimeEngine(ProcessInstanceIdContext.get());
+            final ProcessInstance pi1 = runtime.getKieSession().startProcess("UserTask");
+            manager.disposeRuntimeEngine(runtime);
+            assertEquals(1, cache.size());
+            
+            UserTransaction ut = InitialContext.doLookup("java:comp/UserTransaction");
+            ut.begin();
+            final RuntimeEngine runtimeInTx = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+            final KieSession ksession = runtimeInTx.getKieSession();
+            assertEquals(1, cache.getHits());
+            manager.disposeRuntimeEngine(runtimeInTx);
+            
+            // ksession is not given back to the cache before the transaction completes
+            final List<KieSession> leased = new ArrayList<KieSession>();
+            runInThread(new Runnable() {
+                public void run() {
+                    RuntimeEngine other = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+                    leased.add(other.getKieSession());
+                    manager.disposeRuntimeEngine(other);
+                }
+            });
+            assertNotSame(ksession, leased.get(0));
+            assertEquals(1, cache.getHits());
+            
+            ut.commit();
+            
+            // once committed it is reused by other threads
+            final CountDownLatch leasedLatch = new CountDownLatch(1);
+            final CountDownLatch releaseLatch = new CountDownLatch(1);
+            leased.clear();
+            Thread holder = new Thread(new Runnable() {
+                public void run() {
+                    RuntimeEngine other = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+                    leased.add(other.getKieSession());
+                    leasedLatch.countDown();
+                    try {
+                        releaseLatch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        // release the engine anyway
+                    }
+                    manager.disposeRuntimeEngine(other);
+                }
+            });
+            holder.start();
+            assertTrue(leasedLatch.await(10, TimeUnit.SECONDS));
+            assertSame(ksession, leased.get(0));
+            assertEquals(2, cache.getHits());
+            
+            // disposing the same engine again must not release the lease held by the other thread
+            manager.disposeRuntimeEngine(runtimeInTx);
+            runtime = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+            assertNotSame(ksession, runtime.getKieSession());
+            assertEquals(2, cache.getHits());
+            manager.disposeRuntimeEngine(runtime);
+            
+            releaseLatch.countDown();
+            holder.join(10000);
+            
+            runtime = manager.getRuntimeEngine(ProcessInstanceIdContext.get(pi1.getId()));
+            assertSame(ksession, runtime.getKieSession());
+            assertEquals(3, cache.getHits());
+            manager.disposeRuntimeEngine(runtime);
+            assertEquals(1, cache.size());
+        } finally {
+            System.clearProperty("org.jbpm.rm.ppi.cache.size");
+            System.clearProperty("jbpm.tm.jndi.lookup");
+        }
+    }
+    
+    private void runInThread(final Runnable runnable) throws Exception {
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }
+        });
+        thread.start();
+        thread.join(10000);
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.get(0));
+        }
+    }
+    
     @Test
     public void testCreationOfSessionWithPersistenceByCorrelationKey() {
         RuntimeEnvironment environment = RuntimeEnvironmentBuilder.Factory.get()
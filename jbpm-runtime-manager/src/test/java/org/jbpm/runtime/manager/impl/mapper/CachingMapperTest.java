@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.runtime.manager.impl.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.core.impl.EnvironmentFactory;
+import org.drools.persistence.TransactionManager;
+import org.drools.persistence.TransactionSynchronization;
+import org.jbpm.test.util.AbstractBaseTest;
+import org.junit.Test;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.manager.Context;
+import org.kie.internal.runtime.manager.context.ProcessInstanceIdContext;
+
+public class CachingMapperTest extends AbstractBaseTest {
+
+    @Test
+    public void testMappingServedFromCache() {
+        CountingMapper delegate = new CountingMapper();
+        CachingMapper mapper = new CachingMapper(delegate, 10);
+        
+        // no transaction so mapping is cached right away
+        mapper.saveMapping(ProcessInstanceIdContext.get(1l), 5, "owner");
+        assertEquals(Integer.valueOf(5), mapper.findMapping(ProcessInstanceIdContext.get(1l), "owner"));
+        assertEquals(Integer.valueOf(5), mapper.findMapping(ProcessInstanceIdContext.get(1l), "owner"));
+        assertEquals(0, delegate.lookups);
+        assertEquals(2, mapper.getHits());
+        
+        // owner is part of the key
+        assertNull(mapper.findMapping(ProcessInstanceIdContext.get(1l), "other"));
+        assertEquals(1, delegate.lookups);
+        
+        mapper.removeMapping(ProcessInstanceIdContext.get(1l), "owner");
+        assertNull(mapper.findMapping(ProcessInstanceIdContext.get(1l), "owner"));
+        assertEquals(0, mapper.size());
+    }
+    
+    @Test
+    public void testCacheIsBounded() {
+        CountingMapper delegate = new CountingMapper();
+        CachingMapper mapper = new CachingMapper(delegate, 2);
+        
+        mapper.saveMapping(ProcessInstanceIdContext.get(1l), 1, "owner");
+        mapper.saveMapping(ProcessInstanceIdContext.get(2l), 2, "owner");
+        mapper.saveMapping(ProcessInstanceIdContext.get(3l), 3, "owner");
+        assertEquals(2, mapper.size());
+        
+        // evicted mapping is loaded from the underlying mapper again
+        assertEquals(Integer.valueOf(1), mapper.findMapping(ProcessInstanceIdContext.get(1l), "owner"));
+        assertEquals(1, delegate.lookups);
+    }
+    
+    @Test
+    public void testInvalidationPublished() {
+        final List<Object> removed = new ArrayList<Object>();
+        CachingMapper mapper = new CachingMapper(new CountingMapper(), 10);
+        mapper.setInvalidationPublisher(new CachingMapper.MappingInvalidationPublisher() {
+            
+            @Override
+            public void mappingRemoved(Object contextId, String ownerId) {
+                removed.add(contextId);
+            }
+        });
+        CountingMapper shared = new CountingMapper();
+        shared.saveMapping(ProcessInstanceIdContext.get(1l), 1, "owner");
+        CachingMapper otherNode = new CachingMapper(shared, 10);
+        otherNode.findMapping(ProcessInstanceIdContext.get(1l), "owner");
+        assertEquals(1, otherNode.size());
+        
+        mapper.saveMapping(ProcessInstanceIdContext.get(1l), 1, "owner");
+        mapper.removeMapping(ProcessInstanceIdContext.get(1l), "owner");
+        assertEquals(1, removed.size());
+        
+        otherNode.invalidate(removed.get(0), "owner");
+        assertEquals(0, otherNode.size());
+    }
+    
+    @Test
+    public void testRemovedMappingEvictedAfterCommit() {
+        final List<Object> removed = new ArrayList<Object>();
+        CountingMapper delegate = new CountingMapper();
+        CachingMapper mapper = new CachingMapper(delegate, 10);
+        mapper.setInvalidationPublisher(new CachingMapper.MappingInvalidationPublisher() {
+            
+            @Override
+            public void mappingRemoved(Object contextId, String ownerId) {
+                removed.add(contextId);
+            }
+        });
+        mapper.saveMapping(ProcessInstanceIdContext.get(1l), 1, "owner");
+        assertEquals(1, mapper.size());
+        
+        TestTransactionManager tm = new TestTransactionManager();
+        Environment env = EnvironmentFactory.newEnvironment();
+        env.set(EnvironmentName.TRANSACTION_MANAGER, tm);
+        delegate.pendingRemovals = new ArrayList<Context<?>>();
+        mapper.removeMapping(new EnvironmentAwareProcessInstanceContext(env, 1l), "owner");
+        assertEquals(0, mapper.size());
+        assertEquals(0, removed.size());
+        
+        // lookup before the delete commits still finds the mapping and caches it again
+        assertEquals(Integer.valueOf(1), mapper.findMapping(ProcessInstanceIdContext.get(1l), "owner"));
+        assertEquals(1, mapper.size());
+        
+        delegate.commitRemovals();
+        tm.complete(TransactionManager.STATUS_COMMITTED);
+        assertEquals(0, mapper.size());
+        assertNull(mapper.findMapping(ProcessInstanceIdContext.get(1l), "owner"));
+        assertEquals(1, removed.size());
+    }
+    
+    private static class CountingMapper extends InMemoryMapper {
+        
+        private int lookups = 0;
+        // removals of not yet committed transaction, null when removed right away
+        private List<Context<?>> pendingRemovals;
+        
+        @Override
+        public void removeMapping(Context<?> context, String ownerId) {
+            if (pendingRemovals != null) {
+                pendingRemovals.add(context);
+                return;
+            }
+            super.removeMapping(context, ownerId);
+        }
+        
+        void commitRemovals() {
+            for (Context<?> context : pendingRemovals) {
+                super.removeMapping(context, "owner");
+            }
+            pendingRemovals = null;
+        }
+
+        @Override
+        public Integer findMapping(Context<?> context, String ownerId) {
+            lookups++;
+            if (!"owner".equals(ownerId)) {
+                return null;
+            }
+            return super.findMapping(context, ownerId);
+        }
+    }
+    
+    private static class TestTransactionManager implements TransactionManager {
+        
+        private int status = STATUS_ACTIVE;
+        private List<TransactionSynchronization> synchronizations = new ArrayList<TransactionSynchronization>();
+        
+        void complete(int completionStatus) {
+            status = completionStatus;
+            for (TransactionSynchronization synchronization : synchronizations) {
+                synchronization.afterCompletion(completionStatus);
+            }
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public boolean begin() {
+            return false;
+        }
+
+        @Override
+        public void commit(boolean transactionOwner) {
+        }
+
+        @Override
+        public void rollback(boolean transactionOwner) {
+        }
+
+        @Override
+        public void registerTransactionSynchronization(TransactionSynchronization ts) {
+            synchronizations.add(ts);
+        }
+
+        @Override
+        public void putResource(Object key, Object resource) {
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.runtime.manager.impl.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.task.model.Content;
+import org.kie.internal.task.api.InternalTaskService;
+
+public class SynchronizedTaskServiceTest {
+
+    private KieSession ksession;
+    private BlockingTaskService delegate;
+    private SynchronizedTaskService taskService;
+
+    @Before
+    public void setup() {
+        ksession = (KieSession) Proxy.newProxyInstance(KieSession.class.getClassLoader(), new Class<?>[] { KieSession.class },
+                new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        } else if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+                        return null;
+                    }
+                });
+        delegate = new BlockingTaskService();
+        taskService = new SynchronizedTaskService(ksession, delegate.proxy());
+    }
+
+    @Test(timeout = 10000)
+    public void testUserQueriesDoNotWaitForKieSession() throws Exception {
+        CountDownLatch potentialOwner;
+        synchronized (ksession) {
+            potentialOwner = runInThread(new Runnable() {
+
+                public void run() {
+                    taskService.getTasksAssignedAsPotentialOwner("john", Collections.<String>emptyList());
+                }
+            });
+            assertTrue(potentialOwner.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testUserQueriesWaitForTaskDataChange() throws Exception {
+        // setting the output runs the user group callback that might persist the user, as user queries do
+        delegate.block("setOutput");
+        CountDownLatch output = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.setOutput(1, "john", null);
+            }
+        });
+        assertTrue(delegate.awaitEntered("setOutput"));
+
+        CountDownLatch taskById = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.getTaskById(1);
+            }
+        });
+        CountDownLatch potentialOwner = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.getTasksAssignedAsPotentialOwner("john", Collections.<String>emptyList());
+            }
+        });
+        assertTrue(taskById.await(5, TimeUnit.SECONDS));
+        assertFalse(potentialOwner.await(500, TimeUnit.MILLISECONDS));
+
+        delegate.unblock("setOutput");
+        assertTrue(output.await(5, TimeUnit.SECONDS));
+        assertTrue(potentialOwner.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testTaskDataChangesWaitForLifeCycleOperation() throws Exception {
+        delegate.block("complete");
+        CountDownLatch completed = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.complete(1, "john", null);
+            }
+        });
+        assertTrue(delegate.awaitEntered("complete"));
+
+        CountDownLatch sameTask = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.setPriority(1, 5);
+            }
+        });
+        CountDownLatch otherTask = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.addContent(2, (Content) null);
+            }
+        });
+        assertTrue(otherTask.await(5, TimeUnit.SECONDS));
+        assertFalse(sameTask.await(500, TimeUnit.MILLISECONDS));
+
+        delegate.unblock("complete");
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertTrue(sameTask.await(5, TimeUnit.SECONDS));
+        assertEquals(1, delegate.getInvocations("setPriority"));
+        assertEquals(1, delegate.getInvocations("addContent"));
+    }
+
+    @Test(timeout = 10000)
+    public void testLifeCycleOperationWaitsForTaskDataChange() throws Exception {
+        delegate.block("addComment");
+        CountDownLatch commented = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.addComment(1, null);
+            }
+        });
+        assertTrue(delegate.awaitEntered("addComment"));
+
+        CountDownLatch started = runInThread(new Runnable() {
+
+            public void run() {
+                taskService.start(1, "john");
+            }
+        });
+        assertFalse(started.await(500, TimeUnit.MILLISECONDS));
+
+        delegate.unblock("addComment");
+        assertTrue(commented.await(5, TimeUnit.SECONDS));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private CountDownLatch runInThread(final Runnable runnable) {
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                runnable.run();
+                done.countDown();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return done;
+    }
+
+    private static class BlockingTaskService implements InvocationHandler {
+
+        private final ConcurrentHashMap<String, CountDownLatch> entered = new ConcurrentHashMap<String, CountDownLatch>();
+        private final ConcurrentHashMap<String, CountDownLatch> blocked = new ConcurrentHashMap<String, CountDownLatch>();
+        private final ConcurrentHashMap<String, Integer> invocations = new ConcurrentHashMap<String, Integer>();
+
+        InternalTaskService proxy() {
+            return (InternalTaskService) Proxy.newProxyInstance(InternalTaskService.class.getClassLoader(),
+                    new Class<?>[] { InternalTaskService.class }, this);
+        }
+
+        void block(String method) {
+            entered.put(method, new CountDownLatch(1));
+            blocked.put(method, new CountDownLatch(1));
+        }
+
+        void unblock(String method) {
+            blocked.get(method).countDown();
+        }
+
+        boolean awaitEntered(String method) throws InterruptedException {
+            return entered.get(method).await(5, TimeUnit.SECONDS);
+        }
+
+        synchronized int getInvocations(String method) {
+            Integer count = invocations.get(method);
+            return count == null ? 0 : count;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            synchronized (this) {
+                invocations.put(name, getInvocations(name) + 1);
+            }
+            CountDownLatch latch = blocked.get(name);
+            if (latch != null) {
+                entered.get(name).countDown();
+                latch.await();
+            }
+            if (List.class.equals(method.getReturnType())) {
+                return Collections.emptyList();
+            } else if (long.class.equals(method.getReturnType())) {
+                return 0L;
+            } else if (int.class.equals(method.getReturnType())) {
+                return 0;
+            } else if (boolean.class.equals(method.getReturnType())) {
+                return false;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.jbpm.executor;
+
+import java.util.List;
+
+import org.kie.internal.executor.api.RequestInfo;
+
+public interface BatchProcessingAware {
+
+	/**
+	 * Locks up to given number of <code>RequestInfo</code> instances that are ready to be executed 
+	 * and moves them to running state, all at once.
+	 * @param maxResults maximum number of requests to be returned
+	 * @return requests to be executed, empty list if there are none
+	 */
+	List<RequestInfo> getRequestsForProcessing(int maxResults);
+}
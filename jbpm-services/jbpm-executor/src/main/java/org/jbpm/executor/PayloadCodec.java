@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor;
+
+import java.io.IOException;
+
+/**
+ * Converts executor payloads - <code>CommandContext</code> stored as request data and 
+ * <code>ExecutionResults</code> stored as response data of <code>RequestInfo</code> - 
+ * to and from bytes.
+ */
+public interface PayloadCodec {
+
+	/**
+	 * Encodes given payload
+	 * @param payload either <code>CommandContext</code> or <code>ExecutionResults</code>
+	 * @return encoded payload
+	 */
+	byte[] encode(Object payload) throws IOException;
+	
+	/**
+	 * Decodes payload previously encoded by this codec
+	 * @param data encoded payload
+	 * @param classLoader class loader to be used to resolve classes of the payload's data
+	 * @return decoded payload
+	 */
+	Object decode(byte[] data, ClassLoader classLoader) throws IOException, ClassNotFoundException;
+}
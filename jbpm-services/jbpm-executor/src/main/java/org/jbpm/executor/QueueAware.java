@@ -0,0 +1,22 @@
+package org.jbpm.executor;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.kie.internal.executor.api.RequestInfo;
+
+public interface QueueAware {
+
+	/**
+	 * Locks up to given number of <code>RequestInfo</code> instances of given queue that are ready to be 
+	 * executed and moves them to running state, all at once. Requests are returned by priority (highest first)
+	 * and then by the time they were due.
+	 * @param queue name of the queue to take requests from, <code>null</code> for requests that are not 
+	 * assigned to any of the dedicated queues
+	 * @param dedicatedQueues names of queues that have dedicated executor threads, requests of these queues 
+	 * are not returned when <code>queue</code> is <code>null</code>
+	 * @param maxResults maximum number of requests to be returned
+	 * @return requests to be executed, empty list if there are none
+	 */
+	List<RequestInfo> getRequestsForProcessing(String queue, Collection<String> dedicatedQueues, int maxResults);
+}
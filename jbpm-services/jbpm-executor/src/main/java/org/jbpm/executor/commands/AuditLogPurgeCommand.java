@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor.commands;
+
+import java.io.File;
+import java.util.Date;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.jbpm.process.audit.AuditLogPurger;
+import org.jbpm.process.audit.JPAAuditLogService;
+import org.jbpm.process.audit.strategy.PersistenceStrategyType;
+import org.jbpm.runtime.manager.impl.jpa.EntityManagerFactoryManager;
+import org.kie.internal.executor.api.Command;
+import org.kie.internal.executor.api.CommandContext;
+import org.kie.internal.executor.api.ExecutionResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Command that purges audit logs of process instances that ended before given time, see
+ * <code>AuditLogPurger</code>. Supported data:
+ * <ul>
+ *  <li>OlderThanDays - number of days since process instance ended, required unless EndedBefore is given</li>
+ *  <li>EndedBefore - date before which process instances ended (java.util.Date)</li>
+ *  <li>ChunkSize - number of process instances purged in one transaction, optional</li>
+ *  <li>ArchiveDirectory - directory to archive purged logs to, logs are not archived if not given</li>
+ *  <li>EmfName - name of the persistence unit, org.jbpm.domain by default</li>
+ * </ul>
+ * Number of purged logs, duration of the purge and archive file are returned in results.
+ */
+public class AuditLogPurgeCommand implements Command {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogPurgeCommand.class);
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    public ExecutionResults execute(CommandContext ctx) {
+        Date endedBefore = (Date) ctx.getData("EndedBefore");
+        if (endedBefore == null) {
+            Object olderThanDays = ctx.getData("OlderThanDays");
+            if (olderThanDays == null) {
+                throw new IllegalArgumentException("OlderThanDays or EndedBefore must be given");
+            }
+            endedBefore = new Date(System.currentTimeMillis() - Long.parseLong(olderThanDays.toString()) * DAY);
+        }
+        String emfName = (String) ctx.getData("EmfName");
+        if (emfName == null) {
+            emfName = "org.jbpm.domain";
+        }
+        Object chunkSize = ctx.getData("ChunkSize");
+        Object archiveDirectory = ctx.getData("ArchiveDirectory");
+
+        EntityManagerFactory emf = EntityManagerFactoryManager.get().getOrCreate(emfName);
+        JPAAuditLogService auditLogService = new JPAAuditLogService(emf, PersistenceStrategyType.STANDALONE_JTA);
+        AuditLogPurger.Summary summary = auditLogService.purgeEndedBefore(endedBefore,
+                chunkSize == null ? AuditLogPurger.DEFAULT_CHUNK_SIZE : Integer.parseInt(chunkSize.toString()),
+                archiveDirectory == null ? null : new File(archiveDirectory.toString()));
+        logger.info("Audit log purge executed on executor: {}", summary);
+
+        ExecutionResults executionResults = new ExecutionResults();
+        executionResults.setData("ProcessInstanceLogs", summary.getProcessInstanceLogs());
+        executionResults.setData("NodeInstanceLogs", summary.getNodeInstanceLogs());
+        executionResults.setData("VariableInstanceLogs", summary.getVariableInstanceLogs());
+        executionResults.setData("Duration", summary.getDuration());
+        executionResults.setData("Throughput", summary.getThroughput());
+        if (summary.getArchiveFile() != null) {
+            executionResults.setData("ArchiveFile", summary.getArchiveFile().getAbsolutePath());
+        }
+        return executionResults;
+    }
+
+}
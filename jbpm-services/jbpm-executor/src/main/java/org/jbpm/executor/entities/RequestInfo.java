@@ -45,6 +45,8 @@ public class RequestInfo implements org.kie.internal.executor.api.RequestInfo, S
 
     private static final long serialVersionUID = 5823083735663566537L;
     
+    public static final int DEFAULT_PRIORITY = 5;
+    
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO, generator="requestInfoIdSeq")
     private Long id;
@@ -65,6 +67,11 @@ public class RequestInfo implements org.kie.internal.executor.api.RequestInfo, S
     private String deploymentId;
     // owning component of this request, meaning when set only same component can execute it 
     private String owner;
+    // requests with higher priority are executed first
+    private int priority = DEFAULT_PRIORITY;
+    // name of the queue with dedicated executor threads, when null request is executed by default threads
+    @Column(name="queueName")
+    private String queue;
     
     @Lob
     private byte[] requestData;
@@ -181,11 +188,28 @@ public class RequestInfo implements org.kie.internal.executor.api.RequestInfo, S
 		this.owner = owner;
 	}
 
+	public int getPriority() {
+		return priority;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	public String getQueue() {
+		return queue;
+	}
+
+	public void setQueue(String queue) {
+		this.queue = queue;
+	}
+
 
 	@Override
     public String toString() {
         return "RequestInfo{" + "id=" + id + ", time=" + time 
         		+ ", status=" + status + ", commandName=" + commandName + ", message=" + message + ", owner=" + owner
+        		+ ", priority=" + priority + ", queue=" + queue
         		+ ", key=" + key + ", requestData=" + requestData + ", responseData=" + responseData 
         		+ ", error=" + errorInfo + '}';
     }
@@ -220,6 +244,12 @@ public class RequestInfo implements org.kie.internal.executor.api.RequestInfo, S
         if ((this.owner == null) ? (other.owner != null) : !this.owner.equals(other.owner)) {
             return false;
         }
+        if (this.priority != other.priority) {
+            return false;
+        }
+        if ((this.queue == null) ? (other.queue != null) : !this.queue.equals(other.queue)) {
+            return false;
+        }
         if ((this.deploymentId == null) ? (other.deploymentId != null) : !this.deploymentId.equals(other.deploymentId)) {
             return false;
         }
@@ -245,6 +275,8 @@ public class RequestInfo implements org.kie.internal.executor.api.RequestInfo, S
         hash = 79 * hash + (this.message != null ? this.message.hashCode() : 0);
         hash = 79 * hash + (this.key != null ? this.key.hashCode() : 0);
         hash = 79 * hash + (this.owner != null ? this.owner.hashCode() : 0);
+        hash = 79 * hash + this.priority;
+        hash = 79 * hash + (this.queue != null ? this.queue.hashCode() : 0);
         hash = 79 * hash + (this.deploymentId != null ? this.deploymentId.hashCode() : 0);
         hash = 79 * hash + Arrays.hashCode(this.requestData);
         hash = 79 * hash + Arrays.hashCode(this.responseData);
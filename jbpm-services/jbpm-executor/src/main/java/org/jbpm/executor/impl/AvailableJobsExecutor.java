@@ -16,14 +16,14 @@
 
 package org.jbpm.executor.impl;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.ejb.Asynchronous;
 import javax.ejb.Stateless;
@@ -31,10 +31,12 @@ import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
 import javax.inject.Inject;
 
-import org.apache.commons.io.input.ClassLoaderObjectInputStream;
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.jbpm.executor.BatchProcessingAware;
+import org.jbpm.executor.QueueAware;
 import org.jbpm.executor.entities.ErrorInfo;
 import org.jbpm.executor.entities.RequestInfo;
+import org.jbpm.executor.impl.codec.PayloadCodecs;
 import org.kie.internal.executor.api.Command;
 import org.kie.internal.executor.api.CommandCallback;
 import org.kie.internal.executor.api.CommandContext;
@@ -81,107 +83,194 @@ public class AvailableJobsExecutor {
 	}
 
 
-    @SuppressWarnings("unchecked")
     @Asynchronous    
     public void executeJob() {
         logger.debug("Executor Thread {} Waking Up!!!", this.toString());
         try {
             RequestInfo request = (RequestInfo) queryService.getRequestForProcessing();
             if (request != null) {
-                CommandContext ctx = null;
-                List<CommandCallback> callbacks = null;
-                ClassLoader cl = getClassLoader(request.getDeploymentId());
-                try {
-    
-                    logger.debug("Processing Request Id: {}, status {} command {}", request.getId(), request.getStatus(), request.getCommandName());
-                    
-                    
-                    byte[] reqData = request.getRequestData();
-                    if (reqData != null) {
-                        ObjectInputStream in = null;
-                        try {
-                            in = new ClassLoaderObjectInputStream(cl, new ByteArrayInputStream(reqData));
-                            ctx = (CommandContext) in.readObject();
-                        } catch (IOException e) {                        
-                            logger.warn("Exception while serializing context data", e);
-                            return;
-                        } finally {
-                            if (in != null) {
-                                in.close();
-                            }
-                        }
-                    }
-                    for (Map.Entry<String, Object> entry : contextData.entrySet()) {
-                    	ctx.setData(entry.getKey(), entry.getValue());
-                    }
-                    // add class loader so internally classes can be created with valid (kjar) deployment
-                    ctx.setData("ClassLoader", cl);
-                    
-                    
-                    Command cmd = classCacheManager.findCommand(request.getCommandName(), cl);
-                    ExecutionResults results = cmd.execute(ctx);
-                    
-                    callbacks = classCacheManager.buildCommandCallback(ctx, cl);                
-                    
-                    for (CommandCallback handler : callbacks) {
-                        
-                        handler.onCommandDone(ctx, results);
-                    }
-                    
-                    if (results != null) {
-                        try {
-                            ByteArrayOutputStream bout = new ByteArrayOutputStream();
-                            ObjectOutputStream out = new ObjectOutputStream(bout);
-                            out.writeObject(results);
-                            byte[] respData = bout.toByteArray();
-                            request.setResponseData(respData);
-                        } catch (IOException e) {
-                            request.setResponseData(null);
-                        }
+                executeGivenJob(request);
+            }
+        } catch (Exception e) {
+            logger.warn("Unexpected error while processin executor's job {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claims up to <code>maxJobs</code> requests at once and executes them with given workers, 
+     * waiting for all of them to complete. Requests are executed in the calling thread when no 
+     * workers are given.
+     * @param maxJobs maximum number of requests to be claimed
+     * @param workers executor that the claimed requests are handed to
+     * @return number of requests that were claimed
+     */
+    public int executeJobs(int maxJobs, java.util.concurrent.Executor workers) {
+        return executeJobs(maxJobs, workers, null, null);
+    }
+
+    /**
+     * Same as {@link #executeJobs(int, java.util.concurrent.Executor)} but claims only requests of given queue.
+     * @param queue name of the queue to take requests from, <code>null</code> for requests that are not 
+     * assigned to any of the dedicated queues
+     * @param dedicatedQueues names of queues that are served by dedicated executor threads
+     * @see QueueAware
+     */
+    public int executeJobs(int maxJobs, java.util.concurrent.Executor workers, String queue, Collection<String> dedicatedQueues) {
+        logger.debug("Executor Thread {} Waking Up to execute up to {} jobs from queue {}", this.toString(), maxJobs, queue);
+        List<org.kie.internal.executor.api.RequestInfo> requests = getRequestsForProcessing(maxJobs, queue, dedicatedQueues);
+        if (requests.isEmpty()) {
+            return 0;
+        }
+        final CountDownLatch done = new CountDownLatch(requests.size());
+        for (final org.kie.internal.executor.api.RequestInfo request : requests) {
+            Runnable job = new Runnable() {
+                public void run() {
+                    try {
+                        executeGivenJob((RequestInfo) request);
+                    } catch (Exception e) {
+                        logger.warn("Unexpected error while processin executor's job {}", e.getMessage(), e);
+                    } finally {
+                        done.countDown();
                     }
+                }
+            };
+            if (workers == null) {
+                job.run();
+            } else {
+                try {
+                    workers.execute(job);
+                } catch (RejectedExecutionException e) {
+                    // workers are shutting down, request is put back to the queue so it is picked up again
+                    logger.warn("Request {} could not be handed to executor workers, returning it to the queue", request.getId());
+                    requeue((RequestInfo) request);
+                    done.countDown();
+                }
+            }
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return requests.size();
+    }
+
+    protected List<org.kie.internal.executor.api.RequestInfo> getRequestsForProcessing(int maxJobs, String queue, Collection<String> dedicatedQueues) {
+        if (queryService instanceof QueueAware) {
+            return ((QueueAware) queryService).getRequestsForProcessing(queue, dedicatedQueues, maxJobs);
+        }
+        if (queue != null) {
+            logger.debug("Query service {} does not support queues, requests of queue {} are executed by default threads", queryService, queue);
+            return new ArrayList<org.kie.internal.executor.api.RequestInfo>();
+        }
+        if (queryService instanceof BatchProcessingAware) {
+            return ((BatchProcessingAware) queryService).getRequestsForProcessing(maxJobs);
+        }
+        List<org.kie.internal.executor.api.RequestInfo> requests = new ArrayList<org.kie.internal.executor.api.RequestInfo>();
+        while (requests.size() < maxJobs) {
+            org.kie.internal.executor.api.RequestInfo request = queryService.getRequestForProcessing();
+            if (request == null) {
+                break;
+            }
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    /**
+     * Returns claimed request that was not executed back to the queue.
+     */
+    protected void requeue(RequestInfo request) {
+        try {
+            request.setStatus(STATUS.QUEUED);
+            executorStoreService.updateRequest(request);
+        } catch (Exception e) {
+            logger.error("Unable to return request {} to the queue, it stays in status {}", request.getId(), STATUS.RUNNING, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void executeGivenJob(RequestInfo request) throws Exception {
+        CommandContext ctx = null;
+        List<CommandCallback> callbacks = null;
+        ClassLoader cl = getClassLoader(request.getDeploymentId());
+        try {
     
-                    request.setStatus(STATUS.DONE);
-                     
-                    executorStoreService.updateRequest(request);
-                    
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                } catch (Throwable e) {
-                	callbacks = classCacheManager.buildCommandCallback(ctx, cl);  
-                    logger.warn("Error during command {} execution {}", request.getCommandName(), e.getMessage());
+            logger.debug("Processing Request Id: {}, status {} command {}", request.getId(), request.getStatus(), request.getCommandName());
+            
+            
+            byte[] reqData = request.getRequestData();
+            if (reqData != null) {
+                try {
+                    ctx = (CommandContext) PayloadCodecs.decodeRequest(reqData, cl);
+                } catch (IOException e) {                        
+                    logger.warn("Exception while serializing context data", e);
+                    return;
+                }
+            }
+            for (Map.Entry<String, Object> entry : contextData.entrySet()) {
+            	ctx.setData(entry.getKey(), entry.getValue());
+            }
+            // add class loader so internally classes can be created with valid (kjar) deployment
+            ctx.setData("ClassLoader", cl);
+            
+            
+            Command cmd = classCacheManager.findCommand(request.getCommandName(), cl);
+            ExecutionResults results = cmd.execute(ctx);
+            
+            callbacks = classCacheManager.buildCommandCallback(ctx, cl);                
+            
+            for (CommandCallback handler : callbacks) {
+                
+                handler.onCommandDone(ctx, results);
+            }
+            
+            if (results != null) {
+                try {
+                    request.setResponseData(PayloadCodecs.encodeResponse(results));
+                } catch (IOException e) {
+                    request.setResponseData(null);
+                }
+            }
     
-                    ErrorInfo errorInfo = new ErrorInfo(e.getMessage(), ExceptionUtils.getFullStackTrace(e.fillInStackTrace()));
-                    errorInfo.setRequestInfo(request);
+            request.setStatus(STATUS.DONE);
+             
+            executorStoreService.updateRequest(request);
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+        	callbacks = classCacheManager.buildCommandCallback(ctx, cl);  
+            logger.warn("Error during command {} execution {}", request.getCommandName(), e.getMessage());
     
-                    ((List<ErrorInfo>)request.getErrorInfo()).add(errorInfo);
-                    logger.debug("Error Number: {}", request.getErrorInfo().size());
-                    if (request.getRetries() > 0) {
-                        request.setStatus(STATUS.RETRYING);
-                        request.setRetries(request.getRetries() - 1);
-                        request.setExecutions(request.getExecutions() + 1);
-                        logger.debug("Retrying ({}) still available!", request.getRetries());
-                        
-                        executorStoreService.updateRequest(request);
-                    } else {
-                        logger.debug("Error no retries left!");
-                        request.setStatus(STATUS.ERROR);
-                        request.setExecutions(request.getExecutions() + 1);
-                        
-                        executorStoreService.updateRequest(request);
-                        
-                        if (callbacks != null) {
-                            for (CommandCallback handler : callbacks) {                        
-                                handler.onCommandError(ctx, e);                        
-                            }
-                        }
+            ErrorInfo errorInfo = new ErrorInfo(e.getMessage(), ExceptionUtils.getFullStackTrace(e.fillInStackTrace()));
+            errorInfo.setRequestInfo(request);
     
+            ((List<ErrorInfo>)request.getErrorInfo()).add(errorInfo);
+            logger.debug("Error Number: {}", request.getErrorInfo().size());
+            if (request.getRetries() > 0) {
+                request.setStatus(STATUS.RETRYING);
+                request.setRetries(request.getRetries() - 1);
+                request.setExecutions(request.getExecutions() + 1);
+                logger.debug("Retrying ({}) still available!", request.getRetries());
+                
+                executorStoreService.updateRequest(request);
+            } else {
+                logger.debug("Error no retries left!");
+                request.setStatus(STATUS.ERROR);
+                request.setExecutions(request.getExecutions() + 1);
+                
+                executorStoreService.updateRequest(request);
+                
+                if (callbacks != null) {
+                    for (CommandCallback handler : callbacks) {                        
+                        handler.onCommandError(ctx, e);                        
                     }
+                }
     
-                } 
             }
-        } catch (Exception e) {
-            logger.warn("Unexpected error while processin executor's job {}", e.getMessage(), e);
-        }
+    
+        } 
     }
     
     protected ClassLoader getClassLoader(String deploymentId) {
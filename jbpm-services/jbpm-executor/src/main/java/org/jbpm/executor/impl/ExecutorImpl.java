@@ -16,19 +16,24 @@
 
 package org.jbpm.executor.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.jbpm.executor.entities.RequestInfo;
+import org.jbpm.executor.impl.codec.PayloadCodecs;
 import org.kie.internal.executor.api.CommandContext;
 import org.kie.internal.executor.api.Executor;
 import org.kie.internal.executor.api.ExecutorStoreService;
@@ -44,7 +49,20 @@ import org.slf4j.LoggerFactory;
  *  <li>thread pool size - default 1 - use system property org.kie.executor.pool.size</li>
  *  <li>retry count - default 3 retries - use system property org.kie.executor.retry.count</li>
  *  <li>execution interval - default 3 seconds - use system property org.kie.executor.interval</li>
+ *  <li>batch size - default 1 - use system property org.kie.executor.batch.size, when greater than 1 
+ *  every poll claims up to that many requests at once, executes them in parallel with a pool of 
+ *  org.kie.executor.worker.pool.size threads (default batch size) and polls again right away while 
+ *  full batches are claimed</li>
+ *  <li>wake up on schedule - default true - use system property org.kie.executor.wakeup.enabled, when enabled 
+ *  requests scheduled within this JVM are picked up right after the transaction that stored them commits, 
+ *  polling on interval remains to pick up requests scheduled by other nodes</li>
+ *  <li>queues - default none - use system property org.kie.executor.queues with comma separated list of 
+ *  name:threads entries (e.g. critical:2,reports:1), every queue is served by its own threads so requests 
+ *  scheduled with "queue" context data set to its name are not delayed by requests of other queues, 
+ *  requests of unknown queues are executed by default threads</li>
  * </ul>
+ * Requests are always picked up by their priority (set with "priority" context data, higher first, default 5) 
+ * and then by the time they were due.
  * Additionally executor can be disable to not start at all when system property org.kie.executor.disabled is 
  * set to true
  */
@@ -59,8 +77,19 @@ public class ExecutorImpl implements Executor {
     private int retries = Integer.parseInt(System.getProperty("org.kie.executor.retry.count", "3"));
     private int interval = Integer.parseInt(System.getProperty("org.kie.executor.interval", "3"));
     private TimeUnit timeunit = TimeUnit.valueOf(System.getProperty("org.kie.executor.timeunit", "SECONDS"));
+    private int batchSize = Integer.parseInt(System.getProperty("org.kie.executor.batch.size", "1"));
+    private int workerPoolSize = Integer.parseInt(System.getProperty("org.kie.executor.worker.pool.size", String.valueOf(batchSize)));
+    private boolean wakeUpEnabled = Boolean.parseBoolean(System.getProperty("org.kie.executor.wakeup.enabled", "true"));
+    private Map<String, Integer> queues = parseQueues(System.getProperty("org.kie.executor.queues", ""));
 
 	private ScheduledExecutorService scheduler;
+	private ExecutorService workers;
+	private volatile Runnable wakeUpRunnable;
+	private final AtomicBoolean wakeUpPending = new AtomicBoolean(false);
+	private volatile org.drools.persistence.TransactionManager transactionManager;
+	private final Map<String, ScheduledExecutorService> queueSchedulers = new ConcurrentHashMap<String, ScheduledExecutorService>();
+	private final Map<String, Runnable> queueWakeUpRunnables = new ConcurrentHashMap<String, Runnable>();
+	private final Map<String, AtomicBoolean> queueWakeUpPending = new ConcurrentHashMap<String, AtomicBoolean>();
 
     public ExecutorImpl() {
     }
@@ -125,18 +154,62 @@ public class ExecutorImpl implements Executor {
 		this.timeunit = timeunit;
 	}
 
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getWorkerPoolSize() {
+		return workerPoolSize;
+	}
+
+	public void setWorkerPoolSize(int workerPoolSize) {
+		this.workerPoolSize = workerPoolSize;
+	}
+
+	public boolean isWakeUpEnabled() {
+		return wakeUpEnabled;
+	}
+
+	public void setWakeUpEnabled(boolean wakeUpEnabled) {
+		this.wakeUpEnabled = wakeUpEnabled;
+	}
+
+	/**
+	 * Returns dedicated queues and number of threads serving each of them.
+	 */
+	public Map<String, Integer> getQueues() {
+		return queues;
+	}
+
+	public void setQueues(Map<String, Integer> queues) {
+		this.queues = queues;
+	}
+
     /**
      * {@inheritDoc}
      */
     public void init() {
         if (!"true".equalsIgnoreCase(System.getProperty("org.kie.executor.disabled"))) {
             logger.info("Starting Executor Component ...\n" + " \t - Thread Pool Size: {}" + "\n"
-                    + " \t - Interval: {} {} \n" + " \t - Retries per Request: {}\n",
-                    threadPoolSize, interval, timeunit.toString(), retries);
+                    + " \t - Interval: {} {} \n" + " \t - Retries per Request: {}\n" + " \t - Batch Size: {}\n",
+                    threadPoolSize, interval, timeunit.toString(), retries, batchSize);
             
             scheduler = Executors.newScheduledThreadPool(threadPoolSize);
+            if (batchSize > 1) {
+            	workers = Executors.newFixedThreadPool(workerPoolSize);
+            }
             for (int i = 0; i < threadPoolSize; i++) {
-            	handle.add(scheduler.scheduleAtFixedRate(executorStoreService.buildExecutorRunnable(), 2, interval, timeunit));
+            	handle.add(scheduler.scheduleAtFixedRate(buildExecutorRunnable(), 2, interval, timeunit));
+            }
+            if (wakeUpEnabled) {
+            	wakeUpRunnable = buildExecutorRunnable();
+            }
+            for (Map.Entry<String, Integer> queue : queues.entrySet()) {
+            	startQueue(queue.getKey(), Executors.newScheduledThreadPool(queue.getValue()), queue.getValue());
             }
         }
     }
@@ -148,12 +221,138 @@ public class ExecutorImpl implements Executor {
                     threadPoolSize, interval, retries);
             
             scheduler = Executors.newScheduledThreadPool(threadPoolSize, threadFactory);
+            if (batchSize > 1) {
+            	workers = Executors.newFixedThreadPool(workerPoolSize, threadFactory);
+            }
             for (int i = 0; i < threadPoolSize; i++) {
-            	handle.add(scheduler.scheduleAtFixedRate(executorStoreService.buildExecutorRunnable(), 2, interval, timeunit));
+            	handle.add(scheduler.scheduleAtFixedRate(buildExecutorRunnable(), 2, interval, timeunit));
+            }
+            if (wakeUpEnabled) {
+            	wakeUpRunnable = buildExecutorRunnable();
+            }
+            for (Map.Entry<String, Integer> queue : queues.entrySet()) {
+            	startQueue(queue.getKey(), Executors.newScheduledThreadPool(queue.getValue(), threadFactory), queue.getValue());
             }
         }
     }
     
+    protected void startQueue(String queue, ScheduledExecutorService queueScheduler, int threads) {
+    	logger.info("Starting {} executor thread(s) dedicated to queue {}", threads, queue);
+    	queueSchedulers.put(queue, queueScheduler);
+    	for (int i = 0; i < threads; i++) {
+    		handle.add(queueScheduler.scheduleAtFixedRate(buildExecutorRunnable(queue), 2, interval, timeunit));
+    	}
+    	if (wakeUpEnabled) {
+    		queueWakeUpRunnables.put(queue, buildExecutorRunnable(queue));
+    		queueWakeUpPending.put(queue, new AtomicBoolean(false));
+    	}
+    }
+    
+    protected Runnable buildExecutorRunnable() {
+    	Runnable runnable = executorStoreService.buildExecutorRunnable();
+    	if (runnable instanceof ExecutorRunnable) {
+    		if (batchSize > 1) {
+    			((ExecutorRunnable) runnable).setBatch(batchSize, workers);
+    		}
+    		if (!queues.isEmpty()) {
+    			((ExecutorRunnable) runnable).setQueue(null, queues.keySet());
+    		}
+    	}
+    	return runnable;
+    }
+    
+    /**
+     * Builds runnable that executes only requests of given queue, within the calling thread.
+     */
+    protected Runnable buildExecutorRunnable(String queue) {
+    	Runnable runnable = executorStoreService.buildExecutorRunnable();
+    	if (runnable instanceof ExecutorRunnable) {
+    		((ExecutorRunnable) runnable).setBatch(batchSize, null);
+    		((ExecutorRunnable) runnable).setQueue(queue, queues.keySet());
+    	}
+    	return runnable;
+    }
+    
+    /**
+     * Runs an additional poll for requests right away, unless one is already waiting to be run.
+     */
+    public void wakeUp() {
+    	wakeUp(scheduler, wakeUpRunnable, wakeUpPending);
+    }
+    
+    /**
+     * Runs an additional poll for requests of given queue right away, falls back to default threads
+     * when the queue has no dedicated threads.
+     */
+    public void wakeUp(String queue) {
+    	if (queue == null || !queueSchedulers.containsKey(queue)) {
+    		wakeUp();
+    		return;
+    	}
+    	wakeUp(queueSchedulers.get(queue), queueWakeUpRunnables.get(queue), queueWakeUpPending.get(queue));
+    }
+    
+    private void wakeUp(ScheduledExecutorService currentScheduler, final Runnable runnable, final AtomicBoolean wakeUpPending) {
+    	if (runnable == null || currentScheduler == null || currentScheduler.isShutdown()) {
+    		return;
+    	}
+    	if (wakeUpPending.compareAndSet(false, true)) {
+    		try {
+    			currentScheduler.execute(new Runnable() {
+    				public void run() {
+    					wakeUpPending.set(false);
+    					runnable.run();
+    				}
+    			});
+    		} catch (RejectedExecutionException e) {
+    			wakeUpPending.set(false);
+    			logger.debug("Executor is shutting down, wake up ignored");
+    		}
+    	}
+    }
+    
+    /**
+     * Wakes up the executor once the current transaction commits, or immediately when there is 
+     * no active transaction.
+     */
+    protected void wakeUpAfterCommit(final String queue) {
+    	org.drools.persistence.TransactionManager tm = getTransactionManager();
+    	try {
+	    	if (tm == null || tm.getStatus() == org.drools.persistence.TransactionManager.STATUS_NO_TRANSACTION) {
+	    		wakeUp(queue);
+	    		return;
+	    	}
+	    	tm.registerTransactionSynchronization(new org.drools.persistence.TransactionSynchronization() {
+				
+				@Override
+				public void beforeCompletion() {
+					// not used here
+				}
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status == org.drools.persistence.TransactionManager.STATUS_COMMITTED) {
+						wakeUp(queue);
+					}
+				}
+			});
+    	} catch (Exception e) {
+    		logger.debug("Unable to register wake up of executor after transaction completion, request will be picked up by next poll", e);
+    	}
+    }
+    
+    private org.drools.persistence.TransactionManager getTransactionManager() {
+    	if (transactionManager == null) {
+    		try {
+    			transactionManager = new org.drools.persistence.jta.JtaTransactionManager(null, null, null);
+    		} catch (Throwable e) {
+    			logger.debug("No JTA transaction manager available, executor will be woken up directly", e);
+    			return null;
+    		}
+    	}
+    	return transactionManager;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -164,9 +363,18 @@ public class ExecutorImpl implements Executor {
         		h.cancel(true);
         	}
         }
+        wakeUpRunnable = null;
+        queueWakeUpRunnables.clear();
         if (scheduler != null) {
             scheduler.shutdownNow();
         }
+        for (ScheduledExecutorService queueScheduler : queueSchedulers.values()) {
+            queueScheduler.shutdownNow();
+        }
+        queueSchedulers.clear();
+        if (workers != null) {
+            workers.shutdownNow();
+        }
     }
 
     /**
@@ -195,6 +403,10 @@ public class ExecutorImpl implements Executor {
         requestInfo.setMessage("Ready to execute");
         requestInfo.setDeploymentId((String)ctx.getData("deploymentId"));
         requestInfo.setOwner((String)ctx.getData("owner"));
+        requestInfo.setQueue((String)ctx.getData("queue"));
+        if (ctx.getData("priority") != null) {
+            requestInfo.setPriority(Integer.valueOf(String.valueOf(ctx.getData("priority"))));
+        }
         if (ctx.getData("retries") != null) {
             requestInfo.setRetries(Integer.valueOf(String.valueOf(ctx.getData("retries"))));
         } else {
@@ -202,10 +414,7 @@ public class ExecutorImpl implements Executor {
         }
         if (ctx != null) {
             try {
-                ByteArrayOutputStream bout = new ByteArrayOutputStream();
-                ObjectOutputStream oout = new ObjectOutputStream(bout);
-                oout.writeObject(ctx);
-                requestInfo.setRequestData(bout.toByteArray());
+                requestInfo.setRequestData(PayloadCodecs.encodeRequest(ctx));
             } catch (IOException e) {
                 logger.warn("Error serializing context data", e);
                 requestInfo.setRequestData(null);
@@ -213,6 +422,9 @@ public class ExecutorImpl implements Executor {
         }
         
         executorStoreService.persistRequest(requestInfo);
+        if (wakeUpEnabled && (date == null || !date.after(new Date()))) {
+        	wakeUpAfterCommit(requestInfo.getQueue());
+        }
 
         logger.debug("Scheduling request for Command: {} - requestId: {} with {} retries", commandId, requestInfo.getId(), requestInfo.getRetries());
         return requestInfo.getId();
@@ -229,7 +441,20 @@ public class ExecutorImpl implements Executor {
         logger.debug("After - Cancelling Request with Id: {}", requestId);
     }
 
-    
-
-
+    private static Map<String, Integer> parseQueues(String definition) {
+    	Map<String, Integer> queues = new LinkedHashMap<String, Integer>();
+    	for (String entry : definition.split(",")) {
+    		entry = entry.trim();
+    		if (entry.isEmpty()) {
+    			continue;
+    		}
+    		int separator = entry.indexOf(':');
+    		if (separator == -1) {
+    			queues.put(entry, 1);
+    		} else {
+    			queues.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+    		}
+    	}
+    	return queues;
+    }
 }
@@ -16,6 +16,9 @@
 
 package org.jbpm.executor.impl;
 
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,16 +33,46 @@ public class ExecutorRunnable implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(ExecutorRunnable.class);
 
     private AvailableJobsExecutor availableJobsExecutor;       
+    private int batchSize = 1;
+    private Executor workers;
+    private String queue;
+    private Collection<String> dedicatedQueues;
     
     public void setAvailableJobsExecutor(AvailableJobsExecutor availableJobsExecutor) {
 		this.availableJobsExecutor = availableJobsExecutor;
 	}
 
+    /**
+     * Configures batch mode: up to <code>batchSize</code> requests are claimed at once and executed 
+     * by given workers, and as long as full batches are claimed the executor polls again right away 
+     * instead of waiting for next interval.
+     */
+    public void setBatch(int batchSize, Executor workers) {
+    	this.batchSize = batchSize;
+    	this.workers = workers;
+    }
+
+    /**
+     * Configures queue this runnable takes requests from. When <code>queue</code> is <code>null</code> 
+     * requests of all queues but the dedicated ones are executed.
+     */
+    public void setQueue(String queue, Collection<String> dedicatedQueues) {
+    	this.queue = queue;
+    	this.dedicatedQueues = dedicatedQueues;
+    }
+
     public void run() {
     	try {
     		logger.debug("About to execute jobs...");
     		
-    		this.availableJobsExecutor.executeJob();
+    		if (batchSize > 1 || queue != null || (dedicatedQueues != null && !dedicatedQueues.isEmpty())) {
+    			int claimed;
+    			do {
+    				claimed = this.availableJobsExecutor.executeJobs(batchSize, workers, queue, dedicatedQueues);
+    			} while (claimed == batchSize && !Thread.currentThread().isInterrupted());
+    		} else {
+    			this.availableJobsExecutor.executeJob();
+    		}
     	} catch (Exception e) {
     		logger.warn("Error while executing jobs due to {}", e.getMessage());
     	}
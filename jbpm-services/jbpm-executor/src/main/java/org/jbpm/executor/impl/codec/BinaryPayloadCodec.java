@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor.impl.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jbpm.executor.PayloadCodec;
+import org.kie.internal.executor.api.CommandContext;
+import org.kie.internal.executor.api.ExecutionResults;
+
+/**
+ * Compact <code>PayloadCodec</code> that writes the data map of <code>CommandContext</code> and 
+ * <code>ExecutionResults</code> as type tagged binary entries. Strings, primitive wrappers, dates, 
+ * byte arrays and (nested) <code>HashMap</code> and <code>ArrayList</code> instances are written 
+ * directly, any other value is java serialized on its own - so references shared between 
+ * such values are not preserved.
+ * <br/>
+ * Payloads of other types (e.g. subclasses of <code>CommandContext</code>) are java serialized.
+ */
+public class BinaryPayloadCodec implements PayloadCodec {
+	
+	private static final byte[] MAGIC = new byte[] {'J', 'B', 'P'};
+	private static final byte VERSION = 1;
+	
+	private static final byte PAYLOAD_CONTEXT = 'C';
+	private static final byte PAYLOAD_RESULTS = 'R';
+	
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte BOOLEAN = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte SHORT = 7;
+	private static final byte BYTE = 8;
+	private static final byte CHARACTER = 9;
+	private static final byte DATE = 10;
+	private static final byte BYTES = 11;
+	private static final byte MAP = 12;
+	private static final byte LIST = 13;
+	private static final byte SERIALIZED = 14;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final SerializationPayloadCodec serializationCodec = new SerializationPayloadCodec();
+
+	@Override
+	public byte[] encode(Object payload) throws IOException {
+		byte payloadType;
+		Map<String, Object> data;
+		if (payload != null && payload.getClass() == CommandContext.class) {
+			payloadType = PAYLOAD_CONTEXT;
+			data = ((CommandContext) payload).getData();
+		} else if (payload != null && payload.getClass() == ExecutionResults.class) {
+			payloadType = PAYLOAD_RESULTS;
+			data = ((ExecutionResults) payload).getData();
+		} else {
+			return serializationCodec.encode(payload);
+		}
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bout);
+		out.write(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(payloadType);
+		writeMap(out, data);
+		out.close();
+		return bout.toByteArray();
+	}
+
+	@Override
+	public Object decode(byte[] data, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		if (!isEncoded(data)) {
+			return serializationCodec.decode(data, classLoader);
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, MAGIC.length, data.length - MAGIC.length));
+		byte version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported executor payload version " + version);
+		}
+		byte payloadType = in.readByte();
+		Map<String, Object> entries = readMap(in, classLoader);
+		if (payloadType == PAYLOAD_CONTEXT) {
+			CommandContext ctx = new CommandContext();
+			for (Map.Entry<String, Object> entry : entries.entrySet()) {
+				ctx.setData(entry.getKey(), entry.getValue());
+			}
+			return ctx;
+		} else if (payloadType == PAYLOAD_RESULTS) {
+			ExecutionResults results = new ExecutionResults();
+			for (Map.Entry<String, Object> entry : entries.entrySet()) {
+				results.setData(entry.getKey(), entry.getValue());
+			}
+			return results;
+		}
+		throw new IOException("Unknown executor payload type " + payloadType);
+	}
+
+	/**
+	 * Checks if given data was encoded by this codec.
+	 */
+	public static boolean isEncoded(byte[] data) {
+		if (data == null || data.length < MAGIC.length + 2) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (data[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			writeValue(out, entry.getKey());
+			writeValue(out, entry.getValue());
+		}
+	}
+	
+	private Map<String, Object> readMap(DataInputStream in, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		int size = in.readInt();
+		Map<String, Object> map = new HashMap<String, Object>(size * 2);
+		for (int i = 0; i < size; i++) {
+			Object key = readValue(in, classLoader);
+			map.put((String) key, readValue(in, classLoader));
+		}
+		return map;
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+			return;
+		}
+		Class<?> type = value.getClass();
+		if (type == String.class) {
+			out.writeByte(STRING);
+			writeBytes(out, ((String) value).getBytes(UTF8));
+		} else if (type == Integer.class) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (type == Long.class) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (type == Boolean.class) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (type == Double.class) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (type == Float.class) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (type == Short.class) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (type == Byte.class) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if (type == Character.class) {
+			out.writeByte(CHARACTER);
+			out.writeChar((Character) value);
+		} else if (type == Date.class) {
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (type == byte[].class) {
+			out.writeByte(BYTES);
+			writeBytes(out, (byte[]) value);
+		} else if (type == HashMap.class) {
+			out.writeByte(MAP);
+			writeMap(out, (Map<?, ?>) value);
+		} else if (type == ArrayList.class) {
+			out.writeByte(LIST);
+			List<?> list = (List<?>) value;
+			out.writeInt(list.size());
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		} else {
+			out.writeByte(SERIALIZED);
+			writeBytes(out, serializationCodec.encode(value));
+		}
+	}
+	
+	private Object readValue(DataInputStream in, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return new String(readBytes(in), UTF8);
+		case INTEGER:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case BOOLEAN:
+			return in.readBoolean();
+		case DOUBLE:
+			return in.readDouble();
+		case FLOAT:
+			return in.readFloat();
+		case SHORT:
+			return in.readShort();
+		case BYTE:
+			return in.readByte();
+		case CHARACTER:
+			return in.readChar();
+		case DATE:
+			return new Date(in.readLong());
+		case BYTES:
+			return readBytes(in);
+		case MAP:
+			int size = in.readInt();
+			Map<Object, Object> map = new HashMap<Object, Object>(size * 2);
+			for (int i = 0; i < size; i++) {
+				Object key = readValue(in, classLoader);
+				map.put(key, readValue(in, classLoader));
+			}
+			return map;
+		case LIST:
+			int length = in.readInt();
+			List<Object> list = new ArrayList<Object>(length);
+			for (int i = 0; i < length; i++) {
+				list.add(readValue(in, classLoader));
+			}
+			return list;
+		case SERIALIZED:
+			return serializationCodec.decode(readBytes(in), classLoader);
+		default:
+			throw new IOException("Unknown value type " + tag + " in executor payload");
+		}
+	}
+	
+	private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
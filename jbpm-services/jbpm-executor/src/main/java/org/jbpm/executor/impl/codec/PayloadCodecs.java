@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor.impl.codec;
+
+import java.io.IOException;
+
+import org.jbpm.executor.PayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides <code>PayloadCodec</code>s used by the executor:
+ * <ul>
+ *  <li>request data (<code>CommandContext</code>) - default java serialization - use system property 
+ *  org.kie.executor.codec.request to provide FQCN of custom codec, e.g. 
+ *  <code>org.jbpm.executor.impl.codec.BinaryPayloadCodec</code> for compact binary encoding</li>
+ *  <li>response data (<code>ExecutionResults</code>) - default java serialization as response data is 
+ *  read by executor clients as well - use system property org.kie.executor.codec.response to provide 
+ *  FQCN of custom codec</li>
+ * </ul>
+ * Decoding recognizes java serialized and binary encoded payloads regardless of configured codec so 
+ * data stored by earlier versions or with different configuration can always be read.
+ * <br/>
+ * NOTE: only versions that include this class can read binary encoded request data, so the binary codec must not
+ * be enabled before all nodes sharing the executor data base were upgraded (e.g. during a rolling upgrade). 
+ * Switching back to java serialization is possible at any time, requests stored in binary format are still read.
+ */
+public class PayloadCodecs {
+	
+	private static final Logger logger = LoggerFactory.getLogger(PayloadCodecs.class);
+	
+	private static final SerializationPayloadCodec SERIALIZATION = new SerializationPayloadCodec();
+	private static final BinaryPayloadCodec BINARY = new BinaryPayloadCodec();
+	
+	private static final PayloadCodec requestCodec = buildCodec(System.getProperty("org.kie.executor.codec.request"), SERIALIZATION);
+	private static final PayloadCodec responseCodec = buildCodec(System.getProperty("org.kie.executor.codec.response"), SERIALIZATION);
+
+	public static PayloadCodec getRequestCodec() {
+		return requestCodec;
+	}
+	
+	public static PayloadCodec getResponseCodec() {
+		return responseCodec;
+	}
+	
+	public static byte[] encodeRequest(Object payload) throws IOException {
+		return requestCodec.encode(payload);
+	}
+	
+	public static byte[] encodeResponse(Object payload) throws IOException {
+		return responseCodec.encode(payload);
+	}
+	
+	public static Object decodeRequest(byte[] data, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		return decode(data, classLoader, requestCodec);
+	}
+	
+	public static Object decodeResponse(byte[] data, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		return decode(data, classLoader, responseCodec);
+	}
+	
+	protected static Object decode(byte[] data, ClassLoader classLoader, PayloadCodec codec) throws IOException, ClassNotFoundException {
+		if (SerializationPayloadCodec.isSerialized(data)) {
+			return SERIALIZATION.decode(data, classLoader);
+		} else if (BinaryPayloadCodec.isEncoded(data)) {
+			return BINARY.decode(data, classLoader);
+		}
+		return codec.decode(data, classLoader);
+	}
+	
+	private static PayloadCodec buildCodec(String className, PayloadCodec defaultCodec) {
+		if (className == null || className.trim().isEmpty()) {
+			return defaultCodec;
+		}
+		try {
+			return (PayloadCodec) Class.forName(className.trim()).newInstance();
+		} catch (Exception e) {
+			logger.warn("Unable to create executor payload codec {}, using default {}", className, defaultCodec.getClass().getName(), e);
+			return defaultCodec;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor.impl.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.commons.io.input.ClassLoaderObjectInputStream;
+import org.jbpm.executor.PayloadCodec;
+
+/**
+ * <code>PayloadCodec</code> based on java serialization - format used by all executor versions.
+ */
+public class SerializationPayloadCodec implements PayloadCodec {
+
+	@Override
+	public byte[] encode(Object payload) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bout);
+		try {
+			out.writeObject(payload);
+		} finally {
+			out.close();
+		}
+		return bout.toByteArray();
+	}
+
+	@Override
+	public Object decode(byte[] data, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ClassLoaderObjectInputStream(classLoader, new ByteArrayInputStream(data));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks if given data is a java serialization stream.
+	 */
+	public static boolean isSerialized(byte[] data) {
+		return data != null && data.length > 1 && data[0] == (byte) 0xAC && data[1] == (byte) 0xED;
+	}
+}
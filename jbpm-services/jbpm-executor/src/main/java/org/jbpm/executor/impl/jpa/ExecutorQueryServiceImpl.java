@@ -16,6 +16,8 @@
 
 package org.jbpm.executor.impl.jpa;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -25,6 +27,8 @@ import javax.persistence.NoResultException;
 
 import org.drools.core.command.CommandService;
 import org.drools.core.command.impl.GenericCommand;
+import org.jbpm.executor.BatchProcessingAware;
+import org.jbpm.executor.QueueAware;
 import org.kie.internal.command.Context;
 import org.kie.internal.executor.api.ErrorInfo;
 import org.kie.internal.executor.api.ExecutorQueryService;
@@ -38,7 +42,7 @@ import org.kie.internal.executor.api.STATUS;
  * IMPORTANT: please keep all classes from package org.jbpm.shared.services.impl as FQCN
  * inside method body to avoid exception logged by CDI when used with in memory mode
  */
-public class ExecutorQueryServiceImpl implements ExecutorQueryService {
+public class ExecutorQueryServiceImpl implements ExecutorQueryService, BatchProcessingAware, QueueAware {
 
 
     
@@ -200,6 +204,25 @@ public class ExecutorQueryServiceImpl implements ExecutorQueryService {
         return request;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<RequestInfo> getRequestsForProcessing(int maxResults) {
+        
+        // lock all of them in one go so other executor services will skip them
+        return commandService.execute(new LockAndUpdateRequestInfosCommand(null, null, maxResults));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<RequestInfo> getRequestsForProcessing(String queue, Collection<String> dedicatedQueues, int maxResults) {
+        
+        return commandService.execute(new LockAndUpdateRequestInfosCommand(queue, dedicatedQueues, maxResults));
+    }
+
     private class LockAndUpdateRequestInfoCommand implements GenericCommand<RequestInfo> {
 
 		private static final long serialVersionUID = 8670412133363766161L;
@@ -230,4 +253,49 @@ public class ExecutorQueryServiceImpl implements ExecutorQueryService {
     	
     }
 
+    private class LockAndUpdateRequestInfosCommand implements GenericCommand<List<RequestInfo>> {
+
+		private static final long serialVersionUID = -2346378374828472452L;
+		
+		private String queue;
+		private Collection<String> dedicatedQueues;
+		private int maxResults;
+		
+		LockAndUpdateRequestInfosCommand(String queue, Collection<String> dedicatedQueues, int maxResults) {
+			this.queue = queue;
+			this.dedicatedQueues = dedicatedQueues == null ? Collections.<String>emptyList() : dedicatedQueues;
+			this.maxResults = maxResults;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public List<RequestInfo> execute(Context context) {
+			Map<String, Object> params = new HashMap<String, Object>();
+	    	params.put("now", new Date());
+	    	params.put("firstResult", 0);
+	    	params.put("maxResults", maxResults);
+	    	params.put("owner", ExecutorService.EXECUTOR_ID);
+	    	String queryName = "PendingRequestsForProcessing";
+	    	if (queue != null) {
+	    		queryName = "PendingRequestsForProcessingInQueue";
+	    		params.put("queue", queue);
+	    	} else if (!dedicatedQueues.isEmpty()) {
+	    		queryName = "PendingRequestsForProcessingExcludingQueues";
+	    		params.put("queues", dedicatedQueues);
+	    	}
+	    	
+	    	org.jbpm.shared.services.impl.JpaPersistenceContext ctx = (org.jbpm.shared.services.impl.JpaPersistenceContext) context;
+	    	List<RequestInfo> requests = ctx.queryAndLockWithParametersInTransaction(queryName, params, false, List.class);
+	    	Date now = new Date();
+	    	for (RequestInfo request : requests) {
+	    		((org.jbpm.executor.entities.RequestInfo)request).setStatus(STATUS.RUNNING);
+	    		// update date on when it was started to be executed
+	    		((org.jbpm.executor.entities.RequestInfo)request).setTime(now);
+	    		ctx.merge(request);
+	    	}
+			return requests;
+		}
+    	
+    }
+
 }
@@ -18,19 +18,22 @@ package org.jbpm.executor.impl.mem;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
+import org.jbpm.executor.BatchProcessingAware;
+import org.jbpm.executor.QueueAware;
 import org.kie.internal.executor.api.ErrorInfo;
 import org.kie.internal.executor.api.ExecutorQueryService;
 import org.kie.internal.executor.api.RequestInfo;
 import org.kie.internal.executor.api.STATUS;
 
 @SuppressWarnings("unchecked")
-public class InMemoryExecutorQueryServiceImpl implements ExecutorQueryService {
+public class InMemoryExecutorQueryServiceImpl implements ExecutorQueryService, BatchProcessingAware, QueueAware {
 
 	private InMemoryExecutorStoreService storeService;
 	
@@ -142,6 +145,18 @@ public class InMemoryExecutorQueryServiceImpl implements ExecutorQueryService {
 		
 		return storeService.getAndLockFirst();
 	}
+
+	@Override
+	public List<RequestInfo> getRequestsForProcessing(int maxResults) {
+		
+		return storeService.getAndLock(maxResults);
+	}
+
+	@Override
+	public List<RequestInfo> getRequestsForProcessing(String queue, Collection<String> dedicatedQueues, int maxResults) {
+		
+		return storeService.getAndLock(queue, dedicatedQueues, maxResults);
+	}
 	
 	private class GetRequestsByStatus implements Predicate {
 		
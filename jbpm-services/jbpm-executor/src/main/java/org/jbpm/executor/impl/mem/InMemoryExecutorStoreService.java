@@ -17,6 +17,12 @@
 package org.jbpm.executor.impl.mem;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -125,14 +131,77 @@ public class InMemoryExecutorStoreService implements ExecutorStoreService {
 	}
 	
 	public synchronized RequestInfo getAndLockFirst() {
-		if (requests.isEmpty()) {
+		List<RequestInfo> locked = getAndLock(null, null, 1);
+		if (locked.isEmpty()) {
 			return null;
 		}
-		Long toProceed = requests.firstKey();
 		
-		return requests.remove(toProceed);
+		return locked.get(0);
 	}
 	
+	public synchronized List<RequestInfo> getAndLock(int maxResults) {
+		return getAndLock(null, null, maxResults);
+	}
+	
+	/**
+	 * Removes up to given number of requests that are due, highest priority first.
+	 * @see org.jbpm.executor.QueueAware#getRequestsForProcessing(String, Collection, int)
+	 */
+	public synchronized List<RequestInfo> getAndLock(String queue, Collection<String> dedicatedQueues, int maxResults) {
+		Date now = new Date();
+		List<RequestInfo> available = new ArrayList<RequestInfo>();
+		for (RequestInfo request : requests.values()) {
+			if ((request.getStatus() != STATUS.QUEUED && request.getStatus() != STATUS.RETRYING)
+					|| (request.getTime() != null && request.getTime().after(now))) {
+				continue;
+			}
+			String requestQueue = getQueue(request);
+			if (queue != null ? queue.equals(requestQueue) 
+					: requestQueue == null || dedicatedQueues == null || !dedicatedQueues.contains(requestQueue)) {
+				available.add(request);
+			}
+		}
+		Collections.sort(available, PRIORITY_ORDER);
+		
+		List<RequestInfo> locked = new ArrayList<RequestInfo>();
+		for (RequestInfo request : available) {
+			if (locked.size() == maxResults) {
+				break;
+			}
+			locked.add(requests.remove(request.getId()));
+		}
+		return locked;
+	}
+	
+	private static String getQueue(RequestInfo request) {
+		if (request instanceof org.jbpm.executor.entities.RequestInfo) {
+			return ((org.jbpm.executor.entities.RequestInfo) request).getQueue();
+		}
+		return null;
+	}
+	
+	private static int getPriority(RequestInfo request) {
+		if (request instanceof org.jbpm.executor.entities.RequestInfo) {
+			return ((org.jbpm.executor.entities.RequestInfo) request).getPriority();
+		}
+		return org.jbpm.executor.entities.RequestInfo.DEFAULT_PRIORITY;
+	}
+	
+	private static final Comparator<RequestInfo> PRIORITY_ORDER = new Comparator<RequestInfo>() {
+		
+		@Override
+		public int compare(RequestInfo o1, RequestInfo o2) {
+			int result = getPriority(o2) - getPriority(o1);
+			if (result == 0 && o1.getTime() != null && o2.getTime() != null) {
+				result = o1.getTime().compareTo(o2.getTime());
+			}
+			if (result == 0) {
+				result = o1.getId().compareTo(o2.getId());
+			}
+			return result;
+		}
+	};
+	
 	public synchronized Map<Long, RequestInfo> getRequests() {
 		return requests;
 	}
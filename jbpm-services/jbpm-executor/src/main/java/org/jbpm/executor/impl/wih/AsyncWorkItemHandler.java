@@ -86,6 +86,12 @@ public class AsyncWorkItemHandler implements WorkItemHandler {
         if (workItem.getParameter("Owner") != null) {
             ctxCMD.setData("owner", workItem.getParameter("Owner"));
         }
+        if (workItem.getParameter("Priority") != null) {
+            ctxCMD.setData("priority", Integer.parseInt(workItem.getParameter("Priority").toString()));
+        }
+        if (workItem.getParameter("Queue") != null) {
+            ctxCMD.setData("queue", workItem.getParameter("Queue"));
+        }
         
         logger.trace("Command context {}", ctxCMD);
         Long requestId = executorService.scheduleRequest(cmdClass, ctxCMD);
@@ -247,13 +247,14 @@ public abstract class BasicExecutorBaseTest {
     @Test
     public void cancelRequestTest() throws InterruptedException {
 
-        //  The executor is on purpose not started to not fight against race condition 
-        // with the request cancelations.
+        //  The request is on purpose scheduled in the future so the executor (that is woken up 
+        // for requests due right away) does not fight against race condition with the request cancelations.
         CommandContext ctxCMD = new CommandContext();
         String businessKey = UUID.randomUUID().toString();
         ctxCMD.setData("businessKey", businessKey);
 
-        Long requestId = executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+        Date futureDate = new Date(System.currentTimeMillis() + 10000);
+        Long requestId = executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", futureDate, ctxCMD);
         
         List<RequestInfo> requests = executorService.getRequestsByBusinessKey(businessKey);
         assertNotNull(requests);
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.executor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.executor.impl.AvailableJobsExecutor;
+import org.jbpm.executor.impl.ClassCacheManager;
+import org.jbpm.executor.impl.jpa.ExecutorQueryServiceImpl;
+import org.jbpm.executor.impl.jpa.JPAExecutorStoreService;
+import org.jbpm.shared.services.impl.TransactionalCommandService;
+import org.jbpm.test.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.internal.executor.api.CommandContext;
+import org.kie.internal.executor.api.ExecutorService;
+import org.kie.internal.executor.api.RequestInfo;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+
+public class BatchExecutorTest {
+    
+	protected ExecutorService executorService;
+    
+	private PoolingDataSource pds;
+	private EntityManagerFactory emf = null;
+    
+    @Before
+    public void setUp() {
+        System.setProperty("org.kie.executor.batch.size", "5");
+        System.setProperty("org.kie.executor.worker.pool.size", "3");
+        pds = TestUtil.setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory("org.jbpm.executor");
+
+        executorService = ExecutorServiceFactory.newExecutorService(emf);
+        executorService.setThreadPoolSize(1);
+        executorService.setInterval(3);
+        
+        executorService.init();
+    }
+    
+    @After
+    public void tearDown() {
+    	executorService.clearAllRequests();
+        executorService.clearAllErrors();
+        
+        System.clearProperty("org.kie.executor.batch.size");
+        System.clearProperty("org.kie.executor.worker.pool.size");
+        executorService.destroy();
+        if (emf != null) {
+        	emf.close();
+        }
+        pds.close();
+    }
+   
+    @Test
+    public void batchExcecutionTest() throws InterruptedException {
+        // more requests than fit into single batch, all should be executed right after the first poll
+        for (int i = 0; i < 12; i++) {
+            CommandContext ctxCMD = new CommandContext();
+            ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+            executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+        }
+
+        Thread.sleep(4000);
+
+        List<RequestInfo> inErrorRequests = executorService.getInErrorRequests();
+        assertEquals(0, inErrorRequests.size());
+        List<RequestInfo> queuedRequests = executorService.getQueuedRequests();
+        assertEquals(0, queuedRequests.size());
+        List<RequestInfo> executedRequests = executorService.getCompletedRequests();
+        assertEquals(12, executedRequests.size());
+    }   
+
+    @Test
+    public void rejectedRequestsAreQueuedAgainTest() throws InterruptedException {
+        executorService.destroy();
+        
+        for (int i = 0; i < 3; i++) {
+            CommandContext ctxCMD = new CommandContext();
+            ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+            executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+        }
+        
+        TransactionalCommandService commandService = new TransactionalCommandService(emf);
+        ExecutorQueryServiceImpl queryService = new ExecutorQueryServiceImpl(true);
+        queryService.setCommandService(commandService);
+        JPAExecutorStoreService storeService = new JPAExecutorStoreService(true);
+        storeService.setCommandService(commandService);
+        storeService.setEmf(emf);
+        
+        AvailableJobsExecutor jobsExecutor = new AvailableJobsExecutor();
+        jobsExecutor.setQueryService(queryService);
+        jobsExecutor.setExecutorStoreService(storeService);
+        jobsExecutor.setClassCacheManager(new ClassCacheManager());
+        // workers that are shutting down reject all requests
+        int claimed = jobsExecutor.executeJobs(5, new Executor() {
+            
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        assertEquals(3, claimed);
+        
+        assertEquals(0, executorService.getRunningRequests().size());
+        assertEquals(3, executorService.getQueuedRequests().size());
+    }
+}
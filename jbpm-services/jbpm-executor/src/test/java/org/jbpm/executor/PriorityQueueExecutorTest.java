@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.executor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.executor.impl.jpa.ExecutorQueryServiceImpl;
+import org.jbpm.shared.services.impl.TransactionalCommandService;
+import org.jbpm.test.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.internal.executor.api.CommandContext;
+import org.kie.internal.executor.api.ExecutorService;
+import org.kie.internal.executor.api.RequestInfo;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+
+public class PriorityQueueExecutorTest {
+    
+	protected ExecutorService executorService;
+	private QueueAware queueService;
+    
+	private PoolingDataSource pds;
+	private EntityManagerFactory emf = null;
+    
+    @Before
+    public void setUp() {
+        // keep executor threads away so requests can be claimed by the test itself
+        System.setProperty("org.kie.executor.timeunit", "MINUTES");
+        System.setProperty("org.kie.executor.wakeup.enabled", "false");
+        pds = TestUtil.setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory("org.jbpm.executor");
+
+        executorService = ExecutorServiceFactory.newExecutorService(emf);
+        executorService.setThreadPoolSize(1);
+        executorService.setInterval(60);
+        
+        executorService.init();
+        
+        ExecutorQueryServiceImpl queryService = new ExecutorQueryServiceImpl(true);
+        queryService.setCommandService(new TransactionalCommandService(emf));
+        queueService = queryService;
+    }
+    
+    @After
+    public void tearDown() {
+    	executorService.clearAllRequests();
+        executorService.clearAllErrors();
+        
+        System.clearProperty("org.kie.executor.timeunit");
+        System.clearProperty("org.kie.executor.wakeup.enabled");
+        executorService.destroy();
+        if (emf != null) {
+        	emf.close();
+        }
+        pds.close();
+    }
+   
+    @Test
+    public void priorityOrderTest() throws InterruptedException {
+        Long low = schedule(1, null, null);
+        Long normal = schedule(null, null, null);
+        Long high = schedule(9, null, null);
+        Long lowLater = schedule(1, null, null);
+        // not due yet, must not be claimed regardless of its priority
+        schedule(9, null, new Date(System.currentTimeMillis() + 60000));
+        
+        Thread.sleep(100);
+        
+        List<RequestInfo> claimed = queueService.getRequestsForProcessing(null, null, 10);
+        assertEquals(Arrays.asList(high, normal, low, lowLater), getIds(claimed));
+    }
+    
+    @Test
+    public void dedicatedQueueTest() throws InterruptedException {
+        Long critical = schedule(null, "critical", null);
+        Long unknownQueue = schedule(9, "reports", null);
+        Long defaultQueue = schedule(null, null, null);
+        
+        Thread.sleep(100);
+        
+        List<String> dedicatedQueues = Collections.singletonList("critical");
+        List<RequestInfo> claimed = queueService.getRequestsForProcessing("critical", dedicatedQueues, 10);
+        assertEquals(Arrays.asList(critical), getIds(claimed));
+        
+        // requests of queues without dedicated threads are executed by default ones
+        claimed = queueService.getRequestsForProcessing(null, dedicatedQueues, 10);
+        assertEquals(Arrays.asList(unknownQueue, defaultQueue), getIds(claimed));
+    }
+    
+    private Long schedule(Integer priority, String queue, Date date) {
+        CommandContext ctxCMD = new CommandContext();
+        ctxCMD.setData("businessKey", String.valueOf(priority) + queue);
+        if (priority != null) {
+            ctxCMD.setData("priority", priority);
+        }
+        if (queue != null) {
+            ctxCMD.setData("queue", queue);
+        }
+        if (date == null) {
+            return executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+        }
+        return executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", date, ctxCMD);
+    }
+    
+    private List<Long> getIds(List<RequestInfo> requests) {
+        Long[] ids = new Long[requests.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = requests.get(i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jbpm.executor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jbpm.test.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.internal.executor.api.CommandContext;
+import org.kie.internal.executor.api.ExecutorService;
+import org.kie.internal.executor.api.RequestInfo;
+
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+
+public class WakeUpExecutorTest {
+    
+	protected ExecutorService executorService;
+    
+	private PoolingDataSource pds;
+	private EntityManagerFactory emf = null;
+    
+    @Before
+    public void setUp() {
+        // keep polling threads away so the request can only be executed after a wake up
+        System.setProperty("org.kie.executor.timeunit", "MINUTES");
+        pds = TestUtil.setupPoolingDataSource();
+        emf = Persistence.createEntityManagerFactory("org.jbpm.executor");
+
+        executorService = ExecutorServiceFactory.newExecutorService(emf);
+        executorService.setThreadPoolSize(1);
+        executorService.setInterval(60);
+        
+        executorService.init();
+    }
+    
+    @After
+    public void tearDown() {
+    	executorService.clearAllRequests();
+        executorService.clearAllErrors();
+        
+        System.clearProperty("org.kie.executor.timeunit");
+        executorService.destroy();
+        if (emf != null) {
+        	emf.close();
+        }
+        pds.close();
+    }
+   
+    @Test
+    public void wakeUpOnScheduleTest() throws InterruptedException {
+        CommandContext ctxCMD = new CommandContext();
+        ctxCMD.setData("businessKey", UUID.randomUUID().toString());
+        executorService.scheduleRequest("org.jbpm.executor.commands.PrintOutCommand", ctxCMD);
+
+        Thread.sleep(3000);
+
+        List<RequestInfo> queuedRequests = executorService.getQueuedRequests();
+        assertEquals(0, queuedRequests.size());
+        List<RequestInfo> executedRequests = executorService.getCompletedRequests();
+        assertEquals(1, executedRequests.size());
+    }   
+}
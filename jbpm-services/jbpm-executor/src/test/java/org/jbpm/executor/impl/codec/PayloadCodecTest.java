@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 JBoss by Red Hat.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.executor.impl.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.kie.internal.executor.api.CommandContext;
+import org.kie.internal.executor.api.ExecutionResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PayloadCodecTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadCodecTest.class);
+    
+    private BinaryPayloadCodec binaryCodec = new BinaryPayloadCodec();
+    private SerializationPayloadCodec serializationCodec = new SerializationPayloadCodec();
+
+    @Test
+    public void testCommandContextRoundTrip() throws Exception {
+        CommandContext ctx = buildContext();
+        
+        byte[] data = binaryCodec.encode(ctx);
+        assertTrue(BinaryPayloadCodec.isEncoded(data));
+        
+        CommandContext decoded = (CommandContext) binaryCodec.decode(data, getClass().getClassLoader());
+        assertEquals(ctx.getData().size(), decoded.getData().size());
+        for (String key : ctx.getData().keySet()) {
+            if (ctx.getData(key) instanceof byte[]) {
+                assertArrayEquals((byte[]) ctx.getData(key), (byte[]) decoded.getData(key));
+            } else {
+                assertEquals(ctx.getData(key), decoded.getData(key));
+            }
+        }
+    }
+    
+    @Test
+    public void testExecutionResultsRoundTrip() throws Exception {
+        ExecutionResults results = new ExecutionResults();
+        results.setData("result", "done");
+        results.setData("amount", new BigDecimal("10.5"));
+        
+        byte[] data = binaryCodec.encode(results);
+        
+        ExecutionResults decoded = (ExecutionResults) binaryCodec.decode(data, getClass().getClassLoader());
+        assertEquals("done", decoded.getData("result"));
+        assertEquals(new BigDecimal("10.5"), decoded.getData("amount"));
+    }
+    
+    @Test
+    public void testReadSerializedPayload() throws Exception {
+        CommandContext ctx = buildContext();
+        // as stored by previous versions
+        byte[] data = serializationCodec.encode(ctx);
+        assertTrue(SerializationPayloadCodec.isSerialized(data));
+        
+        CommandContext decoded = (CommandContext) PayloadCodecs.decodeRequest(data, getClass().getClassLoader());
+        assertEquals(ctx.getData("businessKey"), decoded.getData("businessKey"));
+        
+        decoded = (CommandContext) binaryCodec.decode(data, getClass().getClassLoader());
+        assertEquals(ctx.getData("businessKey"), decoded.getData("businessKey"));
+    }
+    
+    @Test
+    public void testCompareWithSerialization() throws Exception {
+        CommandContext ctx = buildContext();
+        ClassLoader cl = getClass().getClassLoader();
+        int iterations = 10000;
+        
+        byte[] serialized = serializationCodec.encode(ctx);
+        byte[] encoded = binaryCodec.encode(ctx);
+        assertTrue(encoded.length < serialized.length);
+        
+        // warm up
+        roundTrips(serializationCodec, ctx, cl, iterations);
+        roundTrips(binaryCodec, ctx, cl, iterations);
+        
+        long serializationTime = roundTrips(serializationCodec, ctx, cl, iterations);
+        long binaryTime = roundTrips(binaryCodec, ctx, cl, iterations);
+        
+        logger.info("{} round trips of command context - serialization: {} ms, {} bytes, binary: {} ms, {} bytes", 
+                iterations, serializationTime, serialized.length, binaryTime, encoded.length);
+    }
+    
+    private long roundTrips(org.jbpm.executor.PayloadCodec codec, CommandContext ctx, ClassLoader cl, int iterations) 
+            throws IOException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(codec.encode(ctx), cl);
+        }
+        return System.currentTimeMillis() - start;
+    }
+    
+    private CommandContext buildContext() {
+        CommandContext ctx = new CommandContext();
+        ctx.setData("businessKey", "d9f1ee7e-6fa2-4a3c-8e12-5b3e9c5b0f11");
+        ctx.setData("deploymentId", "org.jbpm:HR:1.0");
+        ctx.setData("processInstanceId", 12L);
+        ctx.setData("workItemId", 25L);
+        ctx.setData("retries", 3);
+        ctx.setData("callbacks", "org.jbpm.executor.impl.wih.AsyncWorkItemHandlerCmdCallback");
+        ctx.setData("date", new Date());
+        ctx.setData("payload", new byte[] {1, 2, 3});
+        ctx.setData("approved", Boolean.TRUE);
+        ctx.setData("missing", null);
+        
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("name", "john");
+        parameters.put("amount", new BigDecimal("1000.10"));
+        List<Object> items = new ArrayList<Object>();
+        items.add("first");
+        items.add(2);
+        parameters.put("items", items);
+        ctx.setData("parameters", parameters);
+        return ctx;
+    }
+}
@@ -79,7 +79,9 @@ public class ServicesAwareAuditEventBuilder extends DefaultAuditEventBuilderImpl
     @Override
     public AuditEvent buildEvent(ProcessVariableChangedEvent pvce) {
         VariableInstanceLog variableLog = (VariableInstanceLog)super.buildEvent(pvce); 
-        variableLog.setExternalId(deploymentUnitId);
+        if (variableLog != null) {
+            variableLog.setExternalId(deploymentUnitId);
+        }
         return variableLog;
     }
 
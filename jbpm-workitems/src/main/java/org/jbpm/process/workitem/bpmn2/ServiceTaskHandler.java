@@ -17,11 +17,11 @@
 package org.jbpm.process.workitem.bpmn2;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import javax.xml.namespace.QName;
@@ -29,10 +29,15 @@ import javax.xml.namespace.QName;
 import org.apache.cxf.endpoint.Client;
 import org.apache.cxf.endpoint.ClientCallback;
 import org.apache.cxf.jaxws.endpoint.dynamic.JaxWsDynamicClientFactory;
+import org.drools.core.process.core.Work;
 import org.drools.core.process.instance.impl.WorkItemImpl;
 import org.jbpm.bpmn2.core.Bpmn2Import;
+import org.jbpm.bpmn2.handler.ServiceInvocationCache;
+import org.jbpm.bpmn2.handler.ServiceInvocationCache.ServiceMethod;
 import org.jbpm.process.workitem.AbstractLogOrThrowWorkItemHandler;
+import org.jbpm.process.workitem.webservice.WebServiceClientCache;
 import org.jbpm.workflow.core.impl.WorkflowProcessImpl;
+import org.kie.api.definition.process.Process;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.manager.RuntimeEngine;
 import org.kie.api.runtime.manager.RuntimeManager;
@@ -50,8 +55,8 @@ public class ServiceTaskHandler extends AbstractLogOrThrowWorkItemHandler implem
     
     private static final Logger logger = LoggerFactory.getLogger(ServiceTaskHandler.class);
     
-    private ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<String, Client>();
-    private JaxWsDynamicClientFactory dcf;
+    private volatile WebServiceClientCache clients;
+    private boolean sharedClients;
     private KieSession ksession;
     private int asyncTimeout = 10;
     private ClassLoader classLoader;
@@ -64,24 +69,24 @@ public class ServiceTaskHandler extends AbstractLogOrThrowWorkItemHandler implem
     }
     
     public ServiceTaskHandler() {
-        this.dcf = JaxWsDynamicClientFactory.newInstance();
+        initClients();
     }
     
     public ServiceTaskHandler(KieSession ksession) {
-        this.dcf = JaxWsDynamicClientFactory.newInstance();
         this.ksession = ksession;
+        initClients();
     }
     
     public ServiceTaskHandler(KieSession ksession, ClassLoader classloader) {
-        this.dcf = JaxWsDynamicClientFactory.newInstance();
         this.ksession = ksession;
         this.classLoader = classloader;
+        initClients();
     }
     
     public ServiceTaskHandler(KieSession ksession, int timeout) {
-        this.dcf = JaxWsDynamicClientFactory.newInstance();
         this.ksession = ksession;
         this.asyncTimeout = timeout;
+        initClients();
     }
 
     public void executeWorkItem(WorkItem workItem, final WorkItemManager manager) {
@@ -179,28 +184,25 @@ public class ServiceTaskHandler extends AbstractLogOrThrowWorkItemHandler implem
     }
     
     @SuppressWarnings("unchecked")
-    protected synchronized Client getWSClient(WorkItem workItem, String interfaceRef) {
-        if (clients.containsKey(interfaceRef)) {
-            return clients.get(interfaceRef);
-        }
+    protected Client getWSClient(final WorkItem workItem, final String interfaceRef) {
+        return getClients().get(interfaceRef, new Callable<Client>() {
 
-        long processInstanceId = ((WorkItemImpl) workItem).getProcessInstanceId();
-        WorkflowProcessImpl process = ((WorkflowProcessImpl) ksession.getProcessInstance(processInstanceId).getProcess());
-        List<Bpmn2Import> typedImports = (List<Bpmn2Import>)process.getMetaData("Bpmn2Imports");
-        
-        
-        
+            public Client call() throws Exception {
+                long processInstanceId = ((WorkItemImpl) workItem).getProcessInstanceId();
+                WorkflowProcessImpl process = ((WorkflowProcessImpl) ksession.getProcessInstance(processInstanceId).getProcess());
+                return createWSClient(interfaceRef, (List<Bpmn2Import>) process.getMetaData("Bpmn2Imports"), getInternalClassLoader());
+            }
+        });
+    }
+
+    protected Client createWSClient(String interfaceRef, List<Bpmn2Import> typedImports, ClassLoader classLoader) {
         if (typedImports != null ){
-            Client client = null;
             for (Bpmn2Import importObj : typedImports) {
                 
                 if (WSDL_IMPORT_TYPE.equalsIgnoreCase(importObj.getType())) {
                 
                     try {
-                        client = dcf.createClient(importObj.getLocation(), new QName(importObj.getNamespace(), interfaceRef), getInternalClassLoader(), null);
-                        clients.put(interfaceRef, client);
-                        
-                        return client;
+                        return newClientFactory().createClient(importObj.getLocation(), new QName(importObj.getNamespace(), interfaceRef), classLoader, null);
                     } catch (Exception e) {
                 	    logger.error("Error when creating WS Client", e);
                         continue;
@@ -210,7 +212,77 @@ public class ServiceTaskHandler extends AbstractLogOrThrowWorkItemHandler implem
         }
         
         return null;
+    }
+
+    /**
+     * Uses clients cached for the kie base of the ksession (created only by the first handler of the kie base),
+     * or a private cache when there is no ksession.
+     */
+    private void initClients() {
+        if (ksession != null) {
+            this.clients = WebServiceClientCache.getInstance(ksession.getKieBase(), getClass().getName());
+            this.sharedClients = true;
+            if (clients.startWarmUp()) {
+                warmUpClients();
+            }
+        } else {
+            this.clients = new WebServiceClientCache();
+        }
+    }
+
+    /**
+     * Returns the client cache, binding shared clients to the runtime manager of the ksession once the ksession
+     * is attached to it, or switching to a new shared cache if the one in use was closed by another runtime manager.
+     */
+    private WebServiceClientCache getClients() {
+        if (sharedClients) {
+            if (clients.isClosed()) {
+                clients = WebServiceClientCache.getInstance(ksession.getKieBase(), getClass().getName());
+            }
+            clients.bindTo(ksession, getClass().getName());
+        }
+        return clients;
+    }
 
+    /**
+     * New factory for every client, a factory must not be used by several threads at once.
+     */
+    protected JaxWsDynamicClientFactory newClientFactory() {
+        return JaxWsDynamicClientFactory.newInstance();
+    }
+
+    /**
+     * Starts creating clients of web services referenced by processes of the kie base in background
+     * so they are ready when first used.
+     */
+    @SuppressWarnings("unchecked")
+    private void warmUpClients() {
+        // warm up runs in another thread, class loader must be resolved now
+        final ClassLoader classLoader = getInternalClassLoader();
+        try {
+            for (Process process : ksession.getKieBase().getProcesses()) {
+                if (!(process instanceof WorkflowProcessImpl)) {
+                    continue;
+                }
+                final List<Bpmn2Import> typedImports = (List<Bpmn2Import>) ((WorkflowProcessImpl) process).getMetaData("Bpmn2Imports");
+                if (typedImports == null) {
+                    continue;
+                }
+                for (Work work : WebServiceClientCache.getWorks((WorkflowProcessImpl) process)) {
+                    final Object interfaceRef = work.getParameter("interfaceImplementationRef");
+                    if (interfaceRef instanceof String && "##WebService".equalsIgnoreCase((String) work.getParameter("implementation"))) {
+                        clients.warmUp((String) interfaceRef, new Callable<Client>() {
+
+                            public Client call() throws Exception {
+                                return createWSClient((String) interfaceRef, typedImports, classLoader);
+                            }
+                        });
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Unable to create web service clients ahead of time", e);
+        }
     }
 
     private ClassLoader getInternalClassLoader() {
@@ -227,19 +299,15 @@ public class ServiceTaskHandler extends AbstractLogOrThrowWorkItemHandler implem
         String parameterType = (String) workItem.getParameter("ParameterType");
         Object parameter = workItem.getParameter("Parameter");
         try {
-            Class<?> c = Class.forName(i, true, getInternalClassLoader());
-            Object instance = c.newInstance();
-            Class<?>[] classes = null;
+            ServiceMethod method = ServiceInvocationCache.getInstance().getMethod(getInternalClassLoader(),
+                    i, operation, parameterType == null ? null : Collections.singletonList(parameterType));
+            Object instance = method.getServiceInstance();
             Object[] params = null;
             if (parameterType != null) {
-                classes = new Class<?>[] {
-                    Class.forName(parameterType, true, getInternalClassLoader())
-                };
                 params = new Object[] {
                     parameter
                 };
             }
-            Method method = c.getMethod(operation, classes);
             Object result = method.invoke(instance, params);
             Map<String, Object> results = new HashMap<String, Object>();
             results.put("Result", result);
@@ -293,10 +361,18 @@ public class ServiceTaskHandler extends AbstractLogOrThrowWorkItemHandler implem
 
 	@Override
 	public void close() {
-		if (clients != null) {
-			for (Client client : clients.values()) {
-				client.destroy();
+		if (clients == null) {
+			return;
+		}
+		if (sharedClients) {
+			// shared clients are used by handlers of other runtime engines, they are closed with the runtime manager
+			try {
+				clients.bindTo(ksession, getClass().getName());
+			} catch (RuntimeException e) {
+				logger.debug("Unable to bind web service clients to runtime manager", e);
 			}
+		} else {
+			clients.close();
 		}
 	}
 }
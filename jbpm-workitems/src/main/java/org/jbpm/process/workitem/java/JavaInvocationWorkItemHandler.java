@@ -1,13 +1,13 @@
 package org.jbpm.process.workitem.java;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.jbpm.bpmn2.handler.ServiceInvocationCache;
+import org.jbpm.bpmn2.handler.ServiceInvocationCache.ServiceMethod;
 import org.jbpm.process.workitem.AbstractLogOrThrowWorkItemHandler;
 import org.kie.api.runtime.process.WorkItem;
 import org.kie.api.runtime.process.WorkItemManager;
@@ -27,39 +27,19 @@ public class JavaInvocationWorkItemHandler extends AbstractLogOrThrowWorkItemHan
 		List<Object> params = (List<Object>) workItem.getParameter("Parameters");
 		Object result = null;
 		try {
-            Class<?> c = Class.forName(className);
-            Class<?>[] classes = null;
-            Method method = null;
             if (params == null) {
             	params = new ArrayList<Object>();
             }
+            ClassLoader classLoader = JavaInvocationWorkItemHandler.class.getClassLoader();
+            ServiceMethod method;
             if (paramTypes == null) {
-        		classes = new Class<?>[0];
-        		try {
-        			method = c.getMethod(methodName, classes);
-        		} catch (NoSuchMethodException e) {
-        			for (Method m: c.getMethods()) {
-        				if (m.getName().equals(methodName)
-        						&& (m.getParameterTypes().length == params.size())) {
-        					method = m;
-        					break;
-        				}
-        			}
-        			if (method == null) {
-        				throw new NoSuchMethodException(className + "." + methodName + "(..)");
-        			}
-        		}
-        	} else {
-                List<Class<?>> classesList = new ArrayList<Class<?>>();
-        		for (String paramType: paramTypes) {
-                    classesList.add(Class.forName(paramType));
-                }
-        		classes = classesList.toArray(new Class<?>[classesList.size()]);
-        		method = c.getMethod(methodName, classes);
-    		}            		
-            if (!Modifier.isStatic(method.getModifiers())) {
+            	method = ServiceInvocationCache.getInstance().getMethod(classLoader, className, methodName, params.size());
+            } else {
+            	method = ServiceInvocationCache.getInstance().getMethod(classLoader, className, methodName, paramTypes);
+            }
+            if (!method.isStatic()) {
             	if (object == null) {
-            		object = c.newInstance();
+            		object = method.getServiceInstance();
             	}
             }
             result = method.invoke(object, params.toArray());
@@ -20,9 +20,21 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
@@ -32,9 +44,17 @@ import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.drools.core.process.instance.impl.WorkItemImpl;
 import org.jbpm.process.workitem.AbstractLogOrThrowWorkItemHandler;
+import org.kie.api.runtime.manager.RuntimeEngine;
+import org.kie.api.runtime.manager.RuntimeManager;
 import org.kie.api.runtime.process.WorkItem;
 import org.kie.api.runtime.process.WorkItemManager;
+import org.kie.internal.runtime.Closeable;
+import org.kie.internal.runtime.manager.RuntimeManagerRegistry;
+import org.kie.internal.runtime.manager.context.ProcessInstanceIdContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,15 +80,44 @@ import org.slf4j.LoggerFactory;
  *  <li>HandleResponseErrors - optional parameter that instructs handler to throw errors in case 
  *  of non successful response codes (other than 2XX)</li>
  * </ul>
+ * By default every work item is executed with its own <code>HttpClient</code> and the engine waits for the response.
+ * Handler can be configured to run in pooled mode, in which connections are taken from a connection pool shared by
+ * all handlers of the JVM and bounded per target host, and in async mode (implies pooled mode), in which the request
+ * is executed by a bounded thread pool of the handler and the work item is completed through the <code>RuntimeManager</code>
+ * of its deployment once the response arrives, so the ksession is not blocked for the duration of the call.
+ * In pooled mode time to wait for a free connection of the pool is configured via <code>org.jbpm.rest.pool.waitTimeout</code>
+ * system property (60 seconds by default), size of the async thread pool and of its queue via 
+ * <code>org.jbpm.rest.async.threads</code> (10 by default) and <code>org.jbpm.rest.async.queue</code> (1000 by default);
+ * the thread pool is shut down when the handler is closed.
+ * Work items that have no <code>RuntimeManager</code> to be completed through, or that do not fit into the queue of
+ * the async thread pool, are executed synchronously,
+ * and failures of asynchronously executed requests are logged, leaving the work item active. The same applies to
+ * responses of work items that cannot be found (e.g. the process instance was aborted in the meantime), these are
+ * logged as errors once <code>org.jbpm.rest.async.completion.attempts</code> lookups (10 by default) failed.
  */
-public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
+public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler implements Closeable {
     
     private static final Logger logger = LoggerFactory.getLogger(RESTWorkItemHandler.class);
+
+    private static final int POOL_MAX_CONNECTIONS_PER_HOST = Integer.parseInt(System.getProperty("org.jbpm.rest.pool.maxPerHost", "20"));
+    private static final int POOL_MAX_CONNECTIONS = Integer.parseInt(System.getProperty("org.jbpm.rest.pool.maxTotal", "100"));
+    private static final long POOL_WAIT_TIMEOUT = Long.parseLong(System.getProperty("org.jbpm.rest.pool.waitTimeout", "60000"));
+    private static final int ASYNC_THREADS = Integer.parseInt(System.getProperty("org.jbpm.rest.async.threads", "10"));
+    private static final int ASYNC_QUEUE_SIZE = Integer.parseInt(System.getProperty("org.jbpm.rest.async.queue", "1000"));
+    // number of attempts to find the work item before completing it, it might not be committed yet
+    private static final int ASYNC_COMPLETION_ATTEMPTS = Integer.parseInt(System.getProperty("org.jbpm.rest.async.completion.attempts", "10"));
+
+    private static HttpConnectionManager sharedConnectionManager;
 	
 	private String username;
 	private String password;
 	private AuthenticationType type;
 	private String authUrl;	
+	private boolean pooled;
+	private boolean async;
+	private int asyncCompletionAttempts = ASYNC_COMPLETION_ATTEMPTS;
+	private ExecutorService asyncExecutor;
+	private boolean closed;
 	
 	/**
 	 * Used when no authentication is required
@@ -104,6 +153,40 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
 		return authUrl;
 	}
 
+	public boolean isPooled() {
+		return pooled || async;
+	}
+
+	/**
+	 * Makes the handler use connections from the shared connection pool instead of opening new ones for every work item.
+	 */
+	public void setPooled(boolean pooled) {
+		this.pooled = pooled;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Makes the handler execute requests in the background and complete work items through the <code>RuntimeManager</code>.
+	 */
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	public int getAsyncCompletionAttempts() {
+		return asyncCompletionAttempts;
+	}
+
+	/**
+	 * Sets how many times the work item is looked up before an asynchronous response is given up, as the
+	 * transaction that created the work item might not be committed when the response arrives.
+	 */
+	public void setAsyncCompletionAttempts(int asyncCompletionAttempts) {
+		this.asyncCompletionAttempts = asyncCompletionAttempts;
+	}
+
 	public void executeWorkItem(WorkItem workItem, WorkItemManager manager) {
 		boolean handleException = false;
     	// extract required parameters
@@ -127,9 +210,7 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
         Integer readTimeout = getParamAsInt(params.get("ReadTimeout"));
         if (readTimeout==null) readTimeout = 60000;
 
-        HttpClient httpclient = new HttpClient();
-        httpclient.getHttpConnectionManager().getParams().setConnectionTimeout(connectTimeout);
-        httpclient.getHttpConnectionManager().getParams().setSoTimeout(readTimeout);
+        HttpClient httpclient = createHttpClient(connectTimeout, readTimeout);
 	        
         HttpMethod theMethod = null;
         if ("GET".equals(method)) {
@@ -145,24 +226,27 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
         } else {
             throw new IllegalArgumentException("Method " + method + " is not supported");
         }
+        if (isPooled()) {
+        	theMethod.getParams().setSoTimeout(readTimeout);
+        }
+        if (async) {
+        	String deploymentId = workItem instanceof WorkItemImpl ? ((WorkItemImpl) workItem).getDeploymentId() : null;
+        	RuntimeManager runtimeManager = deploymentId == null ? null : RuntimeManagerRegistry.get().getManager(deploymentId);
+        	if (runtimeManager != null) {
+        		try {
+        			executeAsync(httpclient, theMethod, params, urlStr, handleException,
+        					runtimeManager, workItem.getProcessInstanceId(), workItem.getId());
+        			return;
+        		} catch (RejectedExecutionException e) {
+        			logger.debug("Async requests queue is full, executing request {} of work item {} synchronously", urlStr, workItem.getId());
+        		}
+        	} else {
+        		logger.debug("No runtime manager found for work item {}, executing request {} synchronously", workItem.getId(), urlStr);
+        	}
+        }
         doAuthorization(httpclient, theMethod, params);
         try {
-        	int responseCode = httpclient.executeMethod(theMethod);
-	        Map<String, Object> results = new HashMap<String, Object>();
-	        if (responseCode >= 200 && responseCode < 300) {
-	        	theMethod.getResponseBody();
-	            postProcessResult(theMethod.getResponseBodyAsString(), results);
-	            results.put("StatusMsg", "request to endpoint " + urlStr + " successfully completed " + theMethod.getStatusText());
-	        } else {
-	        	if (handleException) {
-	        		handleException(new RESTServiceException(responseCode, theMethod.getResponseBodyAsString(), urlStr));
-	        	} else {
-		            logger.warn("Unsuccessful response from REST server (status {}, endpoint {}, response {}", 
-		                    responseCode, urlStr, theMethod.getResponseBodyAsString());
-		            results.put("StatusMsg", "endpoint " + urlStr + " could not be reached: " + theMethod.getResponseBodyAsString());
-	        	}
-	        }
-            results.put("Status", responseCode);
+	        Map<String, Object> results = executeMethod(httpclient, theMethod, urlStr, handleException);
             
 	        // notify manager that work item has been completed
 	        manager.completeWorkItem(workItem.getId(), results);
@@ -172,6 +256,143 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
     		theMethod.releaseConnection();
     	}
     }
+
+	protected Map<String, Object> executeMethod(HttpClient httpclient, HttpMethod theMethod, String urlStr, boolean handleException) throws IOException {
+        int responseCode = httpclient.executeMethod(theMethod);
+        Map<String, Object> results = new HashMap<String, Object>();
+        if (responseCode >= 200 && responseCode < 300) {
+        	theMethod.getResponseBody();
+            postProcessResult(theMethod.getResponseBodyAsString(), results);
+            results.put("StatusMsg", "request to endpoint " + urlStr + " successfully completed " + theMethod.getStatusText());
+        } else {
+        	if (handleException) {
+        		handleException(new RESTServiceException(responseCode, theMethod.getResponseBodyAsString(), urlStr));
+        	} else {
+	            logger.warn("Unsuccessful response from REST server (status {}, endpoint {}, response {}", 
+	                    responseCode, urlStr, theMethod.getResponseBodyAsString());
+	            results.put("StatusMsg", "endpoint " + urlStr + " could not be reached: " + theMethod.getResponseBodyAsString());
+        	}
+        }
+        results.put("Status", responseCode);
+        return results;
+	}
+
+	protected void executeAsync(final HttpClient httpclient, final HttpMethod theMethod, final Map<String, Object> params,
+			final String urlStr, final boolean handleException, final RuntimeManager runtimeManager,
+			final long processInstanceId, final long workItemId) {
+		final Map<String, Object> requestParams = new HashMap<String, Object>(params);
+		getAsyncExecutor().execute(new Runnable() {
+
+			public void run() {
+				Map<String, Object> results;
+				try {
+					doAuthorization(httpclient, theMethod, requestParams);
+					results = executeMethod(httpclient, theMethod, urlStr, handleException);
+				} catch (Throwable e) {
+					logger.error("Request to endpoint {} of work item {} failed, work item is left active", urlStr, workItemId, e);
+					return;
+				} finally {
+					theMethod.releaseConnection();
+				}
+				try {
+					completeWorkItem(runtimeManager, processInstanceId, workItemId, results);
+				} catch (Throwable e) {
+					logger.error("Unable to complete work item {} with response of endpoint {}", workItemId, urlStr, e);
+				}
+			}
+		});
+	}
+
+	protected void completeWorkItem(RuntimeManager runtimeManager, long processInstanceId, long workItemId,
+			Map<String, Object> results) throws InterruptedException {
+		long delay = 50;
+		for (int attempt = 1; ; attempt++) {
+			RuntimeEngine engine = runtimeManager.getRuntimeEngine(ProcessInstanceIdContext.get(processInstanceId));
+			try {
+				WorkItemManager workItemManager = engine.getKieSession().getWorkItemManager();
+				// transaction that created the work item might not be committed yet
+				if (!(workItemManager instanceof org.drools.core.process.instance.WorkItemManager)
+						|| ((org.drools.core.process.instance.WorkItemManager) workItemManager).getWorkItem(workItemId) != null) {
+					logger.debug("Received async response completing work item {}", workItemId);
+					workItemManager.completeWorkItem(workItemId, results);
+					return;
+				}
+			} finally {
+				runtimeManager.disposeRuntimeEngine(engine);
+			}
+			if (attempt >= asyncCompletionAttempts) {
+				// completing unknown work item is silently ignored so the response would be lost
+				throw new IllegalStateException("Work item " + workItemId + " of process instance " + processInstanceId 
+						+ " not found after " + attempt + " attempts, response " + results + " cannot be delivered");
+			}
+			Thread.sleep(delay);
+			delay = Math.min(delay * 2, 1000);
+		}
+	}
+
+	protected HttpClient createHttpClient(int connectTimeout, int readTimeout) {
+		if (isPooled()) {
+			HttpClient httpclient = new HttpClient(getSharedConnectionManager());
+			httpclient.getParams().setConnectionManagerTimeout(POOL_WAIT_TIMEOUT);
+			// connect timeout of the work item, applied by the pool to the connection it hands out
+			httpclient.getHostConfiguration().getParams().setIntParameter(HttpConnectionParams.CONNECTION_TIMEOUT, connectTimeout);
+			return httpclient;
+		}
+        HttpClient httpclient = new HttpClient();
+        httpclient.getHttpConnectionManager().getParams().setConnectionTimeout(connectTimeout);
+        httpclient.getHttpConnectionManager().getParams().setSoTimeout(readTimeout);
+        return httpclient;
+	}
+
+	protected static synchronized HttpConnectionManager getSharedConnectionManager() {
+		if (sharedConnectionManager == null) {
+			MultiThreadedHttpConnectionManager connectionManager = new PooledConnectionManager();
+			HttpConnectionManagerParams managerParams = connectionManager.getParams();
+			managerParams.setDefaultMaxConnectionsPerHost(POOL_MAX_CONNECTIONS_PER_HOST);
+			managerParams.setMaxTotalConnections(POOL_MAX_CONNECTIONS);
+			sharedConnectionManager = connectionManager;
+		}
+		return sharedConnectionManager;
+	}
+
+	/**
+	 * Returns thread pool of this handler executing async requests, bounded by <code>org.jbpm.rest.async.threads</code>
+	 * threads and <code>org.jbpm.rest.async.queue</code> waiting requests.
+	 * @throws RejectedExecutionException when the handler was already closed
+	 */
+	protected synchronized ExecutorService getAsyncExecutor() {
+		if (closed) {
+			throw new RejectedExecutionException("REST work item handler is closed");
+		}
+		if (asyncExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(ASYNC_QUEUE_SIZE), new ThreadFactory() {
+
+				private final AtomicInteger counter = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "jbpm-rest-async-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			// threads are not kept around by handlers that are idle
+			executor.allowCoreThreadTimeOut(true);
+			asyncExecutor = executor;
+		}
+		return asyncExecutor;
+	}
+
+	/**
+	 * Shuts the async thread pool of this handler down, requests already handed over are still executed.
+	 */
+	public synchronized void close() {
+		closed = true;
+		if (asyncExecutor != null) {
+			asyncExecutor.shutdown();
+			asyncExecutor = null;
+		}
+	}
 	
 	protected Integer getParamAsInt(Object param) {
 		if (param == null) {
@@ -262,6 +483,24 @@ public class RESTWorkItemHandler extends AbstractLogOrThrowWorkItemHandler {
         // Do nothing, this work item cannot be aborted
     }
     
+    /**
+     * Connection pool that applies connect timeout given in host configuration of the request to the connection
+     * it hands out, as the pool's connections are otherwise opened with the connect timeout of the pool.
+     */
+    private static class PooledConnectionManager extends MultiThreadedHttpConnectionManager {
+
+		@Override
+		public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+				throws ConnectionPoolTimeoutException {
+			HttpConnection connection = super.getConnectionWithTimeout(hostConfiguration, timeout);
+			Object connectTimeout = hostConfiguration.getParams().getParameter(HttpConnectionParams.CONNECTION_TIMEOUT);
+			if (connectTimeout instanceof Integer) {
+				connection.getParams().setConnectionTimeout((Integer) connectTimeout);
+			}
+			return connection;
+		}
+    }
+
     public enum AuthenticationType {
     	BASIC,
     	FORM_BASED
@@ -0,0 +1,351 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.workitem.webservice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cxf.endpoint.Client;
+import org.drools.core.process.core.Work;
+import org.jbpm.workflow.core.node.WorkItemNode;
+import org.kie.api.KieBase;
+import org.kie.api.definition.process.Node;
+import org.kie.api.definition.process.NodeContainer;
+import org.kie.api.definition.process.WorkflowProcess;
+import org.kie.api.runtime.KieSession;
+import org.kie.internal.runtime.Cacheable;
+import org.kie.internal.runtime.manager.CacheManager;
+import org.kie.internal.runtime.manager.InternalRuntimeManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size bounded cache of web service clients used by web service handlers.
+ * <br/>
+ * Creating a client (fetching the WSDL and generating classes) happens outside of any lock shared with other
+ * endpoints - every endpoint has its own future, callers asking for a client that is being created wait only
+ * for that one while clients that are already created are returned right away. Clients can be created ahead
+ * of time by {@link #warmUp(String, Callable)}, unless disabled with <code>org.jbpm.ws.client.warmup</code>
+ * system property.
+ * <br/>
+ * Handlers bound to a ksession share one cache per kie base and handler type, see {@link #getInstance(KieBase, String)},
+ * so clients are created once per deployment no matter how many runtime engines (and so handler instances) the
+ * runtime manager creates. Such a cache is warmed up only by the first handler that gets it (see {@link #startWarmUp()}).
+ * Once bound to the runtime manager of the ksession (see {@link #bindTo(KieSession, String)}) it is closed together
+ * with the manager, i.e. when the deployment is undeployed, otherwise it lives as long as its kie base.
+ * <br/>
+ * Size of the cache is given by <code>org.jbpm.ws.client.cache.size</code> system property (100 by default),
+ * least recently used clients are dropped from the cache when it is full - they are not destroyed as they
+ * might still be in use, all remaining clients are destroyed on {@link #close()}, including those that are
+ * still being created at that time.
+ */
+public class WebServiceClientCache implements Cacheable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebServiceClientCache.class);
+
+    public static final boolean WARM_UP = Boolean.parseBoolean(System.getProperty("org.jbpm.ws.client.warmup", "true"));
+    private static final int DEFAULT_MAX_SIZE = Integer.parseInt(System.getProperty("org.jbpm.ws.client.cache.size", "100"));
+
+    private static ExecutorService warmUpExecutor;
+
+    private static final Map<KieBase, Map<String, WebServiceClientCache>> sharedCaches = new WeakHashMap<KieBase, Map<String, WebServiceClientCache>>();
+
+    private final Map<String, ClientTask> clients;
+    private final AtomicBoolean warmUpStarted = new AtomicBoolean();
+    private volatile boolean closed;
+    private volatile boolean bound;
+
+    public WebServiceClientCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public WebServiceClientCache(final int maxSize) {
+        this.clients = new LinkedHashMap<String, ClientTask>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ClientTask> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns client of given endpoint, creating it with the factory if it does not exist yet.
+     * @return the client or <code>null</code> if factory was not able to create it
+     */
+    public Client get(String key, Callable<Client> factory) {
+        while (true) {
+            ClientTask created = null;
+            ClientTask future;
+            synchronized (clients) {
+                if (closed) {
+                    throw new IllegalStateException("Web service client cache is closed");
+                }
+                future = clients.get(key);
+                if (future == null) {
+                    created = new ClientTask(factory);
+                    future = created;
+                    clients.put(key, future);
+                }
+            }
+            if (created != null) {
+                created.run();
+            }
+            try {
+                Client client = future.get();
+                if (closed) {
+                    // client is destroyed by close
+                    throw new IllegalStateException("Web service client cache is closed");
+                }
+                if (client == null) {
+                    remove(key, future);
+                    if (created == null) {
+                        // created by someone else (e.g. warm up) without success, try with own factory
+                        continue;
+                    }
+                }
+                return client;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for web service client " + key, e);
+            } catch (ExecutionException e) {
+                remove(key, future);
+                if (created == null) {
+                    continue;
+                }
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("Unable to create web service client " + key, cause);
+            }
+        }
+    }
+
+    /**
+     * Creates client of given endpoint in background unless it is already cached or being created.
+     */
+    public void warmUp(final String key, final Callable<Client> factory) {
+        synchronized (clients) {
+            if (closed || clients.containsKey(key)) {
+                return;
+            }
+        }
+        getWarmUpExecutor().execute(new Runnable() {
+
+            public void run() {
+                // client factory changes TCCL
+                ClassLoader origClassloader = Thread.currentThread().getContextClassLoader();
+                try {
+                    if (get(key, factory) != null) {
+                        logger.debug("Web service client {} created ahead of time", key);
+                    }
+                } catch (Throwable e) {
+                    logger.debug("Unable to create web service client {} ahead of time, will be created on first use", key, e);
+                } finally {
+                    Thread.currentThread().setContextClassLoader(origClassloader);
+                }
+            }
+        });
+    }
+
+    /**
+     * Marks the cache as warmed up.
+     * @return <code>true</code> if warm up is enabled and the caller is the first one to start it
+     */
+    public boolean startWarmUp() {
+        return WARM_UP && warmUpStarted.compareAndSet(false, true);
+    }
+
+    public boolean isCreated(String key) {
+        Future<Client> future;
+        synchronized (clients) {
+            future = clients.get(key);
+        }
+        return future != null && future.isDone();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int size() {
+        synchronized (clients) {
+            return clients.size();
+        }
+    }
+
+    /**
+     * Destroys all created clients and empties the cache. Clients that are still being created are destroyed
+     * as soon as they are done.
+     */
+    public void close() {
+        List<ClientTask> tasks;
+        synchronized (clients) {
+            closed = true;
+            tasks = new ArrayList<ClientTask>(clients.values());
+            clients.clear();
+        }
+        for (ClientTask task : tasks) {
+            if (task.isDone()) {
+                task.destroy();
+            }
+        }
+        synchronized (sharedCaches) {
+            for (Map<String, WebServiceClientCache> caches : sharedCaches.values()) {
+                caches.values().remove(this);
+            }
+        }
+    }
+
+    /**
+     * Registers the cache in the cache manager of the runtime manager given ksession belongs to, so that
+     * the cache is closed (and its clients destroyed) when the runtime manager is closed. Closes the cache
+     * right away if the runtime manager is already closed. Does nothing if the cache is bound already or
+     * the ksession is not (yet) attached to a runtime manager.
+     */
+    public void bindTo(KieSession ksession, String name) {
+        if (bound || closed || ksession == null) {
+            return;
+        }
+        Object manager = ksession.getEnvironment().get("RuntimeManager");
+        if (manager instanceof InternalRuntimeManager) {
+            InternalRuntimeManager runtimeManager = (InternalRuntimeManager) manager;
+            if (runtimeManager.isClosed()) {
+                close();
+            } else {
+                CacheManager cacheManager = runtimeManager.getCacheManager();
+                String key = WebServiceClientCache.class.getName() + "#" + name;
+                if (cacheManager.get(key) != this) {
+                    cacheManager.add(key, this);
+                }
+            }
+            bound = true;
+        }
+    }
+
+    private void remove(String key, Future<Client> future) {
+        synchronized (clients) {
+            if (clients.get(key) == future) {
+                clients.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the cache shared by handlers of given name (usually handler type) bound to sessions of given kie base.
+     */
+    public static WebServiceClientCache getInstance(KieBase kieBase, String name) {
+        synchronized (sharedCaches) {
+            Map<String, WebServiceClientCache> caches = sharedCaches.get(kieBase);
+            if (caches == null) {
+                caches = new HashMap<String, WebServiceClientCache>();
+                sharedCaches.put(kieBase, caches);
+            }
+            WebServiceClientCache cache = caches.get(name);
+            if (cache == null || cache.closed) {
+                cache = new WebServiceClientCache();
+                caches.put(name, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Collects work definitions of all work item nodes of given process, including nested ones.
+     */
+    public static List<Work> getWorks(WorkflowProcess process) {
+        List<Work> works = new ArrayList<Work>();
+        collectWorks(process, works);
+        return works;
+    }
+
+    private static void collectWorks(NodeContainer container, List<Work> works) {
+        for (Node node : container.getNodes()) {
+            if (node instanceof WorkItemNode && ((WorkItemNode) node).getWork() != null) {
+                works.add(((WorkItemNode) node).getWork());
+            }
+            if (node instanceof NodeContainer) {
+                collectWorks((NodeContainer) node, works);
+            }
+        }
+    }
+
+    private class ClientTask extends FutureTask<Client> {
+
+        private final AtomicBoolean destroyed = new AtomicBoolean();
+
+        ClientTask(Callable<Client> factory) {
+            super(factory);
+        }
+
+        @Override
+        protected void done() {
+            // the cache was closed while the client was being created
+            if (closed) {
+                destroy();
+            }
+        }
+
+        void destroy() {
+            if (!destroyed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                Client client = get();
+                if (client != null) {
+                    client.destroy();
+                }
+            } catch (Exception e) {
+                // client was not created
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getWarmUpExecutor() {
+        if (warmUpExecutor == null) {
+            warmUpExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+
+                private final AtomicInteger counter = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "jbpm-ws-client-warmup-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return warmUpExecutor;
+    }
+}
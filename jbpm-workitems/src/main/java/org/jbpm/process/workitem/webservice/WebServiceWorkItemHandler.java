@@ -20,7 +20,7 @@ import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import javax.xml.namespace.QName;
@@ -29,10 +29,12 @@ import org.apache.cxf.endpoint.Client;
 import org.apache.cxf.endpoint.ClientCallback;
 import org.apache.cxf.jaxws.endpoint.dynamic.JaxWsDynamicClientFactory;
 import org.apache.cxf.message.Message;
+import org.drools.core.process.core.Work;
 import org.drools.core.process.instance.impl.WorkItemImpl;
 import org.jbpm.bpmn2.core.Bpmn2Import;
 import org.jbpm.process.workitem.AbstractLogOrThrowWorkItemHandler;
 import org.jbpm.workflow.core.impl.WorkflowProcessImpl;
+import org.kie.api.definition.process.Process;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.manager.RuntimeEngine;
 import org.kie.api.runtime.manager.RuntimeManager;
@@ -50,8 +52,8 @@ public class WebServiceWorkItemHandler extends AbstractLogOrThrowWorkItemHandler
     
     private static Logger logger = LoggerFactory.getLogger(WebServiceWorkItemHandler.class);
     
-    private ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<String, Client>();
-    private JaxWsDynamicClientFactory dcf;
+    private volatile WebServiceClientCache clients;
+    private boolean sharedClients;
     private KieSession ksession;
     private int asyncTimeout = 10;
     private ClassLoader classLoader;
@@ -63,20 +65,20 @@ public class WebServiceWorkItemHandler extends AbstractLogOrThrowWorkItemHandler
     }
     
     public WebServiceWorkItemHandler(KieSession ksession) {
-        this.dcf = JaxWsDynamicClientFactory.newInstance();
         this.ksession = ksession;
+        initClients();
     }
     
     public WebServiceWorkItemHandler(KieSession ksession, ClassLoader classloader) {
-        this.dcf = JaxWsDynamicClientFactory.newInstance();
         this.ksession = ksession;
         this.classLoader = classloader;
+        initClients();
     }
     
     public WebServiceWorkItemHandler(KieSession ksession, int timeout) {
-        this.dcf = JaxWsDynamicClientFactory.newInstance();
         this.ksession = ksession;
         this.asyncTimeout = timeout;
+        initClients();
     }
 
     public void executeWorkItem(WorkItem workItem, final WorkItemManager manager) {
@@ -191,33 +193,34 @@ public class WebServiceWorkItemHandler extends AbstractLogOrThrowWorkItemHandler
     }
     
     @SuppressWarnings("unchecked")
-    protected synchronized Client getWSClient(WorkItem workItem, String interfaceRef) {
-        if (clients.containsKey(interfaceRef)) {
-            return clients.get(interfaceRef);
-        }
-        
-        String importLocation = (String) workItem.getParameter("Url");
-        String importNamespace = (String) workItem.getParameter("Namespace");
-        if (importLocation != null && importLocation.trim().length() > 0 
-        		&& importNamespace != null && importNamespace.trim().length() > 0) {
-        	Client client = dcf.createClient(importLocation, new QName(importNamespace, interfaceRef), getInternalClassLoader(), null);
-            clients.put(interfaceRef, client);
-            return client;
-        }
-        
-        
-        long processInstanceId = ((WorkItemImpl) workItem).getProcessInstanceId();
-        WorkflowProcessImpl process = ((WorkflowProcessImpl) ksession.getProcessInstance(processInstanceId).getProcess());
-        List<Bpmn2Import> typedImports = (List<Bpmn2Import>)process.getMetaData("Bpmn2Imports");
-        
+    protected Client getWSClient(final WorkItem workItem, final String interfaceRef) {
+        return getClients().get(interfaceRef, new Callable<Client>() {
+
+            public Client call() throws Exception {
+                String importLocation = (String) workItem.getParameter("Url");
+                String importNamespace = (String) workItem.getParameter("Namespace");
+                if (importLocation != null && importLocation.trim().length() > 0 
+                		&& importNamespace != null && importNamespace.trim().length() > 0) {
+                    return createWSClient(interfaceRef, importLocation, importNamespace, getInternalClassLoader());
+                }
+                
+                long processInstanceId = ((WorkItemImpl) workItem).getProcessInstanceId();
+                WorkflowProcessImpl process = ((WorkflowProcessImpl) ksession.getProcessInstance(processInstanceId).getProcess());
+                return createWSClient(interfaceRef, (List<Bpmn2Import>) process.getMetaData("Bpmn2Imports"), getInternalClassLoader());
+            }
+        });
+    }
+
+    protected Client createWSClient(String interfaceRef, String importLocation, String importNamespace, ClassLoader classLoader) {
+        return newClientFactory().createClient(importLocation, new QName(importNamespace, interfaceRef), classLoader, null);
+    }
+
+    protected Client createWSClient(String interfaceRef, List<Bpmn2Import> typedImports, ClassLoader classLoader) {
         if (typedImports != null ){
-            Client client = null;
             for (Bpmn2Import importObj : typedImports) {
                 if (WSDL_IMPORT_TYPE.equalsIgnoreCase(importObj.getType())) {
                     try {
-                        client = dcf.createClient(importObj.getLocation(), new QName(importObj.getNamespace(), interfaceRef), getInternalClassLoader(), null);
-                        clients.put(interfaceRef, client);
-                        return client;
+                        return createWSClient(interfaceRef, importObj.getLocation(), importObj.getNamespace(), classLoader);
                     } catch (Exception e) {
                     	logger.error("Error when creating WS Client", e);
                         continue;
@@ -228,6 +231,86 @@ public class WebServiceWorkItemHandler extends AbstractLogOrThrowWorkItemHandler
         return null;
     }
 
+    /**
+     * Binds the handler to the client cache shared by handlers of the ksession's kie base and warms it up
+     * if no other handler did so yet. Handlers without ksession use their own cache.
+     */
+    private void initClients() {
+        if (ksession != null) {
+            this.clients = WebServiceClientCache.getInstance(ksession.getKieBase(), getClass().getName());
+            this.sharedClients = true;
+            if (clients.startWarmUp()) {
+                warmUpClients();
+            }
+        } else {
+            this.clients = new WebServiceClientCache();
+        }
+    }
+
+    /**
+     * Returns the client cache, binding shared clients to the runtime manager of the ksession once the ksession
+     * is attached to it, or switching to a new shared cache if the one in use was closed by another runtime manager.
+     */
+    private WebServiceClientCache getClients() {
+        if (sharedClients) {
+            if (clients.isClosed()) {
+                clients = WebServiceClientCache.getInstance(ksession.getKieBase(), getClass().getName());
+            }
+            clients.bindTo(ksession, getClass().getName());
+        }
+        return clients;
+    }
+
+    /**
+     * Client factory is not thread safe and clients are created concurrently, so every client gets its own.
+     */
+    protected JaxWsDynamicClientFactory newClientFactory() {
+        return JaxWsDynamicClientFactory.newInstance();
+    }
+
+    /**
+     * Starts creating clients of web services referenced by processes of the kie base in background
+     * so they are ready when first used.
+     */
+    @SuppressWarnings("unchecked")
+    private void warmUpClients() {
+        // warm up runs in another thread, class loader must be resolved now
+        final ClassLoader classLoader = getInternalClassLoader();
+        try {
+            for (Process process : ksession.getKieBase().getProcesses()) {
+                if (!(process instanceof WorkflowProcessImpl)) {
+                    continue;
+                }
+                final List<Bpmn2Import> typedImports = (List<Bpmn2Import>) ((WorkflowProcessImpl) process).getMetaData("Bpmn2Imports");
+                for (Work work : WebServiceClientCache.getWorks((WorkflowProcessImpl) process)) {
+                    final Object interfaceRef = work.getParameter("Interface");
+                    final Object importLocation = work.getParameter("Url");
+                    final Object importNamespace = work.getParameter("Namespace");
+                    if (!(interfaceRef instanceof String)) {
+                        continue;
+                    }
+                    if (importLocation instanceof String && importNamespace instanceof String) {
+                        clients.warmUp((String) interfaceRef, new Callable<Client>() {
+
+                            public Client call() throws Exception {
+                                return createWSClient((String) interfaceRef, (String) importLocation, (String) importNamespace, classLoader);
+                            }
+                        });
+                    } else if (typedImports != null) {
+                        clients.warmUp((String) interfaceRef, new Callable<Client>() {
+
+                            public Client call() throws Exception {
+                                return createWSClient((String) interfaceRef, typedImports, classLoader);
+                            }
+                        });
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Unable to create web service clients ahead of time", e);
+        }
+    }
+
     public void abortWorkItem(WorkItem workItem, WorkItemManager manager) {
         // Do nothing, cannot be aborted
     }
@@ -257,10 +340,18 @@ public class WebServiceWorkItemHandler extends AbstractLogOrThrowWorkItemHandler
 	
 	@Override
 	public void close() {
-		if (clients != null) {
-			for (Client client : clients.values()) {
-				client.destroy();
+		if (clients == null) {
+			return;
+		}
+		if (sharedClients) {
+			// shared clients are used by handlers of other runtime engines, they are closed with the runtime manager
+			try {
+				clients.bindTo(ksession, getClass().getName());
+			} catch (RuntimeException e) {
+				logger.debug("Unable to bind web service clients to runtime manager", e);
 			}
+		} else {
+			clients.close();
 		}
 	}
 }
@@ -2,12 +2,23 @@ package org.jbpm.process.workitem.rest;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.ext.RuntimeDelegate;
 
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
 import org.apache.cxf.endpoint.Server;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.cxf.jaxrs.provider.JAXBElementProvider;
@@ -16,9 +27,20 @@ import org.jbpm.bpmn2.handler.WorkItemHandlerRuntimeException;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.kie.api.event.process.DefaultProcessEventListener;
+import org.kie.api.event.process.ProcessCompletedEvent;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.manager.RuntimeEnvironment;
+import org.kie.api.runtime.manager.RuntimeEnvironmentBuilder;
+import org.kie.api.runtime.manager.RuntimeManager;
+import org.kie.api.runtime.manager.RuntimeManagerFactory;
+import org.kie.api.runtime.process.ProcessInstance;
 import org.kie.api.runtime.process.WorkItem;
 import org.kie.api.runtime.process.WorkItemHandler;
 import org.kie.api.runtime.process.WorkItemManager;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.manager.context.EmptyContext;
 
 public class RestWorkItemHandlerTest {
 
@@ -92,6 +114,167 @@ public class RestWorkItemHandlerTest {
         assertEquals("request to endpoint " + workItem.getParameter("Url") +" successfully completed OK", responseMsg);
     }
     
+    @Test
+    public void testGETOperationPooled() {
+        RESTWorkItemHandler handler = new RESTWorkItemHandler();
+        handler.setPooled(true);
+        
+        for (int i = 0; i < 3; i++) {
+            WorkItemImpl workItem = new WorkItemImpl();
+            workItem.setParameter( "Url", serverURL);
+            workItem.setParameter( "Method", "GET" );
+            
+            WorkItemManager manager = new TestWorkItemManager(workItem);
+            handler.executeWorkItem(workItem, manager);
+            
+            String result = (String) workItem.getResult("Result");
+            assertNotNull("result cannot be null", result);
+            assertEquals("Hello from REST", result);
+            assertEquals(200, workItem.getResult("Status"));
+        }
+    }
+    
+    @Test
+    public void testGETOperationPooledWithCustomTimeout() {
+        final List<HttpClient> clients = new ArrayList<HttpClient>();
+        RESTWorkItemHandler handler = new RESTWorkItemHandler() {
+            @Override
+            protected HttpClient createHttpClient(int connectTimeout, int readTimeout) {
+                HttpClient httpclient = super.createHttpClient(connectTimeout, readTimeout);
+                clients.add(httpclient);
+                return httpclient;
+            }
+        };
+        handler.setPooled(true);
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL);
+        workItem.setParameter( "Method", "GET" );
+        workItem.setParameter( "ConnectTimeout", "30000" );
+        
+        WorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        assertEquals(200, workItem.getResult("Status"));
+        
+        // connect timeout of the work item is used, waiting for a pooled connection has its own timeout
+        assertEquals(1, clients.size());
+        assertEquals(30000, clients.get(0).getHostConfiguration().getParams().getIntParameter(HttpConnectionParams.CONNECTION_TIMEOUT, 0));
+        assertEquals(60000, clients.get(0).getParams().getConnectionManagerTimeout());
+    }
+    
+    @Test
+    public void testAsyncExecutorShutDownOnClose() {
+        RESTWorkItemHandler handler = new RESTWorkItemHandler();
+        handler.setAsync(true);
+        
+        ExecutorService executor = handler.getAsyncExecutor();
+        assertSame(executor, handler.getAsyncExecutor());
+        handler.close();
+        assertTrue(executor.isShutdown());
+        try {
+            handler.getAsyncExecutor();
+            fail("Closed handler must not execute async requests");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        
+        // work items are still executed, synchronously
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL);
+        workItem.setParameter( "Method", "GET" );
+        WorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        assertEquals("Hello from REST", workItem.getResult("Result"));
+    }
+    
+    @Test
+    public void testGETOperationAsyncWithoutRuntimeManager() {
+        RESTWorkItemHandler handler = new RESTWorkItemHandler();
+        handler.setAsync(true);
+        
+        WorkItemImpl workItem = new WorkItemImpl();
+        workItem.setParameter( "Url", serverURL);
+        workItem.setParameter( "Method", "GET" );
+        
+        // no runtime manager to complete the work item through, executed synchronously
+        WorkItemManager manager = new TestWorkItemManager(workItem);
+        handler.executeWorkItem(workItem, manager);
+        
+        String result = (String) workItem.getResult("Result");
+        assertNotNull("result cannot be null", result);
+        assertEquals("Hello from REST", result);
+        assertEquals(200, workItem.getResult("Status"));
+    }
+    
+    @Test
+    public void testGETOperationAsyncWithRuntimeManager() throws Exception {
+        RuntimeEnvironment environment = RuntimeEnvironmentBuilder.Factory.get()
+                .newEmptyBuilder()
+                .addAsset(ResourceFactory.newClassPathResource("BPMN2-TwoUserTasks.bpmn2"), ResourceType.BPMN2)
+                .get();
+        RuntimeManager runtimeManager = RuntimeManagerFactory.Factory.get().newSingletonRuntimeManager(environment, "rest-async");
+        try {
+            final Object ksessionLock = new Object();
+            final List<Object> responses = new ArrayList<Object>();
+            final RESTWorkItemHandler handler = new RESTWorkItemHandler() {
+                @Override
+                protected void completeWorkItem(RuntimeManager runtimeManager, long processInstanceId, long workItemId,
+                        Map<String, Object> results) throws InterruptedException {
+                    // in memory ksession is not thread safe, persistent ones are synchronized by the engine
+                    synchronized (ksessionLock) {
+                        responses.add(results.get("Result"));
+                        super.completeWorkItem(runtimeManager, processInstanceId, workItemId, results);
+                    }
+                }
+            };
+            handler.setAsync(true);
+            handler.setAsyncCompletionAttempts(2);
+            
+            KieSession ksession = runtimeManager.getRuntimeEngine(EmptyContext.get()).getKieSession();
+            // user tasks of the process are sent as REST requests
+            ksession.getWorkItemManager().registerWorkItemHandler("Human Task", new WorkItemHandler() {
+                
+                @Override
+                public void executeWorkItem(WorkItem workItem, WorkItemManager manager) {
+                    ((WorkItemImpl) workItem).setParameter("Url", serverURL);
+                    ((WorkItemImpl) workItem).setParameter("Method", "GET");
+                    handler.executeWorkItem(workItem, manager);
+                }
+                
+                @Override
+                public void abortWorkItem(WorkItem workItem, WorkItemManager manager) {
+                }
+            });
+            final CountDownLatch completed = new CountDownLatch(1);
+            ksession.addEventListener(new DefaultProcessEventListener() {
+                
+                @Override
+                public void afterProcessCompleted(ProcessCompletedEvent event) {
+                    completed.countDown();
+                }
+            });
+            ProcessInstance processInstance;
+            synchronized (ksessionLock) {
+                processInstance = ksession.startProcess("HR.test");
+                // request is executed in the background so the process waits for the response
+                assertEquals(ProcessInstance.STATE_ACTIVE, processInstance.getState());
+            }
+            assertTrue(completed.await(10, TimeUnit.SECONDS));
+            assertEquals(2, responses.size());
+            assertEquals("Hello from REST", responses.get(0));
+            
+            // response of work item that does not exist anymore is not completed into nothing
+            try {
+                handler.completeWorkItem(runtimeManager, processInstance.getId(), 1000, new HashMap<String, Object>());
+                fail("Unknown work item must not be completed");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            runtimeManager.close();
+        }
+    }
+    
     @Test
     public void testGETOperationWithInvalidTimeout() {
         RESTWorkItemHandler handler = new RESTWorkItemHandler();
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2015 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jbpm.process.workitem.webservice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cxf.endpoint.Client;
+import org.drools.core.impl.EnvironmentFactory;
+import org.jbpm.runtime.manager.impl.CacheManagerImpl;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.KieSession;
+import org.kie.internal.runtime.manager.CacheManager;
+import org.kie.internal.runtime.manager.InternalRuntimeManager;
+
+public class WebServiceClientCacheTest {
+
+    @Test
+    public void testClientIsCreatedOnce() {
+        WebServiceClientCache cache = new WebServiceClientCache(10);
+        CountingFactory factory = new CountingFactory();
+
+        Client client = cache.get("hello", factory);
+        assertNotNull(client);
+        assertSame(client, cache.get("hello", factory));
+        assertEquals(1, factory.count.get());
+        assertTrue(cache.isCreated("hello"));
+    }
+
+    @Test
+    public void testFailedClientIsNotCached() {
+        WebServiceClientCache cache = new WebServiceClientCache(10);
+        Client client = cache.get("hello", new Callable<Client>() {
+
+            public Client call() throws Exception {
+                return null;
+            }
+        });
+        assertNull(client);
+        assertEquals(0, cache.size());
+
+        try {
+            cache.get("hello", new Callable<Client>() {
+
+                public Client call() throws Exception {
+                    throw new IllegalArgumentException("invalid wsdl");
+                }
+            });
+            fail("Client creation should fail");
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid wsdl", e.getMessage());
+        }
+        assertEquals(0, cache.size());
+        assertNotNull(cache.get("hello", new CountingFactory()));
+    }
+
+    @Test(timeout = 10000)
+    public void testSlowClientDoesNotBlockOthers() throws Exception {
+        final WebServiceClientCache cache = new WebServiceClientCache(10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        cache.get("fast", new CountingFactory());
+
+        Thread slow = new Thread(new Runnable() {
+
+            public void run() {
+                cache.get("slow", new Callable<Client>() {
+
+                    public Client call() throws Exception {
+                        started.countDown();
+                        release.await();
+                        return createClient();
+                    }
+                });
+            }
+        });
+        slow.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CountingFactory factory = new CountingFactory();
+        assertNotNull(cache.get("fast", factory));
+        assertNotNull(cache.get("other", factory));
+        assertFalse(cache.isCreated("slow"));
+
+        release.countDown();
+        slow.join();
+        assertTrue(cache.isCreated("slow"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedClientIsDropped() {
+        WebServiceClientCache cache = new WebServiceClientCache(2);
+        CountingFactory factory = new CountingFactory();
+        cache.get("first", factory);
+        cache.get("second", factory);
+        cache.get("first", factory);
+        cache.get("third", factory);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.isCreated("first"));
+        assertFalse(cache.isCreated("second"));
+        assertTrue(cache.isCreated("third"));
+    }
+
+    @Test
+    public void testCacheIsSharedPerKieBase() {
+        KieBase kieBase = createKieBase();
+        WebServiceClientCache cache = WebServiceClientCache.getInstance(kieBase, "handler");
+        assertSame(cache, WebServiceClientCache.getInstance(kieBase, "handler"));
+        assertNotSame(cache, WebServiceClientCache.getInstance(kieBase, "other"));
+        assertNotSame(cache, WebServiceClientCache.getInstance(createKieBase(), "handler"));
+
+        if (WebServiceClientCache.WARM_UP) {
+            assertTrue(cache.startWarmUp());
+        }
+        assertFalse(cache.startWarmUp());
+        assertFalse(WebServiceClientCache.getInstance(kieBase, "handler").startWarmUp());
+    }
+
+    @Test(timeout = 10000)
+    public void testClientCreatedAfterCloseIsDestroyed() throws Exception {
+        final WebServiceClientCache cache = new WebServiceClientCache(10);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger destroyed = new AtomicInteger();
+
+        Thread slow = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    cache.get("slow", new Callable<Client>() {
+
+                        public Client call() throws Exception {
+                            started.countDown();
+                            release.await();
+                            return createClient(destroyed);
+                        }
+                    });
+                } catch (IllegalStateException e) {
+                    // cache closed in the meantime
+                }
+            }
+        });
+        slow.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        cache.get("fast", new Callable<Client>() {
+
+            public Client call() throws Exception {
+                return createClient(destroyed);
+            }
+        });
+        cache.close();
+        assertEquals(1, destroyed.get());
+
+        release.countDown();
+        slow.join();
+        assertEquals(2, destroyed.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSharedCacheIsClosedWithRuntimeManager() {
+        KieBase kieBase = createKieBase();
+        WebServiceClientCache cache = WebServiceClientCache.getInstance(kieBase, "handler");
+        AtomicInteger destroyed = new AtomicInteger();
+        cache.get("hello", new CountingFactory(destroyed));
+
+        // ksession not attached to runtime manager yet
+        Environment environment = EnvironmentFactory.newEnvironment();
+        KieSession ksession = createKieSession(environment);
+        cache.bindTo(ksession, "handler");
+
+        CacheManager cacheManager = new CacheManagerImpl();
+        environment.set("RuntimeManager", createRuntimeManager(cacheManager));
+        cache.bindTo(ksession, "handler");
+        cache.bindTo(ksession, "handler");
+        assertSame(cache, cacheManager.get(WebServiceClientCache.class.getName() + "#handler"));
+        assertEquals(0, destroyed.get());
+
+        cacheManager.dispose();
+        assertTrue(cache.isClosed());
+        assertEquals(1, destroyed.get());
+        assertNotSame(cache, WebServiceClientCache.getInstance(kieBase, "handler"));
+    }
+
+    private static KieSession createKieSession(final Environment environment) {
+        return (KieSession) Proxy.newProxyInstance(KieSession.class.getClassLoader(), new Class<?>[] { KieSession.class },
+                new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getEnvironment".equals(method.getName())) {
+                            return environment;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static InternalRuntimeManager createRuntimeManager(final CacheManager cacheManager) {
+        return (InternalRuntimeManager) Proxy.newProxyInstance(InternalRuntimeManager.class.getClassLoader(),
+                new Class<?>[] { InternalRuntimeManager.class }, new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getCacheManager".equals(method.getName())) {
+                            return cacheManager;
+                        } else if ("isClosed".equals(method.getName())) {
+                            return false;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static KieBase createKieBase() {
+        return (KieBase) Proxy.newProxyInstance(KieBase.class.getClassLoader(), new Class<?>[] { KieBase.class },
+                new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        } else if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static Client createClient() {
+        return createClient(new AtomicInteger());
+    }
+
+    private static Client createClient(final AtomicInteger destroyed) {
+        return (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[] { Client.class },
+                new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("destroy".equals(method.getName())) {
+                            destroyed.incrementAndGet();
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static class CountingFactory implements Callable<Client> {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger destroyed;
+
+        CountingFactory() {
+            this(new AtomicInteger());
+        }
+
+        CountingFactory(AtomicInteger destroyed) {
+            this.destroyed = destroyed;
+        }
+
+        public Client call() throws Exception {
+            count.incrementAndGet();
+            return createClient(destroyed);
+        }
+    }
+}